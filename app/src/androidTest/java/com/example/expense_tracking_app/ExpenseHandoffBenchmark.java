@@ -0,0 +1,107 @@
+package com.example.expense_tracking_app;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Parcel;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares handing an expense to another screen through Intent extras, which are marshalled into
+ * a Parcel, with handing over its id and reading it back from the {@link ExpenseRepository}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExpenseHandoffBenchmark {
+    private static final String TAG = ExpenseHandoffBenchmark.class.getSimpleName();
+
+    private static final int EXPENSES = 10_000;
+    private static final int CUSTOM_CATEGORIES = 50;
+    private static final int ITERATIONS = 10_000;
+    private static final int RUNS = 5;
+
+    /**
+     * Logs the time per handoff both ways. Uses its own store and categories, so nothing reaches
+     * the application's repository or the user's data.
+     */
+    @Test
+    public void comparesIdHandoffWithMarshalling() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ExpenseCategories categories = new ExpenseCategories(context.getResources().getStringArray(R.array.expense_categories),
+                context.getString(R.string.expense_category_default));
+        for (int i = 0; i < CUSTOM_CATEGORIES; i++) {
+            categories.addCategory("Custom " + i);
+        }
+
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < EXPENSES; i++) {
+            store.add("Expense " + i, 19_000 + i % 365, i * 7L, "Custom " + i % CUSTOM_CATEGORIES, "Reason " + i, "Notes " + i);
+        }
+
+        long bestIntent = Long.MAX_VALUE;
+        long bestId = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                checksum += marshal(store.get(i % EXPENSES), categories).getCost();
+            }
+            bestIntent = Math.min(bestIntent, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Intent intent = new Intent();
+                intent.putExtra("EXPENSE_ID", store.getId(i % EXPENSES));
+                int row = store.findRow(intent.getLongExtra("EXPENSE_ID", -1));
+                checksum -= store.get(row).getCost();
+            }
+            bestId = Math.min(bestId, System.nanoTime() - start);
+        }
+
+        Log.i(TAG, "Per handoff: Intent extras " + bestIntent / ITERATIONS + " ns, id " + bestId / ITERATIONS + " ns");
+        assertEquals(0, checksum);
+    }
+
+    /**
+     * The handoff the activities used to do: every field and the custom categories go through a
+     * Parcel and are parsed back into a new {@link Expense}.
+     */
+    private static Expense marshal(Expense expense, ExpenseCategories categories) {
+        Intent intent = new Intent();
+        intent.putExtra("EXPENSE_NAME", expense.getName());
+        intent.putExtra("EXPENSE_DATE", expense.getDate().toEpochDay());
+        intent.putExtra("EXPENSE_COST", expense.getCost());
+        intent.putExtra("EXPENSE_CATEGORY", expense.getCategory());
+        intent.putExtra("EXPENSE_REASON", expense.getReason());
+        intent.putExtra("EXPENSE_NOTES", expense.getNotes());
+        intent.putStringArrayListExtra("CUSTOM_CATEGORIES", categories.getCustomCategories());
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            intent.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            Intent received = Intent.CREATOR.createFromParcel(parcel);
+
+            ArrayList<String> customCategories = received.getStringArrayListExtra("CUSTOM_CATEGORIES");
+            assertNotNull(customCategories);
+            Expense copy = new Expense(received.getStringExtra("EXPENSE_NAME"),
+                    LocalDate.ofEpochDay(received.getLongExtra("EXPENSE_DATE", 0)),
+                    received.getLongExtra("EXPENSE_COST", 0),
+                    received.getStringExtra("EXPENSE_CATEGORY"));
+            copy.setReason(received.getStringExtra("EXPENSE_REASON"));
+            copy.setNotes(received.getStringExtra("EXPENSE_NOTES"));
+            return copy;
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -9,22 +9,25 @@ import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.text.NumberFormat;
-import java.text.ParseException;
+import java.io.IOException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 public class ExpenseActivity extends AppCompatActivity {
-    public static final int EXPENSE_ERROR_ID = -2;
-    public static final int EXPENSE_NEW = -1;
+    public static final long EXPENSE_ERROR_ID = -2;
+    public static final long EXPENSE_NEW = -1;
 
     private static final String TAG = ExpenseActivity.class.getSimpleName();
 
+    // Units and intervals for the entries of expense_repeat_options after "Never".
+    private static final RecurringExpense.Unit[] REPEAT_UNITS = {RecurringExpense.Unit.WEEK, RecurringExpense.Unit.WEEK, RecurringExpense.Unit.MONTH};
+    private static final int[] REPEAT_INTERVALS = {1, 2, 1};
+
     private EditText nameText;
     private TextView dateText;
     private EditText costText;
@@ -32,18 +35,23 @@ public class ExpenseActivity extends AppCompatActivity {
     private AutoCompleteTextView categoryText;
     private EditText reasonText;
     private EditText notesText;
+    private Spinner repeatSpinner;
 
-    private int id;
+    private long id;
 
     private DatePickerDialog datePickerDialog;
 
-    private ExpenseCategories expenseCategories;
+    private ExpenseRepository expenseRepository;
+    private ExpenseFormatters formatters;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_expense);
 
+        expenseRepository = ((ExpenseApplication) getApplication()).getRepository();
+        formatters = ExpenseFormatters.getInstance(getString(R.string.date_format_mmddyyyy), getString(R.string.expense_cost_symbol));
+
         nameText = findViewById(R.id.expense_name);
         dateText = findViewById(R.id.expense_date);
         costText = findViewById(R.id.expense_cost);
@@ -51,30 +59,48 @@ public class ExpenseActivity extends AppCompatActivity {
         categoryText = findViewById(R.id.expense_category);
         reasonText = findViewById(R.id.expense_reason);
         notesText = findViewById(R.id.expense_notes);
-        Button deleteButton = findViewById(R.id.delete_expense);
+        repeatSpinner = findViewById(R.id.expense_repeat);
 
-        Intent intent = getIntent();
-
-        id = intent.getIntExtra(getString(R.string.EXTRA_EXPENSE_ID), EXPENSE_ERROR_ID);
+        id = getIntent().getLongExtra(getString(R.string.EXTRA_EXPENSE_ID), EXPENSE_ERROR_ID);
         assert id != EXPENSE_ERROR_ID;
-        if (id == EXPENSE_NEW) {
-            deleteButton.setVisibility(View.INVISIBLE);
-        }
-
-        populateForm(intent);
 
         initializeDatePicker();
-        initializeCategories(intent);
+
+        // Nothing can be saved or deleted before the expense is shown.
+        findViewById(R.id.save_expense).setEnabled(false);
+        findViewById(R.id.delete_expense).setEnabled(false);
+        ((ExpenseApplication) getApplication()).whenLoaded(this::onRepositoryLoaded);
     }
 
-    private void initializeCategories(Intent intent) {
-        String[] expenseCategoriesArray = getResources().getStringArray(R.array.expense_categories);
-        expenseCategories = new ExpenseCategories(expenseCategoriesArray, getString(R.string.expense_category_default));
+    private void onRepositoryLoaded(IOException failure) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (failure != null) {
+            // The repository refuses changes, so saving and deleting stay disabled.
+            Toast.makeText(this, getString(R.string.load_failed, failure.getMessage()), Toast.LENGTH_LONG).show();
+            return;
+        }
+        Button deleteButton = findViewById(R.id.delete_expense);
+        Expense expense = id == EXPENSE_NEW ? null : expenseRepository.get(id);
+        if (expense == null) {
+            id = EXPENSE_NEW;
+            expense = new Expense("", LocalDate.now(), 0, expenseRepository.getCategories().getDefault());
+            deleteButton.setVisibility(View.INVISIBLE);
+        } else {
+            // Only new expenses can be made to repeat.
+            findViewById(R.id.expense_repeat_row).setVisibility(View.GONE);
+        }
 
-        List<String> customCategories = intent.getStringArrayListExtra(getString(R.string.EXTRA_EXPENSE_CUSTOM_CATEGORIES));
-        expenseCategories.addCategories(customCategories);
+        populateForm(expense);
+        initializeCategories();
+
+        findViewById(R.id.save_expense).setEnabled(true);
+        deleteButton.setEnabled(true);
+    }
 
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_dropdown_item_1line, expenseCategories.getCategories());
+    private void initializeCategories() {
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_dropdown_item_1line, expenseRepository.getCategories().getCategories());
         categoryText.setAdapter(adapter);
     }
 
@@ -83,7 +109,7 @@ public class ExpenseActivity extends AppCompatActivity {
 
         datePickerDialog.setOnDateSetListener((datePicker, year, month, day) -> {
             LocalDate date = LocalDate.of(year, month + 1, day);
-            dateText.setText(date.format(DateTimeFormatter.ofPattern("MM/dd/yyyy")));
+            dateText.setText(formatters.formatDate(date));
         });
 
         dateText.setOnClickListener(view -> datePickerDialog.show());
@@ -94,23 +120,14 @@ public class ExpenseActivity extends AppCompatActivity {
         });
     }
 
-    private void populateForm(Intent intent) {
-        String name = intent.getStringExtra(getString(R.string.EXTRA_EXPENSE_NAME));
-        long date = intent.getLongExtra(getString(R.string.EXTRA_EXPENSE_DATE), 0);
-        double cost = intent.getDoubleExtra(getString(R.string.EXTRA_EXPENSE_COST), 0);
-        String category = intent.getStringExtra(getString(R.string.EXTRA_EXPENSE_CATEGORY));
-        String reason = intent.getStringExtra(getString(R.string.EXTRA_EXPENSE_REASON));
-        String notes = intent.getStringExtra(getString(R.string.EXTRA_EXPENSE_NOTES));
-
-        nameText.setText(name);
-        dateText.setText(LocalDate.ofEpochDay(date).format(DateTimeFormatter.ofPattern("MM/dd/yyyy")));
-        NumberFormat format = NumberFormat.getCurrencyInstance();
-        String costString = format.format(cost);
-        costText.setText(costString.substring(1));
-        costSymbolText.setText(costString.substring(0, 1));
-        categoryText.setText(category);
-        reasonText.setText(reason);
-        notesText.setText(notes);
+    private void populateForm(Expense expense) {
+        nameText.setText(expense.getName());
+        dateText.setText(formatters.formatDate(expense.getDate()));
+        costText.setText(Money.format(expense.getCost(), new StringBuilder()));
+        costSymbolText.setText(R.string.expense_cost_symbol);
+        categoryText.setText(expense.getCategory());
+        reasonText.setText(expense.getReason());
+        notesText.setText(expense.getNotes());
     }
 
     public void cancel(View view) {
@@ -120,56 +137,81 @@ public class ExpenseActivity extends AppCompatActivity {
     }
 
     public void save(View view) {
-        Intent intent = new Intent(this, MainActivity.class);
-
-        if (nameText.getText() != null) {
-            intent.putExtra(getString(R.string.EXTRA_EXPENSE_NAME), nameText.getText().toString());
-        }
-
-        if (dateText.getText() != null) {
-            LocalDate date = LocalDate.parse(dateText.getText().toString(), DateTimeFormatter.ofPattern(getString(R.string.date_format_mmddyyyy)));
-            intent.putExtra(getString(R.string.EXTRA_EXPENSE_DATE), date.toEpochDay());
-        }
+        String name = nameText.getText() == null ? null : nameText.getText().toString();
+        LocalDate date = dateText.getText() == null ? LocalDate.now() : formatters.parseDate(dateText.getText());
 
-        if (costText.getText() != null && costSymbolText.getText() != null) {
-            double cost = 0;
-            NumberFormat format = NumberFormat.getCurrencyInstance();
+        long cost = 0;
+        if (costText.getText() != null) {
             try {
-                String costString = costSymbolText.getText().toString() + costText.getText().toString();
-                cost = format.parse(costString).doubleValue();
-            } catch (ParseException | NullPointerException e) {
+                cost = Money.parse(costText.getText());
+            } catch (NumberFormatException e) {
                 Log.e(TAG, e.getMessage(), e);
             }
-            intent.putExtra(getString(R.string.EXTRA_EXPENSE_COST), cost);
         }
 
-        if (categoryText.getText() != null) {
-            intent.putExtra(getString(R.string.EXTRA_EXPENSE_CATEGORY), categoryText.getText().toString());
-            expenseCategories.addCategory(categoryText.getText().toString());
-        }
+        String category = categoryText.getText() == null ? expenseRepository.getCategories().getDefault() : categoryText.getText().toString();
 
+        Expense expense = new Expense(name, date, cost, category);
         if (reasonText.getText() != null) {
-            intent.putExtra(getString(R.string.EXTRA_EXPENSE_REASON), reasonText.getText().toString());
+            expense.setReason(reasonText.getText().toString());
         }
-
         if (notesText.getText() != null) {
-            intent.putExtra(getString(R.string.EXTRA_EXPENSE_NOTES), notesText.getText().toString());
+            expense.setNotes(notesText.getText().toString());
         }
 
-        intent.putExtra(getString(R.string.EXTRA_EXPENSE_ID), id);
-
-        intent.putStringArrayListExtra(getString(R.string.EXTRA_EXPENSE_CUSTOM_CATEGORIES), expenseCategories.getCustomCategories());
+        int repeat = repeatSpinner.getSelectedItemPosition();
+        int year = date.getYear();
+        if (repeat == 0 && year < expenseRepository.getLoadedFromYear()) {
+            // The year is read first, and the expense saved once it is in the repository.
+            findViewById(R.id.save_expense).setEnabled(false);
+            findViewById(R.id.delete_expense).setEnabled(false);
+            ((ExpenseApplication) getApplication()).loadYears(year, failure -> onYearLoaded(failure, view));
+            return;
+        }
+        try {
+            if (id == EXPENSE_NEW && repeat > 0) {
+                id = expenseRepository.addRecurring(new RecurringExpense(name, cost, category,
+                        REPEAT_UNITS[repeat - 1], REPEAT_INTERVALS[repeat - 1], date.toEpochDay(), RecurringExpense.NO_END));
+            } else if (id == EXPENSE_NEW) {
+                id = expenseRepository.insert(expense);
+            } else {
+                expense.setId(id);
+                expenseRepository.update(expense);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, e.getMessage(), e);
+        }
 
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.putExtra(getString(R.string.EXTRA_EXPENSE_ID), id);
         setResult(RESULT_OK, intent);
         finish();
     }
 
+    private void onYearLoaded(IOException failure, View view) {
+        if (isDestroyed()) {
+            return;
+        }
+        findViewById(R.id.save_expense).setEnabled(true);
+        findViewById(R.id.delete_expense).setEnabled(true);
+        if (failure != null) {
+            Toast.makeText(this, getString(R.string.load_failed, failure.getMessage()), Toast.LENGTH_LONG).show();
+            return;
+        }
+        save(view);
+    }
+
     public void delete(View view) {
+        try {
+            expenseRepository.delete(id);
+        } catch (IOException e) {
+            Log.e(TAG, e.getMessage(), e);
+        }
+
         Intent intent = new Intent(this, MainActivity.class);
         intent.putExtra(getString(R.string.EXTRA_EXPENSE_DELETE), true);
         intent.putExtra(getString(R.string.EXTRA_EXPENSE_ID), id);
-
-        setResult(RESULT_CANCELED, intent);
+        setResult(RESULT_OK, intent);
         finish();
     }
-}
\ No newline at end of file
+}
@@ -9,101 +9,137 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.NumberFormat;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Map;
 
-public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ViewHolder> {
+public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ViewHolder> implements ExpenseView.Listener {
 
     private final ExpenseAdapter.onItemClickListener onItemClickListener;
+    private final ExpenseAdapter.onRecurringClickListener onRecurringClickListener;
 
-    private final List<Expense> backingItems;
-    private final List<Expense> viewItems;
-    private final HashMap<Expense, Integer> viewItemsToBackingItems;
+    private final ExpenseEngine engine;
+    private final ExpensePages pages;
 
-    private final CategoryFilter categoryFilter;
-    private final DateFilter dateFilter;
-
-    public ExpenseAdapter(List<Expense> expenses, CategoryFilter categoryFilter, DateFilter dateFilter, onItemClickListener onItemClickListener) {
-        this.backingItems = expenses;
-        this.categoryFilter = categoryFilter;
-        this.dateFilter = dateFilter;
+    /**
+     * Item ids of the occurrences listed so far, by rule id and then by day, counted down from
+     * below {@link RecyclerView#NO_ID}. Kept for the adapter's lifetime, so an occurrence keeps
+     * its id across resets.
+     */
+    private final Map<Long, LongIntMap> occurrenceIds = new HashMap<>();
+    private int occurrenceCount;
 
+    public ExpenseAdapter(ExpenseRepository repository, CategoryFilter categoryFilter, DateFilter dateFilter, SearchFilter searchFilter, ExpenseQueryPipeline queryPipeline, onItemClickListener onItemClickListener, onRecurringClickListener onRecurringClickListener) {
         this.onItemClickListener = onItemClickListener;
+        this.onRecurringClickListener = onRecurringClickListener;
+        setHasStableIds(true);
 
-        this.viewItems = new ArrayList<>();
-        this.viewItemsToBackingItems = new HashMap<>();
-        rebuildViewItems();
+        this.engine = new ExpenseEngine(repository, categoryFilter, dateFilter, searchFilter, queryPipeline);
+        engine.setListener(this);
+        this.pages = new ExpensePages(engine, queryPipeline);
     }
 
-    @SuppressLint("NotifyDataSetChanged")
-    private void rebuildViewItems() {
-        viewItems.clear();
-        viewItemsToBackingItems.clear();
-
-        for (int i = 0; i < backingItems.size(); i++) {
-            Expense expense = backingItems.get(i);
-            if (matchesFilter(expense)) {
-                viewItemsToBackingItems.put(expense, viewItems.size());
-                viewItems.add(expense);
-            }
-        }
-        viewItems.sort((a, b) -> {
-            int dateComparison = a.getDate().compareTo(b.getDate());
-            if (dateComparison == 0) {
-                return a.getName().compareToIgnoreCase(b.getName());
-            }
-            return dateComparison;
-        });
-        notifyDataSetChanged();
+    /**
+     * Stops following changes to the repository. Must be called when the adapter is discarded,
+     * since the repository outlives the activity that owns it.
+     */
+    public void detach() {
+        engine.detach();
     }
 
-    public void addItem(Expense expense) {
-        backingItems.add(expense);
+    public void updateFilters(Runnable onUpdated) {
+        engine.updateFilters(onUpdated);
+    }
 
-        if (matchesFilter(expense)) {
-            rebuildViewItems();
-        }
+    public void whenListed(Runnable callback) {
+        engine.whenListed(callback);
     }
 
-    private boolean matchesFilter(Expense expense) {
-        return categoryFilter.filter(expense) && dateFilter.filter(expense);
+    public SortOrder getSortOrder() {
+        return engine.getSortOrder();
     }
 
-    public void updateItem(int position, Expense expense) {
-        Expense previous = backingItems.get(position);
+    public void setSortOrder(SortOrder sortOrder) {
+        engine.setSortOrder(sortOrder, () -> { });
+    }
 
-        backingItems.set(position, expense);
+    public long getViewItemsCost() {
+        return engine.getViewItemsCost();
+    }
 
-        if (matchesFilter(previous) || matchesFilter(expense) || viewItemsToBackingItems.containsKey(previous)) {
-            rebuildViewItems();
-        }
+    public long getViewItemsCount() {
+        return engine.getViewItemsCount();
     }
 
-    public void removeItem(int position) {
-        Expense expense = backingItems.get(position);
-        backingItems.remove(position);
+    public long getUnloadedCost() {
+        return engine.getUnloadedCost();
+    }
 
-        if (!viewItemsToBackingItems.containsKey(expense)) {
-            return;
-        }
+    public long getUnloadedCount() {
+        return engine.getUnloadedCount();
+    }
+
+    /**
+     * Drops the pages of rows that are not on screen.
+     */
+    public void trimMemory() {
+        pages.trim();
+    }
+
+    @Override
+    public void onInserted(int position) {
+        pages.invalidate();
+        notifyItemInserted(position);
+    }
+
+    @Override
+    public void onRemoved(int position) {
+        pages.invalidate();
+        notifyItemRemoved(position);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        pages.invalidate();
+        notifyItemMoved(fromPosition, toPosition);
+    }
 
-        rebuildViewItems();
+    @Override
+    public void onChanged(int position) {
+        pages.invalidate();
+        notifyItemChanged(position);
+    }
+
+    @Override
+    public void onRangeInserted(int position, int count) {
+        pages.invalidate();
+        notifyItemRangeInserted(position, count);
+    }
+
+    @Override
+    public void onRangeRemoved(int position, int count) {
+        pages.invalidate();
+        notifyItemRangeRemoved(position, count);
     }
 
-    public void updateFilters() {
-        rebuildViewItems();
+    @Override
+    public void onRangeChanged(int position, int count) {
+        pages.invalidate();
+        notifyItemRangeChanged(position, count);
     }
 
-    public double getViewItemsCost() {
-        return viewItems.stream().mapToDouble(Expense::getCost).sum();
+    @SuppressLint("NotifyDataSetChanged")
+    @Override
+    public void onReset() {
+        pages.invalidate();
+        notifyDataSetChanged();
     }
 
     public interface onItemClickListener {
-        void onItemClick(Expense expense, int position);
+        void onItemClick(Expense expense);
+    }
+
+    public interface onRecurringClickListener {
+        void onRecurringClick(RecurringExpense rule);
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
@@ -111,10 +147,15 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ViewHold
         private final TextView category;
         private final TextView date;
         private final TextView cost;
+        private final ExpenseFormatters formatters;
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
 
+            formatters = ExpenseFormatters.getInstance(
+                    itemView.getResources().getString(R.string.date_format_mmddyyyy),
+                    itemView.getResources().getString(R.string.expense_cost_symbol));
+
             name = itemView.findViewById(R.id.expense_name);
             category = itemView.findViewById(R.id.expense_category);
             date = itemView.findViewById(R.id.expense_date);
@@ -129,13 +170,12 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ViewHold
             this.category.setText(category);
         }
 
-        public void setDate(LocalDate date) {
-            this.date.setText(date.format(DateTimeFormatter.ofPattern(itemView.getResources().getString(R.string.date_format_mmddyyyy))));
+        public void setDate(long epochDay) {
+            this.date.setText(formatters.formatDate(epochDay));
         }
 
-        public void setCost(double cost) {
-            NumberFormat format = NumberFormat.getCurrencyInstance();
-            this.cost.setText(format.format(cost));
+        public void setCost(long cost) {
+            this.cost.setText(formatters.formatAmount(cost));
         }
     }
 
@@ -144,21 +184,68 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ViewHold
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.expense, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        view.setOnClickListener(itemView -> {
+            int position = holder.getAdapterPosition();
+            // No position while the item is animating out or an update is pending.
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            if (position >= engine.size()) {
+                this.onRecurringClickListener.onRecurringClick(engine.getOccurrences().getRule(position - engine.size()));
+            } else {
+                this.onItemClickListener.onItemClick(engine.get(position));
+            }
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Expense expense = viewItems.get(position);
-        holder.setName(expense.getName());
-        holder.setCategory(expense.getCategory());
-        holder.setDate(expense.getDate());
-        holder.setCost(expense.getCost());
-        holder.itemView.setOnClickListener(view -> this.onItemClickListener.onItemClick(expense, viewItemsToBackingItems.get(expense)));
+        if (position >= engine.size()) {
+            RecurringExpense.Occurrences occurrences = engine.getOccurrences();
+            int occurrence = position - engine.size();
+            RecurringExpense rule = occurrences.getRule(occurrence);
+            holder.setName(holder.itemView.getResources().getString(R.string.expense_recurring_name, rule.getName()));
+            holder.setCategory(rule.getCategory());
+            holder.setDate(occurrences.getEpochDay(occurrence));
+            holder.setCost(rule.getAmount());
+            return;
+        }
+        ExpensePages.Page page = pages.getPage(position);
+        holder.setName(page.getName(position));
+        holder.setCategory(page.getCategory(position));
+        holder.setDate(page.getEpochDay(position));
+        holder.setCost(page.getAmount(position));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (position >= engine.size()) {
+            // Occurrences are not rows, so they get negative ids that expense ids never reach.
+            RecurringExpense.Occurrences occurrences = engine.getOccurrences();
+            int occurrence = position - engine.size();
+            return getOccurrenceId(occurrences.getRule(occurrence).getId(), occurrences.getEpochDay(occurrence));
+        }
+        return engine.getId(position);
+    }
+
+    private long getOccurrenceId(long ruleId, long epochDay) {
+        LongIntMap days = occurrenceIds.get(ruleId);
+        if (days == null) {
+            days = new LongIntMap();
+            occurrenceIds.put(ruleId, days);
+        }
+        int index = days.get(epochDay);
+        if (index == LongIntMap.MISSING) {
+            index = occurrenceCount++;
+            days.put(epochDay, index);
+        }
+        return RecyclerView.NO_ID - 1 - index;
     }
 
     @Override
     public int getItemCount() {
-        return viewItems.size();
+        return pages.size() + engine.getOccurrences().size();
     }
 }
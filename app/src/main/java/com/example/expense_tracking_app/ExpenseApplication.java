@@ -0,0 +1,121 @@
+package com.example.expense_tracking_app;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ExpenseApplication extends Application {
+    private static final String TAG = ExpenseApplication.class.getSimpleName();
+    /** This year and last year are loaded on start; older years when a filter or an edit reaches them. */
+    private static final int HOT_YEARS = 2;
+
+    /**
+     * Told on the main thread how loading the repository went.
+     */
+    public interface LoadCallback {
+        /**
+         * @param failure why the expenses could not be loaded, or null if they were. After a
+         *                failure the repository refuses every change until {@link #retryLoad()}
+         *                succeeds.
+         */
+        void onLoaded(IOException failure);
+    }
+
+    private ExpenseRepository repository;
+    private Executor mainExecutor;
+    /** Reads the years that are not loaded, when an edit reaches into them. */
+    private final ExecutorService fileExecutor = Executors.newSingleThreadExecutor();
+
+    /** Main thread only. */
+    private boolean loading;
+    private IOException loadFailure;
+    private final List<LoadCallback> loadedCallbacks = new ArrayList<>();
+
+    /**
+     * Loads the repository on a thread of its own, so the first screen draws while the journal
+     * and segments are read.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        String[] expenseCategoriesArray = getResources().getStringArray(R.array.expense_categories);
+        ExpenseCategories expenseCategories = new ExpenseCategories(expenseCategoriesArray, getString(R.string.expense_category_default));
+
+        repository = new ExpenseRepository(new ExpenseJournal(getFilesDir(), ExpenseJournal.DEFAULT_SNAPSHOT_INTERVAL, HOT_YEARS), expenseCategories);
+        mainExecutor = ContextCompat.getMainExecutor(this);
+        load();
+    }
+
+    private void load() {
+        loading = true;
+        new Thread(() -> {
+            IOException failure = null;
+            try {
+                repository.load();
+            } catch (IOException e) {
+                Log.e(TAG, e.getMessage(), e);
+                failure = e;
+            }
+            IOException result = failure;
+            mainExecutor.execute(() -> onLoaded(result));
+        }, "expense-load").start();
+    }
+
+    private void onLoaded(IOException failure) {
+        loading = false;
+        loadFailure = failure;
+        List<LoadCallback> callbacks = new ArrayList<>(loadedCallbacks);
+        loadedCallbacks.clear();
+        for (LoadCallback callback : callbacks) {
+            callback.onLoaded(failure);
+        }
+    }
+
+    /**
+     * Calls {@code callback} on the main thread once the repository has been loaded or failed to
+     * load, right away if it already has. Must be called from the main thread.
+     */
+    public void whenLoaded(LoadCallback callback) {
+        if (loading) {
+            loadedCallbacks.add(callback);
+        } else {
+            callback.onLoaded(loadFailure);
+        }
+    }
+
+    /**
+     * Loads the repository again after a failure. Callbacks registered with
+     * {@link #whenLoaded(LoadCallback)} from now on hear how the new attempt went. Must be called
+     * from the main thread.
+     */
+    public void retryLoad() {
+        if (!loading && loadFailure != null) {
+            load();
+        }
+    }
+
+    /**
+     * Loads the years from {@code fromYear} on, which an edit has to before it dates an expense
+     * into them, reading them on the file thread. {@code callback} is told on the main thread how
+     * it went. Must be called from the main thread once the repository is loaded.
+     */
+    public void loadYears(int fromYear, LoadCallback callback) {
+        repository.loadYears(fromYear, fileExecutor, mainExecutor, callback::onLoaded);
+    }
+
+    /**
+     * The repository may only be used once {@link #whenLoaded(LoadCallback)} says it is loaded.
+     */
+    public ExpenseRepository getRepository() {
+        return repository;
+    }
+}
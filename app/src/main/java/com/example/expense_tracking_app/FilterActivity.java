@@ -14,11 +14,9 @@ import com.google.android.material.datepicker.MaterialDatePicker;
 
 import java.time.Duration;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAdjusters;
 import java.time.temporal.TemporalField;
 import java.time.temporal.WeekFields;
-import java.util.List;
 import java.util.Locale;
 
 public class FilterActivity extends AppCompatActivity {
@@ -64,19 +62,19 @@ public class FilterActivity extends AppCompatActivity {
             categoryText.setText(category);
         }
 
-        String[] expenseCategoriesArray = getResources().getStringArray(R.array.expense_categories);
-        ExpenseCategories expenseCategories = new ExpenseCategories(expenseCategoriesArray, getString(R.string.expense_category_default));
-
-        List<String> customCategories = intent.getStringArrayListExtra(getString(R.string.EXTRA_EXPENSE_CUSTOM_CATEGORIES));
-        expenseCategories.addCategories(customCategories);
-
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_dropdown_item_1line, expenseCategories.getCategories());
-        categoryText.setAdapter(adapter);
+        ExpenseApplication application = (ExpenseApplication) getApplication();
+        application.whenLoaded(failure -> {
+            // Only the default categories if the expenses could not be loaded.
+            ExpenseCategories expenseCategories = application.getRepository().getCategories();
+            ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_dropdown_item_1line, expenseCategories.getCategories());
+            categoryText.setAdapter(adapter);
+        });
     }
 
     private void setDateText() {
-        String startDateText = start.format(DateTimeFormatter.ofPattern(getString(R.string.date_format_mmddyyyy)));
-        String endDateText = end.format(DateTimeFormatter.ofPattern(getString(R.string.date_format_mmddyyyy)));
+        ExpenseFormatters formatters = ExpenseFormatters.getInstance(getString(R.string.date_format_mmddyyyy), getString(R.string.expense_cost_symbol));
+        String startDateText = formatters.formatDate(start);
+        String endDateText = formatters.formatDate(end);
         String dateRange = startDateText + " - " + endDateText;
         dateRangeText.setText(dateRange);
     }
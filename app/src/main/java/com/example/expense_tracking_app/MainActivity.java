@@ -1,45 +1,82 @@
 package com.example.expense_tracking_app;
 
+import android.content.ComponentCallbacks2;
 import android.content.Intent;
-import android.icu.text.NumberFormat;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.activity.result.ActivityResult;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAG = MainActivity.class.getSimpleName();
+    private static final String MIME_TYPE_CSV = "text/csv";
+    private static final String MIME_TYPE_JSON = "application/json";
+    /** In the order of {@code R.array.sort_orders}. */
+    private static final SortOrder[] SORT_ORDERS = {
+            SortOrder.DEFAULT,
+            new SortOrder(SortOrder.Key.DATE, false),
+            new SortOrder(SortOrder.Key.NAME, true),
+            new SortOrder(SortOrder.Key.NAME, false),
+            new SortOrder(SortOrder.Key.AMOUNT, true),
+            new SortOrder(SortOrder.Key.AMOUNT, false),
+            new SortOrder(SortOrder.Key.CATEGORY, true),
+            new SortOrder(SortOrder.Key.CATEGORY, false)};
+
     private ExpenseAdapter expenseAdapter;
+    private ExpenseRepository expenseRepository;
+    private ExecutorService queryExecutor;
+    private ExecutorService fileExecutor;
+    private ExecutorService parserExecutor;
 
     private TextView totalText;
     private TextView averageText;
+    private TextView unloadedText;
 
-    private ExpenseCategories expenseCategories;
     private CategoryFilter categoryFilter;
     private DateFilter dateFilter;
+    private SearchFilter searchFilter;
 
     private final ActivityResultLauncher<Intent> expenseActivityResultLauncher = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), this::onExpenseActivityResult);
 
     private final ActivityResultLauncher<Intent> filterActivityResultLauncher = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), this::onFilterActivityResult);
 
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::onImportDocument);
+
+    private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(new ActivityResultContracts.CreateDocument(MIME_TYPE_CSV), this::onExportDocument);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        List<Expense> expenses = new ArrayList<>();
-
-        String[] expenseCategoriesArray = getResources().getStringArray(R.array.expense_categories);
-        expenseCategories = new ExpenseCategories(expenseCategoriesArray, getString(R.string.expense_category_default));
+        expenseRepository = ((ExpenseApplication) getApplication()).getRepository();
 
         View expenseFilters = findViewById(R.id.expense_filters);
 
@@ -50,102 +87,290 @@ public class MainActivity extends AppCompatActivity {
 
         categoryFilter = new CategoryFilter();
         dateFilter = new DateFilter();
-        expenseAdapter = new ExpenseAdapter(expenses, categoryFilter, dateFilter, this::onItemClick);
-        recyclerView.setAdapter(expenseAdapter);
+        searchFilter = new SearchFilter();
+        queryExecutor = Executors.newSingleThreadExecutor();
+        // Imports and exports run one at a time. The parser of an import gets a thread of its
+        // own, so it never waits behind the import that consumes it.
+        fileExecutor = Executors.newSingleThreadExecutor();
+        parserExecutor = Executors.newCachedThreadPool();
+
+        EditText searchText = findViewById(R.id.expense_search);
+        searchText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable text) {
+                searchFilter.setQuery(text.toString());
+                if (expenseAdapter != null) {
+                    expenseAdapter.updateFilters(MainActivity.this::updateSummary);
+                }
+            }
+        });
 
         totalText = findViewById(R.id.expense_total);
         averageText = findViewById(R.id.expense_average);
-        updateSummary();
+        unloadedText = findViewById(R.id.expense_unloaded);
+        ((ExpenseApplication) getApplication()).whenLoaded(this::onRepositoryLoaded);
     }
 
-    public void onAddExpenseCallback(View view) {
-        Expense expense = new Expense("", LocalDate.now(), 0, expenseCategories.getDefault());
-        launchExpenseActivity(expense, ExpenseActivity.EXPENSE_NEW);
+    /**
+     * Shows the list once the application has loaded the repository, or why it could not be
+     * loaded. Filters set in the meantime are applied on the query pipeline.
+     */
+    private void onRepositoryLoaded(IOException failure) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (failure != null) {
+            findViewById(R.id.expenses_loading).setVisibility(View.GONE);
+            TextView message = findViewById(R.id.expenses_load_failed_message);
+            message.setText(getString(R.string.load_failed, failure.getMessage()));
+            findViewById(R.id.expenses_load_failed).setVisibility(View.VISIBLE);
+            return;
+        }
+        findViewById(R.id.expenses_load_failed).setVisibility(View.GONE);
+        ExpenseQueryPipeline queryPipeline = new ExpenseQueryPipeline(queryExecutor, ContextCompat.getMainExecutor(this));
+        expenseAdapter = new ExpenseAdapter(expenseRepository, categoryFilter, dateFilter, searchFilter, queryPipeline, this::onItemClick, this::onRecurringClick);
+        RecyclerView recyclerView = findViewById(R.id.expenses_recycler_view);
+        recyclerView.setAdapter(expenseAdapter);
+        findViewById(R.id.expenses_loading).setVisibility(View.GONE);
+        invalidateOptionsMenu();
+
+        if (dateFilter.isEnabled() || categoryFilter.isEnabled() || searchFilter.isEnabled()) {
+            expenseAdapter.updateFilters(this::updateSummary);
+        } else {
+            updateSummary();
+        }
     }
 
-    private void onItemClick(Expense expense, int position) {
-        launchExpenseActivity(expense, position);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (expenseAdapter != null) {
+            expenseAdapter.detach();
+        }
+        queryExecutor.shutdownNow();
+        // After the imports already queued, so none of their parsers is rejected.
+        fileExecutor.execute(parserExecutor::shutdown);
+        fileExecutor.shutdown();
     }
 
-    private void launchExpenseActivity(Expense expense, int id) {
-        Intent intent = new Intent(this, ExpenseActivity.class);
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW && expenseAdapter != null) {
+            expenseAdapter.trimMemory();
+        }
+    }
 
-        intent.putExtra(getString(R.string.EXTRA_EXPENSE_NAME), expense.getName());
-        intent.putExtra(getString(R.string.EXTRA_EXPENSE_DATE), expense.getDate().toEpochDay());
-        intent.putExtra(getString(R.string.EXTRA_EXPENSE_COST), expense.getCost());
-        intent.putExtra(getString(R.string.EXTRA_EXPENSE_CATEGORY), expense.getCategory());
-        intent.putExtra(getString(R.string.EXTRA_EXPENSE_REASON), expense.getReason());
-        intent.putExtra(getString(R.string.EXTRA_EXPENSE_NOTES), expense.getNotes());
-        intent.putExtra(getString(R.string.EXTRA_EXPENSE_ID), id);
+    private void showSortOrders() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.menu_sort)
+                .setSingleChoiceItems(R.array.sort_orders, Arrays.asList(SORT_ORDERS).indexOf(expenseAdapter.getSortOrder()),
+                        (dialog, which) -> {
+                            expenseAdapter.setSortOrder(SORT_ORDERS[which]);
+                            dialog.dismiss();
+                        })
+                .show();
+    }
 
-        intent.putStringArrayListExtra(getString(R.string.EXTRA_EXPENSE_CUSTOM_CATEGORIES), expenseCategories.getCustomCategories());
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.main, menu);
+        return true;
+    }
 
-        expenseActivityResultLauncher.launch(intent);
+    /**
+     * Sorting, importing and exporting wait for the repository to load.
+     */
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        boolean loaded = expenseAdapter != null;
+        menu.findItem(R.id.menu_sort).setEnabled(loaded);
+        menu.findItem(R.id.menu_import).setEnabled(loaded);
+        menu.findItem(R.id.menu_export).setEnabled(loaded);
+        return super.onPrepareOptionsMenu(menu);
     }
 
-    private void onExpenseActivityResult(ActivityResult result) {
-        switch (result.getResultCode()) {
-            case RESULT_OK:
-                assert result.getData() != null;
-                insertOrUpdateExpense(result.getData());
-                break;
-            case RESULT_CANCELED:
-                assert result.getData() != null;
-                removeExpense(result.getData());
-                break;
-        }
-    }
-
-    private void insertOrUpdateExpense(Intent data) {
-        int id = data.getIntExtra(getString(R.string.EXTRA_EXPENSE_ID), ExpenseActivity.EXPENSE_ERROR_ID);
-        assert id != ExpenseActivity.EXPENSE_ERROR_ID;
-
-        String name = data.getStringExtra(getString(R.string.EXTRA_EXPENSE_NAME));
-        long dateLong = data.getLongExtra(getString(R.string.EXTRA_EXPENSE_DATE), 0);
-        double cost = data.getDoubleExtra(getString(R.string.EXTRA_EXPENSE_COST), 0);
-        String category = data.getStringExtra(getString(R.string.EXTRA_EXPENSE_CATEGORY));
-        String reason = data.getStringExtra(getString(R.string.EXTRA_EXPENSE_REASON));
-        String notes = data.getStringExtra(getString(R.string.EXTRA_EXPENSE_NOTES));
-
-        ArrayList<String> customCategories = data.getStringArrayListExtra(getString(R.string.EXTRA_EXPENSE_CUSTOM_CATEGORIES));
-        expenseCategories.addCategories(customCategories);
-
-        Expense expense = new Expense(name, LocalDate.ofEpochDay(dateLong), cost, category);
-        expense.setReason(reason);
-        expense.setNotes(notes);
-
-        if (id == ExpenseActivity.EXPENSE_NEW) {
-            expenseAdapter.addItem(expense);
-        } else {
-            expenseAdapter.updateItem(id, expense);
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menu_sort) {
+            showSortOrders();
+            return true;
+        }
+        if (item.getItemId() == R.id.menu_import) {
+            importLauncher.launch(new String[]{MIME_TYPE_CSV, "text/comma-separated-values", MIME_TYPE_JSON, "text/plain"});
+            return true;
         }
-        updateSummary();
+        if (item.getItemId() == R.id.menu_export) {
+            exportLauncher.launch(getString(R.string.export_file_name));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
     }
 
-    private void removeExpense(Intent data) {
-        boolean delete = data.getBooleanExtra(getString(R.string.EXTRA_EXPENSE_DELETE), false);
+    /**
+     * Parses the document into a staged store and indexes the result off the main thread, then
+     * swaps it into the repository in one step.
+     */
+    private void onImportDocument(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        boolean json = MIME_TYPE_JSON.equals(getContentResolver().getType(uri));
+        String defaultCategory = expenseRepository.getCategories().getDefault();
+        Executor mainExecutor = ContextCompat.getMainExecutor(this);
+        fileExecutor.execute(() -> {
+            ExpenseStore staged = new ExpenseStore();
+            try (ParcelFileDescriptor file = getContentResolver().openFileDescriptor(uri, "r")) {
+                FileChannel channel = new FileInputStream(file.getFileDescriptor()).getChannel();
+                ExpenseParser parser = json
+                        ? new JsonExpenseParser(channel, defaultCategory)
+                        : new CsvExpenseParser(channel, defaultCategory);
+                new ExpenseImporter().run(parser, parserExecutor, batch -> batch.addTo(staged));
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, e.getMessage(), e);
+                mainExecutor.execute(() -> showMessage(getString(R.string.import_failed, e.getMessage())));
+                return;
+            }
+            publishImport(staged, mainExecutor);
+        });
+    }
 
-        if (delete) {
-            int id = data.getIntExtra(getString(R.string.EXTRA_EXPENSE_ID), ExpenseActivity.EXPENSE_ERROR_ID);
-            assert id != ExpenseActivity.EXPENSE_ERROR_ID;
+    /**
+     * Prepares the import on the calling file thread and publishes it on the main thread,
+     * preparing it again if the expenses changed in between.
+     */
+    private void publishImport(ExpenseStore staged, Executor mainExecutor) {
+        ExpenseRepository.StagedRows prepared;
+        try {
+            prepared = expenseRepository.prepareImport(staged);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, e.getMessage(), e);
+            mainExecutor.execute(() -> showMessage(getString(R.string.import_failed, e.getMessage())));
+            return;
+        }
+        mainExecutor.execute(() -> {
+            try {
+                if (!expenseRepository.publishImport(prepared)) {
+                    if (fileExecutor.isShutdown()) {
+                        expenseRepository.importExpenses(staged);
+                    } else {
+                        fileExecutor.execute(() -> publishImport(staged, mainExecutor));
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, e.getMessage(), e);
+            }
+            expenseAdapter.whenListed(this::updateSummary);
+            showMessage(getString(R.string.import_done, staged.size()));
+        });
+    }
 
-            expenseAdapter.removeItem(id);
-            updateSummary();
+    /**
+     * Writes a snapshot of the store, so the list can keep changing while the file is written.
+     */
+    private void onExportDocument(Uri uri) {
+        if (uri == null) {
+            return;
         }
+        ExpenseStore snapshot = expenseRepository.getSnapshot();
+        Executor mainExecutor = ContextCompat.getMainExecutor(this);
+        fileExecutor.execute(() -> {
+            try (ParcelFileDescriptor file = getContentResolver().openFileDescriptor(uri, "wt");
+                 FileChannel channel = new FileOutputStream(file.getFileDescriptor()).getChannel()) {
+                new ExpenseExporter(channel).exportCsv(snapshot);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, e.getMessage(), e);
+                mainExecutor.execute(() -> showMessage(getString(R.string.export_failed, e.getMessage())));
+            }
+        });
     }
 
-    private void updateSummary() {
-        double total = expenseAdapter.getViewItemsCost();
-        NumberFormat format = NumberFormat.getCurrencyInstance();
-        totalText.setText(format.format(total));
+    private void showMessage(String message) {
+        if (!isDestroyed()) {
+            Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+        }
+    }
+
+    public void onRetryLoadCallback(View view) {
+        findViewById(R.id.expenses_load_failed).setVisibility(View.GONE);
+        findViewById(R.id.expenses_loading).setVisibility(View.VISIBLE);
+        ExpenseApplication application = (ExpenseApplication) getApplication();
+        application.retryLoad();
+        application.whenLoaded(this::onRepositoryLoaded);
+    }
+
+    public void onAddExpenseCallback(View view) {
+        launchExpenseActivity(ExpenseActivity.EXPENSE_NEW);
+    }
 
-        double average;
-        if (expenseAdapter.getItemCount() == 0) {
-            average = 0;
+    private void onItemClick(Expense expense) {
+        launchExpenseActivity(expense.getId());
+    }
+
+    /**
+     * Occurrences of a recurring expense cannot be edited one by one, only stopped altogether.
+     */
+    private void onRecurringClick(RecurringExpense rule) {
+        new AlertDialog.Builder(this)
+                .setTitle(rule.getName())
+                .setMessage(R.string.recurring_stop_message)
+                .setPositiveButton(R.string.recurring_stop, (dialog, which) -> {
+                    try {
+                        expenseRepository.removeRecurring(rule.getId());
+                    } catch (IOException e) {
+                        Log.e(TAG, e.getMessage(), e);
+                    }
+                    updateSummary();
+                })
+                .setNegativeButton(R.string.recurring_keep, null)
+                .show();
+    }
+
+    private void launchExpenseActivity(long id) {
+        Intent intent = new Intent(this, ExpenseActivity.class);
+        intent.putExtra(getString(R.string.EXTRA_EXPENSE_ID), id);
+        expenseActivityResultLauncher.launch(intent);
+    }
+
+    /**
+     * The expense screen writes through the repository, which has already updated the list
+     * unless a batch is still being listed.
+     */
+    private void onExpenseActivityResult(ActivityResult result) {
+        if (expenseAdapter != null) {
+            expenseAdapter.whenListed(this::updateSummary);
+        }
+    }
+
+    private void updateSummary() {
+        if (expenseAdapter == null) {
+            return;
+        }
+        ExpenseFormatters formatters = ExpenseFormatters.getInstance(getString(R.string.date_format_mmddyyyy), getString(R.string.expense_cost_symbol));
+        long total = expenseAdapter.getViewItemsCost();
+        totalText.setText(formatters.formatAmount(total));
+
+        long average = Money.average(total, expenseAdapter.getViewItemsCount());
+        averageText.setText(formatters.formatAmount(average));
+
+        // Older years are summed apart, so the total matches the rows listed.
+        long unloadedCount = expenseAdapter.getUnloadedCount();
+        if (unloadedCount > 0) {
+            unloadedText.setText(getString(R.string.expense_unloaded, unloadedCount,
+                    formatters.formatAmount(expenseAdapter.getUnloadedCost())));
+            unloadedText.setVisibility(View.VISIBLE);
         } else {
-            average = total / expenseAdapter.getItemCount();
+            unloadedText.setVisibility(View.GONE);
         }
-        averageText.setText(format.format(average));
     }
 
     private void launchFilterActivity() {
@@ -162,8 +387,6 @@ public class MainActivity extends AppCompatActivity {
             intent.putExtra(getString(R.string.EXTRA_FILTER_CATEGORY), categoryFilter.getCategory());
         }
 
-        intent.putStringArrayListExtra(getString(R.string.EXTRA_EXPENSE_CUSTOM_CATEGORIES), expenseCategories.getCustomCategories());
-
         filterActivityResultLauncher.launch(intent);
     }
 
@@ -194,8 +417,10 @@ public class MainActivity extends AppCompatActivity {
                 categoryFilter.setEnabled(false);
             }
 
-            expenseAdapter.updateFilters();
-            updateSummary();
+            // Otherwise applied once the list is shown.
+            if (expenseAdapter != null) {
+                expenseAdapter.updateFilters(this::updateSummary);
+            }
         }
     }
 }
\ No newline at end of file
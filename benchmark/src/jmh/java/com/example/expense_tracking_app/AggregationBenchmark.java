@@ -0,0 +1,67 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two ways {@code ExpenseAdapter.getViewItemsCost()} answers: from the rollup, or by summing
+ * the rows of the view when a search is active.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AggregationBenchmark extends ExpenseState {
+    private int[] allRows;
+    private int[] filteredRows;
+    private int filteredCount;
+    private int categoryId;
+
+    @Setup(Level.Trial)
+    public void collectRows() {
+        allRows = new int[store.size()];
+        for (int row = 0; row < allRows.length; row++) {
+            allRows[row] = row;
+        }
+
+        ExpenseView view = new ExpenseView(store, getFilterExpression().compile(store), ExpenseView.byDateThenName(store));
+        view.rebuild();
+        filteredRows = view.getRows();
+        filteredCount = view.size();
+        categoryId = store.findCategory(categoryFilter.getCategory());
+    }
+
+    @Benchmark
+    public long sumAllRows() {
+        return store.sumAmounts(allRows, allRows.length);
+    }
+
+    @Benchmark
+    public long sumFilteredRows() {
+        return store.sumAmounts(filteredRows, filteredCount);
+    }
+
+    @Benchmark
+    public long rollupTotal() {
+        return rollup.getTotal(Long.MIN_VALUE, Long.MAX_VALUE, ExpenseRollup.ALL_CATEGORIES);
+    }
+
+    @Benchmark
+    public long rollupFilteredTotal() {
+        return rollup.getTotal(dateFilter.getStartDate().toEpochDay(), dateFilter.getEndDate().toEpochDay(), categoryId);
+    }
+
+    @Benchmark
+    public ExpenseRollup rollupBuild() {
+        ExpenseRollup built = new ExpenseRollup();
+        built.build(store);
+        return built;
+    }
+}
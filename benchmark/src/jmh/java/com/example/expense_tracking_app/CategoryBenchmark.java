@@ -0,0 +1,63 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving category names to ids and back, and listing the categories for the pickers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CategoryBenchmark extends ExpenseState {
+    private ExpenseCategories categories;
+    private int row;
+    private int name;
+
+    @Setup(Level.Trial)
+    public void createCategories() {
+        categories = new ExpenseCategories(CATEGORIES, "None");
+        for (int i = 0; i < 20; i++) {
+            categories.addCategory("Custom " + i);
+        }
+    }
+
+    @Benchmark
+    public int findCategory() {
+        name = name + 1 == CATEGORIES.length ? 0 : name + 1;
+        return store.findCategory(CATEGORIES[name]);
+    }
+
+    @Benchmark
+    public String getCategory() {
+        row = row + 1 == store.size() ? 0 : row + 1;
+        return store.getCategory(row);
+    }
+
+    @Benchmark
+    public RowBitmap categoryRows() {
+        name = name + 1 == CATEGORIES.length ? 0 : name + 1;
+        return categoryIndex.getRows(store.findCategory(CATEGORIES[name]));
+    }
+
+    @Benchmark
+    public List<String> listCategories() {
+        return categories.getCategories();
+    }
+
+    @Benchmark
+    public List<String> listCategoriesAfterChange() {
+        categories.addCategory("Added");
+        categories.removeCategory("Added");
+        return categories.getCategories();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * A store of synthetic expenses shared by the benchmarks: three years of dates, a dozen
+ * categories and amounts up to $500. The seed is fixed so results are comparable between runs.
+ */
+@State(Scope.Benchmark)
+public abstract class ExpenseState {
+    static final String[] CATEGORIES = {"Bills", "Car", "Clothes", "Entertainment", "Food", "Gas",
+            "Gifts", "Health", "Home", "None", "Rent", "Travel"};
+    static final long FIRST_DAY = LocalDate.of(2021, 1, 1).toEpochDay();
+    static final int DAYS = 3 * 365;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    ExpenseStore store;
+    DateIndex dateIndex;
+    CategoryIndex categoryIndex;
+    ExpenseRollup rollup;
+
+    /** One quarter in the middle of the range. */
+    DateFilter dateFilter;
+    CategoryFilter categoryFilter;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(42);
+        store = new ExpenseStore();
+        for (int i = 0; i < size; i++) {
+            store.add((i % 2 == 0 ? "expense " : "Expense ") + random.nextInt(10_000),
+                    FIRST_DAY + random.nextInt(DAYS),
+                    1 + random.nextInt(50_000),
+                    CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    i % 3 == 0 ? null : "Reason " + i,
+                    null);
+        }
+
+        dateIndex = new DateIndex();
+        dateIndex.build(store);
+        categoryIndex = new CategoryIndex();
+        categoryIndex.build(store);
+        rollup = new ExpenseRollup();
+        rollup.build(store);
+
+        dateFilter = new DateFilter();
+        LocalDate start = LocalDate.ofEpochDay(FIRST_DAY).plusMonths(18);
+        dateFilter.setDateRange(start, start.plusMonths(3).minusDays(1));
+        categoryFilter = new CategoryFilter();
+        categoryFilter.setCategory("Food");
+    }
+
+    FilterExpression getFilterExpression() {
+        return FilterExpression.and(dateFilter.toExpression(), categoryFilter.toExpression());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating the date and category filters over every row, one filter at a time and compiled
+ * into a single predicate; slicing the date range out of the index instead; and planning the
+ * same query against the indexes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FilterBenchmark extends ExpenseState {
+    private ExpenseView.RowFilter compiled;
+
+    @Setup(Level.Trial)
+    public void compile() {
+        compiled = getFilterExpression().compile(store);
+    }
+
+    @Benchmark
+    public int dateFilter() {
+        int matches = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (dateFilter.filter(store, row)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int[] dateIndexRange() {
+        return dateIndex.rowsBetween(dateFilter.getStartDate().toEpochDay(), dateFilter.getEndDate().toEpochDay());
+    }
+
+    @Benchmark
+    public int categoryFilter() {
+        int matches = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (categoryFilter.filter(store, row)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int compiledFilter() {
+        int matches = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (compiled.matches(row)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public ExpenseView.RowFilter compileFilter() {
+        return getFilterExpression().compile(store);
+    }
+
+    @Benchmark
+    public FilterExpression.Plan optimizeFilter() {
+        return getFilterExpression().optimize(store, dateIndex, categoryIndex);
+    }
+}
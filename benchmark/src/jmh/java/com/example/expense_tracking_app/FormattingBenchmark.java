@@ -0,0 +1,65 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting the date and amount of one row, as when it is bound, walking through the rows in
+ * date order like a scrolling list. Small stores fit in the formatter caches; large ones mostly
+ * miss, which is what the uncached variants measure directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FormattingBenchmark extends ExpenseState {
+    private ExpenseFormatters formatters;
+    private int[] rows;
+    private int position;
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Setup(Level.Trial)
+    public void createFormatters() {
+        formatters = new ExpenseFormatters("MM/dd/yyyy", "$");
+        ExpenseView view = new ExpenseView(store, FilterExpression.all().compile(store), ExpenseView.byDateThenName(store));
+        view.rebuild();
+        rows = view.getRows();
+    }
+
+    private int nextRow() {
+        position = position + 1 == store.size() ? 0 : position + 1;
+        return rows[position];
+    }
+
+    @Benchmark
+    public void formatRow(Blackhole blackhole) {
+        int row = nextRow();
+        blackhole.consume(formatters.formatDate(store.getEpochDay(row)));
+        blackhole.consume(formatters.formatAmount(store.getAmount(row)));
+    }
+
+    @Benchmark
+    public void formatRowUncached(Blackhole blackhole) {
+        int row = nextRow();
+        blackhole.consume(formatters.getDateFormatter().format(LocalDate.ofEpochDay(store.getEpochDay(row))));
+        buffer.setLength(0);
+        blackhole.consume(Money.format(store.getAmount(row), formatters.getCurrencySymbol(), buffer).toString());
+    }
+
+    @Benchmark
+    public StringBuilder formatRowForExport() {
+        int row = nextRow();
+        buffer.setLength(0);
+        EpochDays.format(store.getEpochDay(row), buffer).append(',');
+        return Money.formatPlain(store.getAmount(row), buffer);
+    }
+}
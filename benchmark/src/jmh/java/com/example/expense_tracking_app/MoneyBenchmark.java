@@ -0,0 +1,73 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Amounts as minor units against doubles: summing every amount of the store, and parsing one
+ * formatted amount with {@link Money#parse} or a currency {@link NumberFormat}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MoneyBenchmark extends ExpenseState {
+    private long[] amounts;
+    private double[] costs;
+    private String[] texts;
+    private NumberFormat currency;
+    private int position;
+
+    @Setup(Level.Trial)
+    public void copyAmounts() {
+        amounts = new long[store.size()];
+        costs = new double[store.size()];
+        texts = new String[store.size()];
+        currency = NumberFormat.getCurrencyInstance(Locale.US);
+        for (int row = 0; row < store.size(); row++) {
+            amounts[row] = store.getAmount(row);
+            costs[row] = amounts[row] / 100.0;
+            texts[row] = currency.format(costs[row]);
+        }
+    }
+
+    private String nextText() {
+        position = position + 1 == texts.length ? 0 : position + 1;
+        return texts[position];
+    }
+
+    @Benchmark
+    public long sumLongs() {
+        long total = 0;
+        for (long amount : amounts) {
+            total += amount;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double sumDoubleStream() {
+        return Arrays.stream(costs).sum();
+    }
+
+    @Benchmark
+    public long parseMoney() {
+        return Money.parse(nextText());
+    }
+
+    @Benchmark
+    public double parseNumberFormat() throws ParseException {
+        return currency.parse(nextText()).doubleValue();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Switching the list from the default order to another one: rows sorted by date and name are
+ * sorted again by the chosen order's packed keys, and by comparisons alone for reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SortBenchmark extends ExpenseState {
+    @Param({"DATE", "NAME", "AMOUNT", "CATEGORY"})
+    public SortOrder.Key key;
+
+    @Param({"true", "false"})
+    public boolean ascending;
+
+    private RowKeyComparator order;
+    private int[] defaultRows;
+    private int[] scratch;
+
+    @Setup(Level.Trial)
+    public void sortByDefault() {
+        order = new SortOrder(key, ascending).comparator(store);
+        defaultRows = new int[store.size()];
+        for (int row = 0; row < defaultRows.length; row++) {
+            defaultRows[row] = row;
+        }
+        Rows.sort(defaultRows, defaultRows.length, SortOrder.DEFAULT.comparator(store));
+        scratch = new int[store.size()];
+    }
+
+    @Benchmark
+    public int[] switchByKeys() {
+        System.arraycopy(defaultRows, 0, scratch, 0, scratch.length);
+        Rows.sort(scratch, scratch.length, order);
+        return scratch;
+    }
+
+    @Benchmark
+    public int[] switchByComparisons() {
+        System.arraycopy(defaultRows, 0, scratch, 0, scratch.length);
+        Rows.sort(scratch, scratch.length, (a, b) -> order.compare(a, b));
+        return scratch;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cold start up to the first displayed row: loading the journal directory into a repository,
+ * building the engine's view and reading the top row, as {@code ExpenseAdapter} binds it. The
+ * same expenses are stored once as mapped columnar segments, whose text is decoded when a row
+ * is read, and once as deflated blocks, which are fully deserialized on load. Segment files stay
+ * in the page cache between iterations, so this measures decoding rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark extends ExpenseState {
+    private File mapped;
+    private File deserialized;
+
+    @Setup(Level.Trial)
+    public void writeSegments() throws IOException {
+        mapped = Files.createTempDirectory("mapped").toFile();
+        new ExpenseSegments(mapped).compact(null, store, Integer.MIN_VALUE, Integer.MIN_VALUE, 1);
+        deserialized = Files.createTempDirectory("deserialized").toFile();
+        new ExpenseSegments(deserialized).compact(null, store, Integer.MIN_VALUE, Integer.MAX_VALUE, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSegments() {
+        delete(mapped);
+        delete(deserialized);
+    }
+
+    @Benchmark
+    public Expense firstRowMapped() throws IOException {
+        return firstRow(mapped);
+    }
+
+    @Benchmark
+    public Expense firstRowDeserialized() throws IOException {
+        return firstRow(deserialized);
+    }
+
+    private static Expense firstRow(File directory) throws IOException {
+        try (ExpenseJournal journal = new ExpenseJournal(directory)) {
+            ExpenseRepository repository = new ExpenseRepository(journal, new ExpenseCategories(CATEGORIES, "None"));
+            repository.load();
+            ExpenseEngine engine = new ExpenseEngine(repository, new CategoryFilter(), new DateFilter(), new SearchFilter(),
+                    new ExpenseQueryPipeline(Runnable::run, Runnable::run));
+            return engine.get(0);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
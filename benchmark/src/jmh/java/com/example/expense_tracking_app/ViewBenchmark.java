@@ -0,0 +1,85 @@
+package com.example.expense_tracking_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding the displayed list the way {@code ExpenseAdapter} does: a full scan when nothing is
+ * filtered, and the indexed plan run through the query pipeline when the filters change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ViewBenchmark extends ExpenseState {
+    private RowComparator order;
+    private ExpenseView unfiltered;
+    private ExpenseView filtered;
+    private ExpenseQueryPipeline pipeline;
+
+    private int[] sortedRows;
+    private int[] scratch;
+
+    @Setup(Level.Trial)
+    public void createViews() {
+        order = ExpenseView.byDateThenName(store);
+        unfiltered = new ExpenseView(store, FilterExpression.all().compile(store), order);
+        filtered = new ExpenseView(store, getFilterExpression().compile(store), order);
+        pipeline = new ExpenseQueryPipeline(Runnable::run, Runnable::run);
+
+        unfiltered.rebuild();
+        sortedRows = new int[store.size()];
+        System.arraycopy(unfiltered.getRows(), 0, sortedRows, 0, store.size());
+        scratch = new int[store.size()];
+    }
+
+    @Benchmark
+    public int rebuildAll() {
+        unfiltered.rebuild();
+        return unfiltered.size();
+    }
+
+    @Benchmark
+    public int rebuildFilteredByScan() {
+        filtered.rebuild();
+        return filtered.size();
+    }
+
+    @Benchmark
+    public int rebuildFilteredByPlan() {
+        FilterExpression.Plan plan = getFilterExpression().optimize(store, dateIndex, categoryIndex);
+        int[] count = new int[1];
+        pipeline.submit(store, plan.getCandidates(), plan.getResidual().compile(store), order,
+                result -> count[0] = result.getCount());
+        return count[0];
+    }
+
+    /**
+     * Sorts rows that arrive in store order, which is roughly the order they were added in.
+     */
+    @Benchmark
+    public int[] sortStoreOrder() {
+        for (int row = 0; row < scratch.length; row++) {
+            scratch[row] = row;
+        }
+        Rows.sort(scratch, scratch.length, order);
+        return scratch;
+    }
+
+    /**
+     * Sorts rows that are already sorted, as after a rebuild that changed nothing.
+     */
+    @Benchmark
+    public int[] sortSorted() {
+        System.arraycopy(sortedRows, 0, scratch, 0, scratch.length);
+        Rows.sort(scratch, scratch.length, order);
+        return scratch;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.expense_tracking_app;
+
+public class CategoryFilter implements ExpenseFilter {
+    private String category;
+    private boolean enabled;
+
+    private ExpenseStore resolvedStore;
+    private int resolvedCategoryCount;
+    private int categoryId;
+
+    public CategoryFilter() {
+        enabled = false;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean filter(Expense expense) {
+        if (!enabled) {
+            return true;
+        }
+        return category.contentEquals(expense.getCategory());
+    }
+
+    @Override
+    public boolean filter(ExpenseStore store, int row) {
+        if (!enabled) {
+            return true;
+        }
+        return store.getCategoryId(row) == resolveCategoryId(store);
+    }
+
+    @Override
+    public FilterExpression toExpression() {
+        if (!enabled) {
+            return FilterExpression.all();
+        }
+        return FilterExpression.categoryIn(category);
+    }
+
+    private int resolveCategoryId(ExpenseStore store) {
+        if (store != resolvedStore || store.getCategoryCount() != resolvedCategoryCount) {
+            resolvedStore = store;
+            resolvedCategoryCount = store.getCategoryCount();
+            categoryId = store.findCategory(category);
+        }
+        return categoryId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        if (category == null || category.isEmpty()) {
+            return;
+        }
+        this.category = category;
+        resolvedStore = null;
+        setEnabled(true);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.expense_tracking_app;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * One {@link RowBitmap} per category of an {@link ExpenseStore}, indexed by category id.
+ * <p>
+ * {@link #snapshot() Snapshots} share the bitmaps; after a snapshot, the first change to a
+ * category copies its bitmap.
+ */
+public class CategoryIndex {
+    private final List<RowBitmap> bitmaps = new ArrayList<>();
+    /** The categories whose bitmap was created or copied since the last snapshot. */
+    private final BitSet owned = new BitSet();
+
+    public void build(ExpenseStore store) {
+        bitmaps.clear();
+        owned.clear();
+        for (int row = 0; row < store.size(); row++) {
+            add(row, store.getCategoryId(row));
+        }
+    }
+
+    /**
+     * Takes over the contents of {@code other}, built for the same rows on another thread.
+     */
+    public void replaceWith(CategoryIndex other) {
+        bitmaps.clear();
+        bitmaps.addAll(other.bitmaps);
+        owned.clear();
+    }
+
+    /**
+     * @return an index of the current rows, safe to read from any thread while this one keeps
+     * being modified. Takes time proportional to the number of categories.
+     */
+    public CategoryIndex snapshot() {
+        CategoryIndex snapshot = new CategoryIndex();
+        snapshot.bitmaps.addAll(bitmaps);
+        owned.clear();
+        return snapshot;
+    }
+
+    /**
+     * @return the rows in {@code categoryId}; empty if no row has used it yet
+     */
+    public RowBitmap getRows(int categoryId) {
+        if (categoryId < 0 || categoryId >= bitmaps.size()) {
+            return new RowBitmap();
+        }
+        return bitmaps.get(categoryId);
+    }
+
+    public void add(int row, int categoryId) {
+        ownedBitmap(categoryId).add(row);
+    }
+
+    public void update(int row, int previousCategoryId, int categoryId) {
+        if (previousCategoryId == categoryId) {
+            return;
+        }
+        ownedBitmap(previousCategoryId).remove(row);
+        ownedBitmap(categoryId).add(row);
+    }
+
+    /**
+     * Mirrors {@link ExpenseStore#remove(int)}.
+     *
+     * @param movedRow        the row the store moved into {@code row}'s slot, or -1
+     * @param movedCategoryId the category of {@code movedRow}
+     */
+    public void remove(int row, int categoryId, int movedRow, int movedCategoryId) {
+        ownedBitmap(categoryId).remove(row);
+        if (movedRow >= 0) {
+            RowBitmap moved = ownedBitmap(movedCategoryId);
+            moved.remove(movedRow);
+            moved.add(row);
+        }
+    }
+
+    /**
+     * Mirrors a rename in {@link ExpenseStore#renameCategory(String, String)} that merged
+     * {@code fromId} into {@code toId}.
+     */
+    public void merge(int fromId, int toId) {
+        if (fromId == toId) {
+            return;
+        }
+        bitmaps.set(toId, bitmap(toId).or(bitmap(fromId)));
+        bitmaps.set(fromId, new RowBitmap());
+        owned.set(toId);
+        owned.set(fromId);
+    }
+
+    /**
+     * @return the bitmap of {@code categoryId}, copied first if a snapshot may share it
+     */
+    private RowBitmap ownedBitmap(int categoryId) {
+        RowBitmap bitmap = bitmap(categoryId);
+        if (!owned.get(categoryId)) {
+            bitmap = bitmap.copy();
+            bitmaps.set(categoryId, bitmap);
+            owned.set(categoryId);
+        }
+        return bitmap;
+    }
+
+    private RowBitmap bitmap(int categoryId) {
+        while (bitmaps.size() <= categoryId) {
+            owned.set(bitmaps.size());
+            bitmaps.add(new RowBitmap());
+        }
+        return bitmaps.get(categoryId);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.expense_tracking_app;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads expenses from comma-separated values, quoted as in RFC 4180.
+ * <p>
+ * If the first record names its columns (date, name, amount, category, reason, notes, in any
+ * order), fields are mapped by those names. Otherwise every record is read in that default order.
+ * Empty lines are skipped.
+ */
+public class CsvExpenseParser extends ExpenseParser {
+    private static final Column[] DEFAULT_COLUMNS = {
+            Column.DATE, Column.NAME, Column.AMOUNT, Column.CATEGORY, Column.REASON, Column.NOTES
+    };
+
+    private Column[] columns;
+    private boolean started;
+
+    public CsvExpenseParser(ReadableByteChannel channel, String defaultCategory) {
+        super(channel, defaultCategory);
+    }
+
+    @Override
+    public boolean read(ExpenseBatch batch) throws IOException {
+        if (!started) {
+            started = true;
+            if (!readHeader(batch)) {
+                return false;
+            }
+        }
+        while (!batch.isFull()) {
+            if (!readRecord(batch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the first record, either as the column names or as the first expense.
+     *
+     * @return false if the input has no records
+     */
+    private boolean readHeader(ExpenseBatch batch) throws IOException {
+        if (!skipEmptyLines()) {
+            return false;
+        }
+        List<String> names = new ArrayList<>();
+        boolean more;
+        do {
+            more = readField();
+            names.add(field.toString());
+        } while (more);
+
+        boolean header = false;
+        Column[] named = new Column[names.size()];
+        for (int i = 0; i < named.length; i++) {
+            named[i] = Column.named(names.get(i));
+            header |= named[i] == Column.DATE;
+        }
+        if (header) {
+            columns = named;
+            return true;
+        }
+
+        columns = DEFAULT_COLUMNS;
+        startRow();
+        for (int i = 0; i < names.size() && i < columns.length; i++) {
+            field.setLength(0);
+            field.append(names.get(i));
+            setField(columns[i]);
+        }
+        endRow(batch);
+        return true;
+    }
+
+    /**
+     * @return false at the end of the input
+     */
+    private boolean readRecord(ExpenseBatch batch) throws IOException {
+        if (!skipEmptyLines()) {
+            return false;
+        }
+        startRow();
+        int column = 0;
+        boolean more;
+        do {
+            more = readField();
+            if (column < columns.length) {
+                setField(columns[column]);
+            }
+            column++;
+        } while (more);
+        endRow(batch);
+        return true;
+    }
+
+    /**
+     * @return false if only empty lines are left
+     */
+    private boolean skipEmptyLines() throws IOException {
+        int c;
+        while ((c = peek()) == '\r' || c == '\n') {
+            next();
+        }
+        return c >= 0;
+    }
+
+    /**
+     * Reads one field into {@link #field}, consuming the separator that ends it.
+     *
+     * @return true if another field of the same record follows
+     */
+    private boolean readField() throws IOException {
+        field.setLength(0);
+        int c = next();
+        if (c == '"') {
+            while (true) {
+                c = next();
+                if (c < 0) {
+                    throw error("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    if (peek() != '"') {
+                        break;
+                    }
+                    next();
+                }
+                field.append((char) c);
+            }
+            c = next();
+            if (c == '\r') {
+                c = next();
+            }
+            if (c == ',') {
+                return true;
+            }
+            if (c == '\n' || c < 0) {
+                return false;
+            }
+            throw error("Unexpected character after quoted field");
+        }
+        while (c >= 0 && c != ',' && c != '\n') {
+            if (c != '\r' || peek() != '\n') {
+                field.append((char) c);
+            }
+            c = next();
+        }
+        return c == ',';
+    }
+}
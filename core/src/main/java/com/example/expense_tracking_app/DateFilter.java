@@ -5,6 +5,8 @@ import java.time.LocalDate;
 public class DateFilter implements ExpenseFilter {
     private LocalDate start;
     private LocalDate end;
+    private long startEpochDay;
+    private long endEpochDay;
     private boolean enabled;
 
     public DateFilter() {
@@ -31,6 +33,24 @@ public class DateFilter implements ExpenseFilter {
         return !date.isBefore(start) && !date.isAfter(end);
     }
 
+    @Override
+    public boolean filter(ExpenseStore store, int row) {
+        if (!enabled) {
+            return true;
+        }
+
+        int epochDay = store.getEpochDay(row);
+        return epochDay >= startEpochDay && epochDay <= endEpochDay;
+    }
+
+    @Override
+    public FilterExpression toExpression() {
+        if (!enabled) {
+            return FilterExpression.all();
+        }
+        return FilterExpression.dateBetween(startEpochDay, endEpochDay);
+    }
+
     public LocalDate getStartDate() {
         return start;
     }
@@ -42,6 +62,8 @@ public class DateFilter implements ExpenseFilter {
     public void setDateRange(LocalDate start, LocalDate end) {
         this.start = start;
         this.end = end;
+        this.startEpochDay = start.toEpochDay();
+        this.endEpochDay = end.toEpochDay();
         setEnabled(true);
     }
 }
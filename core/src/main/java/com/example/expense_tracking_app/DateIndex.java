@@ -0,0 +1,179 @@
+package com.example.expense_tracking_app;
+
+import java.util.Arrays;
+
+/**
+ * Rows of an {@link ExpenseStore} ordered by epoch day, so a date range resolves to a contiguous
+ * slice with two binary searches.
+ * <p>
+ * Like the store, the index hands out {@link #snapshot() snapshots} that share its arrays until
+ * the next change copies them.
+ */
+public class DateIndex {
+    private int[] days = new int[16];
+    private int[] rows = new int[16];
+    private int count;
+    /** True while a snapshot may share the arrays. */
+    private boolean shared;
+
+    public void build(ExpenseStore store) {
+        own();
+        count = store.size();
+        long[] keys = new long[count];
+        for (int row = 0; row < count; row++) {
+            keys[row] = (long) store.getEpochDay(row) << 32 | row;
+        }
+        Arrays.sort(keys);
+
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            days[i] = (int) (keys[i] >> 32);
+            rows[i] = (int) keys[i];
+        }
+    }
+
+    /**
+     * Takes over the contents of {@code other}, built for the same rows on another thread.
+     */
+    public void replaceWith(DateIndex other) {
+        days = other.days;
+        rows = other.rows;
+        count = other.count;
+        shared = other.shared;
+    }
+
+    /**
+     * @return an index of the current rows, safe to read from any thread while this one keeps
+     * being modified, for the store snapshot taken at the same time. Takes constant time: the
+     * arrays are copied by the next change to either index.
+     */
+    public DateIndex snapshot() {
+        DateIndex snapshot = new DateIndex();
+        snapshot.days = days;
+        snapshot.rows = rows;
+        snapshot.count = count;
+        snapshot.shared = true;
+        shared = true;
+        return snapshot;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getRow(int position) {
+        return rows[position];
+    }
+
+    public int getEpochDay(int position) {
+        return days[position];
+    }
+
+    public void add(int row, long epochDay) {
+        int day = (int) epochDay;
+        int position = upperBound(day);
+        own();
+        ensureCapacity(count + 1);
+        System.arraycopy(days, position, days, position + 1, count - position);
+        System.arraycopy(rows, position, rows, position + 1, count - position);
+        days[position] = day;
+        rows[position] = row;
+        count++;
+    }
+
+    public void update(int row, long previousEpochDay, long epochDay) {
+        if (previousEpochDay == epochDay) {
+            return;
+        }
+        delete(find(row, previousEpochDay));
+        add(row, epochDay);
+    }
+
+    /**
+     * Mirrors {@link ExpenseStore#remove(int)}.
+     *
+     * @param movedRow      the row the store moved into {@code row}'s slot, or -1
+     * @param movedEpochDay the epoch day of {@code movedRow}
+     */
+    public void remove(int row, long epochDay, int movedRow, long movedEpochDay) {
+        delete(find(row, epochDay));
+        if (movedRow >= 0) {
+            rows[find(movedRow, movedEpochDay)] = row;
+        }
+    }
+
+    /**
+     * @return the first position whose epoch day is not before {@code epochDay}
+     */
+    public int lowerBound(long epochDay) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (days[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first position whose epoch day is after {@code epochDay}
+     */
+    public int upperBound(long epochDay) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (days[middle] <= epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Copies the rows dated within {@code [startEpochDay, endEpochDay]} into a new array.
+     */
+    public int[] rowsBetween(long startEpochDay, long endEpochDay) {
+        int from = lowerBound(startEpochDay);
+        int to = Math.max(from, upperBound(endEpochDay));
+        return Arrays.copyOfRange(rows, from, to);
+    }
+
+    private int find(int row, long epochDay) {
+        for (int position = lowerBound(epochDay); position < count && days[position] == epochDay; position++) {
+            if (rows[position] == row) {
+                return position;
+            }
+        }
+        throw new IllegalStateException("Row " + row + " is not indexed on day " + epochDay);
+    }
+
+    private void own() {
+        if (shared) {
+            days = days.clone();
+            rows = rows.clone();
+            shared = false;
+        }
+    }
+
+    private void delete(int position) {
+        own();
+        System.arraycopy(days, position + 1, days, position, count - position - 1);
+        System.arraycopy(rows, position + 1, rows, position, count - position - 1);
+        count--;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > rows.length) {
+            int length = Math.max(capacity, rows.length * 2);
+            days = Arrays.copyOf(days, length);
+            rows = Arrays.copyOf(rows, length);
+        }
+    }
+}
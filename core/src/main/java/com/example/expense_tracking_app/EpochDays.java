@@ -0,0 +1,148 @@
+package com.example.expense_tracking_app;
+
+/**
+ * Conversions between epoch days and calendar dates that do not allocate, for streaming imports
+ * and exports.
+ */
+public final class EpochDays {
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private EpochDays() {
+    }
+
+    /**
+     * Parses an ISO date such as {@code 2023-01-31}, or a US date such as {@code 1/31/2023} as
+     * shown by the app.
+     *
+     * @throws NumberFormatException if the text is not a valid date in either form
+     */
+    public static long parse(CharSequence text) {
+        int first = 0;
+        int second = 0;
+        int third = 0;
+        int part = 0;
+        int digits = 0;
+        char separator = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits == 9) {
+                    throw new NumberFormatException("Malformed date: " + text);
+                }
+                int digit = c - '0';
+                if (part == 0) {
+                    first = first * 10 + digit;
+                } else if (part == 1) {
+                    second = second * 10 + digit;
+                } else {
+                    third = third * 10 + digit;
+                }
+                digits++;
+            } else if ((c == '-' || c == '/') && part < 2 && digits > 0 && (separator == 0 || separator == c)) {
+                separator = c;
+                part++;
+                digits = 0;
+            } else {
+                throw new NumberFormatException("Malformed date: " + text);
+            }
+        }
+        if (part != 2 || digits == 0) {
+            throw new NumberFormatException("Malformed date: " + text);
+        }
+
+        if (separator == '-') {
+            return of(first, second, third);
+        }
+        return of(third, first, second);
+    }
+
+    /**
+     * @throws NumberFormatException if the month or day is out of range
+     */
+    public static long of(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw new NumberFormatException("Invalid date: " + year + "-" + month + "-" + day);
+        }
+        // Days from civil, see http://howardhinnant.github.io/date_algorithms.html
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Appends {@code epochDay} as an ISO date such as {@code 2023-01-31}.
+     */
+    public static StringBuilder format(long epochDay, StringBuilder out) {
+        long civil = civil(epochDay);
+        long monthIndex = civil >> 5;
+        long year = Math.floorDiv(monthIndex, 12);
+        int month = (int) Math.floorMod(monthIndex, 12) + 1;
+        int day = (int) (civil & 31);
+
+        if (year >= 0 && year < 1000) {
+            out.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+        out.append(year).append('-');
+        if (month < 10) {
+            out.append('0');
+        }
+        out.append(month).append('-');
+        if (day < 10) {
+            out.append('0');
+        }
+        return out.append(day);
+    }
+
+    /**
+     * @return the number of months from January of year 0 to the month of {@code epochDay}
+     */
+    public static long monthIndex(long epochDay) {
+        return civil(epochDay) >> 5;
+    }
+
+    public static int year(long epochDay) {
+        return (int) Math.floorDiv(monthIndex(epochDay), 12);
+    }
+
+    public static int dayOfMonth(long epochDay) {
+        return (int) (civil(epochDay) & 31);
+    }
+
+    /**
+     * @return day {@code day} of the month {@code monthIndex}, or its last day if the month is
+     * shorter
+     */
+    public static long ofMonthIndex(long monthIndex, int day) {
+        int year = (int) Math.floorDiv(monthIndex, 12);
+        int month = (int) Math.floorMod(monthIndex, 12) + 1;
+        return of(year, month, Math.min(day, lengthOfMonth(year, month)));
+    }
+
+    /**
+     * Civil from days, see http://howardhinnant.github.io/date_algorithms.html
+     *
+     * @return the month index shifted left by 5 bits, ORed with the day of the month
+     */
+    private static long civil(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (year * 12 + month - 1) << 5 | day;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2 && year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+}
@@ -3,24 +3,35 @@ package com.example.expense_tracking_app;
 import java.time.LocalDate;
 
 public class Expense {
+    public static final long NO_ID = 0;
+
+    private long id = NO_ID;
     private String name;
     private LocalDate date;
-    private double cost;
+    private long cost;
     private String reason;
     private String notes;
     private String category;
 
-    public Expense(String name, LocalDate date, double cost) {
+    public Expense(String name, LocalDate date, long cost) {
         this.name = name;
         this.date = date;
         this.cost = cost;
     }
 
-    public Expense(String name, LocalDate date, double cost, String category) {
+    public Expense(String name, LocalDate date, long cost, String category) {
         this(name, date, cost);
         this.category = category;
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getName() {
         return name;
     }
@@ -37,11 +48,14 @@ public class Expense {
         this.date = date;
     }
 
-    public double getCost() {
+    /**
+     * @return the cost in minor currency units, see {@link Money}
+     */
+    public long getCost() {
         return cost;
     }
 
-    public void setCost(double cost) {
+    public void setCost(long cost) {
         this.cost = cost;
     }
 
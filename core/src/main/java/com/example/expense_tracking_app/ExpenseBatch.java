@@ -0,0 +1,71 @@
+package com.example.expense_tracking_app;
+
+/**
+ * A reusable, fixed-capacity block of parsed expenses in column form, handed from a parser to
+ * whatever stores them.
+ */
+public class ExpenseBatch {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    final String[] names;
+    final int[] epochDays;
+    final long[] amounts;
+    final String[] categories;
+    final String[] reasons;
+    final String[] notes;
+    private int size;
+
+    public ExpenseBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ExpenseBatch(int capacity) {
+        names = new String[capacity];
+        epochDays = new int[capacity];
+        amounts = new long[capacity];
+        categories = new String[capacity];
+        reasons = new String[capacity];
+        notes = new String[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return names.length;
+    }
+
+    public boolean isFull() {
+        return size == names.length;
+    }
+
+    public void add(String name, long epochDay, long amount, String category, String reason, String notes) {
+        names[size] = name;
+        epochDays[size] = Math.toIntExact(epochDay);
+        amounts[size] = amount;
+        categories[size] = category;
+        reasons[size] = reason;
+        this.notes[size] = notes;
+        size++;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            names[i] = null;
+            categories[i] = null;
+            reasons[i] = null;
+            notes[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Appends every expense in this batch to {@code store}.
+     */
+    public void addTo(ExpenseStore store) {
+        for (int i = 0; i < size; i++) {
+            store.add(names[i], epochDays[i], amounts[i], categories[i], reasons[i], notes[i]);
+        }
+    }
+}
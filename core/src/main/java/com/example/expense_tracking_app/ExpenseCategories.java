@@ -0,0 +1,87 @@
+package com.example.expense_tracking_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The category names offered to the user: the built-in ones, then every other name in use, each
+ * group sorted. Rows refer to categories by id through {@link ExpenseStore}; this class only
+ * tracks names, and the sorted list is built once per change rather than on every call.
+ */
+public class ExpenseCategories {
+
+    private final Set<String> defaultCategories;
+    private final Set<String> customCategories;
+    private String _default;
+    private List<String> categories;
+
+    public ExpenseCategories(String[] expenseCategories, String _default) {
+        defaultCategories = new TreeSet<>(Arrays.asList(expenseCategories));
+        customCategories = new TreeSet<>();
+        this._default = _default;
+    }
+
+    public void addCategory(String name) {
+        if (defaultCategories.contains(name) || !customCategories.add(name)) {
+            return;
+        }
+        categories = null;
+    }
+
+    public void removeCategory(String name) {
+        if (customCategories.remove(name)) {
+            categories = null;
+        }
+    }
+
+    /**
+     * Replaces {@code oldName} with {@code newName}. Renaming a built-in category turns the new
+     * name into a custom one.
+     */
+    public void renameCategory(String oldName, String newName) {
+        defaultCategories.remove(oldName);
+        customCategories.remove(oldName);
+        if (!defaultCategories.contains(newName)) {
+            customCategories.add(newName);
+        }
+        if (oldName.equals(_default)) {
+            _default = newName;
+        }
+        categories = null;
+    }
+
+    public String getDefault() {
+        return _default;
+    }
+
+    public void setDefault(String aDefault) {
+        this._default = aDefault;
+    }
+
+    /**
+     * @return an unmodifiable list that is shared until the categories change
+     */
+    public List<String> getCategories() {
+        if (categories == null) {
+            ArrayList<String> all = new ArrayList<>(defaultCategories.size() + customCategories.size());
+            all.addAll(defaultCategories);
+            all.addAll(customCategories);
+            categories = Collections.unmodifiableList(all);
+        }
+        return categories;
+    }
+
+    public void addCategories(List<String> customCategories) {
+        for (String name : customCategories) {
+            addCategory(name);
+        }
+    }
+
+    public ArrayList<String> getCustomCategories() {
+        return new ArrayList<>(customCategories);
+    }
+}
@@ -0,0 +1,449 @@
+package com.example.expense_tracking_app;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The expense list as the main screen shows it: the rows of an {@link ExpenseRepository} that
+ * pass the date, category and search filters, in the chosen {@link SortOrder}, with their total
+ * and count.
+ * <p>
+ * Edits go through the repository, which notifies the engine; the engine keeps its
+ * {@link ExpenseView} up to date and reports every change to the view's listener. Single edits
+ * are placed in the view directly; after a batch the rows are listed again on the query pipeline
+ * and only the difference is applied on the main thread. It has no Android dependencies, so the
+ * same code backs {@code ExpenseAdapter} and {@link ExpenseReplay}.
+ * <p>
+ * Occurrences of recurring expenses are not rows. They are listed by {@link #getOccurrences()}
+ * only for the filtered date range, or up to today if dates are not filtered, and are added to
+ * the total and count in closed form.
+ * <p>
+ * Years the repository has not loaded are read when a date filter reaches back into them. Until
+ * then they are only part of the total and count without a date filter or search, which the
+ * repository knows without loading them.
+ */
+public class ExpenseEngine implements ExpenseRepository.Listener {
+    private final ExpenseRepository repository;
+    private final ExpenseStore store;
+    private final ExpenseView view;
+    private final DateIndex dateIndex;
+    private final CategoryIndex categoryIndex;
+    private final ExpenseRollup rollup;
+
+    private final CategoryFilter categoryFilter;
+    private final DateFilter dateFilter;
+    private final SearchFilter searchFilter;
+
+    private final ExpenseQueryPipeline queryPipeline;
+
+    private ExpenseView.RowFilter filter;
+    private SortOrder sortOrder = SortOrder.DEFAULT;
+    private ExpenseView.Listener listener;
+    private Clock clock = Clock.systemDefaultZone();
+    private RecurringExpense.Occurrences occurrences;
+
+    private int changingPosition;
+    private int lastRowPosition;
+    /**
+     * Set while the view still lists the rows of {@code batchStore}, the snapshot from before a
+     * batch, because the query that lists them again has not returned yet.
+     */
+    private ExpenseStore batchStore;
+    private long[] batchIds;
+    private long[] batchUpdatedIds;
+    private final List<Runnable> listedCallbacks = new ArrayList<>();
+    private boolean preparingTextIndex;
+
+    public ExpenseEngine(ExpenseRepository repository, CategoryFilter categoryFilter, DateFilter dateFilter, SearchFilter searchFilter, ExpenseQueryPipeline queryPipeline) {
+        this.repository = repository;
+        this.store = repository.getStore();
+        this.categoryFilter = categoryFilter;
+        this.dateFilter = dateFilter;
+        this.searchFilter = searchFilter;
+        this.queryPipeline = queryPipeline;
+
+        this.dateIndex = repository.getDateIndex();
+        this.categoryIndex = repository.getCategoryIndex();
+        this.rollup = repository.getRollup();
+
+        this.filter = getFilterExpression().compile(store);
+        this.view = new ExpenseView(store, this::matchesFilter, sortOrder.comparator(store));
+        view.rebuild();
+        repository.addListener(this);
+    }
+
+    public void setListener(ExpenseView.Listener listener) {
+        this.listener = listener;
+        view.setListener(listener);
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+        occurrences = null;
+    }
+
+    /**
+     * Stops following changes to the repository. Must be called when the engine is discarded,
+     * since the repository outlives it.
+     */
+    public void detach() {
+        repository.removeListener(this);
+        queryPipeline.cancel();
+    }
+
+    public ExpenseRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return the store the displayed rows belong to: the repository's, or while the list of a
+     * batch is being queried, the snapshot from before the batch
+     */
+    public ExpenseStore getStore() {
+        return batchStore != null ? batchStore : store;
+    }
+
+    public int size() {
+        return view.size();
+    }
+
+    /**
+     * @return the row of {@link #getStore()} displayed at {@code position}
+     */
+    public int getRow(int position) {
+        return view.getRow(position);
+    }
+
+    public long getId(int position) {
+        return getStore().getId(view.getRow(position));
+    }
+
+    public Expense get(int position) {
+        return getStore().get(view.getRow(position));
+    }
+
+    private boolean matchesFilter(int row) {
+        return filter.matches(row);
+    }
+
+    private FilterExpression getFilterExpression() {
+        return FilterExpression.and(dateFilter.toExpression(), categoryFilter.toExpression(), searchFilter.toExpression());
+    }
+
+    // While a batch is being queried the view does not list the store's rows; the query notices
+    // that the store changed and runs again.
+
+    @Override
+    public void onRowAdded(int row) {
+        if (batchStore == null) {
+            view.onRowAdded(row);
+        }
+    }
+
+    @Override
+    public void onRowChanging(int row) {
+        if (batchStore != null) {
+            return;
+        }
+        int last = store.size() - 1;
+        changingPosition = view.indexOf(row);
+        lastRowPosition = row == last ? -1 : view.indexOf(last);
+    }
+
+    @Override
+    public void onRowUpdated(int row) {
+        if (batchStore == null) {
+            view.onRowUpdated(row, changingPosition);
+        }
+    }
+
+    @Override
+    public void onRowRemoved(int row, int movedRow) {
+        if (batchStore == null) {
+            view.onRowRemoved(row, changingPosition, movedRow, lastRowPosition);
+        }
+    }
+
+    @Override
+    public void onCategoriesChanged() {
+        filter = getFilterExpression().compile(store);
+        occurrences = null;
+        if (batchStore != null) {
+            return;
+        }
+        // Renamed categories rank differently.
+        view.setOrder(sortOrder.comparator(store));
+        view.rebuild();
+    }
+
+    @Override
+    public void onRecurringChanged() {
+        occurrences = null;
+        if (listener != null) {
+            listener.onReset();
+        }
+    }
+
+    /**
+     * Remembers what the view lists before the batch, unless an earlier batch is still being
+     * queried: the view then still lists the rows from before that one.
+     */
+    @Override
+    public void onBatchStarting() {
+        if (batchStore == null) {
+            batchStore = repository.getSnapshot();
+            batchIds = view.getIds();
+            batchUpdatedIds = new long[0];
+        }
+    }
+
+    /**
+     * Lists the rows again on the query pipeline, like a filter change. Only the difference to
+     * what was listed before is applied on the main thread, once the query returns.
+     */
+    @Override
+    public void onBatchApplied(long[] updatedIds) {
+        long[] allUpdatedIds = Arrays.copyOf(batchUpdatedIds, batchUpdatedIds.length + updatedIds.length);
+        System.arraycopy(updatedIds, 0, allUpdatedIds, batchUpdatedIds.length, updatedIds.length);
+        batchUpdatedIds = allUpdatedIds;
+        query(() -> { }, true);
+    }
+
+    /**
+     * Re-runs the filters on the query pipeline and swaps the result in on the pipeline's main
+     * thread. If the store is modified while the query runs, the query is submitted again. The
+     * filters are combined into one expression that the worker plans against snapshots of the
+     * indexes: its date and category clauses are answered by them, so the query only checks the
+     * remaining clauses against rows that already match those. If the date filter starts in a
+     * year that is not loaded, the years up to the loaded ones are read and indexed on the
+     * pipeline's worker first.
+     */
+    public void updateFilters(Runnable onUpdated) {
+        if (dateFilter.isEnabled()) {
+            int fromYear = dateFilter.getStartDate().getYear();
+            if (fromYear < repository.getLoadedFromYear()) {
+                queryPipeline.execute(() -> repository.prepareYears(fromYear),
+                        years -> {
+                            if (repository.publishYears(years)) {
+                                query(onUpdated);
+                            } else {
+                                // Edited meanwhile: prepared again from the new snapshot.
+                                updateFilters(onUpdated);
+                            }
+                        },
+                        // The loaded years are still worth showing.
+                        e -> query(onUpdated));
+                return;
+            }
+        }
+        query(onUpdated);
+    }
+
+    /**
+     * Runs {@code callback} once the view lists the repository's rows: right away, or after a
+     * batch, when the query that lists them again returns.
+     */
+    public void whenListed(Runnable callback) {
+        if (batchStore == null) {
+            callback.run();
+        } else {
+            listedCallbacks.add(callback);
+        }
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    /**
+     * Sorts the list in {@code sortOrder} on the query pipeline, as {@link #updateFilters}
+     * filters it, and swaps the result in on the pipeline's main thread. Until then edits are
+     * placed in the previous order.
+     */
+    public void setSortOrder(SortOrder sortOrder, Runnable onUpdated) {
+        this.sortOrder = sortOrder;
+        query(onUpdated);
+    }
+
+    private void query(Runnable onUpdated) {
+        query(onUpdated, false);
+    }
+
+    /**
+     * @param batch true to report the result as the difference to the rows listed before a
+     *              batch, instead of as a reset
+     */
+    private void query(Runnable onUpdated, boolean batch) {
+        FilterExpression expression = getFilterExpression();
+        filter = expression.compile(store);
+
+        // The indexes are snapshotted with the store, so the pipeline plans against the same rows
+        // it scans.
+        ExpenseStore snapshot = repository.getSnapshot();
+        TextIndex textIndex = null;
+        if (searchFilter.isEnabled()) {
+            textIndex = repository.getTextIndex();
+            if (textIndex == null) {
+                prepareTextIndex();
+            }
+        }
+        SortOrder order = sortOrder;
+        queryPipeline.submit(snapshot, expression, dateIndex.snapshot(), categoryIndex.snapshot(),
+                textIndex == null ? null : textIndex.snapshot(), order.comparator(snapshot),
+                result -> {
+                    if (snapshot.getVersion() != store.getVersion()) {
+                        query(onUpdated, batch);
+                        return;
+                    }
+                    view.setOrder(order.comparator(store));
+                    if (batch && batchStore != null) {
+                        view.replace(result.getRows(), result.getCount(), batchIds, batchUpdatedIds);
+                    } else {
+                        // Listed again for the new filters when the reset is handled.
+                        occurrences = null;
+                        view.replace(result.getRows(), result.getCount());
+                    }
+                    batchStore = null;
+                    batchIds = null;
+                    batchUpdatedIds = null;
+                    onUpdated.run();
+                    List<Runnable> callbacks = new ArrayList<>(listedCallbacks);
+                    listedCallbacks.clear();
+                    for (Runnable callback : callbacks) {
+                        callback.run();
+                    }
+                });
+    }
+
+    /**
+     * Builds the repository's text index on the pipeline's worker the first time a search needs
+     * it. Until it is published, searches check the text of every candidate row on the worker.
+     */
+    private void prepareTextIndex() {
+        if (preparingTextIndex) {
+            return;
+        }
+        preparingTextIndex = true;
+        queryPipeline.execute(repository::prepareTextIndex,
+                staged -> {
+                    preparingTextIndex = false;
+                    if (!repository.publishTextIndex(staged) && searchFilter.isEnabled()) {
+                        // Edited meanwhile: built again from the new snapshot.
+                        prepareTextIndex();
+                    }
+                },
+                e -> preparingTextIndex = false);
+    }
+
+    /**
+     * Answered from the rollup, unless a search is active: text is not part of the rollup, so
+     * the displayed rows are summed instead. Recurring expenses are added in closed form. Years
+     * that are not loaded are not listed, so they are left out, and
+     * {@link #getUnloadedCost()} tells what they add.
+     */
+    public long getViewItemsCost() {
+        long total = 0;
+        long startEpochDay = getStartEpochDay();
+        long endEpochDay = getEndEpochDay();
+        for (RecurringExpense rule : getMatchingRules()) {
+            total += rule.getTotal(startEpochDay, endEpochDay);
+        }
+        if (searchFilter.isEnabled()) {
+            return total + getStore().sumAmounts(view.getRows(), view.size());
+        }
+        if (dateFilter.isEnabled()) {
+            return total + getRollupTotal(dateFilter.getStartDate().toEpochDay(), dateFilter.getEndDate().toEpochDay());
+        }
+        return total + getRollupTotal(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public long getViewItemsCount() {
+        long count = 0;
+        long startEpochDay = getStartEpochDay();
+        long endEpochDay = getEndEpochDay();
+        for (RecurringExpense rule : getMatchingRules()) {
+            count += rule.getCount(startEpochDay, endEpochDay);
+        }
+        if (searchFilter.isEnabled()) {
+            return count + view.size();
+        }
+        if (dateFilter.isEnabled()) {
+            return count + getRollupCount(dateFilter.getStartDate().toEpochDay(), dateFilter.getEndDate().toEpochDay());
+        }
+        return count + getRollupCount(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the total of the expenses that pass the category filter in the years that are not
+     * loaded, which the view does not list. A date filter loads the years it reaches, and a
+     * search cannot be answered without the text, so both leave nothing to report.
+     */
+    public long getUnloadedCost() {
+        return dateFilter.isEnabled() || searchFilter.isEnabled() ? 0 : repository.getUnloadedTotal(getFilterCategory());
+    }
+
+    public long getUnloadedCount() {
+        return dateFilter.isEnabled() || searchFilter.isEnabled() ? 0 : repository.getUnloadedCount(getFilterCategory());
+    }
+
+    /**
+     * @return the occurrences of the recurring expenses that pass the filters, listed when first
+     * asked for after the filters or rules change
+     */
+    public RecurringExpense.Occurrences getOccurrences() {
+        if (occurrences == null) {
+            occurrences = RecurringExpense.Occurrences.of(getMatchingRules(), getStartEpochDay(), getEndEpochDay());
+        }
+        return occurrences;
+    }
+
+    private long getStartEpochDay() {
+        return dateFilter.isEnabled() ? dateFilter.getStartDate().toEpochDay() : Long.MIN_VALUE;
+    }
+
+    /**
+     * Rules may run forever, so without a date filter only occurrences up to today count.
+     */
+    private long getEndEpochDay() {
+        return dateFilter.isEnabled() ? dateFilter.getEndDate().toEpochDay() : LocalDate.now(clock).toEpochDay();
+    }
+
+    private List<RecurringExpense> getMatchingRules() {
+        List<RecurringExpense> rules = repository.getRecurring();
+        if (rules.isEmpty() || !categoryFilter.isEnabled() && !searchFilter.isEnabled()) {
+            return rules;
+        }
+        List<RecurringExpense> matching = new ArrayList<>();
+        for (RecurringExpense rule : rules) {
+            Expense expense = rule.toExpense(rule.getStartEpochDay());
+            if (categoryFilter.filter(expense) && searchFilter.filter(expense)) {
+                matching.add(rule);
+            }
+        }
+        return matching;
+    }
+
+    private String getFilterCategory() {
+        return categoryFilter.isEnabled() ? categoryFilter.getCategory() : null;
+    }
+
+    private long getRollupTotal(long startEpochDay, long endEpochDay) {
+        if (!categoryFilter.isEnabled()) {
+            return rollup.getTotal(startEpochDay, endEpochDay, ExpenseRollup.ALL_CATEGORIES);
+        }
+        int categoryId = store.findCategory(categoryFilter.getCategory());
+        // No expense has the category yet.
+        return categoryId < 0 ? 0 : rollup.getTotal(startEpochDay, endEpochDay, categoryId);
+    }
+
+    private long getRollupCount(long startEpochDay, long endEpochDay) {
+        if (!categoryFilter.isEnabled()) {
+            return rollup.getCount(startEpochDay, endEpochDay, ExpenseRollup.ALL_CATEGORIES);
+        }
+        int categoryId = store.findCategory(categoryFilter.getCategory());
+        return categoryId < 0 ? 0 : rollup.getCount(startEpochDay, endEpochDay, categoryId);
+    }
+}
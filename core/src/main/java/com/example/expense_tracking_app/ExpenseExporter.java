@@ -0,0 +1,167 @@
+package com.example.expense_tracking_app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the rows of an {@link ExpenseStore} as UTF-8 CSV or JSON that the matching
+ * {@link ExpenseParser} reads back.
+ * <p>
+ * Each row is formatted straight from the store's columns into one reused
+ * {@link StringBuilder}, then encoded into a fixed-size buffer that is written out whenever it
+ * fills up.
+ */
+public class ExpenseExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder();
+    private char[] chars = new char[256];
+
+    public ExpenseExporter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public void exportCsv(ExpenseStore store) throws IOException {
+        line.append("date,name,amount,category,reason,notes\r\n");
+        write();
+        for (int row = 0; row < store.size(); row++) {
+            EpochDays.format(store.getEpochDay(row), line).append(',');
+            appendCsv(store.getName(row)).append(',');
+            Money.formatPlain(store.getAmount(row), line).append(',');
+            appendCsv(store.getCategory(row)).append(',');
+            appendCsv(store.getReason(row)).append(',');
+            appendCsv(store.getNotes(row)).append("\r\n");
+            write();
+        }
+        flush();
+    }
+
+    public void exportJson(ExpenseStore store) throws IOException {
+        line.append('[');
+        for (int row = 0; row < store.size(); row++) {
+            line.append(row == 0 ? "\n" : ",\n");
+            line.append("{\"date\":\"");
+            EpochDays.format(store.getEpochDay(row), line).append("\",\"name\":");
+            appendJson(store.getName(row)).append(",\"amount\":");
+            Money.formatPlain(store.getAmount(row), line).append(",\"category\":");
+            appendJson(store.getCategory(row)).append(",\"reason\":");
+            appendJson(store.getReason(row)).append(",\"notes\":");
+            appendJson(store.getNotes(row)).append('}');
+            write();
+        }
+        line.append("\n]\n");
+        write();
+        flush();
+    }
+
+    private StringBuilder appendCsv(String value) {
+        if (value == null) {
+            return line;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return line.append(value);
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+
+    private StringBuilder appendJson(String value) {
+        if (value == null) {
+            return line.append("null");
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        line.append(c);
+                    }
+                    break;
+            }
+        }
+        return line.append('"');
+    }
+
+    /**
+     * Encodes the pending line into the byte buffer, writing the buffer out as it fills.
+     */
+    private void write() throws IOException {
+        if (chars.length < line.length()) {
+            chars = new char[Math.max(line.length(), chars.length * 2)];
+        }
+        line.getChars(0, line.length(), chars, 0);
+        CharBuffer pending = CharBuffer.wrap(chars, 0, line.length());
+        while (true) {
+            CoderResult result = encoder.encode(pending, bytes, false);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        line.setLength(0);
+    }
+
+    private void flush() throws IOException {
+        CharBuffer empty = CharBuffer.allocate(0);
+        while (encoder.encode(empty, bytes, true).isOverflow()) {
+            drain();
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            drain();
+        }
+        drain();
+        encoder.reset();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.expense_tracking_app;
+
+public interface ExpenseFilter {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    boolean filter(Expense expense);
+
+    boolean filter(ExpenseStore store, int row);
+
+    /**
+     * @return this filter as a clause that can be combined with others, or
+     * {@link FilterExpression#all()} if the filter is disabled
+     */
+    FilterExpression toExpression();
+}
@@ -0,0 +1,83 @@
+package com.example.expense_tracking_app;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Shared date and amount formatting for the list, the summary and the edit screens.
+ * <p>
+ * The {@link DateTimeFormatter} is built once per pattern, and formatted dates and amounts are
+ * memoized by epoch day and minor units, so binding a row that has been seen recently does not
+ * allocate. Instances are meant to be used from the main thread only.
+ */
+public class ExpenseFormatters {
+    static final int DATE_CACHE_SIZE = 1024;
+    static final int AMOUNT_CACHE_SIZE = 1024;
+
+    private static ExpenseFormatters instance;
+
+    private final String datePattern;
+    private final String currencySymbol;
+    private final DateTimeFormatter dateFormatter;
+
+    private final LongLruCache<String> dates = new LongLruCache<>(DATE_CACHE_SIZE);
+    private final LongLruCache<String> amounts = new LongLruCache<>(AMOUNT_CACHE_SIZE);
+    private final StringBuilder buffer = new StringBuilder();
+
+    ExpenseFormatters(String datePattern, String currencySymbol) {
+        this.datePattern = datePattern;
+        this.currencySymbol = currencySymbol;
+        this.dateFormatter = DateTimeFormatter.ofPattern(datePattern);
+    }
+
+    /**
+     * @return the shared instance for this pattern and symbol, which only changes when the
+     * resources they come from change
+     */
+    public static ExpenseFormatters getInstance(String datePattern, String currencySymbol) {
+        ExpenseFormatters formatters = instance;
+        if (formatters == null || !formatters.datePattern.equals(datePattern) || !formatters.currencySymbol.equals(currencySymbol)) {
+            formatters = new ExpenseFormatters(datePattern, currencySymbol);
+            instance = formatters;
+        }
+        return formatters;
+    }
+
+    public DateTimeFormatter getDateFormatter() {
+        return dateFormatter;
+    }
+
+    public String getCurrencySymbol() {
+        return currencySymbol;
+    }
+
+    public String formatDate(LocalDate date) {
+        return formatDate(date.toEpochDay());
+    }
+
+    public String formatDate(long epochDay) {
+        String text = dates.get(epochDay);
+        if (text == null) {
+            text = dateFormatter.format(LocalDate.ofEpochDay(epochDay));
+            dates.put(epochDay, text);
+        }
+        return text;
+    }
+
+    public LocalDate parseDate(CharSequence text) {
+        return LocalDate.parse(text, dateFormatter);
+    }
+
+    /**
+     * @return {@code amount} with the currency symbol, for example {@code $1,234.56}
+     */
+    public String formatAmount(long amount) {
+        String text = amounts.get(amount);
+        if (text == null) {
+            buffer.setLength(0);
+            text = Money.format(amount, currencySymbol, buffer).toString();
+            amounts.put(amount, text);
+        }
+        return text;
+    }
+}
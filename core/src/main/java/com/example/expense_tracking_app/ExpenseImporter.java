@@ -0,0 +1,130 @@
+package com.example.expense_tracking_app;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a parser on a worker thread and hands its batches to a sink on the calling thread, so
+ * parsing the next batch overlaps with storing the previous one.
+ * <p>
+ * A small pool of batches circulates between the two threads and is reused for the whole import.
+ * The parser blocks once every batch is waiting to be stored, which bounds the memory used no
+ * matter how large the file is.
+ */
+public class ExpenseImporter {
+    private static final int DEPTH = 4;
+
+    public interface Sink {
+        void accept(ExpenseBatch batch) throws IOException;
+    }
+
+    private static final ExpenseBatch END = new ExpenseBatch(0);
+
+    private final int batchCapacity;
+
+    public ExpenseImporter() {
+        this(ExpenseBatch.DEFAULT_CAPACITY);
+    }
+
+    public ExpenseImporter(int batchCapacity) {
+        this.batchCapacity = batchCapacity;
+    }
+
+    /**
+     * Parses all of {@code parser}'s input on {@code worker} and passes every batch to
+     * {@code sink}, in order. Closes the parser when done.
+     *
+     * @return the number of expenses imported
+     * @throws IOException if the input could not be parsed or the sink failed. No further
+     *                     batches are passed to the sink after a failure.
+     */
+    public long run(ExpenseParser parser, Executor worker, Sink sink) throws IOException {
+        BlockingQueue<ExpenseBatch> free = new ArrayBlockingQueue<>(DEPTH);
+        BlockingQueue<ExpenseBatch> full = new ArrayBlockingQueue<>(DEPTH + 1);
+        for (int i = 0; i < DEPTH; i++) {
+            free.add(new ExpenseBatch(batchCapacity));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        worker.execute(() -> {
+            try (ExpenseParser p = parser) {
+                boolean more = true;
+                while (more && !cancelled.get()) {
+                    ExpenseBatch batch = free.take();
+                    batch.clear();
+                    more = p.read(batch);
+                    if (batch.size() > 0) {
+                        full.put(batch);
+                    } else {
+                        free.put(batch);
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            } finally {
+                // There is always room: every batch and the end marker fit at once.
+                full.add(END);
+            }
+        });
+
+        long count = 0;
+        try {
+            for (ExpenseBatch batch = full.take(); batch != END; batch = full.take()) {
+                sink.accept(batch);
+                count += batch.size();
+                free.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(cancelled, free, full);
+            throw new InterruptedIOException();
+        } catch (IOException | RuntimeException e) {
+            cancel(cancelled, free, full);
+            throw e;
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new IOException(t);
+        }
+        return count;
+    }
+
+    /**
+     * Stops the parser and waits for it to finish, returning batches so it never blocks.
+     */
+    private static void cancel(AtomicBoolean cancelled, BlockingQueue<ExpenseBatch> free,
+                               BlockingQueue<ExpenseBatch> full) {
+        cancelled.set(true);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                ExpenseBatch batch = full.take();
+                if (batch == END) {
+                    break;
+                }
+                free.add(batch);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,619 @@
+package com.example.expense_tracking_app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of expense mutations, backed by periodic snapshots.
+ * <p>
+ * Every mutation is a single sequential append to the journal file. Once enough records have
+ * accumulated, {@link #snapshot(ExpenseStore)} compacts the store into {@link ExpenseSegments}, one
+ * per year, and truncates the journal, so a cold start only has to read the segments and replay
+ * the journal tail.
+ * <p>
+ * Only the most recent {@code hotYears} are loaded on start. Older years stay on disk, compressed,
+ * until {@link #readYears(int)} is asked for them; their counts and totals are known from the
+ * manifest without loading them. Renaming a category only renames it in the manifest for them,
+ * and they are renamed as they are read. Replaying a record that reaches into them loads them.
+ * <p>
+ * Records are written and fsynced by a {@link JournalWriter} thread, so appending never waits for
+ * the disk; each append returns a future that completes once the record is durable. Each record
+ * is framed with its length and a CRC-32, so a record torn by a crash, or left half-written in a
+ * page the disk never stored, is detected and dropped on load.
+ * <p>
+ * The manifest and the journal header carry an epoch, which every snapshot increments. A journal
+ * from an older epoch than the manifest is already part of it: the crash came after the manifest
+ * replaced the old one but before the journal was emptied.
+ */
+public class ExpenseJournal implements Closeable {
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1024;
+    /** Keeps every year in memory and none compressed. */
+    public static final int ALL_YEARS = Integer.MAX_VALUE;
+
+    static final String JOURNAL_FILE_NAME = "expenses.journal";
+
+    private static final int JOURNAL_MAGIC = 0x45584a4c;
+    private static final int VERSION = 1;
+    /** The length and CRC-32 in front of every record. */
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    private static final byte RECORD_INSERT = 1;
+    private static final byte RECORD_UPDATE = 2;
+    private static final byte RECORD_DELETE = 3;
+    private static final byte RECORD_BATCH = 4;
+    private static final byte RECORD_RENAME_CATEGORY = 5;
+    private static final byte RECORD_ADD_RECURRING = 6;
+    private static final byte RECORD_REMOVE_RECURRING = 7;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File journalFile;
+    private final ExpenseSegments segments;
+    private final int snapshotInterval;
+    private final int hotYears;
+    private Clock clock = Clock.systemDefaultZone();
+
+    /**
+     * Replaced by compactions on the writer thread and by renames, while holding the journal's
+     * lock.
+     */
+    private volatile ExpenseSegments.Manifest manifest;
+    /** Every year from this one on is in the store. */
+    private volatile int loadedFromYear = Integer.MIN_VALUE;
+
+    private JournalWriter writer;
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+    private int journalRecords;
+    private boolean torn;
+    private long epoch;
+
+    public ExpenseJournal(File directory) {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    public ExpenseJournal(File directory, int snapshotInterval) {
+        this(directory, snapshotInterval, ALL_YEARS);
+    }
+
+    /**
+     * @param hotYears how many years, counting back from the current one, to load on start and
+     *                 store uncompressed, or {@link #ALL_YEARS}
+     */
+    public ExpenseJournal(File directory, int snapshotInterval, int hotYears) {
+        this.journalFile = new File(directory, JOURNAL_FILE_NAME);
+        this.segments = new ExpenseSegments(directory);
+        this.snapshotInterval = snapshotInterval;
+        this.hotYears = hotYears;
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Reads the hot years into {@code store}, replays the journal tail on top of them and opens
+     * the journal for appending. A record torn by a crash mid-write ends the replay, and the
+     * recovered state is compacted so the torn bytes are never appended to.
+     */
+    public void load(ExpenseStore store) throws IOException {
+        closeJournal();
+        epoch = 0;
+        loadedFromYear = Integer.MIN_VALUE;
+        manifest = segments.readManifest();
+        if (manifest != null) {
+            epoch = manifest.epoch;
+            store.reserveIds(manifest.nextId);
+            for (RecurringExpense rule : manifest.recurring) {
+                store.addRecurring(rule);
+            }
+            // Nothing is loaded yet.
+            loadedFromYear = Integer.MAX_VALUE;
+            loadYears(store, getColdBeforeYear());
+        }
+
+        journalRecords = 0;
+        torn = false;
+        if (journalFile.exists()) {
+            replayJournal(store);
+        }
+
+        if (torn) {
+            manifest = segments.compact(manifest, store, loadedFromYear, getColdBeforeYear(), ++epoch);
+            journalRecords = 0;
+            openJournal(true);
+        } else {
+            openJournal(journalRecords == 0);
+        }
+    }
+
+    /**
+     * @return the first year from which every year is loaded, or {@link Integer#MIN_VALUE} once
+     * every year is
+     */
+    public int getLoadedFromYear() {
+        return loadedFromYear;
+    }
+
+    /**
+     * Reads the years from {@code fromYear} up to the first loaded one into a new store, keeping
+     * their ids. May be called from any thread. The rows are not part of the loaded store until
+     * they are added to it and {@link #setLoadedFromYear(int)} is called.
+     */
+    public ExpenseStore readYears(int fromYear) throws IOException {
+        ExpenseStore years = new ExpenseStore();
+        int toYear = loadedFromYear;
+        ExpenseSegments.Manifest current = manifest;
+        if (current != null) {
+            for (ExpenseSegments.Segment segment : current.segments) {
+                if (segment.year >= fromYear && segment.year < toYear) {
+                    segments.read(segment, years);
+                }
+            }
+        }
+        return years;
+    }
+
+    /**
+     * Records that every year from {@code fromYear} on has been added to the store.
+     */
+    public void setLoadedFromYear(int fromYear) {
+        if (fromYear >= loadedFromYear) {
+            return;
+        }
+        ExpenseSegments.Manifest current = manifest;
+        loadedFromYear = current == null || current.getFirstYear() >= fromYear ? Integer.MIN_VALUE : fromYear;
+    }
+
+    /**
+     * @param category a category, or null for every category
+     * @return the number of expenses in the years that are not loaded
+     */
+    public long getUnloadedCount(String category) {
+        long count = 0;
+        ExpenseSegments.Manifest current = manifest;
+        if (current != null) {
+            for (ExpenseSegments.Segment segment : current.segments) {
+                if (segment.year < loadedFromYear) {
+                    count += segment.getCount(category);
+                }
+            }
+        }
+        return count;
+    }
+
+    public long getUnloadedTotal(String category) {
+        long total = 0;
+        ExpenseSegments.Manifest current = manifest;
+        if (current != null) {
+            for (ExpenseSegments.Segment segment : current.segments) {
+                if (segment.year < loadedFromYear) {
+                    total += segment.getTotal(category);
+                }
+            }
+        }
+        return total;
+    }
+
+    private int getColdBeforeYear() {
+        return hotYears == ALL_YEARS ? Integer.MIN_VALUE : LocalDate.now(clock).getYear() - hotYears + 1;
+    }
+
+    private synchronized void renameUnloadedCategory(String from, String to) {
+        if (manifest != null) {
+            manifest = manifest.renameCategory(from, to, loadedFromYear);
+        }
+    }
+
+    /**
+     * Loads the years from {@code fromYear} up to the first loaded one straight into
+     * {@code store}, while it is being loaded.
+     */
+    private void loadYears(ExpenseStore store, int fromYear) throws IOException {
+        if (fromYear < loadedFromYear) {
+            ExpenseSegments.Manifest current = manifest;
+            for (ExpenseSegments.Segment segment : current.segments) {
+                if (segment.year >= fromYear && segment.year < loadedFromYear) {
+                    segments.read(segment, store);
+                }
+            }
+            setLoadedFromYear(fromYear);
+        }
+    }
+
+    /**
+     * @return a future that completes once the record is on disk
+     */
+    public CompletableFuture<Void> insert(Expense expense) throws IOException {
+        Record record = new Record(RECORD_INSERT);
+        writeExpense(record.out, expense);
+        return append(record);
+    }
+
+    public CompletableFuture<Void> update(Expense expense) throws IOException {
+        Record record = new Record(RECORD_UPDATE);
+        writeExpense(record.out, expense);
+        return append(record);
+    }
+
+    public CompletableFuture<Void> delete(long id) throws IOException {
+        Record record = new Record(RECORD_DELETE);
+        record.out.writeLong(id);
+        return append(record);
+    }
+
+    /**
+     * Appends the deletions, then the updates, then the insertions of a batch as a single record,
+     * which replay applies entirely or not at all.
+     */
+    public CompletableFuture<Void> batch(long[] deletedIds, List<Expense> updates, List<Expense> inserts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long id : deletedIds) {
+            out.writeByte(RECORD_DELETE);
+            out.writeLong(id);
+        }
+        for (Expense expense : updates) {
+            out.writeByte(RECORD_UPDATE);
+            writeExpense(out, expense);
+        }
+        for (Expense expense : inserts) {
+            out.writeByte(RECORD_INSERT);
+            writeExpense(out, expense);
+        }
+        out.flush();
+
+        Record record = new Record(RECORD_BATCH);
+        record.out.writeInt(bytes.size());
+        bytes.writeTo(record.out);
+        return append(record);
+    }
+
+    /**
+     * Renames the category in the years that are not loaded, which are renamed as they are read,
+     * and appends the rename.
+     */
+    public CompletableFuture<Void> renameCategory(String from, String to) throws IOException {
+        renameUnloadedCategory(from, to);
+        Record record = new Record(RECORD_RENAME_CATEGORY);
+        writeString(record.out, from);
+        writeString(record.out, to);
+        return append(record);
+    }
+
+    public CompletableFuture<Void> addRecurring(RecurringExpense rule) throws IOException {
+        Record record = new Record(RECORD_ADD_RECURRING);
+        writeRecurring(record.out, rule);
+        return append(record);
+    }
+
+    public CompletableFuture<Void> removeRecurring(long id) throws IOException {
+        Record record = new Record(RECORD_REMOVE_RECURRING);
+        record.out.writeLong(id);
+        return append(record);
+    }
+
+    /**
+     * @return a future that completes once everything appended so far is on disk, or fails if
+     * any of it could not be written
+     */
+    public CompletableFuture<Void> sync() {
+        return lastWrite;
+    }
+
+    public boolean shouldSnapshot() {
+        return journalRecords >= snapshotInterval;
+    }
+
+    /**
+     * Compacts {@code store} into segments and empties the journal, on the writer thread once
+     * every record appended so far is on disk, so the caller never waits for it. {@code store}
+     * must not change afterwards, so pass an {@link ExpenseStore#snapshot()} of a store that is
+     * still being edited. It must hold every loaded year.
+     *
+     * @return a future that completes once the segments are on disk and the journal emptied
+     */
+    public CompletableFuture<Void> snapshot(ExpenseStore store) throws IOException {
+        journalRecords = 0;
+        long snapshotEpoch = ++epoch;
+        int fromYear = loadedFromYear;
+        int coldBeforeYear = getColdBeforeYear();
+        // The years that are not loaded are written with the names they have now, since later
+        // renames stay in the journal.
+        ExpenseSegments.Manifest named = manifest;
+        CompletableFuture<Void> future = writer.truncate(() -> {
+            ExpenseSegments.Manifest previous;
+            synchronized (this) {
+                previous = manifest;
+            }
+            if (previous != null) {
+                previous = previous.withCategoriesOf(named);
+            }
+            ExpenseSegments.Manifest compacted = segments.compact(previous, store, fromYear, coldBeforeYear, snapshotEpoch);
+            synchronized (this) {
+                manifest = compacted.withCategoriesOf(manifest);
+            }
+        }, journalHeader(snapshotEpoch));
+        lastWrite = future;
+        return future;
+    }
+
+    /**
+     * Waits for every record appended so far to be written.
+     *
+     * @throws IOException if any of them could not be
+     */
+    @Override
+    public void close() throws IOException {
+        closeJournal();
+    }
+
+    /**
+     * @return the number of fsyncs the writer has made, for measuring group commit
+     */
+    long getCommits() {
+        return writer == null ? 0 : writer.getCommits();
+    }
+
+    private CompletableFuture<Void> append(Record record) throws IOException {
+        CompletableFuture<Void> future = writer.append(record.toFrame());
+        journalRecords++;
+        lastWrite = future;
+        return future;
+    }
+
+    private void openJournal(boolean truncate) throws IOException {
+        writer = new JournalWriter(journalFile, journalHeader(epoch), truncate);
+    }
+
+    private static byte[] journalHeader(long epoch) {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        header.putInt(JOURNAL_MAGIC);
+        header.putInt(VERSION);
+        header.putLong(epoch);
+        return header.array();
+    }
+
+    private void closeJournal() throws IOException {
+        if (writer != null) {
+            JournalWriter closing = writer;
+            writer = null;
+            closing.close();
+        }
+    }
+
+    /**
+     * Applies the journal to {@code store}, counting its records in {@code journalRecords}. A
+     * journal from an older epoch than the manifest is skipped.
+     */
+    private void replayJournal(ExpenseStore store) throws IOException {
+        long remaining = journalFile.length() - 16;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile), BUFFER_SIZE))) {
+            checkHeader(in);
+            long journalEpoch = in.readLong();
+            if (journalEpoch < epoch) {
+                return;
+            }
+
+            byte[] header = new byte[FRAME_HEADER_SIZE];
+            CRC32 crc = new CRC32();
+            while (remaining > 0) {
+                if (remaining < FRAME_HEADER_SIZE) {
+                    torn = true;
+                    break;
+                }
+                in.readFully(header);
+                ByteBuffer frame = ByteBuffer.wrap(header);
+                int length = frame.getInt();
+                int checksum = frame.getInt();
+                remaining -= FRAME_HEADER_SIZE;
+                if (length <= 0 || length > remaining) {
+                    torn = true;
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                remaining -= length;
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    torn = true;
+                    break;
+                }
+
+                // The whole record is read and checked before any of it is applied.
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                replayTopLevelRecord(store, record.read(), record);
+                journalRecords++;
+            }
+        }
+    }
+
+    private void replayTopLevelRecord(ExpenseStore store, int type, DataInputStream in) throws IOException {
+        if (type == RECORD_BATCH) {
+            byte[] batch = new byte[in.readInt()];
+            in.readFully(batch);
+            DataInputStream batchIn = new DataInputStream(new ByteArrayInputStream(batch));
+            for (int batchType = batchIn.read(); batchType != -1; batchType = batchIn.read()) {
+                replayRecord(store, batchType, batchIn);
+            }
+        } else {
+            replayRecord(store, type, in);
+        }
+    }
+
+    /**
+     * Loads the years a record reaches into before applying it: the year of any date it sets,
+     * and every year if it refers to an expense that is not loaded. A rename is applied to the
+     * years that are not loaded as they are read.
+     */
+    private void replayRecord(ExpenseStore store, int type, DataInputStream in) throws IOException {
+        switch (type) {
+            case RECORD_INSERT: {
+                long id = in.readLong();
+                String name = readString(in);
+                int epochDay = in.readInt();
+                loadYears(store, EpochDays.year(epochDay));
+                store.add(id, name, epochDay, in.readLong(), readString(in), readString(in), readString(in));
+                break;
+            }
+            case RECORD_UPDATE: {
+                long id = in.readLong();
+                String name = readString(in);
+                int epochDay = in.readInt();
+                loadYears(store, EpochDays.year(epochDay));
+                store.set(findRow(store, id), name, epochDay, in.readLong(), readString(in), readString(in), readString(in));
+                break;
+            }
+            case RECORD_DELETE:
+                store.remove(findRow(store, in.readLong()));
+                break;
+            case RECORD_RENAME_CATEGORY: {
+                String from = readString(in);
+                String to = readString(in);
+                store.renameCategory(from, to);
+                renameUnloadedCategory(from, to);
+                break;
+            }
+            case RECORD_ADD_RECURRING:
+                store.addRecurring(readRecurring(in));
+                break;
+            case RECORD_REMOVE_RECURRING:
+                long id = in.readLong();
+                if (!store.removeRecurring(id)) {
+                    throw new IOException("Journal refers to unknown recurring expense " + id);
+                }
+                break;
+            default:
+                throw new IOException("Unknown journal record " + type);
+        }
+    }
+
+    private int findRow(ExpenseStore store, long id) throws IOException {
+        int row = store.findRow(id);
+        if (row < 0 && loadedFromYear != Integer.MIN_VALUE) {
+            loadYears(store, Integer.MIN_VALUE);
+            row = store.findRow(id);
+        }
+        if (row < 0) {
+            throw new IOException("Journal refers to unknown expense " + id);
+        }
+        return row;
+    }
+
+    private static void checkHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != JOURNAL_MAGIC) {
+            throw new IOException("Not an expense journal file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+    }
+
+    private static void writeExpense(DataOutputStream out, Expense expense) throws IOException {
+        writeRow(out, expense.getId(), expense.getName(), expense.getDate().toEpochDay(), expense.getCost(),
+                expense.getCategory(), expense.getReason(), expense.getNotes());
+    }
+
+    static void writeRow(DataOutputStream out, long id, String name, long epochDay, long amount, String category, String reason, String notes) throws IOException {
+        out.writeLong(id);
+        writeString(out, name);
+        out.writeInt(Math.toIntExact(epochDay));
+        out.writeLong(amount);
+        writeString(out, category);
+        writeString(out, reason);
+        writeString(out, notes);
+    }
+
+    static void writeRecurring(DataOutputStream out, RecurringExpense rule) throws IOException {
+        out.writeLong(rule.getId());
+        writeString(out, rule.getName());
+        out.writeLong(rule.getAmount());
+        writeString(out, rule.getCategory());
+        out.writeByte(rule.getUnit().ordinal());
+        out.writeInt(rule.getInterval());
+        out.writeLong(rule.getStartEpochDay());
+        out.writeLong(rule.getEndEpochDay());
+    }
+
+    static RecurringExpense readRecurring(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        String name = readString(in);
+        long amount = in.readLong();
+        String category = readString(in);
+        int unit = in.readByte();
+        if (unit < 0 || unit >= RecurringExpense.Unit.values().length) {
+            throw new IOException("Unknown recurrence unit " + unit);
+        }
+        RecurringExpense rule = new RecurringExpense(name, amount, category, RecurringExpense.Unit.values()[unit],
+                in.readInt(), in.readLong(), in.readLong());
+        rule.setId(id);
+        return rule;
+    }
+
+    /**
+     * A journal record being encoded, with room for its frame header in front.
+     */
+    private static final class Record {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        Record(byte type) throws IOException {
+            out.write(new byte[FRAME_HEADER_SIZE]);
+            out.writeByte(type);
+        }
+
+        byte[] toFrame() {
+            byte[] frame = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(frame, FRAME_HEADER_SIZE, frame.length - FRAME_HEADER_SIZE);
+            ByteBuffer header = ByteBuffer.wrap(frame);
+            header.putInt(frame.length - FRAME_HEADER_SIZE);
+            header.putInt((int) crc.getValue());
+            return frame;
+        }
+    }
+
+    /**
+     * Writes the UTF-8 of {@code value} after its length, or a length of -1 for null. Unlike
+     * {@link DataOutputStream#writeUTF}, strings of any length can be written.
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            if (length != -1) {
+                throw new IOException("Bad string length " + length);
+            }
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
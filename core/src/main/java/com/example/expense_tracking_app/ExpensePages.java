@@ -0,0 +1,182 @@
+package com.example.expense_tracking_app;
+
+/**
+ * The rows of an {@link ExpenseEngine}'s list in fixed-size pages around the scroll position,
+ * which is what {@code ExpenseAdapter} binds from.
+ * <p>
+ * A page holds the id, name, category, date and amount of {@link #PAGE_SIZE} consecutive
+ * positions. Binding a position reads its page if it is not loaded, and queues the next page in
+ * the direction of the scroll on the query pipeline's worker, so names still in a mapped segment
+ * are decoded off the main thread before they are needed. At most {@link #MAX_PAGES} are kept,
+ * least recently used first out, which while scrolling are the farthest ones; {@link #trim()}
+ * drops all but the current page under memory pressure. The item count is the view's size,
+ * which is exact and costs nothing.
+ * <p>
+ * Any change to the view drops every page, since positions may have shifted; they are cheap to
+ * read again. Meant to be used from the main thread only.
+ */
+public class ExpensePages {
+    static final int PAGE_SIZE = 64;
+    static final int MAX_PAGES = 8;
+
+    public static final class Page {
+        private final int start;
+        private final long[] ids;
+        private final String[] names;
+        private final String[] categories;
+        private final int[] epochDays;
+        private final long[] amounts;
+
+        /**
+         * Reads {@code rows} from {@code store}, which must not change meanwhile.
+         */
+        Page(ExpenseStore store, int start, int[] rows) {
+            this.start = start;
+            ids = new long[rows.length];
+            names = new String[rows.length];
+            categories = new String[rows.length];
+            epochDays = new int[rows.length];
+            amounts = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                int row = rows[i];
+                ids[i] = store.getId(row);
+                names[i] = store.getName(row);
+                categories[i] = store.getCategory(row);
+                epochDays[i] = store.getEpochDay(row);
+                amounts[i] = store.getAmount(row);
+            }
+        }
+
+        public long getId(int position) {
+            return ids[position - start];
+        }
+
+        public String getName(int position) {
+            return names[position - start];
+        }
+
+        public String getCategory(int position) {
+            return categories[position - start];
+        }
+
+        public int getEpochDay(int position) {
+            return epochDays[position - start];
+        }
+
+        public long getAmount(int position) {
+            return amounts[position - start];
+        }
+    }
+
+    private final ExpenseEngine engine;
+    private final ExpenseQueryPipeline queryPipeline;
+
+    private LongLruCache<Page> pages = new LongLruCache<>(MAX_PAGES);
+    /** Incremented whenever the pages are dropped, so prefetches begun before are discarded. */
+    private int generation;
+    private int lastIndex = -1;
+    private int prefetchingIndex = -1;
+    private int reads;
+    private int prefetches;
+
+    public ExpensePages(ExpenseEngine engine, ExpenseQueryPipeline queryPipeline) {
+        this.engine = engine;
+        this.queryPipeline = queryPipeline;
+    }
+
+    public int size() {
+        return engine.size();
+    }
+
+    /**
+     * @return the page holding {@code position}, read now if it was neither kept nor prefetched
+     */
+    public Page getPage(int position) {
+        int index = position / PAGE_SIZE;
+        Page page = pages.get(index);
+        if (page == null) {
+            page = new Page(engine.getStore(), index * PAGE_SIZE, getRows(index));
+            pages.put(index, page);
+            reads++;
+        }
+        int direction = index < lastIndex ? -1 : 1;
+        lastIndex = index;
+        prefetch(index + direction);
+        return page;
+    }
+
+    /**
+     * Drops every page, after the positions they hold changed.
+     */
+    public void invalidate() {
+        pages = new LongLruCache<>(MAX_PAGES);
+        generation++;
+        prefetchingIndex = -1;
+    }
+
+    /**
+     * Drops every page but the last one bound, when memory runs low.
+     */
+    public void trim() {
+        Page last = lastIndex < 0 ? null : pages.get(lastIndex);
+        invalidate();
+        if (last != null) {
+            pages.put(lastIndex, last);
+        }
+    }
+
+    int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * @return the number of pages read on the main thread because they were not prefetched
+     */
+    int getReads() {
+        return reads;
+    }
+
+    int getPrefetches() {
+        return prefetches;
+    }
+
+    /**
+     * Reads page {@code index} on the worker from the repository's published snapshot, which
+     * holds the same rows as the store as long as their versions match.
+     */
+    private void prefetch(int index) {
+        if (index < 0 || index * PAGE_SIZE >= engine.size() || index == prefetchingIndex || pages.get(index) != null) {
+            return;
+        }
+        ExpenseStore snapshot = engine.getRepository().getSnapshot();
+        if (snapshot.getVersion() != engine.getStore().getVersion()) {
+            return;
+        }
+        int[] rows = getRows(index);
+        int prefetchGeneration = generation;
+        prefetchingIndex = index;
+        queryPipeline.execute(() -> new Page(snapshot, index * PAGE_SIZE, rows),
+                page -> {
+                    if (prefetchGeneration == generation) {
+                        prefetchingIndex = -1;
+                        pages.put(index, page);
+                        prefetches++;
+                    }
+                },
+                // Read on the main thread when bound instead.
+                e -> {
+                    if (prefetchGeneration == generation) {
+                        prefetchingIndex = -1;
+                    }
+                });
+    }
+
+    private int[] getRows(int index) {
+        int start = index * PAGE_SIZE;
+        int[] rows = new int[Math.min(PAGE_SIZE, engine.size() - start)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = engine.getRow(start + i);
+        }
+        return rows;
+    }
+}
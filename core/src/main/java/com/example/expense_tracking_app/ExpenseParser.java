@@ -0,0 +1,218 @@
+package com.example.expense_tracking_app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base for streaming parsers that read expenses from a UTF-8 byte channel into
+ * {@link ExpenseBatch}es.
+ * <p>
+ * Input is decoded through fixed-size byte and char buffers, and fields are collected in a
+ * reused {@link StringBuilder}. Dates and amounts are parsed straight from that builder, so the
+ * only objects created per row are the strings that end up in the store.
+ */
+public abstract class ExpenseParser implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int RECENT_CATEGORIES = 16;
+
+    enum Column {
+        DATE, NAME, AMOUNT, CATEGORY, REASON, NOTES, IGNORED;
+
+        /**
+         * @return the column called {@code name} in a file header or JSON object
+         */
+        static Column named(CharSequence name) {
+            String key = name.toString().trim();
+            for (Column column : values()) {
+                if (column != IGNORED && column.name().equalsIgnoreCase(key)) {
+                    return column;
+                }
+            }
+            if (key.equalsIgnoreCase("cost") || key.equalsIgnoreCase("value")) {
+                return AMOUNT;
+            }
+            if (key.equalsIgnoreCase("description")) {
+                return NAME;
+            }
+            return IGNORED;
+        }
+    }
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private boolean endOfInput;
+    private boolean flushed;
+    private int line = 1;
+
+    final StringBuilder field = new StringBuilder();
+    private final String defaultCategory;
+    private final String[] recentCategories = new String[RECENT_CATEGORIES];
+    private int nextRecentCategory;
+
+    private String name;
+    private long epochDay;
+    private boolean hasDate;
+    private long amount;
+    private String category;
+    private String reason;
+    private String notes;
+
+    ExpenseParser(ReadableByteChannel channel, String defaultCategory) {
+        this.channel = channel;
+        this.defaultCategory = defaultCategory;
+        chars.flip();
+    }
+
+    /**
+     * Parses expenses into {@code batch} until it is full or the input ends.
+     *
+     * @return false once the input has been read completely
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    public abstract boolean read(ExpenseBatch batch) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    IOException error(String message) {
+        return new IOException("Line " + line + ": " + message);
+    }
+
+    /**
+     * @return the next character, or -1 at the end of the input
+     */
+    int next() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        char c = chars.get();
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    /**
+     * @return the next character without consuming it, or -1 at the end of the input
+     */
+    int peek() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get(chars.position());
+    }
+
+    private boolean fill() throws IOException {
+        if (flushed) {
+            return false;
+        }
+        chars.clear();
+        while (chars.position() == 0 && !flushed) {
+            if (!endOfInput && channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if (endOfInput) {
+                decoder.flush(chars);
+                flushed = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    void startRow() {
+        name = "";
+        hasDate = false;
+        amount = 0;
+        category = defaultCategory;
+        reason = null;
+        notes = null;
+    }
+
+    /**
+     * Stores the contents of {@link #field} as {@code column} of the current row.
+     */
+    void setField(Column column) throws IOException {
+        try {
+            switch (column) {
+                case DATE:
+                    epochDay = EpochDays.parse(trimmed());
+                    hasDate = true;
+                    break;
+                case NAME:
+                    name = field.toString();
+                    break;
+                case AMOUNT:
+                    amount = Money.parse(field);
+                    break;
+                case CATEGORY:
+                    category = field.length() == 0 ? defaultCategory : category();
+                    break;
+                case REASON:
+                    reason = field.length() == 0 ? null : field.toString();
+                    break;
+                case NOTES:
+                    notes = field.length() == 0 ? null : field.toString();
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    void endRow(ExpenseBatch batch) throws IOException {
+        if (!hasDate) {
+            throw error("Missing date");
+        }
+        batch.add(name, epochDay, amount, category, reason, notes);
+    }
+
+    private CharSequence trimmed() {
+        int start = 0;
+        int end = field.length();
+        while (start < end && field.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && field.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return start == 0 && end == field.length() ? field : field.subSequence(start, end);
+    }
+
+    /**
+     * Files repeat a handful of categories, so recently seen ones are reused instead of creating a
+     * new string for every row.
+     */
+    private String category() {
+        for (String recent : recentCategories) {
+            if (recent != null && recent.contentEquals(field)) {
+                return recent;
+            }
+        }
+        String category = field.toString();
+        recentCategories[nextRecentCategory] = category;
+        nextRecentCategory = (nextRecentCategory + 1) % RECENT_CATEGORIES;
+        return category;
+    }
+}
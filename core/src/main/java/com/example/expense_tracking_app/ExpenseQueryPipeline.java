@@ -0,0 +1,158 @@
+package com.example.expense_tracking_app;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs filter and sort queries off the main thread.
+ * <p>
+ * Every submitted query gets a new generation number. A query notices when a newer one has been
+ * submitted and stops early, and results that are no longer the latest generation are dropped on
+ * the main thread instead of being delivered.
+ */
+public class ExpenseQueryPipeline {
+    private static final int CANCELLATION_CHECK_INTERVAL = 4096;
+
+    public interface Callback {
+        void onResult(Result result);
+    }
+
+    /**
+     * Work for the worker thread that reads from disk.
+     */
+    public interface Read<T> {
+        T run() throws IOException;
+    }
+
+    public static class Result {
+        private final long generation;
+        private final int[] rows;
+        private final int count;
+
+        Result(long generation, int[] rows, int count) {
+            this.generation = generation;
+            this.rows = rows;
+            this.count = count;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public int[] getRows() {
+            return rows;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    private final Executor worker;
+    private final Executor mainThread;
+    private final AtomicLong generation = new AtomicLong();
+
+    public ExpenseQueryPipeline(Executor worker, Executor mainThread) {
+        this.worker = worker;
+        this.mainThread = mainThread;
+    }
+
+    public long submit(ExpenseStore store, ExpenseView.RowFilter filter, RowComparator order, Callback callback) {
+        return submit(store, null, filter, order, callback);
+    }
+
+    /**
+     * Queues a query over {@code store}, which must not be modified while the query runs. The
+     * callback runs on the main thread executor, and only if no newer query has been submitted.
+     *
+     * @param candidates the only rows to consider, for example a slice of a {@link DateIndex}, or
+     *                   null to scan the whole store
+     * @return the generation of the new query
+     */
+    public long submit(ExpenseStore store, int[] candidates, ExpenseView.RowFilter filter, RowComparator order, Callback callback) {
+        long queryGeneration = generation.incrementAndGet();
+        worker.execute(() -> deliver(run(queryGeneration, store, candidates, filter, order), callback));
+        return queryGeneration;
+    }
+
+    /**
+     * Queues a query for the rows of {@code store} matching {@code expression}. The expression is
+     * optimized on the worker, so the index lookups that produce the candidates run there too.
+     * The store and the indexes must be snapshots taken together, which nothing modifies.
+     *
+     * @param textIndex null to check text clauses against every candidate row instead
+     * @return the generation of the new query
+     */
+    public long submit(ExpenseStore store, FilterExpression expression, DateIndex dateIndex, CategoryIndex categoryIndex,
+                       TextIndex textIndex, RowComparator order, Callback callback) {
+        long queryGeneration = generation.incrementAndGet();
+        worker.execute(() -> {
+            if (!isCurrent(queryGeneration)) {
+                return;
+            }
+            FilterExpression.Plan plan = expression.optimize(store, dateIndex, categoryIndex, textIndex);
+            deliver(run(queryGeneration, store, plan.getCandidates(), plan.getResidual().compile(store), order), callback);
+        });
+        return queryGeneration;
+    }
+
+    /**
+     * Runs {@code read} on the worker and hands its result, or whatever it threw, to the main
+     * thread executor, so exactly one of the two callbacks runs. Unlike queries, reads are not
+     * dropped when a newer query is submitted.
+     */
+    public <T> void execute(Read<T> read, Consumer<T> onResult, Consumer<Throwable> onError) {
+        worker.execute(() -> {
+            T result;
+            try {
+                result = read.run();
+            } catch (Throwable t) {
+                mainThread.execute(() -> onError.accept(t));
+                return;
+            }
+            mainThread.execute(() -> onResult.accept(result));
+        });
+    }
+
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    public boolean isCurrent(long queryGeneration) {
+        return generation.get() == queryGeneration;
+    }
+
+    private void deliver(Result result, Callback callback) {
+        if (result == null) {
+            return;
+        }
+        mainThread.execute(() -> {
+            if (isCurrent(result.getGeneration())) {
+                callback.onResult(result);
+            }
+        });
+    }
+
+    private Result run(long queryGeneration, ExpenseStore store, int[] candidates, ExpenseView.RowFilter filter, RowComparator order) {
+        int candidateCount = candidates == null ? store.size() : candidates.length;
+        int[] rows = new int[candidateCount];
+        int count = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            if ((i & (CANCELLATION_CHECK_INTERVAL - 1)) == 0 && !isCurrent(queryGeneration)) {
+                return null;
+            }
+            int row = candidates == null ? i : candidates[i];
+            if (filter.matches(row)) {
+                rows[count++] = row;
+            }
+        }
+
+        if (!isCurrent(queryGeneration)) {
+            return null;
+        }
+        Rows.sort(rows, count, order);
+        return new Result(queryGeneration, rows, count);
+    }
+}
@@ -0,0 +1,464 @@
+package com.example.expense_tracking_app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Replays a trace of edits, filter changes and summaries against an {@link ExpenseEngine} and
+ * reports latency percentiles per operation.
+ * <p>
+ * A trace has one operation per line, with tab-separated fields. Dates are {@code yyyy-MM-dd}
+ * and amounts are decimal, as in the CSV export:
+ * <pre>
+ * add      date amount category name
+ * update   ref date amount category name
+ * delete   ref
+ * date     [start end]     filters by date, or stops filtering by date
+ * category [name]
+ * search   [text]
+ * summary                  the total and count shown under the list
+ * </pre>
+ * Expenses are referred to by {@code ref}, which selects one of the expenses currently in the
+ * repository, so a trace does not depend on the ids it was recorded with. Updates and deletes are
+ * skipped while the repository is empty. Blank lines and lines starting with {@code #} are
+ * ignored.
+ * <p>
+ * Only the engine call is timed. Queries run synchronously, so a filter change includes the
+ * query that rebuilds the view.
+ */
+public class ExpenseReplay {
+    static final String[] CATEGORIES = {"Bills", "Car", "Clothes", "Entertainment", "Food", "Gas",
+            "Gifts", "Health", "Home", "None", "Rent", "Travel"};
+
+    public enum Operation {
+        ADD("add"),
+        UPDATE("update"),
+        DELETE("delete"),
+        DATE_FILTER("date"),
+        CATEGORY_FILTER("category"),
+        SEARCH("search"),
+        SUMMARY("summary");
+
+        private final String keyword;
+
+        Operation(String keyword) {
+            this.keyword = keyword;
+        }
+
+        public String getKeyword() {
+            return keyword;
+        }
+
+        static Operation of(String keyword) {
+            for (Operation operation : values()) {
+                if (operation.keyword.equals(keyword)) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+    }
+
+    public interface Trace {
+        /**
+         * @return the next line, or null at the end of the trace
+         */
+        String next() throws IOException;
+    }
+
+    private final ExpenseRepository repository;
+    private final ExpenseEngine engine;
+    private final CategoryFilter categoryFilter = new CategoryFilter();
+    private final DateFilter dateFilter = new DateFilter();
+    private final SearchFilter searchFilter = new SearchFilter();
+
+    private final long[][] latencies = new long[Operation.values().length][];
+    private final int[] counts = new int[Operation.values().length];
+    private int skipped;
+
+    private long[] ids = new long[16];
+    private int idCount;
+
+    public ExpenseReplay(ExpenseRepository repository) {
+        this.repository = repository;
+        this.engine = new ExpenseEngine(repository, categoryFilter, dateFilter, searchFilter,
+                new ExpenseQueryPipeline(Runnable::run, Runnable::run));
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new long[1024];
+        }
+
+        ExpenseStore store = repository.getStore();
+        for (int row = 0; row < store.size(); row++) {
+            addId(store.getId(row));
+        }
+    }
+
+    public ExpenseEngine getEngine() {
+        return engine;
+    }
+
+    public void run(Trace trace) throws IOException {
+        int lineNumber = 0;
+        for (String line = trace.next(); line != null; line = trace.next()) {
+            lineNumber++;
+            try {
+                apply(line);
+            } catch (RuntimeException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void apply(String line) throws IOException {
+        if (line.isEmpty() || line.charAt(0) == '#') {
+            return;
+        }
+        String[] fields = line.split("\t", -1);
+        Operation operation = Operation.of(fields[0]);
+        if (operation == null) {
+            throw new IllegalArgumentException("Unknown operation " + fields[0]);
+        }
+
+        long start;
+        switch (operation) {
+            case ADD: {
+                Expense expense = parseExpense(fields, 1);
+                start = System.nanoTime();
+                repository.insert(expense);
+                record(operation, start);
+                addId(expense.getId());
+                return;
+            }
+            case UPDATE: {
+                if (idCount == 0) {
+                    skipped++;
+                    return;
+                }
+                Expense expense = parseExpense(fields, 2);
+                expense.setId(ids[index(fields[1])]);
+                start = System.nanoTime();
+                repository.update(expense);
+                break;
+            }
+            case DELETE: {
+                if (idCount == 0) {
+                    skipped++;
+                    return;
+                }
+                int index = index(fields[1]);
+                long id = ids[index];
+                ids[index] = ids[--idCount];
+                start = System.nanoTime();
+                repository.delete(id);
+                break;
+            }
+            case DATE_FILTER: {
+                boolean enabled = fields.length >= 3;
+                LocalDate from = enabled ? LocalDate.ofEpochDay(EpochDays.parse(fields[1])) : null;
+                LocalDate to = enabled ? LocalDate.ofEpochDay(EpochDays.parse(fields[2])) : null;
+                start = System.nanoTime();
+                if (enabled) {
+                    dateFilter.setDateRange(from, to);
+                } else {
+                    dateFilter.setEnabled(false);
+                }
+                engine.updateFilters(() -> { });
+                break;
+            }
+            case CATEGORY_FILTER: {
+                String category = fields.length >= 2 ? fields[1] : "";
+                start = System.nanoTime();
+                if (category.isEmpty()) {
+                    categoryFilter.setEnabled(false);
+                } else {
+                    categoryFilter.setCategory(category);
+                }
+                engine.updateFilters(() -> { });
+                break;
+            }
+            case SEARCH: {
+                String query = fields.length >= 2 ? fields[1] : "";
+                start = System.nanoTime();
+                searchFilter.setQuery(query);
+                engine.updateFilters(() -> { });
+                break;
+            }
+            default:
+                start = System.nanoTime();
+                engine.getViewItemsCost();
+                engine.getViewItemsCount();
+                break;
+        }
+        record(operation, start);
+    }
+
+    private static Expense parseExpense(String[] fields, int offset) {
+        if (fields.length < offset + 4) {
+            throw new IllegalArgumentException("Expected " + (offset + 4) + " fields");
+        }
+        return new Expense(fields[offset + 3], LocalDate.ofEpochDay(EpochDays.parse(fields[offset])),
+                Money.parse(fields[offset + 1]), fields[offset + 2]);
+    }
+
+    private int index(String ref) {
+        return (int) (Long.parseLong(ref) % idCount);
+    }
+
+    private void addId(long id) {
+        if (idCount == ids.length) {
+            ids = Arrays.copyOf(ids, idCount * 2);
+        }
+        ids[idCount++] = id;
+    }
+
+    private void record(Operation operation, long start) {
+        long elapsed = System.nanoTime() - start;
+        int type = operation.ordinal();
+        if (counts[type] == latencies[type].length) {
+            latencies[type] = Arrays.copyOf(latencies[type], counts[type] * 2);
+        }
+        latencies[type][counts[type]++] = elapsed;
+    }
+
+    public int getCount(Operation operation) {
+        return counts[operation.ordinal()];
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return the latency in nanoseconds that {@code percentile} percent of the timed
+     * {@code operation}s did not exceed, or 0 if there were none
+     */
+    public long getLatency(Operation operation, double percentile) {
+        int count = counts[operation.ordinal()];
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies[operation.ordinal()], count);
+        Arrays.sort(sorted);
+        return percentile(sorted, percentile);
+    }
+
+    public void printReport(PrintStream out) {
+        out.printf("%-10s %9s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (Operation operation : Operation.values()) {
+            int type = operation.ordinal();
+            int count = counts[type];
+            if (count == 0) {
+                continue;
+            }
+            long[] sorted = Arrays.copyOf(latencies[type], count);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long latency : sorted) {
+                total += latency;
+            }
+            out.printf("%-10s %9d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", operation.keyword, count,
+                    total / 1e3 / count, percentile(sorted, 50) / 1e3, percentile(sorted, 90) / 1e3,
+                    percentile(sorted, 99) / 1e3, percentile(sorted, 99.9) / 1e3, sorted[count - 1] / 1e3);
+        }
+        if (skipped > 0) {
+            out.printf("%d updates and deletes skipped on an empty repository%n", skipped);
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(1, rank) - 1];
+    }
+
+    /**
+     * Generates a random trace: mostly edits, with a filter change or summary every few
+     * operations, as a user browsing and editing would produce. The same seed always gives the
+     * same trace.
+     */
+    public static class Generator implements Trace {
+        private static final long FIRST_DAY = LocalDate.of(2021, 1, 1).toEpochDay();
+        private static final int DAYS = 3 * 365;
+
+        private final Random random;
+        private final int count;
+        private final StringBuilder line = new StringBuilder();
+        private int generated;
+
+        public Generator(long seed, int count) {
+            this.random = new Random(seed);
+            this.count = count;
+        }
+
+        @Override
+        public String next() {
+            if (generated == count) {
+                return null;
+            }
+            generated++;
+
+            line.setLength(0);
+            int kind = random.nextInt(100);
+            if (kind < 40) {
+                appendExpense(line.append("add\t"));
+            } else if (kind < 65) {
+                appendExpense(line.append("update\t").append(random.nextInt(Integer.MAX_VALUE)).append('\t'));
+            } else if (kind < 75) {
+                line.append("delete\t").append(random.nextInt(Integer.MAX_VALUE));
+            } else if (kind < 80) {
+                line.append("date");
+                if (random.nextInt(10) < 7) {
+                    long start = FIRST_DAY + random.nextInt(DAYS);
+                    EpochDays.format(start, line.append('\t'));
+                    EpochDays.format(start + random.nextInt(90), line.append('\t'));
+                }
+            } else if (kind < 85) {
+                line.append("category");
+                if (random.nextInt(10) < 7) {
+                    line.append('\t').append(category());
+                }
+            } else if (kind < 88) {
+                line.append("search");
+                if (random.nextInt(2) == 0) {
+                    line.append("\texpense ").append(random.nextInt(100));
+                }
+            } else {
+                line.append("summary");
+            }
+            return line.toString();
+        }
+
+        /**
+         * Appends the fields of a random expense to {@code out}.
+         */
+        StringBuilder appendExpense(StringBuilder out) {
+            EpochDays.format(FIRST_DAY + random.nextInt(DAYS), out).append('\t');
+            Money.formatPlain(1 + random.nextInt(50_000), out).append('\t');
+            return out.append(category()).append("\tExpense ").append(random.nextInt(10_000));
+        }
+
+        private String category() {
+            return random.nextInt(100) == 0 ? "Custom " + random.nextInt(20) : CATEGORIES[random.nextInt(CATEGORIES.length)];
+        }
+    }
+
+    /**
+     * Adds {@code count} generated expenses in one batch, before anything is timed.
+     */
+    static void preload(ExpenseRepository repository, long seed, int count) throws IOException {
+        Generator generator = new Generator(seed, 0);
+        ExpenseRepository.Batch batch = repository.newBatch();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            line.setLength(0);
+            batch.insert(parseExpense(generator.appendExpense(line).toString().split("\t", -1), 0));
+        }
+        batch.apply();
+    }
+
+    private static void usage() {
+        System.err.println("Usage: ExpenseReplay (--trace <file> | --generate <operations>) [--preload <expenses>]"
+                + " [--seed <seed>] [--write <file>] [--dir <journal directory>] [--snapshot-interval <records>]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String traceFile = null;
+        String writeFile = null;
+        String directory = null;
+        int operations = -1;
+        int preload = 0;
+        long seed = 1;
+        int snapshotInterval = ExpenseJournal.DEFAULT_SNAPSHOT_INTERVAL;
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                usage();
+            }
+            switch (args[i]) {
+                case "--trace":
+                    traceFile = args[++i];
+                    break;
+                case "--generate":
+                    operations = Integer.parseInt(args[++i]);
+                    break;
+                case "--preload":
+                    preload = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--write":
+                    writeFile = args[++i];
+                    break;
+                case "--dir":
+                    directory = args[++i];
+                    break;
+                case "--snapshot-interval":
+                    snapshotInterval = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    usage();
+            }
+        }
+        if ((traceFile == null) == (operations < 0)) {
+            usage();
+        }
+
+        File journalDirectory = directory != null ? new File(directory) : Files.createTempDirectory("replay").toFile();
+        ExpenseJournal journal = new ExpenseJournal(journalDirectory, snapshotInterval);
+        ExpenseRepository repository = new ExpenseRepository(journal, new ExpenseCategories(CATEGORIES, "None"));
+        repository.load();
+        if (preload > 0) {
+            preload(repository, seed + 1, preload);
+        }
+        ExpenseReplay replay = new ExpenseReplay(repository);
+
+        BufferedReader reader = traceFile != null ? new BufferedReader(new FileReader(traceFile)) : null;
+        Trace trace = reader != null ? reader::readLine : new Generator(seed, operations);
+        Writer writer = writeFile != null ? new FileWriter(writeFile) : null;
+        if (writer != null) {
+            Trace source = trace;
+            trace = () -> {
+                String line = source.next();
+                if (line != null) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                return line;
+            };
+        }
+
+        long start = System.nanoTime();
+        try {
+            replay.run(trace);
+        } finally {
+            journal.close();
+            if (reader != null) {
+                reader.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+            if (directory == null) {
+                for (File file : journalDirectory.listFiles()) {
+                    file.delete();
+                }
+                journalDirectory.delete();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%d expenses, %d shown; replayed in %.1f s%n", repository.getStore().size(),
+                replay.getEngine().size(), elapsed / 1e9);
+        replay.printReport(System.out);
+    }
+}
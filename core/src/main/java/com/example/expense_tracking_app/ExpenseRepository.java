@@ -0,0 +1,789 @@
+package com.example.expense_tracking_app;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * The single in-memory copy of the user's expenses, shared by every screen.
+ * <p>
+ * Screens hand each other expense ids and read and write through the repository, instead of
+ * marshalling expenses and categories into Intent extras. Every change is applied to the store,
+ * its indexes and the journal, and then reported to the registered listeners. Meant to be used
+ * from the main thread only, except for {@link #getSnapshot()}.
+ * <p>
+ * Changes return as soon as they are applied in memory and queued for the journal; the journal
+ * writes them to disk on its own thread. {@link #sync()} tells when they are durable.
+ * <p>
+ * Years older than the journal's hot years are not loaded until asked for with
+ * {@link #prepareYears(int)} and {@link #publishYears(StagedRows)}, or
+ * {@link #loadYears(int, Executor, Executor, Consumer)}. A change that dates an expense into such
+ * a year has to load it first. Renaming a category renames it in them when they are loaded.
+ */
+public class ExpenseRepository {
+    /**
+     * Receives row-level changes. {@link #onRowChanging(int)} is called while the row still
+     * holds its old values, before it is updated or removed.
+     */
+    public interface Listener {
+        void onRowAdded(int row);
+
+        void onRowChanging(int row);
+
+        void onRowUpdated(int row);
+
+        /**
+         * @param movedRow the previous index of the row that was moved into {@code row}, or -1
+         */
+        void onRowRemoved(int row, int movedRow);
+
+        /**
+         * Called before a batch of changes is applied, while every row still holds its old
+         * values.
+         */
+        void onBatchStarting();
+
+        /**
+         * Called once after a batch of changes, instead of a call per row. Row indexes may have
+         * changed arbitrarily. The changes are already in {@link #getSnapshot()}.
+         *
+         * @param updatedIds ids of the expenses that were updated in place
+         */
+        void onBatchApplied(long[] updatedIds);
+
+        /**
+         * Called after a category was renamed or merged into another. No row index changed, but
+         * the category id of some rows did.
+         */
+        void onCategoriesChanged();
+
+        /**
+         * Called after a recurring expense rule was added or removed. No row changed.
+         */
+        void onRecurringChanged();
+    }
+
+    /**
+     * Batches that touch more rows than this rebuild the date and category indexes once instead
+     * of updating them row by row.
+     */
+    private static final int INCREMENTAL_INDEX_LIMIT = 64;
+
+    /**
+     * Collects inserts, updates and deletes and applies them together with {@link #apply()}:
+     * one pass over the store, one journal record and one notification to the listeners.
+     * Later changes to the same expense replace earlier ones.
+     */
+    public class Batch {
+        private final Map<Long, Expense> updates = new LinkedHashMap<>();
+        private final Set<Long> deletes = new LinkedHashSet<>();
+        private final List<Expense> inserts = new ArrayList<>();
+        private boolean applied;
+
+        private Batch() {
+        }
+
+        public Batch insert(Expense expense) {
+            inserts.add(expense);
+            return this;
+        }
+
+        public Batch update(Expense expense) {
+            if (deletes.contains(expense.getId())) {
+                throw new IllegalArgumentException("Expense " + expense.getId() + " is deleted in this batch");
+            }
+            updates.put(expense.getId(), expense);
+            return this;
+        }
+
+        public Batch delete(long id) {
+            updates.remove(id);
+            deletes.add(id);
+            return this;
+        }
+
+        public int size() {
+            return updates.size() + deletes.size() + inserts.size();
+        }
+
+        /**
+         * Applies the batch: deletes first, then updates, then inserts, which get new ids. Every
+         * id is checked before anything is changed. The in-memory changes are kept even if
+         * writing the journal fails.
+         */
+        public void apply() throws IOException {
+            if (applied) {
+                throw new IllegalStateException("Batch already applied");
+            }
+            checkLoaded();
+            for (Expense expense : updates.values()) {
+                checkYear(expense.getDate().toEpochDay());
+            }
+            for (Expense expense : inserts) {
+                checkYear(expense.getDate().toEpochDay());
+            }
+            for (long id : deletes) {
+                checkRow(id);
+            }
+            for (long id : updates.keySet()) {
+                checkRow(id);
+            }
+            applied = true;
+            if (size() == 0) {
+                return;
+            }
+            applyBatch(this);
+        }
+    }
+
+
+    private final ExpenseJournal journal;
+    private final ExpenseCategories categories;
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private ExpenseStore store = new ExpenseStore();
+    private volatile ExpenseStore snapshot = store.snapshot();
+    private final DateIndex dateIndex = new DateIndex();
+    private final CategoryIndex categoryIndex = new CategoryIndex();
+    private TextIndex textIndex;
+    private final ExpenseRollup rollup = new ExpenseRollup();
+    private IOException loadFailure;
+
+    public ExpenseRepository(ExpenseJournal journal, ExpenseCategories categories) {
+        this.journal = journal;
+        this.categories = categories;
+    }
+
+    /**
+     * Replaces the contents of the repository with the expenses in the journal. If the journal
+     * cannot be read the repository is left empty, the error is rethrown, and every change throws
+     * an IOException until a later load succeeds.
+     * <p>
+     * May be called from another thread before the repository is handed to the main thread, as
+     * long as nothing uses it until then.
+     */
+    public void load() throws IOException {
+        store = new ExpenseStore();
+        loadFailure = null;
+        try {
+            journal.load(store);
+        } catch (IOException e) {
+            store = new ExpenseStore();
+            loadFailure = e;
+            throw e;
+        } finally {
+            dateIndex.build(store);
+            categoryIndex.build(store);
+            textIndex = null;
+            rollup.build(store);
+            for (int id = 0; id < store.getCategoryCount(); id++) {
+                if (store.findCategory(store.getCategoryName(id)) == id) {
+                    categories.addCategory(store.getCategoryName(id));
+                }
+            }
+            for (RecurringExpense rule : store.getRecurring()) {
+                categories.addCategory(rule.getCategory());
+            }
+            publish();
+        }
+    }
+
+    /**
+     * @return the error the last {@link #load()} failed with, or null if it succeeded
+     */
+    public IOException getLoadFailure() {
+        return loadFailure;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public ExpenseStore getStore() {
+        return store;
+    }
+
+    /**
+     * May be called from any thread.
+     *
+     * @return a read-only snapshot of the store as of the last completed change, which stays
+     * consistent however the repository changes afterwards
+     */
+    public ExpenseStore getSnapshot() {
+        return snapshot;
+    }
+
+    public ExpenseCategories getCategories() {
+        return categories;
+    }
+
+    public DateIndex getDateIndex() {
+        return dateIndex;
+    }
+
+    public CategoryIndex getCategoryIndex() {
+        return categoryIndex;
+    }
+
+    /**
+     * The text index is only needed once the user searches and costs far more to build than the
+     * other indexes, so it is built off the main thread with {@link #prepareTextIndex()} and
+     * {@link #publishTextIndex(StagedTextIndex)} when first needed. From then on it is kept up to
+     * date, until a change too large to follow drops it.
+     *
+     * @return the text index, or null if it has not been built
+     */
+    public TextIndex getTextIndex() {
+        return textIndex;
+    }
+
+    public ExpenseRollup getRollup() {
+        return rollup;
+    }
+
+    /**
+     * @return a copy of expense {@code id}, or null if there is no such expense
+     */
+    public Expense get(long id) {
+        int row = store.findRow(id);
+        return row < 0 ? null : store.get(row);
+    }
+
+    /**
+     * @return a future that completes once every change made so far is on disk, or fails if any
+     * of them could not be written
+     */
+    public CompletableFuture<Void> sync() {
+        return journal.sync();
+    }
+
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * @return the first year from which every expense is loaded, or {@link Integer#MIN_VALUE}
+     * once every year is
+     */
+    public int getLoadedFromYear() {
+        return journal.getLoadedFromYear();
+    }
+
+    /**
+     * @param category a category, or null for every category
+     * @return the number of expenses in the years that are not loaded
+     */
+    public long getUnloadedCount(String category) {
+        return journal.getUnloadedCount(category);
+    }
+
+    public long getUnloadedTotal(String category) {
+        return journal.getUnloadedTotal(category);
+    }
+
+    /**
+     * Loads the years from {@code fromYear} on, if they are not loaded yet: prepares them on
+     * {@code worker}, then publishes them and calls {@code callback} on {@code mainThread}, with
+     * the exception if they could not be read, or null. Must be called from the main thread.
+     */
+    public void loadYears(int fromYear, Executor worker, Executor mainThread, Consumer<IOException> callback) {
+        if (fromYear >= journal.getLoadedFromYear()) {
+            callback.accept(null);
+            return;
+        }
+        worker.execute(() -> {
+            StagedRows years;
+            try {
+                years = prepareYears(fromYear);
+            } catch (IOException e) {
+                mainThread.execute(() -> callback.accept(e));
+                return;
+            }
+            mainThread.execute(() -> {
+                if (publishYears(years)) {
+                    callback.accept(null);
+                } else {
+                    loadYears(fromYear, worker, mainThread, callback);
+                }
+            });
+        });
+    }
+
+    /**
+     * Refuses a change that dates an expense into a year that is not loaded: the year's segment
+     * is only rewritten from the store once it is.
+     */
+    private void checkYear(long epochDay) {
+        int year = EpochDays.year(epochDay);
+        if (year < journal.getLoadedFromYear()) {
+            throw new IllegalStateException("Year " + year + " is not loaded");
+        }
+    }
+
+    /**
+     * Adds {@code expense} and gives it a new id. The in-memory change is kept even if writing
+     * the journal fails.
+     *
+     * @return the id of the new expense
+     */
+    public long insert(Expense expense) throws IOException {
+        checkLoaded();
+        checkYear(expense.getDate().toEpochDay());
+        int row = add(expense, true);
+        for (Listener listener : listeners) {
+            listener.onRowAdded(row);
+        }
+
+        publish();
+        journal.insert(expense);
+        snapshotIfNeeded();
+        return expense.getId();
+    }
+
+    /**
+     * Replaces the expense with the same id as {@code expense}. The in-memory change is kept even
+     * if writing the journal fails.
+     */
+    public void update(Expense expense) throws IOException {
+        checkLoaded();
+        checkYear(expense.getDate().toEpochDay());
+        int row = checkRow(expense.getId());
+        for (Listener listener : listeners) {
+            listener.onRowChanging(row);
+        }
+        set(row, expense, true);
+        for (Listener listener : listeners) {
+            listener.onRowUpdated(row);
+        }
+
+        publish();
+        journal.update(expense);
+        snapshotIfNeeded();
+    }
+
+    /**
+     * Removes expense {@code id}. The in-memory change is kept even if writing the journal fails.
+     */
+    public void delete(long id) throws IOException {
+        checkLoaded();
+        int row = checkRow(id);
+        for (Listener listener : listeners) {
+            listener.onRowChanging(row);
+        }
+        int moved = remove(row, true);
+        for (Listener listener : listeners) {
+            listener.onRowRemoved(row, moved);
+        }
+
+        publish();
+        journal.delete(id);
+        snapshotIfNeeded();
+    }
+
+    /**
+     * Renames category {@code from} to {@code to} for every expense. If {@code to} is already
+     * used the two categories are merged. The rows themselves are not touched: the store renames
+     * its dictionary entry, and only the category index and rollup merge their entries. Years
+     * that are not loaded are renamed by the journal as they are read.
+     */
+    public void renameCategory(String from, String to) throws IOException {
+        checkLoaded();
+        categories.renameCategory(from, to);
+        int fromId = store.findCategory(from);
+        if (from.equals(to) || fromId < 0 && !isRecurringCategory(from) && journal.getUnloadedCount(from) == 0) {
+            return;
+        }
+        int toId = store.renameCategory(from, to);
+        if (fromId >= 0) {
+            categoryIndex.merge(fromId, toId);
+            rollup.merge(fromId, toId);
+        }
+        for (Listener listener : listeners) {
+            listener.onCategoriesChanged();
+        }
+
+        publish();
+        journal.renameCategory(from, to);
+        snapshotIfNeeded();
+    }
+
+    private boolean isRecurringCategory(String category) {
+        for (RecurringExpense rule : store.getRecurring()) {
+            if (category.equals(rule.getCategory())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<RecurringExpense> getRecurring() {
+        return store.getRecurring();
+    }
+
+    /**
+     * Adds a recurring expense rule and gives it a new id. Its occurrences are not stored as
+     * rows. The in-memory change is kept even if writing the journal fails.
+     *
+     * @return the id of the new rule
+     */
+    public long addRecurring(RecurringExpense rule) throws IOException {
+        checkLoaded();
+        store.addRecurring(rule);
+        categories.addCategory(rule.getCategory());
+        for (Listener listener : listeners) {
+            listener.onRecurringChanged();
+        }
+
+        publish();
+        journal.addRecurring(rule);
+        snapshotIfNeeded();
+        return rule.getId();
+    }
+
+    /**
+     * Removes recurring expense rule {@code id}. The in-memory change is kept even if writing
+     * the journal fails.
+     */
+    public void removeRecurring(long id) throws IOException {
+        checkLoaded();
+        if (!store.removeRecurring(id)) {
+            throw new IllegalArgumentException("Unknown recurring expense id " + id);
+        }
+        for (Listener listener : listeners) {
+            listener.onRecurringChanged();
+        }
+
+        publish();
+        journal.removeRecurring(id);
+        snapshotIfNeeded();
+    }
+
+    private void applyBatch(Batch batch) throws IOException {
+        for (Listener listener : listeners) {
+            listener.onBatchStarting();
+        }
+        boolean incremental = batch.size() <= INCREMENTAL_INDEX_LIMIT;
+        if (!incremental) {
+            // Rebuilt from scratch on next use, like after a load.
+            textIndex = null;
+        }
+
+        long[] deletedIds = new long[batch.deletes.size()];
+        int i = 0;
+        for (long id : batch.deletes) {
+            remove(store.findRow(id), incremental);
+            deletedIds[i++] = id;
+        }
+        long[] updatedIds = new long[batch.updates.size()];
+        i = 0;
+        for (Expense expense : batch.updates.values()) {
+            set(store.findRow(expense.getId()), expense, incremental);
+            updatedIds[i++] = expense.getId();
+        }
+        for (Expense expense : batch.inserts) {
+            add(expense, incremental);
+        }
+        if (!incremental) {
+            dateIndex.build(store);
+            categoryIndex.build(store);
+        }
+        publish();
+        for (Listener listener : listeners) {
+            listener.onBatchApplied(updatedIds);
+        }
+
+        journal.batch(deletedIds, new ArrayList<>(batch.updates.values()), batch.inserts);
+        snapshotIfNeeded();
+    }
+
+    /**
+     * Adds {@code expense} to the store and rollup, and to the indexes if {@code indexes} is set.
+     */
+    private int add(Expense expense, boolean indexes) {
+        expense.setId(Expense.NO_ID);
+        int row = store.add(expense);
+        if (indexes) {
+            dateIndex.add(row, store.getEpochDay(row));
+            categoryIndex.add(row, store.getCategoryId(row));
+            if (textIndex != null) {
+                textIndex.add(row, store.getName(row), store.getReason(row), store.getNotes(row));
+            }
+        }
+        rollup.add(store.getEpochDay(row), store.getCategoryId(row), store.getAmount(row));
+        categories.addCategory(expense.getCategory());
+        return row;
+    }
+
+    private void set(int row, Expense expense, boolean indexes) {
+        int previousEpochDay = store.getEpochDay(row);
+        int previousCategoryId = store.getCategoryId(row);
+        String previousName = store.getName(row);
+        String previousReason = store.getReason(row);
+        String previousNotes = store.getNotes(row);
+        rollup.remove(previousEpochDay, previousCategoryId, store.getAmount(row));
+
+        store.set(row, expense);
+        rollup.add(store.getEpochDay(row), store.getCategoryId(row), store.getAmount(row));
+        if (indexes) {
+            dateIndex.update(row, previousEpochDay, store.getEpochDay(row));
+            categoryIndex.update(row, previousCategoryId, store.getCategoryId(row));
+            if (textIndex != null) {
+                textIndex.update(row, previousName, previousReason, previousNotes,
+                        store.getName(row), store.getReason(row), store.getNotes(row));
+            }
+        }
+        categories.addCategory(expense.getCategory());
+    }
+
+    /**
+     * @return the previous index of the row moved into {@code row}, or -1
+     */
+    private int remove(int row, boolean indexes) {
+        int last = store.size() - 1;
+        int epochDay = store.getEpochDay(row);
+        int lastEpochDay = store.getEpochDay(last);
+        int categoryId = store.getCategoryId(row);
+        int lastCategoryId = store.getCategoryId(last);
+        String name = store.getName(row);
+        String reason = store.getReason(row);
+        String notes = store.getNotes(row);
+        String lastName = store.getName(last);
+        String lastReason = store.getReason(last);
+        String lastNotes = store.getNotes(last);
+        rollup.remove(epochDay, categoryId, store.getAmount(row));
+
+        int moved = store.remove(row);
+        if (indexes) {
+            dateIndex.remove(row, epochDay, moved, lastEpochDay);
+            categoryIndex.remove(row, categoryId, moved, lastCategoryId);
+            if (textIndex != null) {
+                textIndex.remove(row, name, reason, notes, moved, lastName, lastReason, lastNotes);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Rows to append to the store, read or imported off the main thread, and the indexes of the
+     * store they make, prepared by {@link #prepareImport(ExpenseStore)} or
+     * {@link #prepareYears(int)} and swapped in by {@link #publishImport(StagedRows)} or
+     * {@link #publishYears(StagedRows)}.
+     */
+    public static final class StagedRows {
+        private final ExpenseStore base;
+        private final ExpenseStore rows;
+        private final int fromYear;
+        private final int imported;
+        private final DateIndex dateIndex = new DateIndex();
+        private final CategoryIndex categoryIndex = new CategoryIndex();
+        private final ExpenseRollup rollup = new ExpenseRollup();
+
+        private StagedRows(ExpenseStore base, ExpenseStore rows, int fromYear, int imported) {
+            this.base = base;
+            this.rows = rows;
+            this.fromYear = fromYear;
+            this.imported = imported;
+            dateIndex.build(rows);
+            categoryIndex.build(rows);
+            rollup.build(rows);
+        }
+
+        /**
+         * @return the number of expenses imported
+         */
+        public int size() {
+            return imported;
+        }
+    }
+
+    /**
+     * Prepares to append every expense in {@code staged} with new ids: copies the current
+     * snapshot, adds the years the staged expenses reach back into and the expenses themselves,
+     * and builds the indexes of the result. May be called from any thread, so the main thread
+     * only has to {@link #publishImport(StagedRows) publish} it.
+     */
+    public StagedRows prepareImport(ExpenseStore staged) throws IOException {
+        int fromYear = Integer.MAX_VALUE;
+        for (int row = 0; row < staged.size(); row++) {
+            fromYear = Math.min(fromYear, EpochDays.year(staged.getEpochDay(row)));
+        }
+        return prepare(fromYear, staged);
+    }
+
+    /**
+     * Prepares to load the years from {@code fromYear} up to the first loaded one, as
+     * {@link #prepareImport(ExpenseStore)} prepares an import. May be called from any thread.
+     */
+    public StagedRows prepareYears(int fromYear) throws IOException {
+        return prepare(fromYear, null);
+    }
+
+    private StagedRows prepare(int fromYear, ExpenseStore staged) throws IOException {
+        checkLoaded();
+        ExpenseStore base = snapshot;
+        int loadedFromYear = journal.getLoadedFromYear();
+        ExpenseStore rows = base.copy();
+        if (fromYear < loadedFromYear) {
+            ExpenseStore years = journal.readYears(fromYear);
+            for (int row = 0; row < years.size(); row++) {
+                if (EpochDays.year(years.getEpochDay(row)) < loadedFromYear) {
+                    rows.add(years.getId(row), years.getName(row), years.getEpochDay(row), years.getAmount(row),
+                            years.getCategory(row), years.getReason(row), years.getNotes(row));
+                }
+            }
+        }
+        for (int row = 0; staged != null && row < staged.size(); row++) {
+            rows.add(staged.getName(row), staged.getEpochDay(row), staged.getAmount(row),
+                    staged.getCategory(row), staged.getReason(row), staged.getNotes(row));
+        }
+        return new StagedRows(base, rows, Math.min(fromYear, loadedFromYear), staged == null ? 0 : staged.size());
+    }
+
+    /**
+     * Appends the rows of an import prepared by {@link #prepareImport(ExpenseStore)} and swaps in
+     * their indexes, then writes the result as a single snapshot rather than a journal record per
+     * expense.
+     *
+     * @return false, changing nothing, if the repository changed since {@code staged} was
+     * prepared; it has to be prepared again
+     */
+    public boolean publishImport(StagedRows staged) throws IOException {
+        if (!publishRows(staged)) {
+            return false;
+        }
+        journal.snapshot(snapshot);
+        return true;
+    }
+
+    /**
+     * Appends the years read by {@link #prepareYears(int)} and swaps in their indexes. They are
+     * not journaled, since they were read from it.
+     *
+     * @return false, changing nothing, if the repository changed since {@code staged} was
+     * prepared; it has to be prepared again
+     */
+    public boolean publishYears(StagedRows staged) {
+        return publishRows(staged);
+    }
+
+    private boolean publishRows(StagedRows staged) {
+        if (staged.base != snapshot) {
+            return false;
+        }
+        for (Listener listener : listeners) {
+            listener.onBatchStarting();
+        }
+        ExpenseStore rows = staged.rows;
+        for (int row = store.size(); row < rows.size(); row++) {
+            store.add(rows.getId(row), rows.getName(row), rows.getEpochDay(row), rows.getAmount(row),
+                    rows.getCategory(row), rows.getReason(row), rows.getNotes(row));
+        }
+        if (staged.fromYear < journal.getLoadedFromYear()) {
+            journal.setLoadedFromYear(staged.fromYear);
+        }
+        for (int id = 0; id < rows.getCategoryCount(); id++) {
+            if (rows.findCategory(rows.getCategoryName(id)) == id) {
+                categories.addCategory(rows.getCategoryName(id));
+            }
+        }
+        dateIndex.replaceWith(staged.dateIndex);
+        categoryIndex.replaceWith(staged.categoryIndex);
+        textIndex = null;
+        rollup.replaceWith(staged.rollup);
+        publish();
+        for (Listener listener : listeners) {
+            listener.onBatchApplied(new long[0]);
+        }
+        return true;
+    }
+
+    /**
+     * Appends every expense in {@code staged} with new ids on the calling thread, as
+     * {@link #prepareImport(ExpenseStore)} and {@link #publishImport(StagedRows)} do together.
+     *
+     * @return the number of expenses added
+     */
+    public int importExpenses(ExpenseStore staged) throws IOException {
+        StagedRows prepared = prepareImport(staged);
+        publishImport(prepared);
+        return prepared.size();
+    }
+
+    /**
+     * Refuses changes after a failed load: the journal is closed, and writing over it would lose
+     * the expenses that could not be read.
+     */
+    private void checkLoaded() throws IOException {
+        if (loadFailure != null) {
+            throw new IOException("Expenses were not loaded", loadFailure);
+        }
+    }
+
+    /**
+     * A text index built by {@link #prepareTextIndex()} for the snapshot it was built from.
+     */
+    public static final class StagedTextIndex {
+        private final ExpenseStore base;
+        private final TextIndex index = new TextIndex();
+
+        private StagedTextIndex(ExpenseStore base) {
+            this.base = base;
+            index.build(base);
+        }
+    }
+
+    /**
+     * Builds the text index of the current snapshot. May be called from any thread, so the main
+     * thread only has to {@link #publishTextIndex(StagedTextIndex) publish} it.
+     */
+    public StagedTextIndex prepareTextIndex() {
+        return new StagedTextIndex(snapshot);
+    }
+
+    /**
+     * Swaps in a text index built by {@link #prepareTextIndex()}.
+     *
+     * @return false, changing nothing, if the repository changed since {@code staged} was
+     * prepared; it has to be prepared again
+     */
+    public boolean publishTextIndex(StagedTextIndex staged) {
+        if (staged.base != snapshot) {
+            return false;
+        }
+        textIndex = staged.index;
+        return true;
+    }
+
+    private void publish() {
+        snapshot = store.snapshot();
+    }
+
+    /**
+     * An expense in a year that is not loaded is unknown until the year is loaded.
+     */
+    private int checkRow(long id) {
+        int row = store.findRow(id);
+        if (row < 0) {
+            throw new IllegalArgumentException("Unknown expense id " + id);
+        }
+        return row;
+    }
+
+    private void snapshotIfNeeded() throws IOException {
+        if (journal.shouldSnapshot()) {
+            // Written on the journal thread, from the published copy the store no longer changes.
+            journal.snapshot(snapshot);
+        }
+    }
+}
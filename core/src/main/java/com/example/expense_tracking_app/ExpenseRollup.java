@@ -0,0 +1,215 @@
+package com.example.expense_tracking_app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running totals and counts by epoch day: one tree across all categories and one per category
+ * id. Each tree only keeps blocks of {@value #BLOCK_DAYS} days that hold expenses, each block a
+ * Fenwick tree, so an outlier date costs one block rather than a tree spanning every day
+ * between it and the rest. Point updates are O(log b), range queries O(log b) plus one step per
+ * block inside the range, where b is the block size.
+ */
+public class ExpenseRollup {
+    public static final int ALL_CATEGORIES = -1;
+
+    private static final int BLOCK_BITS = 8;
+    static final int BLOCK_DAYS = 1 << BLOCK_BITS;
+
+    private Tree all = new Tree();
+    private final List<Tree> categories = new ArrayList<>();
+
+    public void build(ExpenseStore store) {
+        all.clear();
+        categories.clear();
+        for (int row = 0; row < store.size(); row++) {
+            add(store.getEpochDay(row), store.getCategoryId(row), store.getAmount(row));
+        }
+    }
+
+    /**
+     * Takes over the totals of {@code other}, built for the same expenses on another thread.
+     */
+    public void replaceWith(ExpenseRollup other) {
+        all = other.all;
+        categories.clear();
+        categories.addAll(other.categories);
+    }
+
+    public void add(long epochDay, int categoryId, long amount) {
+        all.update(epochDay, amount, 1);
+        category(categoryId).update(epochDay, amount, 1);
+    }
+
+    public void remove(long epochDay, int categoryId, long amount) {
+        all.update(epochDay, -amount, -1);
+        category(categoryId).update(epochDay, -amount, -1);
+    }
+
+    /**
+     * Moves the totals of {@code fromId} into {@code toId}, in time proportional to the number of
+     * blocks of {@code fromId}. Fenwick trees are linear, so a merged block is the element-wise
+     * sum.
+     */
+    public void merge(int fromId, int toId) {
+        Tree from = tree(fromId);
+        if (fromId == toId || from == null) {
+            return;
+        }
+        category(toId).add(from);
+        from.clear();
+    }
+
+    /**
+     * @param categoryId a category id, or {@link #ALL_CATEGORIES}
+     * @return the total amount of expenses dated within {@code [startEpochDay, endEpochDay]}
+     */
+    public long getTotal(long startEpochDay, long endEpochDay, int categoryId) {
+        Tree tree = tree(categoryId);
+        return tree == null ? 0 : tree.sum(startEpochDay, endEpochDay, false);
+    }
+
+    /**
+     * @param categoryId a category id, or {@link #ALL_CATEGORIES}
+     * @return the number of expenses dated within {@code [startEpochDay, endEpochDay]}
+     */
+    public long getCount(long startEpochDay, long endEpochDay, int categoryId) {
+        Tree tree = tree(categoryId);
+        return tree == null ? 0 : tree.sum(startEpochDay, endEpochDay, true);
+    }
+
+    /**
+     * @return the number of blocks held across all trees
+     */
+    int getBlockCount() {
+        int count = all.blocks.size();
+        for (Tree tree : categories) {
+            count += tree.blocks.size();
+        }
+        return count;
+    }
+
+    private Tree tree(int categoryId) {
+        if (categoryId == ALL_CATEGORIES) {
+            return all;
+        }
+        if (categoryId < 0 || categoryId >= categories.size()) {
+            return null;
+        }
+        return categories.get(categoryId);
+    }
+
+    private Tree category(int categoryId) {
+        while (categories.size() <= categoryId) {
+            categories.add(new Tree());
+        }
+        return categories.get(categoryId);
+    }
+
+    private static final class Tree {
+        private final TreeMap<Long, Block> blocks = new TreeMap<>();
+
+        void clear() {
+            blocks.clear();
+        }
+
+        void add(Tree other) {
+            for (Map.Entry<Long, Block> entry : other.blocks.entrySet()) {
+                Block block = blocks.get(entry.getKey());
+                if (block == null) {
+                    blocks.put(entry.getKey(), entry.getValue().copy());
+                } else {
+                    block.add(entry.getValue());
+                }
+            }
+        }
+
+        void update(long epochDay, long amount, int count) {
+            Long key = epochDay >> BLOCK_BITS;
+            Block block = blocks.get(key);
+            if (block == null) {
+                block = new Block();
+                blocks.put(key, block);
+            }
+            block.update((int) (epochDay & BLOCK_DAYS - 1), amount, count);
+            if (block.count == 0) {
+                blocks.remove(key);
+            }
+        }
+
+        long sum(long start, long end, boolean count) {
+            if (end < start) {
+                return 0;
+            }
+            long firstKey = start >> BLOCK_BITS;
+            long lastKey = end >> BLOCK_BITS;
+            long sum = 0;
+            for (Map.Entry<Long, Block> entry : blocks.subMap(firstKey, true, lastKey, true).entrySet()) {
+                long key = entry.getKey();
+                int from = key == firstKey ? (int) (start & BLOCK_DAYS - 1) : 0;
+                int to = key == lastKey ? (int) (end & BLOCK_DAYS - 1) : BLOCK_DAYS - 1;
+                sum += entry.getValue().sum(from, to, count);
+            }
+            return sum;
+        }
+    }
+
+    private static final class Block {
+        private final long[] totals;
+        private final long[] counts;
+        private long total;
+        private long count;
+
+        Block() {
+            this(new long[BLOCK_DAYS + 1], new long[BLOCK_DAYS + 1]);
+        }
+
+        private Block(long[] totals, long[] counts) {
+            this.totals = totals;
+            this.counts = counts;
+        }
+
+        Block copy() {
+            Block copy = new Block(totals.clone(), counts.clone());
+            copy.total = total;
+            copy.count = count;
+            return copy;
+        }
+
+        void add(Block other) {
+            for (int i = 1; i <= BLOCK_DAYS; i++) {
+                totals[i] += other.totals[i];
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            count += other.count;
+        }
+
+        void update(int index, long amount, int count) {
+            for (int i = index + 1; i <= BLOCK_DAYS; i += i & -i) {
+                totals[i] += amount;
+                counts[i] += count;
+            }
+            this.total += amount;
+            this.count += count;
+        }
+
+        long sum(int from, int to, boolean count) {
+            if (from == 0 && to == BLOCK_DAYS - 1) {
+                return count ? this.count : total;
+            }
+            long[] tree = count ? counts : totals;
+            return prefix(tree, to) - prefix(tree, from - 1);
+        }
+
+        private static long prefix(long[] tree, int index) {
+            long sum = 0;
+            for (int i = index + 1; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,806 @@
+package com.example.expense_tracking_app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The compacted form of the journal: one segment file per year, holding that year's expenses
+ * in the list's order, by date and then name, and a manifest listing the segments with their
+ * row counts and totals.
+ * <p>
+ * {@link #compact} only rewrites the years whose rows changed since the manifest was written,
+ * found by comparing a fingerprint of each year's rows, so a compaction after a day of edits
+ * writes a year or two however long the history is. Segments of cold years are stored as
+ * deflated blocks.
+ * <p>
+ * The recent years, which are loaded on every start, are stored in a fixed layout that is
+ * memory-mapped instead of read: a header, then the ids, amounts, {@link NameKeys name keys},
+ * dates and category indexes as columns, the heap offsets of each row's name, reason and notes,
+ * the segment's categories, and the string heap. Loading copies the numeric columns into the
+ * store and leaves the text in the file as {@link MappedText}, so a start decodes no text until
+ * rows are displayed. The columns are checksummed; the heap is not, since checking it would read
+ * all of it.
+ * <p>
+ * A compaction writes new segment files next to the old ones and then replaces the manifest,
+ * so a crash leaves either the old manifest and its segments or the new ones. Files no manifest
+ * lists are deleted by the next compaction.
+ */
+class ExpenseSegments {
+    static final String DIRECTORY_NAME = "segments";
+
+    private static final String MANIFEST_FILE_NAME = "manifest";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int MANIFEST_MAGIC = 0x4558534d;
+    private static final int SEGMENT_MAGIC = 0x45585347;
+    private static final int MANIFEST_VERSION = 2;
+    private static final int SEGMENT_VERSION = 1;
+
+    private static final int LAYOUT_DEFLATED_BLOCKS = 1;
+    private static final int LAYOUT_COLUMNS = 2;
+    private static final int COLUMNS_HEADER_SIZE = 32;
+
+    private static final int BLOCK_ROWS = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A year's segment as listed in the manifest, with the count and total of each category so
+     * summaries can include years that are not loaded.
+     * <p>
+     * Renaming a category does not rewrite the segments of years that are not loaded: the
+     * manifest lists their categories under the new names, next to the names in the file, and
+     * {@link #read} renames the rows as it adds them. Once the year is loaded its rows no longer
+     * match the fingerprint, so the next compaction writes it under the new names.
+     */
+    static final class Segment {
+        final int year;
+        final long generation;
+        final int rows;
+        final long fingerprint;
+        final boolean compressed;
+        final String[] categories;
+        /** The names of {@link #categories} in the segment file, the same array unless renamed. */
+        final String[] storedCategories;
+        final int[] counts;
+        final long[] totals;
+
+        Segment(int year, long generation, int rows, long fingerprint, boolean compressed, String[] categories,
+                String[] storedCategories, int[] counts, long[] totals) {
+            this.year = year;
+            this.generation = generation;
+            this.rows = rows;
+            this.fingerprint = fingerprint;
+            this.compressed = compressed;
+            this.categories = categories;
+            this.storedCategories = storedCategories;
+            this.counts = counts;
+            this.totals = totals;
+        }
+
+        String getFileName() {
+            return getFileName(year, generation);
+        }
+
+        static String getFileName(int year, long generation) {
+            return year + "-" + generation + SEGMENT_SUFFIX;
+        }
+
+        /**
+         * @param category a category, or null for all of them
+         */
+        long getCount(String category) {
+            long count = 0;
+            for (int i = 0; i < categories.length; i++) {
+                if (category == null || category.equals(categories[i])) {
+                    count += counts[i];
+                }
+            }
+            return count;
+        }
+
+        long getTotal(String category) {
+            long total = 0;
+            for (int i = 0; i < categories.length; i++) {
+                if (category == null || category.equals(categories[i])) {
+                    total += totals[i];
+                }
+            }
+            return total;
+        }
+
+        /**
+         * @return this segment with category {@code from} listed as {@code to}, or this segment
+         * if it has no such category
+         */
+        Segment renameCategory(String from, String to) {
+            String[] renamed = null;
+            for (int i = 0; i < categories.length; i++) {
+                if (from.equals(categories[i])) {
+                    if (renamed == null) {
+                        renamed = categories.clone();
+                    }
+                    renamed[i] = to;
+                }
+            }
+            return renamed == null ? this : new Segment(year, generation, rows, fingerprint, compressed, renamed,
+                    storedCategories, counts, totals);
+        }
+
+        boolean isSameFile(Segment other) {
+            return year == other.year && generation == other.generation;
+        }
+    }
+
+    static final class Manifest {
+        final long epoch;
+        final long nextId;
+        final List<RecurringExpense> recurring;
+        /** Sorted by year. */
+        final Segment[] segments;
+
+        Manifest(long epoch, long nextId, List<RecurringExpense> recurring, Segment[] segments) {
+            this.epoch = epoch;
+            this.nextId = nextId;
+            this.recurring = recurring;
+            this.segments = segments;
+        }
+
+        /**
+         * @return the earliest year with a segment, or {@link Integer#MAX_VALUE} if there is none
+         */
+        int getFirstYear() {
+            return segments.length == 0 ? Integer.MAX_VALUE : segments[0].year;
+        }
+
+        /**
+         * @return this manifest with category {@code from} renamed to {@code to} in the segments
+         * of the years before {@code beforeYear}
+         */
+        Manifest renameCategory(String from, String to, int beforeYear) {
+            Segment[] renamed = segments.clone();
+            for (int i = 0; i < renamed.length && renamed[i].year < beforeYear; i++) {
+                renamed[i] = renamed[i].renameCategory(from, to);
+            }
+            return new Manifest(epoch, nextId, recurring, renamed);
+        }
+
+        /**
+         * @return this manifest with the category names {@code other} lists for the segment files
+         * both list, which differ only by renames
+         */
+        Manifest withCategoriesOf(Manifest other) {
+            if (other == null) {
+                return this;
+            }
+            Segment[] named = segments.clone();
+            for (int i = 0; i < named.length; i++) {
+                for (Segment segment : other.segments) {
+                    if (segment.isSameFile(named[i])) {
+                        named[i] = segment;
+                        break;
+                    }
+                }
+            }
+            return new Manifest(epoch, nextId, recurring, named);
+        }
+    }
+
+    private final File directory;
+
+    ExpenseSegments(File journalDirectory) {
+        this.directory = new File(journalDirectory, DIRECTORY_NAME);
+    }
+
+    /**
+     * @return the manifest, or null if nothing has been compacted yet
+     */
+    Manifest readManifest() throws IOException {
+        File file = new File(directory, MANIFEST_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            int version = checkHeader(in, MANIFEST_MAGIC, MANIFEST_VERSION);
+            long epoch = in.readLong();
+            long nextId = in.readLong();
+            int ruleCount = in.readInt();
+            List<RecurringExpense> recurring = new ArrayList<>(ruleCount);
+            for (int i = 0; i < ruleCount; i++) {
+                recurring.add(ExpenseJournal.readRecurring(in));
+            }
+            Segment[] segments = new Segment[in.readInt()];
+            for (int i = 0; i < segments.length; i++) {
+                int year = in.readInt();
+                long generation = in.readLong();
+                int rows = in.readInt();
+                long fingerprint = in.readLong();
+                boolean compressed = in.readBoolean();
+                int categoryCount = in.readInt();
+                String[] categories = new String[categoryCount];
+                String[] storedCategories = categories;
+                int[] counts = new int[categoryCount];
+                long[] totals = new long[categoryCount];
+                for (int c = 0; c < categoryCount; c++) {
+                    categories[c] = ExpenseJournal.readString(in);
+                    counts[c] = in.readInt();
+                    totals[c] = in.readLong();
+                }
+                // Version 1 manifests have no renamed categories.
+                if (version > 1 && in.readBoolean()) {
+                    storedCategories = new String[categoryCount];
+                    for (int c = 0; c < categoryCount; c++) {
+                        storedCategories[c] = ExpenseJournal.readString(in);
+                    }
+                }
+                segments[i] = new Segment(year, generation, rows, fingerprint, compressed, categories, storedCategories,
+                        counts, totals);
+            }
+            return new Manifest(epoch, nextId, recurring, segments);
+        }
+    }
+
+    /**
+     * Adds the rows of {@code segment} to {@code store}, keeping their ids, under the category
+     * names the manifest lists. May be called from any thread, since segment files are never
+     * modified once written.
+     */
+    void read(Segment segment, ExpenseStore store) throws IOException {
+        File file = new File(directory, segment.getFileName());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            checkHeader(in, SEGMENT_MAGIC, SEGMENT_VERSION);
+            if (in.readInt() != segment.year) {
+                throw new IOException("Segment " + file + " holds another year");
+            }
+            int rows = in.readInt();
+            int layout = in.readInt();
+            if (layout == LAYOUT_COLUMNS) {
+                // The mapping stays valid once the channel is closed, and once the file is deleted.
+                readColumns(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), rows, segment, store);
+            } else if (layout == LAYOUT_DEFLATED_BLOCKS) {
+                readBlocks(file, in, rows, segment, store);
+            } else {
+                throw new IOException("Unknown layout " + layout + " of segment " + file);
+            }
+        }
+    }
+
+    private static void readColumns(File file, ByteBuffer map, int rows, Segment segment, ExpenseStore store) throws IOException {
+        int categoryCount = map.getInt(20);
+        long amountsAt = COLUMNS_HEADER_SIZE + rows * 8L;
+        long nameKeysAt = amountsAt + rows * 8L;
+        long daysAt = nameKeysAt + rows * 16L;
+        long categoriesAt = daysAt + rows * 4L;
+        long textAt = categoriesAt + rows * 4L;
+        long categoryNamesAt = textAt + rows * 4L * MappedText.FIELDS;
+        long heapAt = categoryNamesAt + categoryCount * 4L;
+        if (rows < 0 || categoryCount < 0 || heapAt > map.limit()) {
+            throw new IOException("Segment " + file + " is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(slice(map, COLUMNS_HEADER_SIZE, heapAt));
+        if ((int) crc.getValue() != map.getInt(24)) {
+            throw new IOException("Corrupt columns in segment " + file);
+        }
+
+        // The file lists its categories in the manifest's order, so they need not be decoded.
+        String[] categories = segment.categories;
+        if (categoryCount != categories.length) {
+            throw new IOException("Segment " + file + " does not match the manifest");
+        }
+        ByteBuffer heap = slice(map, heapAt, map.limit());
+        LongBuffer ids = slice(map, COLUMNS_HEADER_SIZE, amountsAt).asLongBuffer();
+        LongBuffer amounts = slice(map, amountsAt, daysAt).asLongBuffer();
+        IntBuffer days = slice(map, daysAt, categoriesAt).asIntBuffer();
+        IntBuffer categoryIndexes = slice(map, categoriesAt, textAt).asIntBuffer();
+        IntBuffer offsets = slice(map, textAt, categoryNamesAt).asIntBuffer();
+        LongBuffer nameKeys = slice(map, nameKeysAt, daysAt).asLongBuffer();
+        MappedText text = new MappedText(offsets, nameKeys, heap);
+        for (int i = 0; i < rows; i++) {
+            store.add(ids.get(i), days.get(i), amounts.get(i), categories[categoryIndexes.get(i)], text, i);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long from, long to) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit((int) to);
+        slice.position((int) from);
+        return slice.slice();
+    }
+
+    private static void readBlocks(File file, DataInputStream in, int rows, Segment segment, ExpenseStore store) throws IOException {
+        Map<String, String> renamed = new HashMap<>();
+        for (int c = 0; c < segment.categories.length; c++) {
+            renamed.put(segment.storedCategories[c], segment.categories[c]);
+        }
+        int blocks = in.readInt();
+        Inflater inflater = new Inflater();
+        CRC32 crc = new CRC32();
+        try {
+            for (int block = 0; block < blocks; block++) {
+                int blockRows = in.readInt();
+                byte[] raw = new byte[in.readInt()];
+                int checksum = in.readInt();
+                byte[] stored = new byte[in.readInt()];
+                in.readFully(stored);
+                inflater.reset();
+                inflater.setInput(stored);
+                if (inflater.inflate(raw) != raw.length || !inflater.finished()) {
+                    throw new IOException("Corrupt block in segment " + file);
+                }
+                crc.reset();
+                crc.update(raw, 0, raw.length);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("Corrupt block in segment " + file);
+                }
+
+                BlockReader rowsIn = new BlockReader(raw);
+                for (int i = 0; i < blockRows; i++) {
+                    long id = rowsIn.readLong();
+                    String name = rowsIn.readString();
+                    int epochDay = rowsIn.readInt();
+                    long amount = rowsIn.readLong();
+                    String category = rowsIn.readString();
+                    store.add(id, name, epochDay, amount, renamed.getOrDefault(category, category),
+                            rowsIn.readString(), rowsIn.readString());
+                }
+                rows -= blockRows;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block in segment " + file, e);
+        } finally {
+            inflater.end();
+        }
+        if (rows != 0) {
+            throw new IOException("Segment " + file + " is missing rows");
+        }
+    }
+
+    /**
+     * Writes the rows of {@code store} as segments and replaces the manifest. Years before
+     * {@code loadedFromYear} are not in the store, so their segments are kept as listed in
+     * {@code previous}. {@code store} must not change while this runs.
+     *
+     * @param previous       the current manifest, or null
+     * @param coldBeforeYear the first year that is not compressed
+     * @return the new manifest
+     */
+    Manifest compact(Manifest previous, ExpenseStore store, int loadedFromYear, int coldBeforeYear, long epoch) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        // Group the rows by year with a counting sort.
+        int size = store.size();
+        int[] years = new int[size];
+        int firstYear = Integer.MAX_VALUE;
+        int lastYear = Integer.MIN_VALUE;
+        for (int row = 0; row < size; row++) {
+            int year = EpochDays.year(store.getEpochDay(row));
+            years[row] = year;
+            firstYear = Math.min(firstYear, year);
+            lastYear = Math.max(lastYear, year);
+        }
+        if (size > 0 && firstYear < loadedFromYear) {
+            throw new IOException("The store holds rows of " + firstYear + ", which is not loaded");
+        }
+        int yearCount = size == 0 ? 0 : lastYear - firstYear + 1;
+        int[] starts = new int[yearCount + 1];
+        for (int row = 0; row < size; row++) {
+            starts[years[row] - firstYear + 1]++;
+        }
+        for (int i = 0; i < yearCount; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] rowsByYear = new int[size];
+        int[] next = Arrays.copyOf(starts, yearCount);
+        for (int row = 0; row < size; row++) {
+            rowsByYear[next[years[row] - firstYear]++] = row;
+        }
+
+        Map<Integer, Segment> previousSegments = new HashMap<>();
+        List<Segment> segments = new ArrayList<>();
+        if (previous != null) {
+            for (Segment segment : previous.segments) {
+                if (segment.year < loadedFromYear) {
+                    segments.add(segment);
+                } else {
+                    previousSegments.put(segment.year, segment);
+                }
+            }
+        }
+
+        for (int i = 0; i < yearCount; i++) {
+            int count = starts[i + 1] - starts[i];
+            if (count == 0) {
+                continue;
+            }
+            int year = firstYear + i;
+            int[] rows = Arrays.copyOfRange(rowsByYear, starts[i], starts[i + 1]);
+            long fingerprint = count;
+            for (int row : rows) {
+                fingerprint += fingerprint(store, row);
+            }
+            boolean compressed = year < coldBeforeYear;
+            Segment unchanged = previousSegments.get(year);
+            if (unchanged != null && unchanged.rows == count && unchanged.fingerprint == fingerprint
+                    && unchanged.compressed == compressed) {
+                segments.add(unchanged);
+            } else {
+                segments.add(write(store, year, rows, fingerprint, compressed, epoch));
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(a.year, b.year));
+
+        Manifest manifest = new Manifest(epoch, store.getNextId(), store.getRecurring(), segments.toArray(new Segment[0]));
+        writeManifest(manifest);
+        deleteUnlisted(manifest);
+        return manifest;
+    }
+
+    private Segment write(ExpenseStore store, int year, int[] rows, long fingerprint, boolean compressed, long generation) throws IOException {
+        // In the default display order, so a store loaded from segments is already sorted for the
+        // list.
+        Rows.sort(rows, rows.length, (a, b) -> {
+            int dateComparison = Integer.compare(store.getEpochDay(a), store.getEpochDay(b));
+            if (dateComparison != 0) {
+                return dateComparison;
+            }
+            int nameComparison = store.compareNames(a, b);
+            return nameComparison != 0 ? nameComparison : Long.compare(store.getId(a), store.getId(b));
+        });
+
+        Map<String, Integer> categoryIndexes = new HashMap<>();
+        List<String> categories = new ArrayList<>();
+        int[] counts = new int[8];
+        long[] totals = new long[8];
+        int[] rowCategories = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            String category = store.getCategory(rows[i]);
+            Integer index = categoryIndexes.get(category);
+            if (index == null) {
+                index = categories.size();
+                categoryIndexes.put(category, index);
+                categories.add(category);
+                if (index == counts.length) {
+                    counts = Arrays.copyOf(counts, index * 2);
+                    totals = Arrays.copyOf(totals, index * 2);
+                }
+            }
+            counts[index]++;
+            totals[index] += store.getAmount(rows[i]);
+            rowCategories[i] = index;
+        }
+
+        File file = new File(directory, Segment.getFileName(year, generation));
+        FileOutputStream fileOut = new FileOutputStream(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE))) {
+            if (compressed) {
+                writeBlocks(out, store, year, rows);
+            } else {
+                writeColumns(out, store, year, rows, rowCategories, categories);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        int categoryCount = categories.size();
+        String[] names = categories.toArray(new String[0]);
+        return new Segment(year, generation, rows.length, fingerprint, compressed, names, names,
+                Arrays.copyOf(counts, categoryCount), Arrays.copyOf(totals, categoryCount));
+    }
+
+    private static void writeColumns(DataOutputStream out, ExpenseStore store, int year, int[] rows, int[] rowCategories,
+                                     List<String> categories) throws IOException {
+        Heap heap = new Heap();
+        ByteBuffer columns = ByteBuffer.allocate(rows.length * (8 + 8 + 16 + 4 + 4 + 4 * MappedText.FIELDS) + categories.size() * 4);
+        for (int row : rows) {
+            columns.putLong(store.getId(row));
+        }
+        for (int row : rows) {
+            columns.putLong(store.getAmount(row));
+        }
+        for (int row : rows) {
+            columns.putLong(store.getNameKey(row, 0));
+            columns.putLong(store.getNameKey(row, 1));
+        }
+        for (int row : rows) {
+            columns.putInt(store.getEpochDay(row));
+        }
+        for (int category : rowCategories) {
+            columns.putInt(category);
+        }
+        for (int row : rows) {
+            MappedText text = store.getMappedText(row);
+            if (text != null) {
+                // Copied as stored, so rewriting a year decodes none of its unchanged rows.
+                int index = store.getMappedTextIndex(row);
+                columns.putInt(heap.add(text.getBytes(index, MappedText.NAME)));
+                columns.putInt(heap.add(text.getBytes(index, MappedText.REASON)));
+                columns.putInt(heap.add(text.getBytes(index, MappedText.NOTES)));
+            } else {
+                columns.putInt(heap.add(store.getName(row)));
+                columns.putInt(heap.add(store.getReason(row)));
+                columns.putInt(heap.add(store.getNotes(row)));
+            }
+        }
+        for (String category : categories) {
+            columns.putInt(heap.add(category));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(columns.array(), 0, columns.position());
+
+        out.writeInt(SEGMENT_MAGIC);
+        out.writeInt(SEGMENT_VERSION);
+        out.writeInt(year);
+        out.writeInt(rows.length);
+        out.writeInt(LAYOUT_COLUMNS);
+        out.writeInt(categories.size());
+        out.writeInt((int) crc.getValue());
+        out.writeInt(0);
+        out.write(columns.array(), 0, columns.position());
+        heap.writeTo(out);
+    }
+
+    private static void writeBlocks(DataOutputStream out, ExpenseStore store, int year, int[] rows) throws IOException {
+        out.writeInt(SEGMENT_MAGIC);
+        out.writeInt(SEGMENT_VERSION);
+        out.writeInt(year);
+        out.writeInt(rows.length);
+        out.writeInt(LAYOUT_DEFLATED_BLOCKS);
+        out.writeInt((rows.length + BLOCK_ROWS - 1) / BLOCK_ROWS);
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(BUFFER_SIZE);
+        DataOutputStream rawOut = new DataOutputStream(raw);
+        byte[] deflated = new byte[BUFFER_SIZE];
+        CRC32 crc = new CRC32();
+        Deflater deflater = new Deflater();
+        try {
+            for (int start = 0; start < rows.length; start += BLOCK_ROWS) {
+                int end = Math.min(rows.length, start + BLOCK_ROWS);
+                raw.reset();
+                for (int i = start; i < end; i++) {
+                    int row = rows[i];
+                    ExpenseJournal.writeRow(rawOut, store.getId(row), store.getName(row), store.getEpochDay(row),
+                            store.getAmount(row), store.getCategory(row), store.getReason(row),
+                            store.getNotes(row));
+                }
+                rawOut.flush();
+                byte[] block = raw.toByteArray();
+                crc.reset();
+                crc.update(block, 0, block.length);
+
+                deflater.reset();
+                deflater.setInput(block);
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == deflated.length) {
+                        deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                    }
+                    length += deflater.deflate(deflated, length, deflated.length - length);
+                }
+                out.writeInt(end - start);
+                out.writeInt(block.length);
+                out.writeInt((int) crc.getValue());
+                out.writeInt(length);
+                out.write(deflated, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * The string heap of a columnar segment. Strings written as {@code String}s are stored once
+     * however many rows use them.
+     */
+    private static final class Heap {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> offsets = new HashMap<>();
+
+        int add(String value) throws IOException {
+            if (value == null) {
+                return MappedText.NULL_OFFSET;
+            }
+            Integer offset = offsets.get(value);
+            if (offset == null) {
+                offset = bytes.size();
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+                offsets.put(value, offset);
+            }
+            return offset;
+        }
+
+        /**
+         * @param encoded a string as {@link MappedText#getBytes} returns it, or null
+         */
+        int add(byte[] encoded) {
+            if (encoded == null) {
+                return MappedText.NULL_OFFSET;
+            }
+            int offset = bytes.size();
+            bytes.write(encoded, 0, encoded.length);
+            return offset;
+        }
+
+        void writeTo(DataOutputStream destination) throws IOException {
+            bytes.writeTo(destination);
+        }
+    }
+
+    private void writeManifest(Manifest manifest) throws IOException {
+        File file = new File(directory, MANIFEST_FILE_NAME);
+        File temp = new File(directory, MANIFEST_FILE_NAME + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(MANIFEST_VERSION);
+            out.writeLong(manifest.epoch);
+            out.writeLong(manifest.nextId);
+            out.writeInt(manifest.recurring.size());
+            for (RecurringExpense rule : manifest.recurring) {
+                ExpenseJournal.writeRecurring(out, rule);
+            }
+            out.writeInt(manifest.segments.length);
+            for (Segment segment : manifest.segments) {
+                out.writeInt(segment.year);
+                out.writeLong(segment.generation);
+                out.writeInt(segment.rows);
+                out.writeLong(segment.fingerprint);
+                out.writeBoolean(segment.compressed);
+                out.writeInt(segment.categories.length);
+                for (int c = 0; c < segment.categories.length; c++) {
+                    ExpenseJournal.writeString(out, segment.categories[c]);
+                    out.writeInt(segment.counts[c]);
+                    out.writeLong(segment.totals[c]);
+                }
+                boolean renamed = segment.storedCategories != segment.categories;
+                out.writeBoolean(renamed);
+                for (int c = 0; renamed && c < segment.storedCategories.length; c++) {
+                    ExpenseJournal.writeString(out, segment.storedCategories[c]);
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    private void deleteUnlisted(Manifest manifest) {
+        Set<String> listed = new HashSet<>();
+        for (Segment segment : manifest.segments) {
+            listed.add(segment.getFileName());
+        }
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX) && !listed.contains(name));
+        if (files != null) {
+            for (File file : files) {
+                // Left for the next compaction if it cannot be deleted now.
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * A 64-bit hash of every field of {@code row}. A year's fingerprint is the sum over its rows,
+     * so it does not depend on row order.
+     */
+    private static long fingerprint(ExpenseStore store, int row) {
+        long hash = mix(store.getId(row));
+        hash = mix(hash + store.getEpochDay(row));
+        hash = mix(hash + store.getAmount(row));
+        hash = mix(hash + MappedText.hash(store.getCategory(row)));
+        MappedText text = store.getMappedText(row);
+        if (text != null) {
+            // Hashed from the mapped bytes, which hash like the strings they decode to.
+            int index = store.getMappedTextIndex(row);
+            hash = mix(hash + text.hash(index, MappedText.NAME));
+            hash = mix(hash + text.hash(index, MappedText.REASON));
+            return mix(hash + text.hash(index, MappedText.NOTES));
+        }
+        hash = mix(hash + MappedText.hash(store.getName(row)));
+        hash = mix(hash + MappedText.hash(store.getReason(row)));
+        return mix(hash + MappedText.hash(store.getNotes(row)));
+    }
+
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Reads rows in the format of {@link ExpenseJournal#writeRow} straight from a block, without
+     * a stream per block. Most text is ASCII, whose UTF-8 is its Latin-1, so it is copied into the
+     * string as is.
+     */
+    private static final class BlockReader {
+        private final byte[] bytes;
+        private int position;
+
+        BlockReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readLong() throws IOException {
+            return (long) readInt() << 32 | readInt() & 0xffffffffL;
+        }
+
+        int readInt() throws IOException {
+            check(4);
+            int value = (bytes[position] & 0xff) << 24 | (bytes[position + 1] & 0xff) << 16
+                    | (bytes[position + 2] & 0xff) << 8 | bytes[position + 3] & 0xff;
+            position += 4;
+            return value;
+        }
+
+        String readString() throws IOException {
+            int length = readInt();
+            if (length == -1) {
+                return null;
+            }
+            check(length);
+            int start = position;
+            position += length;
+            for (int i = start; i < position; i++) {
+                if (bytes[i] < 0) {
+                    return new String(bytes, start, length, StandardCharsets.UTF_8);
+                }
+            }
+            return new String(bytes, start, length, StandardCharsets.ISO_8859_1);
+        }
+
+        private void check(int length) throws IOException {
+            if (length < 0 || bytes.length - position < length) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * @return the version of the file, from 1 up to {@code version}
+     */
+    private static int checkHeader(DataInputStream in, int magic, int version) throws IOException {
+        if (in.readInt() != magic) {
+            throw new IOException("Not an expense segment file");
+        }
+        int fileVersion = in.readInt();
+        if (fileVersion < 1 || fileVersion > version) {
+            throw new IOException("Unsupported segment version " + fileVersion);
+        }
+        return fileVersion;
+    }
+}
@@ -0,0 +1,653 @@
+package com.example.expense_tracking_app;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented storage for expenses.
+ * <p>
+ * Every field lives in its own primitive column, split into fixed-size chunks so growing the store
+ * never copies existing rows. Dates are stored as epoch days, costs as {@link Money} minor units and
+ * categories as codes into a dictionary. Each code resolves to a category id through an alias
+ * table, so renaming or merging a category only touches the dictionary, never the rows.
+ * {@link Expense} objects are only created by {@link #get(int)}, for rows that are actually
+ * displayed or edited.
+ * <p>
+ * Each name also gets a {@link NameKeys} collation key, two longs per row, so rows are ordered
+ * by name without comparing strings.
+ * <p>
+ * The text of rows added from a mapped segment stays in the file: such rows point into a
+ * {@link MappedText} until they are next written, and their strings are decoded when read.
+ * <p>
+ * Rows are dense: removing a row moves the last row into its slot, so row indices are not stable.
+ * Every row also carries a stable expense id, which {@link #findRow(long)} maps back to its row.
+ * <p>
+ * {@link #snapshot()} returns a read-only view of the current rows that shares the column chunks
+ * with this store. Chunks are copied on write: after a snapshot, the first change to a chunk
+ * copies it, so snapshots never see later changes and can be read from any thread without locks.
+ */
+public class ExpenseStore {
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private long[][] ids = new long[0][];
+    private int[][] days = new int[0][];
+    private long[][] amounts = new long[0][];
+    private int[][] categories = new int[0][];
+    private String[][] names = new String[0][];
+    private long[][] nameKeys = new long[0][];
+    private String[][] reasons = new String[0][];
+    private String[][] notes = new String[0][];
+    private MappedText[][] texts = new MappedText[0][];
+    private int[][] textIndexes = new int[0][];
+
+    private String[] categoryNames = new String[16];
+    private int[] categoryAliases = new int[16];
+    private int categoryCount;
+    private volatile Map<String, Integer> categoryIds;
+
+    private volatile LongIntMap rowsById;
+    private long nextId = 1;
+
+    /** Replaced rather than modified, so snapshots can share it. */
+    private RecurringExpense[] recurring = new RecurringExpense[0];
+
+    private int size;
+    private int allocatedChunks;
+    private int version;
+
+    /**
+     * Incremented by every snapshot. A chunk may only be written in place if it was allocated or
+     * copied since the last snapshot, that is if its entry here equals {@link #epoch}.
+     */
+    private int[] chunkEpochs = new int[0];
+    private int epoch;
+    private final boolean readOnly;
+
+    public ExpenseStore() {
+        categoryIds = new HashMap<>();
+        rowsById = new LongIntMap();
+        readOnly = false;
+    }
+
+    private ExpenseStore(ExpenseStore source) {
+        ids = Arrays.copyOf(source.ids, source.allocatedChunks);
+        days = Arrays.copyOf(source.days, source.allocatedChunks);
+        amounts = Arrays.copyOf(source.amounts, source.allocatedChunks);
+        categories = Arrays.copyOf(source.categories, source.allocatedChunks);
+        names = Arrays.copyOf(source.names, source.allocatedChunks);
+        nameKeys = Arrays.copyOf(source.nameKeys, source.allocatedChunks);
+        reasons = Arrays.copyOf(source.reasons, source.allocatedChunks);
+        notes = Arrays.copyOf(source.notes, source.allocatedChunks);
+        texts = Arrays.copyOf(source.texts, source.allocatedChunks);
+        textIndexes = Arrays.copyOf(source.textIndexes, source.allocatedChunks);
+        categoryNames = source.categoryNames;
+        categoryAliases = source.categoryAliases;
+        categoryCount = source.categoryCount;
+        nextId = source.nextId;
+        recurring = source.recurring;
+        size = source.size;
+        allocatedChunks = source.allocatedChunks;
+        version = source.version;
+        readOnly = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a number that changes every time a row is added, modified or removed
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a read-only store holding the current rows, safe to read from any thread while
+     * this store keeps being modified. Takes time proportional to the number of chunks, not rows.
+     */
+    public ExpenseStore snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        ExpenseStore snapshot = new ExpenseStore(this);
+        epoch++;
+        return snapshot;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return an independent, modifiable copy of this store
+     */
+    public ExpenseStore copy() {
+        ExpenseStore copy = new ExpenseStore();
+        copy.ensureCapacity(size);
+        for (int chunk = 0; chunk < allocatedChunks && chunk < copy.allocatedChunks; chunk++) {
+            System.arraycopy(ids[chunk], 0, copy.ids[chunk], 0, CHUNK_SIZE);
+            System.arraycopy(days[chunk], 0, copy.days[chunk], 0, CHUNK_SIZE);
+            System.arraycopy(amounts[chunk], 0, copy.amounts[chunk], 0, CHUNK_SIZE);
+            System.arraycopy(categories[chunk], 0, copy.categories[chunk], 0, CHUNK_SIZE);
+            System.arraycopy(names[chunk], 0, copy.names[chunk], 0, CHUNK_SIZE);
+            System.arraycopy(nameKeys[chunk], 0, copy.nameKeys[chunk], 0, CHUNK_SIZE * 2);
+            System.arraycopy(reasons[chunk], 0, copy.reasons[chunk], 0, CHUNK_SIZE);
+            System.arraycopy(notes[chunk], 0, copy.notes[chunk], 0, CHUNK_SIZE);
+            System.arraycopy(texts[chunk], 0, copy.texts[chunk], 0, CHUNK_SIZE);
+            System.arraycopy(textIndexes[chunk], 0, copy.textIndexes[chunk], 0, CHUNK_SIZE);
+        }
+        copy.categoryNames = categoryNames.clone();
+        copy.categoryAliases = categoryAliases.clone();
+        copy.categoryCount = categoryCount;
+        copy.categoryIds = new HashMap<>(categoryIds());
+        for (int row = 0; row < size; row++) {
+            copy.rowsById.put(getId(row), row);
+        }
+        copy.nextId = nextId;
+        copy.recurring = recurring;
+        copy.size = size;
+        copy.version = version;
+        return copy;
+    }
+
+    /**
+     * Adds {@code expense}, first giving it a new id if it does not have one yet.
+     */
+    public int add(Expense expense) {
+        if (expense.getId() == Expense.NO_ID) {
+            expense.setId(nextId);
+        }
+        return add(expense.getId(), expense.getName(), expense.getDate().toEpochDay(), expense.getCost(),
+                expense.getCategory(), expense.getReason(), expense.getNotes());
+    }
+
+    public int add(String name, long epochDay, long amount, String category, String reason, String notes) {
+        return add(nextId, name, epochDay, amount, category, reason, notes);
+    }
+
+    /**
+     * Appends without copying a shared chunk: the new row's slot is past the end of every
+     * snapshot that shares its chunk, since removals copy the chunk they shrink.
+     */
+    public int add(long id, String name, long epochDay, long amount, String category, String reason, String notes) {
+        int row = addRow(id);
+        write(row, name, epochDay, amount, category, reason, notes);
+        return row;
+    }
+
+    /**
+     * Adds a row whose name, reason and notes are entry {@code index} of {@code text}, decoded
+     * only when read.
+     */
+    int add(long id, int epochDay, long amount, String category, MappedText text, int index) {
+        int row = addRow(id);
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = row & CHUNK_MASK;
+        days[chunk][offset] = epochDay;
+        amounts[chunk][offset] = amount;
+        categories[chunk][offset] = internCategory(category);
+        texts[chunk][offset] = text;
+        textIndexes[chunk][offset] = index;
+        version++;
+        return row;
+    }
+
+    private int addRow(long id) {
+        checkWritable();
+        if (rowsById.get(id) != LongIntMap.MISSING) {
+            throw new IllegalArgumentException("Duplicate expense id " + id);
+        }
+        int row = size;
+        ensureCapacity(row + 1);
+        size++;
+        ids[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = id;
+        rowsById.put(id, row);
+        nextId = Math.max(nextId, id + 1);
+        return row;
+    }
+
+    /**
+     * @return the id the next expense or recurring expense added without one will get
+     */
+    public long getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Makes sure no id below {@code nextId} is given out, for ids used by rows stored elsewhere.
+     */
+    public void reserveIds(long nextId) {
+        checkWritable();
+        this.nextId = Math.max(this.nextId, nextId);
+    }
+
+    /**
+     * @return the row holding expense {@code id}, or -1
+     */
+    public int findRow(long id) {
+        return rowsById().get(id);
+    }
+
+    public void set(int row, Expense expense) {
+        set(row, expense.getName(), expense.getDate().toEpochDay(), expense.getCost(),
+                expense.getCategory(), expense.getReason(), expense.getNotes());
+    }
+
+    public void set(int row, String name, long epochDay, long amount, String category, String reason, String notes) {
+        checkWritable();
+        checkRow(row);
+        own(row >>> CHUNK_SHIFT);
+        write(row, name, epochDay, amount, category, reason, notes);
+    }
+
+    private void write(int row, String name, long epochDay, long amount, String category, String reason, String notes) {
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = row & CHUNK_MASK;
+        days[chunk][offset] = Math.toIntExact(epochDay);
+        amounts[chunk][offset] = amount;
+        categories[chunk][offset] = internCategory(category);
+        names[chunk][offset] = name;
+        NameKeys.pack(name, nameKeys[chunk], offset * 2);
+        reasons[chunk][offset] = reason;
+        this.notes[chunk][offset] = notes;
+        texts[chunk][offset] = null;
+        version++;
+    }
+
+    /**
+     * Removes {@code row} by moving the last row into its place.
+     *
+     * @return the previous index of the row that now occupies {@code row}, or -1 if the removed
+     * row was the last one
+     */
+    public int remove(int row) {
+        checkWritable();
+        checkRow(row);
+        rowsById.remove(getId(row));
+        int last = size - 1;
+        own(row >>> CHUNK_SHIFT);
+        own(last >>> CHUNK_SHIFT);
+        int moved = -1;
+        if (row != last) {
+            copyRow(last, row);
+            rowsById.put(getId(row), row);
+            moved = last;
+        }
+        clearRow(last);
+        size--;
+        version++;
+        return moved;
+    }
+
+    public Expense get(int row) {
+        checkRow(row);
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = row & CHUNK_MASK;
+        Expense expense = new Expense(getName(row), LocalDate.ofEpochDay(days[chunk][offset]),
+                amounts[chunk][offset], categoryNames[categoryAliases[categories[chunk][offset]]]);
+        expense.setId(ids[chunk][offset]);
+        expense.setReason(getReason(row));
+        expense.setNotes(getNotes(row));
+        return expense;
+    }
+
+    public long getId(int row) {
+        return ids[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public int getEpochDay(int row) {
+        return days[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public long getAmount(int row) {
+        return amounts[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public int getCategoryId(int row) {
+        return categoryAliases[categories[row >>> CHUNK_SHIFT][row & CHUNK_MASK]];
+    }
+
+    public String getCategory(int row) {
+        return categoryNames[getCategoryId(row)];
+    }
+
+    public String getName(int row) {
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = row & CHUNK_MASK;
+        MappedText text = texts[chunk][offset];
+        return text == null ? names[chunk][offset] : text.getName(textIndexes[chunk][offset]);
+    }
+
+    public String getReason(int row) {
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = row & CHUNK_MASK;
+        MappedText text = texts[chunk][offset];
+        return text == null ? reasons[chunk][offset] : text.getReason(textIndexes[chunk][offset]);
+    }
+
+    public String getNotes(int row) {
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = row & CHUNK_MASK;
+        MappedText text = texts[chunk][offset];
+        return text == null ? notes[chunk][offset] : text.getNotes(textIndexes[chunk][offset]);
+    }
+
+    /**
+     * Orders two rows case-insensitively by name, by their {@link NameKeys}. The names are only
+     * compared if the keys cannot tell.
+     */
+    public int compareNames(int a, int b) {
+        long aHigh = getNameKey(a, 0);
+        long aLow = getNameKey(a, 1);
+        long bHigh = getNameKey(b, 0);
+        long bLow = getNameKey(b, 1);
+        int comparison = NameKeys.compare(aHigh, aLow, bHigh, bLow);
+        if (comparison != 0 || NameKeys.isEqual(aLow, bLow)) {
+            return comparison;
+        }
+        return getName(a).compareToIgnoreCase(getName(b));
+    }
+
+    /**
+     * @param part 0 or 1, for the first or second long of the key
+     */
+    long getNameKey(int row, int part) {
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = row & CHUNK_MASK;
+        MappedText text = texts[chunk][offset];
+        return text == null ? nameKeys[chunk][offset * 2 + part] : text.getNameKey(textIndexes[chunk][offset], part);
+    }
+
+    /**
+     * @return the mapped text holding the strings of {@code row}, or null if they are in memory
+     */
+    MappedText getMappedText(int row) {
+        return texts[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    int getMappedTextIndex(int row) {
+        return textIndexes[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * @return the id of {@code category}, or -1 if no row has used it since it was created or
+     * last renamed
+     */
+    public int findCategory(String category) {
+        Integer id = categoryIds().get(category);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return an upper bound on the category ids, including ids that were merged away
+     */
+    public int getCategoryCount() {
+        return categoryCount;
+    }
+
+    /**
+     * Renames category {@code from} to {@code to} for every row at once, in time proportional to
+     * the number of categories. If {@code to} is already in use the two categories are merged
+     * and rows of {@code from} take {@code to}'s id.
+     *
+     * @return the id the rows of {@code from} have afterwards, or -1 if there is no such category
+     */
+    public int renameCategory(String from, String to) {
+        checkWritable();
+        if (!from.equals(to)) {
+            renameRecurringCategory(from, to);
+        }
+        int fromId = findCategory(from);
+        if (fromId < 0 || from.equals(to)) {
+            return fromId;
+        }
+        int toId = findCategory(to);
+        // Snapshots keep the dictionary they were taken with.
+        categoryNames = categoryNames.clone();
+        categoryAliases = categoryAliases.clone();
+        categoryIds.remove(from);
+        version++;
+        if (toId < 0) {
+            categoryNames[fromId] = to;
+            categoryIds.put(to, fromId);
+            return fromId;
+        }
+        for (int code = 0; code < categoryCount; code++) {
+            if (categoryAliases[code] == fromId) {
+                categoryAliases[code] = toId;
+            }
+        }
+        return toId;
+    }
+
+    private void renameRecurringCategory(String from, String to) {
+        RecurringExpense[] renamed = recurring;
+        for (int i = 0; i < renamed.length; i++) {
+            if (from.equals(renamed[i].getCategory())) {
+                if (renamed == recurring) {
+                    renamed = recurring.clone();
+                }
+                renamed[i] = renamed[i].withCategory(to);
+            }
+        }
+        recurring = renamed;
+    }
+
+    /**
+     * Adds a recurring expense rule, first giving it a new id if it does not have one yet. Rules
+     * share the id space of rows.
+     */
+    public long addRecurring(RecurringExpense rule) {
+        checkWritable();
+        if (rule.getId() == Expense.NO_ID) {
+            rule.setId(nextId);
+        }
+        if (rowsById.get(rule.getId()) != LongIntMap.MISSING || findRecurring(rule.getId()) >= 0) {
+            throw new IllegalArgumentException("Duplicate expense id " + rule.getId());
+        }
+        RecurringExpense[] added = Arrays.copyOf(recurring, recurring.length + 1);
+        added[recurring.length] = rule;
+        recurring = added;
+        nextId = Math.max(nextId, rule.getId() + 1);
+        return rule.getId();
+    }
+
+    /**
+     * @return whether there was a rule with that id
+     */
+    public boolean removeRecurring(long id) {
+        checkWritable();
+        int index = findRecurring(id);
+        if (index < 0) {
+            return false;
+        }
+        RecurringExpense[] removed = new RecurringExpense[recurring.length - 1];
+        System.arraycopy(recurring, 0, removed, 0, index);
+        System.arraycopy(recurring, index + 1, removed, index, removed.length - index);
+        recurring = removed;
+        return true;
+    }
+
+    /**
+     * @return the recurring expense rules, in the order they were added
+     */
+    public List<RecurringExpense> getRecurring() {
+        return Collections.unmodifiableList(Arrays.asList(recurring));
+    }
+
+    private int findRecurring(long id) {
+        for (int i = 0; i < recurring.length; i++) {
+            if (recurring[i].getId() == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getCategoryName(int id) {
+        if (id >= categoryCount) {
+            throw new IndexOutOfBoundsException("Category " + id + ", count " + categoryCount);
+        }
+        return categoryNames[id];
+    }
+
+    public long sumAmounts(int[] rows, int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            total += amounts[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+        }
+        return total;
+    }
+
+    /**
+     * Snapshots share the dictionary array: new names only go past the end of every snapshot's
+     * count, and growing replaces the array instead of changing it.
+     */
+    private int internCategory(String category) {
+        Integer id = categoryIds.get(category);
+        if (id == null) {
+            id = categoryCount;
+            if (categoryCount == categoryNames.length) {
+                categoryNames = Arrays.copyOf(categoryNames, categoryCount * 2);
+                categoryAliases = Arrays.copyOf(categoryAliases, categoryCount * 2);
+            }
+            categoryNames[categoryCount] = category;
+            categoryAliases[categoryCount] = categoryCount;
+            categoryCount++;
+            categoryIds.put(category, id);
+        }
+        return id;
+    }
+
+    /**
+     * Snapshots build their id and category lookups on first use, from their own columns. Two
+     * threads racing to build them each get an equivalent result.
+     */
+    private LongIntMap rowsById() {
+        LongIntMap map = rowsById;
+        if (map == null) {
+            map = new LongIntMap();
+            for (int row = 0; row < size; row++) {
+                map.put(getId(row), row);
+            }
+            rowsById = map;
+        }
+        return map;
+    }
+
+    private Map<String, Integer> categoryIds() {
+        Map<String, Integer> map = categoryIds;
+        if (map == null) {
+            map = new HashMap<>();
+            for (int id = 0; id < categoryCount; id++) {
+                if (categoryAliases[id] == id) {
+                    map.put(categoryNames[id], id);
+                }
+            }
+            categoryIds = map;
+        }
+        return map;
+    }
+
+    /**
+     * Copies {@code chunk} in every column if a snapshot may still share it.
+     */
+    private void own(int chunk) {
+        if (chunkEpochs[chunk] == epoch) {
+            return;
+        }
+        ids[chunk] = ids[chunk].clone();
+        days[chunk] = days[chunk].clone();
+        amounts[chunk] = amounts[chunk].clone();
+        categories[chunk] = categories[chunk].clone();
+        names[chunk] = names[chunk].clone();
+        nameKeys[chunk] = nameKeys[chunk].clone();
+        reasons[chunk] = reasons[chunk].clone();
+        notes[chunk] = notes[chunk].clone();
+        texts[chunk] = texts[chunk].clone();
+        textIndexes[chunk] = textIndexes[chunk].clone();
+        chunkEpochs[chunk] = epoch;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+    }
+
+    private void copyRow(int from, int to) {
+        int fromChunk = from >>> CHUNK_SHIFT;
+        int fromOffset = from & CHUNK_MASK;
+        int toChunk = to >>> CHUNK_SHIFT;
+        int toOffset = to & CHUNK_MASK;
+        ids[toChunk][toOffset] = ids[fromChunk][fromOffset];
+        days[toChunk][toOffset] = days[fromChunk][fromOffset];
+        amounts[toChunk][toOffset] = amounts[fromChunk][fromOffset];
+        categories[toChunk][toOffset] = categories[fromChunk][fromOffset];
+        names[toChunk][toOffset] = names[fromChunk][fromOffset];
+        System.arraycopy(nameKeys[fromChunk], fromOffset * 2, nameKeys[toChunk], toOffset * 2, 2);
+        reasons[toChunk][toOffset] = reasons[fromChunk][fromOffset];
+        notes[toChunk][toOffset] = notes[fromChunk][fromOffset];
+        texts[toChunk][toOffset] = texts[fromChunk][fromOffset];
+        textIndexes[toChunk][toOffset] = textIndexes[fromChunk][fromOffset];
+    }
+
+    private void clearRow(int row) {
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = row & CHUNK_MASK;
+        names[chunk][offset] = null;
+        reasons[chunk][offset] = null;
+        notes[chunk][offset] = null;
+        texts[chunk][offset] = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        int chunksNeeded = (capacity + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (chunksNeeded <= allocatedChunks) {
+            return;
+        }
+
+        if (chunksNeeded > days.length) {
+            int newLength = Math.max(chunksNeeded, days.length * 2);
+            ids = Arrays.copyOf(ids, newLength);
+            days = Arrays.copyOf(days, newLength);
+            amounts = Arrays.copyOf(amounts, newLength);
+            categories = Arrays.copyOf(categories, newLength);
+            names = Arrays.copyOf(names, newLength);
+            nameKeys = Arrays.copyOf(nameKeys, newLength);
+            reasons = Arrays.copyOf(reasons, newLength);
+            notes = Arrays.copyOf(notes, newLength);
+            texts = Arrays.copyOf(texts, newLength);
+            textIndexes = Arrays.copyOf(textIndexes, newLength);
+            chunkEpochs = Arrays.copyOf(chunkEpochs, newLength);
+        }
+        for (int chunk = allocatedChunks; chunk < chunksNeeded; chunk++) {
+            ids[chunk] = new long[CHUNK_SIZE];
+            days[chunk] = new int[CHUNK_SIZE];
+            amounts[chunk] = new long[CHUNK_SIZE];
+            categories[chunk] = new int[CHUNK_SIZE];
+            names[chunk] = new String[CHUNK_SIZE];
+            nameKeys[chunk] = new long[CHUNK_SIZE * 2];
+            reasons[chunk] = new String[CHUNK_SIZE];
+            notes[chunk] = new String[CHUNK_SIZE];
+            texts[chunk] = new MappedText[CHUNK_SIZE];
+            textIndexes[chunk] = new int[CHUNK_SIZE];
+            chunkEpochs[chunk] = epoch;
+        }
+        allocatedChunks = chunksNeeded;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+        }
+    }
+}
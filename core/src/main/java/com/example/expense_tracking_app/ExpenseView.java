@@ -0,0 +1,370 @@
+package com.example.expense_tracking_app;
+
+/**
+ * The filtered, sorted list of {@link ExpenseStore} rows that is currently displayed.
+ * <p>
+ * Single edits are applied in place: the affected position is found by binary search and the
+ * {@link Listener} is told exactly which positions were inserted, removed, moved or changed, so
+ * the list only rebinds the affected row. {@link #rebuild()} is only needed when the filters
+ * change. After a batch of edits, {@link #rebuild(long[], long[])} re-sorts once and reports the
+ * difference as ranges; {@link #replace(int[], int, long[], long[])} does the same with rows
+ * sorted on the query pipeline.
+ */
+public class ExpenseView {
+    public interface RowFilter {
+        boolean matches(int row);
+    }
+
+    public interface Listener {
+        void onInserted(int position);
+
+        void onRemoved(int position);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position);
+
+        void onRangeInserted(int position, int count);
+
+        void onRangeRemoved(int position, int count);
+
+        void onRangeChanged(int position, int count);
+
+        void onReset();
+    }
+
+    private final ExpenseStore store;
+    private final RowFilter filter;
+    private RowComparator order;
+    private Listener listener;
+
+    private int[] rows = new int[16];
+    private int count;
+
+    public ExpenseView(ExpenseStore store, RowFilter filter, RowComparator order) {
+        this.store = store;
+        this.filter = filter;
+        this.order = order;
+    }
+
+    /**
+     * Orders rows by date, then case-insensitively by name.
+     */
+    public static RowComparator byDateThenName(ExpenseStore store) {
+        return (a, b) -> {
+            int dateComparison = Integer.compare(store.getEpochDay(a), store.getEpochDay(b));
+            if (dateComparison == 0) {
+                return store.compareNames(a, b);
+            }
+            return dateComparison;
+        };
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getRow(int position) {
+        return rows[position];
+    }
+
+    public int[] getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the ids of the rows in the view, in view order
+     */
+    public long[] getIds() {
+        long[] ids = new long[count];
+        for (int position = 0; position < count; position++) {
+            ids[position] = store.getId(rows[position]);
+        }
+        return ids;
+    }
+
+    public void rebuild() {
+        fill();
+        if (listener != null) {
+            listener.onReset();
+        }
+    }
+
+    /**
+     * Rebuilds the view after many rows changed at once and reports the smallest set of removed,
+     * inserted and changed ranges that turns the previous contents into the new ones.
+     * <p>
+     * Rows present before and after keep their place if they belong to the longest run that is
+     * still in the same relative order; every other row is removed and inserted again. Removals
+     * are reported from the end backwards and insertions from the start forwards, so each
+     * reported position is valid at the time it is reported.
+     *
+     * @param previousIds the result of {@link #getIds()} before the store was modified
+     * @param updatedIds  ids of the rows whose values were changed
+     */
+    public void rebuild(long[] previousIds, long[] updatedIds) {
+        fill();
+        reportDifference(previousIds, updatedIds);
+    }
+
+    /**
+     * Replaces the whole view with rows that were already filtered and sorted elsewhere, after
+     * many rows changed at once, and reports the difference as {@link #rebuild(long[], long[])}
+     * does.
+     */
+    public void replace(int[] sortedRows, int sortedCount, long[] previousIds, long[] updatedIds) {
+        rows = sortedRows;
+        count = sortedCount;
+        ensureCapacity(count);
+        reportDifference(previousIds, updatedIds);
+    }
+
+    private void reportDifference(long[] previousIds, long[] updatedIds) {
+        if (listener == null) {
+            return;
+        }
+
+        LongIntMap positions = new LongIntMap();
+        for (int position = 0; position < count; position++) {
+            positions.put(store.getId(rows[position]), position);
+        }
+        int[] newPositions = new int[previousIds.length];
+        for (int i = 0; i < previousIds.length; i++) {
+            newPositions[i] = positions.get(previousIds[i]);
+        }
+        boolean[] keptOld = new boolean[previousIds.length];
+        boolean[] keptNew = new boolean[count];
+        keepLongestIncreasingRun(newPositions, keptOld, keptNew);
+
+        for (int end = previousIds.length - 1; end >= 0; end--) {
+            if (!keptOld[end]) {
+                int start = end;
+                while (start > 0 && !keptOld[start - 1]) {
+                    start--;
+                }
+                listener.onRangeRemoved(start, end - start + 1);
+                end = start;
+            }
+        }
+        for (int start = 0; start < count; start++) {
+            if (!keptNew[start]) {
+                int end = start;
+                while (end + 1 < count && !keptNew[end + 1]) {
+                    end++;
+                }
+                listener.onRangeInserted(start, end - start + 1);
+                start = end;
+            }
+        }
+
+        boolean[] changed = new boolean[count];
+        for (long id : updatedIds) {
+            int position = positions.get(id);
+            if (position != LongIntMap.MISSING && keptNew[position]) {
+                changed[position] = true;
+            }
+        }
+        for (int start = 0; start < count; start++) {
+            if (changed[start]) {
+                int end = start;
+                while (end + 1 < count && changed[end + 1]) {
+                    end++;
+                }
+                listener.onRangeChanged(start, end - start + 1);
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * Marks the longest strictly increasing subsequence of {@code newPositions}, skipping
+     * {@link LongIntMap#MISSING} entries, in O(n log n).
+     */
+    private static void keepLongestIncreasingRun(int[] newPositions, boolean[] keptOld, boolean[] keptNew) {
+        int[] tails = new int[newPositions.length];
+        int[] previous = new int[newPositions.length];
+        int length = 0;
+        for (int i = 0; i < newPositions.length; i++) {
+            int value = newPositions[i];
+            if (value == LongIntMap.MISSING) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (newPositions[tails[middle]] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            keptOld[i] = true;
+            keptNew[newPositions[i]] = true;
+        }
+    }
+
+    private void fill() {
+        ensureCapacity(store.size());
+
+        count = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (filter.matches(row)) {
+                rows[count++] = row;
+            }
+        }
+        Rows.sort(rows, count, order);
+    }
+
+    /**
+     * Changes the order edits are placed in. The rows must be replaced with rows sorted in that
+     * order, or rebuilt, before the next edit.
+     */
+    public void setOrder(RowComparator order) {
+        this.order = order;
+    }
+
+    /**
+     * Replaces the whole view with rows that were already filtered and sorted elsewhere.
+     */
+    public void replace(int[] sortedRows, int sortedCount) {
+        rows = sortedRows;
+        count = sortedCount;
+        ensureCapacity(count);
+        if (listener != null) {
+            listener.onReset();
+        }
+    }
+
+    /**
+     * @return the position of {@code row} in the view, or -1 if it is filtered out
+     */
+    public int indexOf(int row) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.compare(rows[middle], row) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int position = low; position < count && order.compare(rows[position], row) == 0; position++) {
+            if (rows[position] == row) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Called after {@code row} has been appended to the store.
+     */
+    public void onRowAdded(int row) {
+        if (!filter.matches(row)) {
+            return;
+        }
+        int position = insert(row);
+        if (listener != null) {
+            listener.onInserted(position);
+        }
+    }
+
+    /**
+     * Called after {@code row} has been overwritten in the store.
+     *
+     * @param previousPosition the position of the row before the store was modified, as returned
+     *                         by {@link #indexOf(int)}
+     */
+    public void onRowUpdated(int row, int previousPosition) {
+        boolean matches = filter.matches(row);
+        if (previousPosition < 0) {
+            if (matches) {
+                onRowAdded(row);
+            }
+            return;
+        }
+
+        delete(previousPosition);
+        if (!matches) {
+            if (listener != null) {
+                listener.onRemoved(previousPosition);
+            }
+            return;
+        }
+
+        int position = insert(row);
+        if (listener != null) {
+            if (position != previousPosition) {
+                listener.onMoved(previousPosition, position);
+            }
+            listener.onChanged(position);
+        }
+    }
+
+    /**
+     * Called after {@code row} has been removed from the store.
+     *
+     * @param previousPosition the position of the removed row, as returned by {@link #indexOf(int)}
+     *                         before the removal
+     * @param movedRow         the row the store moved into {@code row}'s slot, or -1
+     * @param movedPosition    the view position of {@code movedRow} before the removal
+     */
+    public void onRowRemoved(int row, int previousPosition, int movedRow, int movedPosition) {
+        if (movedRow >= 0 && movedPosition >= 0) {
+            rows[movedPosition] = row;
+        }
+        if (previousPosition < 0) {
+            return;
+        }
+
+        delete(previousPosition);
+        if (listener != null) {
+            listener.onRemoved(previousPosition);
+        }
+    }
+
+    private int insert(int row) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.compare(rows[middle], row) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        ensureCapacity(count + 1);
+        System.arraycopy(rows, low, rows, low + 1, count - low);
+        rows[low] = row;
+        count++;
+        return low;
+    }
+
+    private void delete(int position) {
+        System.arraycopy(rows, position + 1, rows, position, count - position - 1);
+        count--;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > rows.length) {
+            int[] grown = new int[Math.max(capacity, rows.length * 2)];
+            System.arraycopy(rows, 0, grown, 0, count);
+            rows = grown;
+        }
+    }
+}
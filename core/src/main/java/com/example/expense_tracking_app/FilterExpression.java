@@ -0,0 +1,763 @@
+package com.example.expense_tracking_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An immutable tree of filter clauses over expenses: date and amount ranges, category sets and
+ * text searches, combined with AND, OR and NOT.
+ * <p>
+ * {@link #optimize(ExpenseStore, DateIndex, CategoryIndex)} normalizes the tree, orders clauses by
+ * their estimated selectivity and cost, and answers the date and category clauses of the top-level
+ * AND from the indexes. {@link #compile(ExpenseStore)} then turns what is left into one predicate:
+ * the column clauses of every AND are fused into a single node that reads the columns directly, so
+ * adding a clause does not add another virtual call per row.
+ */
+public abstract class FilterExpression {
+    private static final double UNKNOWN_RANGE_SELECTIVITY = 1.0 / 3;
+    private static final double TEXT_SELECTIVITY = 0.1;
+    private static final double TEXT_COST = 16;
+
+    private static final FilterExpression ALL = new Constant(true);
+    private static final FilterExpression NONE = new Constant(false);
+
+    FilterExpression() {
+    }
+
+    public static FilterExpression all() {
+        return ALL;
+    }
+
+    public static FilterExpression none() {
+        return NONE;
+    }
+
+    public static FilterExpression and(FilterExpression... operands) {
+        return new And(Arrays.asList(operands));
+    }
+
+    public static FilterExpression or(FilterExpression... operands) {
+        return new Or(Arrays.asList(operands));
+    }
+
+    public static FilterExpression not(FilterExpression operand) {
+        return new Not(operand);
+    }
+
+    /**
+     * Matches expenses dated from {@code startEpochDay} to {@code endEpochDay}, inclusive.
+     */
+    public static FilterExpression dateBetween(long startEpochDay, long endEpochDay) {
+        return new DateRange(startEpochDay, endEpochDay);
+    }
+
+    /**
+     * Matches expenses costing from {@code min} to {@code max} minor units, inclusive.
+     */
+    public static FilterExpression amountBetween(long min, long max) {
+        return new AmountRange(min, max);
+    }
+
+    public static FilterExpression categoryIn(String... categories) {
+        return categoryIn(Arrays.asList(categories));
+    }
+
+    public static FilterExpression categoryIn(Collection<String> categories) {
+        return new CategorySet(new TreeSet<>(categories));
+    }
+
+    /**
+     * Matches expenses whose name, reason or notes contain {@code text}, ignoring case and
+     * punctuation. See {@link TextIndex}.
+     */
+    public static FilterExpression textContains(String text) {
+        return new Text(text, false);
+    }
+
+    /**
+     * Matches expenses with a word in their name, reason or notes that starts with {@code text}.
+     */
+    public static FilterExpression textStartsWith(String text) {
+        return new Text(text, true);
+    }
+
+    public Plan optimize(ExpenseStore store, DateIndex dateIndex, CategoryIndex categoryIndex) {
+        return optimize(store, dateIndex, categoryIndex, null);
+    }
+
+    /**
+     * Rewrites this expression for evaluation against {@code store}. Any index may be null, in
+     * which case nothing is pushed down to it and its clauses are estimated rather than counted.
+     */
+    public Plan optimize(ExpenseStore store, DateIndex dateIndex, CategoryIndex categoryIndex, TextIndex textIndex) {
+        Estimator estimator = new Estimator(store, dateIndex, categoryIndex, textIndex);
+        FilterExpression filter = normalize(false).order(estimator);
+
+        List<FilterExpression> operands = filter instanceof And ? ((And) filter).operands : Collections.singletonList(filter);
+        DateRange dateRange = null;
+        CategorySet categorySet = null;
+        Text text = null;
+        List<FilterExpression> residual = new ArrayList<>();
+        for (FilterExpression operand : operands) {
+            if (dateIndex != null && dateRange == null && operand instanceof DateRange) {
+                dateRange = (DateRange) operand;
+            } else if (categoryIndex != null && categorySet == null && operand instanceof CategorySet) {
+                categorySet = (CategorySet) operand;
+            } else if (textIndex != null && text == null && operand instanceof Text) {
+                text = (Text) operand;
+            } else {
+                residual.add(operand);
+            }
+        }
+
+        if (dateRange == null && categorySet == null && text == null) {
+            return new Plan(filter, null, filter);
+        }
+        int[] candidates = resolveCandidates(store, dateIndex, dateRange, categoryIndex, categorySet, textIndex, text);
+        return new Plan(filter, candidates, residual.isEmpty() ? ALL : And.of(residual));
+    }
+
+    /**
+     * @return a predicate over the rows of {@code store}. Categories that do not exist in the
+     * store yet are resolved again once they are added.
+     */
+    public ExpenseView.RowFilter compile(ExpenseStore store) {
+        return normalize(false).predicate(store);
+    }
+
+    /**
+     * Builds the predicate for an expression that is already normalized.
+     */
+    abstract ExpenseView.RowFilter predicate(ExpenseStore store);
+
+    /**
+     * @return an equivalent expression with NOT pushed down to the leaves, nested AND and OR
+     * flattened, and ranges and category sets of the same operator merged
+     */
+    abstract FilterExpression normalize(boolean negate);
+
+    /**
+     * Orders the operands of every AND and OR so the cheapest, most decisive clauses run first.
+     */
+    FilterExpression order(Estimator estimator) {
+        return this;
+    }
+
+    /**
+     * @return the estimated fraction of rows that match
+     */
+    abstract double selectivity(Estimator estimator);
+
+    /**
+     * @return the estimated relative cost of evaluating this expression for one row
+     */
+    double cost() {
+        return 1;
+    }
+
+    private static int[] resolveCandidates(ExpenseStore store, DateIndex dateIndex, DateRange dateRange,
+                                           CategoryIndex categoryIndex, CategorySet categorySet,
+                                           TextIndex textIndex, Text text) {
+        RowBitmap rows = categorySet == null ? null : categorySet.rows(store, categoryIndex);
+        if (text != null) {
+            RowBitmap textRows = textIndex.search(store, text.query, text.prefix);
+            rows = rows == null ? textRows : rows.and(textRows);
+        }
+        if (dateRange == null) {
+            return rows.toArray();
+        }
+
+        int[] dateRows = dateIndex.rowsBetween(dateRange.start, dateRange.end);
+        if (rows == null) {
+            return dateRows;
+        }
+        Arrays.sort(dateRows);
+        return RowBitmap.of(dateRows, dateRows.length).and(rows).toArray();
+    }
+
+    /**
+     * The result of {@link #optimize(ExpenseStore, DateIndex, CategoryIndex)}.
+     */
+    public static class Plan {
+        private final FilterExpression filter;
+        private final int[] candidates;
+        private final FilterExpression residual;
+
+        Plan(FilterExpression filter, int[] candidates, FilterExpression residual) {
+            this.filter = filter;
+            this.candidates = candidates;
+            this.residual = residual;
+        }
+
+        /**
+         * @return the whole optimized filter, for rows that did not come from the candidates
+         */
+        public FilterExpression getFilter() {
+            return filter;
+        }
+
+        /**
+         * @return the rows that satisfy the clauses answered by the indexes, or null if the whole
+         * store has to be scanned
+         */
+        public int[] getCandidates() {
+            return candidates;
+        }
+
+        /**
+         * @return the clauses the candidates still have to be checked against
+         */
+        public FilterExpression getResidual() {
+            return residual;
+        }
+    }
+
+    static final class Estimator {
+        private final ExpenseStore store;
+        private final DateIndex dateIndex;
+        private final CategoryIndex categoryIndex;
+        private final TextIndex textIndex;
+
+        Estimator(ExpenseStore store, DateIndex dateIndex, CategoryIndex categoryIndex, TextIndex textIndex) {
+            this.store = store;
+            this.dateIndex = dateIndex;
+            this.categoryIndex = categoryIndex;
+            this.textIndex = textIndex;
+        }
+
+        double text(String query, boolean prefix) {
+            if (textIndex == null || store.size() == 0) {
+                return TEXT_SELECTIVITY;
+            }
+            return (double) textIndex.estimate(query, prefix) / store.size();
+        }
+
+        double dateRange(long start, long end) {
+            if (dateIndex == null || dateIndex.size() == 0) {
+                return UNKNOWN_RANGE_SELECTIVITY;
+            }
+            return (double) (dateIndex.upperBound(end) - dateIndex.lowerBound(start)) / dateIndex.size();
+        }
+
+        double categories(Set<String> names) {
+            if (store.size() == 0 || store.getCategoryCount() == 0) {
+                return 0;
+            }
+            if (categoryIndex == null) {
+                return Math.min(1, (double) names.size() / store.getCategoryCount());
+            }
+            long rows = 0;
+            for (String name : names) {
+                rows += categoryIndex.getRows(store.findCategory(name)).cardinality();
+            }
+            return (double) rows / store.size();
+        }
+    }
+
+    private static final class Constant extends FilterExpression {
+        private final boolean value;
+
+        Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        FilterExpression normalize(boolean negate) {
+            return value != negate ? ALL : NONE;
+        }
+
+        @Override
+        double selectivity(Estimator estimator) {
+            return value ? 1 : 0;
+        }
+
+        @Override
+        double cost() {
+            return 0;
+        }
+
+        @Override
+        ExpenseView.RowFilter predicate(ExpenseStore store) {
+            return value ? row -> true : row -> false;
+        }
+    }
+
+    private static final class And extends FilterExpression {
+        final List<FilterExpression> operands;
+
+        And(List<FilterExpression> operands) {
+            this.operands = operands;
+        }
+
+        static FilterExpression of(List<FilterExpression> operands) {
+            if (operands.isEmpty()) {
+                return ALL;
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        @Override
+        FilterExpression normalize(boolean negate) {
+            if (negate) {
+                return new Or(negateAll(operands)).normalize(false);
+            }
+
+            // Merged ranges and category sets keep the position of the first clause they replace,
+            // so normalizing an ordered expression again does not change its order.
+            List<FilterExpression> flat = new ArrayList<>();
+            int dateRange = -1;
+            int amountRange = -1;
+            int categorySet = -1;
+            for (FilterExpression operand : flatten(operands, And.class)) {
+                if (operand == NONE) {
+                    return NONE;
+                } else if (operand instanceof DateRange) {
+                    dateRange = merge(flat, dateRange, operand);
+                } else if (operand instanceof AmountRange) {
+                    amountRange = merge(flat, amountRange, operand);
+                } else if (operand instanceof CategorySet) {
+                    categorySet = merge(flat, categorySet, operand);
+                } else if (operand != ALL) {
+                    flat.add(operand);
+                }
+            }
+            for (FilterExpression operand : flat) {
+                if (operand instanceof Leaf && ((Leaf) operand).isEmpty()) {
+                    return NONE;
+                }
+            }
+            return of(flat);
+        }
+
+        private static int merge(List<FilterExpression> flat, int index, FilterExpression operand) {
+            if (index < 0) {
+                flat.add(operand);
+                return flat.size() - 1;
+            }
+            FilterExpression merged = flat.get(index);
+            if (operand instanceof DateRange) {
+                merged = ((DateRange) merged).intersect((DateRange) operand);
+            } else if (operand instanceof AmountRange) {
+                merged = ((AmountRange) merged).intersect((AmountRange) operand);
+            } else {
+                merged = ((CategorySet) merged).intersect((CategorySet) operand);
+            }
+            flat.set(index, merged);
+            return index;
+        }
+
+        @Override
+        FilterExpression order(Estimator estimator) {
+            List<FilterExpression> ordered = orderAll(operands, estimator);
+            // Rejecting a row early saves the most: run clauses that fail often and cheaply first.
+            Collections.sort(ordered, Comparator.comparingDouble(operand -> (operand.selectivity(estimator) - 1) / Math.max(operand.cost(), Double.MIN_VALUE)));
+            return new And(ordered);
+        }
+
+        @Override
+        double selectivity(Estimator estimator) {
+            double selectivity = 1;
+            for (FilterExpression operand : operands) {
+                selectivity *= operand.selectivity(estimator);
+            }
+            return selectivity;
+        }
+
+        @Override
+        double cost() {
+            return sumCosts(operands);
+        }
+
+        @Override
+        ExpenseView.RowFilter predicate(ExpenseStore store) {
+            ColumnPredicate columns = null;
+            List<ExpenseView.RowFilter> predicates = new ArrayList<>();
+            for (FilterExpression operand : operands) {
+                if (operand instanceof DateRange || operand instanceof AmountRange || operand instanceof CategorySet) {
+                    if (columns == null) {
+                        columns = new ColumnPredicate(store);
+                        predicates.add(columns);
+                    }
+                    columns.add(operand);
+                } else {
+                    predicates.add(operand.predicate(store));
+                }
+            }
+
+            if (predicates.size() == 1) {
+                return predicates.get(0);
+            }
+            ExpenseView.RowFilter[] all = predicates.toArray(new ExpenseView.RowFilter[0]);
+            return row -> {
+                for (ExpenseView.RowFilter predicate : all) {
+                    if (!predicate.matches(row)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+    }
+
+    private static final class Or extends FilterExpression {
+        final List<FilterExpression> operands;
+
+        Or(List<FilterExpression> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        FilterExpression normalize(boolean negate) {
+            if (negate) {
+                return new And(negateAll(operands)).normalize(false);
+            }
+
+            List<FilterExpression> flat = new ArrayList<>();
+            CategorySet categorySet = null;
+            for (FilterExpression operand : flatten(operands, Or.class)) {
+                if (operand == ALL) {
+                    return ALL;
+                } else if (operand instanceof CategorySet) {
+                    categorySet = categorySet == null ? (CategorySet) operand : categorySet.union((CategorySet) operand);
+                } else if (operand != NONE) {
+                    flat.add(operand);
+                }
+            }
+            if (categorySet != null && !categorySet.names.isEmpty()) {
+                flat.add(categorySet);
+            }
+
+            if (flat.isEmpty()) {
+                return NONE;
+            }
+            return flat.size() == 1 ? flat.get(0) : new Or(flat);
+        }
+
+        @Override
+        FilterExpression order(Estimator estimator) {
+            List<FilterExpression> ordered = orderAll(operands, estimator);
+            // Accepting a row early saves the most: run clauses that match often and cheaply first.
+            Collections.sort(ordered, Comparator.comparingDouble(operand -> -operand.selectivity(estimator) / Math.max(operand.cost(), Double.MIN_VALUE)));
+            return new Or(ordered);
+        }
+
+        @Override
+        double selectivity(Estimator estimator) {
+            double rejected = 1;
+            for (FilterExpression operand : operands) {
+                rejected *= 1 - operand.selectivity(estimator);
+            }
+            return 1 - rejected;
+        }
+
+        @Override
+        double cost() {
+            return sumCosts(operands);
+        }
+
+        @Override
+        ExpenseView.RowFilter predicate(ExpenseStore store) {
+            ExpenseView.RowFilter[] all = new ExpenseView.RowFilter[operands.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = operands.get(i).predicate(store);
+            }
+            return row -> {
+                for (ExpenseView.RowFilter predicate : all) {
+                    if (predicate.matches(row)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
+    private static final class Not extends FilterExpression {
+        private final FilterExpression operand;
+
+        Not(FilterExpression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        FilterExpression normalize(boolean negate) {
+            return operand.normalize(!negate);
+        }
+
+        @Override
+        double selectivity(Estimator estimator) {
+            return 1 - operand.selectivity(estimator);
+        }
+
+        @Override
+        double cost() {
+            return operand.cost();
+        }
+
+        @Override
+        ExpenseView.RowFilter predicate(ExpenseStore store) {
+            ExpenseView.RowFilter predicate = operand.predicate(store);
+            return row -> !predicate.matches(row);
+        }
+    }
+
+    /**
+     * Base for the clauses that test a single field, which negate to a {@link Not} around
+     * themselves.
+     */
+    private abstract static class Leaf extends FilterExpression {
+        @Override
+        FilterExpression normalize(boolean negate) {
+            if (isEmpty()) {
+                return negate ? ALL : NONE;
+            }
+            return negate ? new Not(this) : this;
+        }
+
+        boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        ExpenseView.RowFilter predicate(ExpenseStore store) {
+            ColumnPredicate columns = new ColumnPredicate(store);
+            columns.add(this);
+            return columns;
+        }
+    }
+
+    private static final class DateRange extends Leaf {
+        final long start;
+        final long end;
+
+        DateRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        DateRange intersect(DateRange other) {
+            return new DateRange(Math.max(start, other.start), Math.min(end, other.end));
+        }
+
+        @Override
+        boolean isEmpty() {
+            return start > end;
+        }
+
+        @Override
+        double selectivity(Estimator estimator) {
+            return estimator.dateRange(start, end);
+        }
+    }
+
+    private static final class AmountRange extends Leaf {
+        final long min;
+        final long max;
+
+        AmountRange(long min, long max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        AmountRange intersect(AmountRange other) {
+            return new AmountRange(Math.max(min, other.min), Math.min(max, other.max));
+        }
+
+        @Override
+        boolean isEmpty() {
+            return min > max;
+        }
+
+        @Override
+        double selectivity(Estimator estimator) {
+            return UNKNOWN_RANGE_SELECTIVITY;
+        }
+    }
+
+    private static final class CategorySet extends Leaf {
+        final Set<String> names;
+
+        CategorySet(Set<String> names) {
+            this.names = names;
+        }
+
+        CategorySet intersect(CategorySet other) {
+            Set<String> intersection = new TreeSet<>(names);
+            intersection.retainAll(other.names);
+            return new CategorySet(intersection);
+        }
+
+        CategorySet union(CategorySet other) {
+            Set<String> union = new TreeSet<>(names);
+            union.addAll(other.names);
+            return new CategorySet(union);
+        }
+
+        RowBitmap rows(ExpenseStore store, CategoryIndex categoryIndex) {
+            RowBitmap rows = new RowBitmap();
+            for (String name : names) {
+                rows = rows.or(categoryIndex.getRows(store.findCategory(name)));
+            }
+            return rows;
+        }
+
+        @Override
+        boolean isEmpty() {
+            return names.isEmpty();
+        }
+
+        @Override
+        double selectivity(Estimator estimator) {
+            return estimator.categories(names);
+        }
+    }
+
+    private static final class Text extends Leaf {
+        final String query;
+        final boolean prefix;
+        final String pattern;
+
+        Text(String query, boolean prefix) {
+            this.query = query;
+            this.prefix = prefix;
+            this.pattern = TextIndex.pattern(query, prefix);
+        }
+
+        @Override
+        FilterExpression normalize(boolean negate) {
+            if (pattern.trim().isEmpty()) {
+                return negate ? NONE : ALL;
+            }
+            return super.normalize(negate);
+        }
+
+        @Override
+        double selectivity(Estimator estimator) {
+            return estimator.text(query, prefix);
+        }
+
+        @Override
+        double cost() {
+            return TEXT_COST;
+        }
+
+        @Override
+        ExpenseView.RowFilter predicate(ExpenseStore store) {
+            return row -> TextIndex.matches(store, row, pattern);
+        }
+    }
+
+    /**
+     * The date, amount and category clauses of one AND, checked together against the columns.
+     */
+    private static final class ColumnPredicate implements ExpenseView.RowFilter {
+        private final ExpenseStore store;
+
+        private boolean checkDate;
+        private long startEpochDay;
+        private long endEpochDay;
+
+        private boolean checkAmount;
+        private long minAmount;
+        private long maxAmount;
+
+        private Set<String> categoryNames;
+        private boolean[] categoryIds;
+        private int resolvedCategoryCount = -1;
+
+        ColumnPredicate(ExpenseStore store) {
+            this.store = store;
+        }
+
+        void add(FilterExpression clause) {
+            if (clause instanceof DateRange) {
+                checkDate = true;
+                startEpochDay = ((DateRange) clause).start;
+                endEpochDay = ((DateRange) clause).end;
+            } else if (clause instanceof AmountRange) {
+                checkAmount = true;
+                minAmount = ((AmountRange) clause).min;
+                maxAmount = ((AmountRange) clause).max;
+            } else {
+                categoryNames = ((CategorySet) clause).names;
+            }
+        }
+
+        @Override
+        public boolean matches(int row) {
+            if (categoryNames != null) {
+                if (store.getCategoryCount() != resolvedCategoryCount) {
+                    resolveCategories();
+                }
+                if (!categoryIds[store.getCategoryId(row)]) {
+                    return false;
+                }
+            }
+            if (checkDate) {
+                int epochDay = store.getEpochDay(row);
+                if (epochDay < startEpochDay || epochDay > endEpochDay) {
+                    return false;
+                }
+            }
+            if (checkAmount) {
+                long amount = store.getAmount(row);
+                return amount >= minAmount && amount <= maxAmount;
+            }
+            return true;
+        }
+
+        private void resolveCategories() {
+            resolvedCategoryCount = store.getCategoryCount();
+            categoryIds = new boolean[resolvedCategoryCount];
+            for (String name : categoryNames) {
+                int id = store.findCategory(name);
+                if (id >= 0) {
+                    categoryIds[id] = true;
+                }
+            }
+        }
+    }
+
+    private static List<FilterExpression> flatten(List<FilterExpression> operands, Class<? extends FilterExpression> type) {
+        List<FilterExpression> flat = new ArrayList<>();
+        for (FilterExpression operand : operands) {
+            FilterExpression normalized = operand.normalize(false);
+            if (type.isInstance(normalized)) {
+                flat.addAll(type == And.class ? ((And) normalized).operands : ((Or) normalized).operands);
+            } else {
+                flat.add(normalized);
+            }
+        }
+        return flat;
+    }
+
+    private static List<FilterExpression> negateAll(List<FilterExpression> operands) {
+        List<FilterExpression> negated = new ArrayList<>(operands.size());
+        for (FilterExpression operand : operands) {
+            negated.add(new Not(operand));
+        }
+        return negated;
+    }
+
+    private static List<FilterExpression> orderAll(List<FilterExpression> operands, Estimator estimator) {
+        List<FilterExpression> ordered = new ArrayList<>(operands.size());
+        for (FilterExpression operand : operands) {
+            ordered.add(operand.order(estimator));
+        }
+        return ordered;
+    }
+
+    private static double sumCosts(List<FilterExpression> operands) {
+        double cost = 0;
+        for (FilterExpression operand : operands) {
+            cost += operand.cost();
+        }
+        return cost;
+    }
+}
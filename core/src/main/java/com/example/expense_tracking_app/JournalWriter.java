@@ -0,0 +1,266 @@
+package com.example.expense_tracking_app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends records to a file on a background thread, so callers never wait for the disk.
+ * <p>
+ * Records are handed over through a lock-free queue. The writer drains everything queued, writes
+ * it with one call and forces it to disk with one fsync, then completes the future of every
+ * record in the batch. Records queued while a batch is being forced make up the next batch, so
+ * the more often records are appended, the more each fsync covers.
+ * <p>
+ * If a write fails, the futures of the batch fail, and so does every later append: what reached
+ * the file is unknown, and the journal has to be loaded again.
+ */
+class JournalWriter implements Closeable {
+    /**
+     * Work done on the writer thread between two batches, when every record queued before it is
+     * on disk and no record queued after it has been written.
+     */
+    interface Task {
+        void run() throws IOException;
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private static final class Entry {
+        /** The record to append, or the header to truncate to. */
+        final byte[] record;
+        final Task task;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Entry(byte[] record, Task task) {
+            this.record = record;
+            this.task = task;
+        }
+    }
+
+    private final FileChannel channel;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    private volatile boolean closing;
+    private volatile IOException failure;
+
+    private final List<Entry> batch = new ArrayList<>();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+    private volatile long commits;
+    private volatile long records;
+
+    /**
+     * Opens {@code file} for appending, replacing its contents with {@code header} if it is empty
+     * or {@code truncate} is set, and starts the writer thread.
+     */
+    JournalWriter(File file, byte[] header, boolean truncate) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (truncate || channel.size() == 0) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(header), 0);
+                channel.force(false);
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        thread = new Thread(this::run, "expense-journal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * May be called from any thread. Records appended by one thread are written in the order
+     * they were appended.
+     *
+     * @return a future that completes once {@code record} is on disk
+     * @throws IOException if an earlier write failed or the writer is closed
+     */
+    CompletableFuture<Void> append(byte[] record) throws IOException {
+        return enqueue(new Entry(record, null));
+    }
+
+    /**
+     * Runs {@code task} on the writer thread once every record appended before it is on disk,
+     * then replaces the contents of the file with {@code header}. Used to replace the journal
+     * with a snapshot without blocking the caller. If the task fails the file is left as it is.
+     *
+     * @return a future that completes once the task has run and the file is emptied
+     */
+    CompletableFuture<Void> truncate(Task task, byte[] header) throws IOException {
+        return enqueue(new Entry(header, task));
+    }
+
+    /**
+     * @return the number of fsyncs so far, each covering a batch of records
+     */
+    long getCommits() {
+        return commits;
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    /**
+     * Writes everything appended so far, then stops the writer thread and closes the file.
+     *
+     * @throws IOException if any write failed
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        // Entries queued after the thread last found the queue empty.
+        for (Entry entry = queue.poll(); entry != null; entry = queue.poll()) {
+            entry.future.completeExceptionally(failure != null ? failure : new IOException("Journal is closed"));
+        }
+        channel.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the journal");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Entry entry) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (closing) {
+            throw new IOException("Journal is closed");
+        }
+        queue.offer(entry);
+        // close() may have drained the queue before the entry was in it.
+        if (closing && queue.remove(entry)) {
+            throw new IOException("Journal is closed");
+        }
+        LockSupport.unpark(thread);
+        return entry.future;
+    }
+
+    private void run() {
+        while (true) {
+            Entry entry = queue.poll();
+            try {
+                if (entry == null) {
+                    commit();
+                    if (queue.isEmpty()) {
+                        if (closing) {
+                            return;
+                        }
+                        LockSupport.park(this);
+                    }
+                } else if (failure != null) {
+                    entry.future.completeExceptionally(failure);
+                } else if (entry.task != null) {
+                    commit();
+                    runTask(entry);
+                } else {
+                    add(entry);
+                }
+            } catch (Throwable t) {
+                // Treated as a failed write, so the thread keeps failing every entry instead of
+                // leaving them waiting.
+                fail(t instanceof IOException ? (IOException) t : new IOException("Journal writer failed", t));
+                if (entry != null) {
+                    entry.future.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private void add(Entry entry) {
+        if (buffer.remaining() < entry.record.length) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + entry.record.length));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        buffer.put(entry.record);
+        batch.add(entry);
+    }
+
+    /**
+     * Writes the pending batch with one fsync and completes its futures.
+     */
+    private void commit() {
+        if (batch.isEmpty() || failure != null) {
+            return;
+        }
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            commits++;
+            records += batch.size();
+            for (Entry entry : batch) {
+                entry.future.complete(null);
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            buffer.clear();
+            batch.clear();
+        }
+    }
+
+    private void runTask(Entry entry) {
+        if (failure != null) {
+            entry.future.completeExceptionally(failure);
+            return;
+        }
+        try {
+            entry.task.run();
+        } catch (IOException | RuntimeException e) {
+            // The file still holds every record, so later appends are safe.
+            entry.future.completeExceptionally(e);
+            return;
+        }
+        try {
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(entry.record), 0);
+            channel.position(entry.record.length);
+            channel.force(false);
+            entry.future.complete(null);
+        } catch (IOException e) {
+            entry.future.completeExceptionally(e);
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        for (Entry entry : batch) {
+            entry.future.completeExceptionally(e);
+        }
+        batch.clear();
+        buffer.clear();
+    }
+}
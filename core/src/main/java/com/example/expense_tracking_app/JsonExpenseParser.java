@@ -0,0 +1,204 @@
+package com.example.expense_tracking_app;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads expenses from a JSON array of objects with the keys date, name, amount, category,
+ * reason and notes. Amounts may be numbers or strings. Other keys are skipped.
+ */
+public class JsonExpenseParser extends ExpenseParser {
+    private boolean started;
+    private boolean finished;
+
+    public JsonExpenseParser(ReadableByteChannel channel, String defaultCategory) {
+        super(channel, defaultCategory);
+    }
+
+    @Override
+    public boolean read(ExpenseBatch batch) throws IOException {
+        if (!started) {
+            started = true;
+            expect('[');
+            if (peekToken() == ']') {
+                next();
+                finished = true;
+            }
+        }
+        while (!finished && !batch.isFull()) {
+            readObject(batch);
+            int c = nextToken();
+            if (c == ']') {
+                finished = true;
+            } else if (c != ',') {
+                throw error("Expected ',' or ']'");
+            }
+        }
+        if (finished && nextToken() >= 0) {
+            throw error("Unexpected content after the array");
+        }
+        return !finished;
+    }
+
+    private void readObject(ExpenseBatch batch) throws IOException {
+        expect('{');
+        startRow();
+        if (peekToken() == '}') {
+            next();
+            endRow(batch);
+            return;
+        }
+        while (true) {
+            expect('"');
+            readString();
+            Column column = Column.named(field);
+            expect(':');
+            if (readValue(column != Column.IGNORED)) {
+                setField(column);
+            }
+            int c = nextToken();
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+        endRow(batch);
+    }
+
+    /**
+     * Reads a value into {@link #field}. Objects and arrays are skipped, as are all values if
+     * {@code keep} is false.
+     *
+     * @return true if {@link #field} holds a string, number or boolean value
+     */
+    private boolean readValue(boolean keep) throws IOException {
+        int c = nextToken();
+        if (c == '"') {
+            readString();
+            return keep;
+        }
+        if (c == '{' || c == '[') {
+            skipNested(c);
+            return false;
+        }
+        field.setLength(0);
+        while (c >= 0 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+            field.append((char) c);
+            int n = peek();
+            if (n == ',' || n == '}' || n == ']' || isWhitespace(n)) {
+                break;
+            }
+            c = next();
+        }
+        if (field.length() == 0) {
+            throw error("Expected a value");
+        }
+        if ("null".contentEquals(field)) {
+            return false;
+        }
+        return keep;
+    }
+
+    private void skipNested(int open) throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = next();
+            if (c < 0) {
+                throw error("Unterminated " + (open == '{' ? "object" : "array"));
+            }
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote has been consumed into {@link #field}.
+     */
+    private void readString() throws IOException {
+        field.setLength(0);
+        while (true) {
+            int c = next();
+            if (c < 0) {
+                throw error("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = next();
+                switch (c) {
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = readHex();
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+            }
+            field.append((char) c);
+        }
+    }
+
+    private int readHex() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0) {
+                throw error("Invalid unicode escape");
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextToken() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private int nextToken() throws IOException {
+        int c;
+        do {
+            c = next();
+        } while (isWhitespace(c));
+        return c;
+    }
+
+    private int peekToken() throws IOException {
+        int c;
+        while (isWhitespace(c = peek())) {
+            next();
+        }
+        return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.expense_tracking_app;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from {@code long} keys to non-negative {@code int} values, without
+ * boxing. Uses linear probing with backward-shift deletion. Not thread safe.
+ */
+public class LongIntMap {
+    public static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int size;
+
+    public LongIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(long key) {
+        for (int slot = hash(key); values[slot] != MISSING; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        int slot = hash(key);
+        for (; values[slot] != MISSING; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * 2 > values.length) {
+            rehash(values.length * 2);
+        }
+    }
+
+    /**
+     * @return the value that was mapped to {@code key}, or {@link #MISSING}
+     */
+    public int remove(long key) {
+        int slot = hash(key);
+        for (; values[slot] != MISSING; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                break;
+            }
+        }
+        int value = values[slot];
+        if (value == MISSING) {
+            return MISSING;
+        }
+
+        int hole = slot;
+        values[hole] = MISSING;
+        for (int current = (hole + 1) & mask; values[current] != MISSING; current = (current + 1) & mask) {
+            int home = hash(keys[current]);
+            boolean reachable = hole <= current ? hole < home && home <= current : hole < home || home <= current;
+            if (!reachable) {
+                keys[hole] = keys[current];
+                values[hole] = values[current];
+                values[current] = MISSING;
+                hole = current;
+            }
+        }
+        size--;
+        return value;
+    }
+
+    public LongIntMap copy() {
+        LongIntMap copy = new LongIntMap();
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.mask = mask;
+        copy.shift = shift;
+        copy.size = size;
+        return copy;
+    }
+
+    public void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    private int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != MISSING) {
+                int slot = hash(oldKeys[i]);
+                while (values[slot] != MISSING) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.expense_tracking_app;
+
+/**
+ * Fixed-capacity least-recently-used cache keyed by primitive {@code long}s, so lookups never box
+ * the key. Entries live in parallel arrays linked into a recency list; the hash table uses linear
+ * probing. Not thread safe.
+ */
+public class LongLruCache<V> {
+    private static final int NONE = -1;
+
+    private final long[] keys;
+    private final Object[] values;
+    private final int[] previous;
+    private final int[] next;
+    private final int[] table;
+    private final int mask;
+    private final int shift;
+
+    private int size;
+    private int head = NONE;
+    private int tail = NONE;
+
+    public LongLruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        keys = new long[capacity];
+        values = new Object[capacity];
+        previous = new int[capacity];
+        next = new int[capacity];
+
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        table = new int[tableSize];
+        mask = tableSize - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(tableSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the cached value, which becomes the most recently used, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int entry = find(key);
+        if (entry == NONE) {
+            return null;
+        }
+        moveToFront(entry);
+        return (V) values[entry];
+    }
+
+    /**
+     * Caches {@code value}, evicting the least recently used entry if the cache is full.
+     */
+    public void put(long key, V value) {
+        int entry = find(key);
+        if (entry != NONE) {
+            values[entry] = value;
+            moveToFront(entry);
+            return;
+        }
+
+        if (size == keys.length) {
+            entry = tail;
+            unlink(entry);
+            removeSlot(slotOf(entry));
+        } else {
+            entry = size++;
+        }
+
+        keys[entry] = key;
+        values[entry] = value;
+        int slot = hash(key);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+        linkFront(entry);
+    }
+
+    private int find(long key) {
+        for (int slot = hash(key); table[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = table[slot] - 1;
+            if (keys[entry] == key) {
+                return entry;
+            }
+        }
+        return NONE;
+    }
+
+    private int slotOf(int entry) {
+        int slot = hash(keys[entry]);
+        while (table[slot] != entry + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Deletes a slot and shifts later entries of the probe sequence back so lookups stay correct.
+     */
+    private void removeSlot(int slot) {
+        int hole = slot;
+        table[hole] = 0;
+        for (int current = (hole + 1) & mask; table[current] != 0; current = (current + 1) & mask) {
+            int home = hash(keys[table[current] - 1]);
+            boolean reachable = hole <= current ? hole < home && home <= current : hole < home || home <= current;
+            if (!reachable) {
+                table[hole] = table[current];
+                table[current] = 0;
+                hole = current;
+            }
+        }
+    }
+
+    private int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+    }
+
+    private void moveToFront(int entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkFront(entry);
+        }
+    }
+
+    private void linkFront(int entry) {
+        previous[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE) {
+            previous[head] = entry;
+        }
+        head = entry;
+        if (tail == NONE) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(int entry) {
+        int before = previous[entry];
+        int after = next[entry];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            head = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        } else {
+            tail = before;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.expense_tracking_app;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The name, reason and notes of the rows of a mapped segment, left in the file until a row is
+ * read. Strings are decoded each time they are read and not kept, so the rows of a mapped segment
+ * cost no heap however many have been displayed or searched; {@link ExpensePages} keeps those
+ * on screen. The {@link NameKeys} of the names are stored beside them, so ordering rows decodes
+ * nothing.
+ * <p>
+ * Strings are stored as their UTF-8 after an int length, so they may be of any length. Reads
+ * may come from any thread.
+ */
+final class MappedText {
+    static final int NAME = 0;
+    static final int REASON = 1;
+    static final int NOTES = 2;
+    static final int FIELDS = 3;
+
+    /** Marks a null string in the offsets. */
+    static final int NULL_OFFSET = -1;
+
+    private final IntBuffer offsets;
+    private final LongBuffer nameKeys;
+    private final ByteBuffer heap;
+
+    /**
+     * @param offsets  {@link #FIELDS} heap offsets per row, or {@link #NULL_OFFSET}
+     * @param nameKeys the two longs of each row's name key
+     */
+    MappedText(IntBuffer offsets, LongBuffer nameKeys, ByteBuffer heap) {
+        this.offsets = offsets;
+        this.nameKeys = nameKeys;
+        this.heap = heap;
+    }
+
+    String getName(int index) {
+        return decode(index, NAME);
+    }
+
+    String getReason(int index) {
+        return decode(index, REASON);
+    }
+
+    String getNotes(int index) {
+        return decode(index, NOTES);
+    }
+
+    long getNameKey(int index, int part) {
+        return nameKeys.get(index * 2 + part);
+    }
+
+    String decode(int index, int field) {
+        int offset = offsets.get(index * FIELDS + field);
+        return offset == NULL_OFFSET ? null : decode(heap, offset);
+    }
+
+    /**
+     * @return the stored bytes of a field, length included, or null if it is null
+     */
+    byte[] getBytes(int index, int field) {
+        int offset = offsets.get(index * FIELDS + field);
+        return offset == NULL_OFFSET ? null : getBytes(heap, offset);
+    }
+
+    /**
+     * @return {@link #hash(String)} of a field, computed from its bytes without decoding it
+     */
+    long hash(int index, int field) {
+        int offset = offsets.get(index * FIELDS + field);
+        if (offset == NULL_OFFSET) {
+            return hash(null);
+        }
+        int length = heap.getInt(offset);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset + 4, end = offset + 4 + length; i < end; i++) {
+            hash = (hash ^ (heap.get(i) & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 of {@code value}, the bytes the heap stores, since
+     * {@link String#hashCode()} collides for short strings.
+     */
+    static long hash(String value) {
+        if (value == null) {
+            return 0x9e3779b97f4a7c15L;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // Everything from the first character that is not ASCII is hashed from its bytes.
+                for (byte b : value.substring(i).getBytes(StandardCharsets.UTF_8)) {
+                    hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+                }
+                return hash;
+            }
+            hash = (hash ^ c) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Decodes the string at {@code offset} of {@code heap}. Most text is ASCII, whose UTF-8 is
+     * its Latin-1, so it is copied into the string as is.
+     */
+    static String decode(ByteBuffer heap, int offset) {
+        byte[] bytes = getBytes(heap, offset);
+        for (int i = 4; i < bytes.length; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, 4, bytes.length - 4, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(bytes, 4, bytes.length - 4, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] getBytes(ByteBuffer heap, int offset) {
+        byte[] bytes = new byte[heap.getInt(offset) + 4];
+        ByteBuffer source = heap.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.expense_tracking_app;
+
+/**
+ * Amounts of money as a {@code long} count of minor units (cents), with a parser and formatter
+ * that do not allocate.
+ */
+public final class Money {
+    public static final int MINOR_UNITS = 100;
+
+    private static final int FRACTION_DIGITS = 2;
+    private static final long MAX_MAJOR_UNITS = Long.MAX_VALUE / MINOR_UNITS;
+
+    private Money() {
+    }
+
+    /**
+     * Parses text such as {@code "1,234.5"}, {@code "$12"} or {@code "-0.99"}. Currency symbols,
+     * grouping separators and whitespace are skipped; at most two fraction digits are allowed.
+     *
+     * @throws NumberFormatException if the text has no digits or is malformed
+     */
+    public static long parse(CharSequence text) {
+        long major = 0;
+        int minor = 0;
+        int fractionDigits = -1;
+        boolean negative = false;
+        boolean digits = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (fractionDigits < 0) {
+                    if (major > MAX_MAJOR_UNITS / 10) {
+                        throw new NumberFormatException("Amount too large: " + text);
+                    }
+                    major = major * 10 + (c - '0');
+                } else if (fractionDigits < FRACTION_DIGITS) {
+                    minor = minor * 10 + (c - '0');
+                    fractionDigits++;
+                } else {
+                    throw new NumberFormatException("Too many fraction digits: " + text);
+                }
+            } else if (c == '.') {
+                if (fractionDigits >= 0) {
+                    throw new NumberFormatException("Malformed amount: " + text);
+                }
+                fractionDigits = 0;
+            } else if (c == '-' && !digits && !negative) {
+                negative = true;
+            } else if (c != ',' && !Character.isWhitespace(c) && !isCurrencySymbol(c)) {
+                throw new NumberFormatException("Malformed amount: " + text);
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("No digits: " + text);
+        }
+
+        for (int i = Math.max(fractionDigits, 0); i < FRACTION_DIGITS; i++) {
+            minor *= 10;
+        }
+        long amount = major * MINOR_UNITS + minor;
+        return negative ? -amount : amount;
+    }
+
+    /**
+     * Appends {@code amount} as {@code 1,234.56}, with a leading {@code -} if negative.
+     */
+    public static StringBuilder format(long amount, StringBuilder out) {
+        return format(amount, "", out);
+    }
+
+    /**
+     * Appends {@code amount} as {@code $1,234.56}, or {@code -$1,234.56} if negative.
+     */
+    public static StringBuilder format(long amount, CharSequence symbol, StringBuilder out) {
+        return format(amount, symbol, true, out);
+    }
+
+    /**
+     * Appends {@code amount} as {@code 1234.56}, without grouping separators, for files that are
+     * read back by {@link #parse(CharSequence)}.
+     */
+    public static StringBuilder formatPlain(long amount, StringBuilder out) {
+        return format(amount, "", false, out);
+    }
+
+    private static StringBuilder format(long amount, CharSequence symbol, boolean grouping, StringBuilder out) {
+        if (amount < 0) {
+            out.append('-');
+        }
+        out.append(symbol);
+
+        long major = Math.abs(amount / MINOR_UNITS);
+        int minor = (int) Math.abs(amount % MINOR_UNITS);
+
+        if (grouping) {
+            appendGrouped(major, out);
+        } else {
+            out.append(major);
+        }
+        out.append('.');
+        if (minor < 10) {
+            out.append('0');
+        }
+        out.append(minor);
+        return out;
+    }
+
+    /**
+     * @return {@code total / count}, rounded half away from zero, or 0 if {@code count} is 0
+     */
+    public static long average(long total, long count) {
+        if (count == 0) {
+            return 0;
+        }
+        long half = count / 2;
+        return total >= 0 ? (total + half) / count : (total - half) / count;
+    }
+
+    private static void appendGrouped(long value, StringBuilder out) {
+        if (value >= 1000) {
+            appendGrouped(value / 1000, out);
+            out.append(',');
+            int group = (int) (value % 1000);
+            if (group < 100) {
+                out.append('0');
+            }
+            if (group < 10) {
+                out.append('0');
+            }
+            out.append(group);
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static boolean isCurrencySymbol(char c) {
+        return Character.getType(c) == Character.CURRENCY_SYMBOL;
+    }
+}
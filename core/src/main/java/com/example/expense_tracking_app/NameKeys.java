@@ -0,0 +1,70 @@
+package com.example.expense_tracking_app;
+
+/**
+ * Collation keys for expense names, so the list can be ordered by name without comparing
+ * strings.
+ * <p>
+ * A key is two longs holding the first {@value #CHARS} characters of a name, each case-folded as
+ * {@link String#compareToIgnoreCase} folds it and packed into 7 bits: the first long holds nine
+ * characters in its low 63 bits, the second the next nine in its high 63 bits and, in its lowest
+ * bit, whether the key holds the whole name. Packing stops at the first character that does not
+ * fold to printable ASCII; that character is stored as {@code 0x7f}, above every other, or as 0
+ * if it is {@code '\0'}, and the rest of the key is zero.
+ * <p>
+ * Comparing two keys as numbers therefore orders two names as {@code compareToIgnoreCase} does,
+ * unless the keys are equal. Equal keys that both hold their whole name are equal names; only
+ * otherwise, which takes two names alike in their first {@value #CHARS} characters, do the names
+ * have to be compared.
+ */
+final class NameKeys {
+    static final int CHARS = 18;
+
+    private static final int CHARS_PER_LONG = 9;
+    private static final int STOP = 0x7f;
+    private static final long COMPLETE = 1;
+
+    private NameKeys() {
+    }
+
+    /**
+     * Stores the key of {@code name} at {@code keys[at]} and {@code keys[at + 1]}.
+     */
+    static void pack(String name, long[] keys, int at) {
+        long high = 0;
+        long low = 0;
+        boolean complete = name != null && name.length() <= CHARS;
+        int length = name == null ? 0 : Math.min(name.length(), CHARS);
+        for (int i = 0; i < length; i++) {
+            int folded = Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+            if (folded == 0 || folded >= STOP) {
+                folded = folded == 0 ? 0 : STOP;
+                complete = false;
+                length = i + 1;
+            }
+            if (i < CHARS_PER_LONG) {
+                high |= (long) folded << (CHARS_PER_LONG - 1 - i) * 7;
+            } else {
+                low |= (long) folded << (CHARS - i) * 7 - 6;
+            }
+        }
+        keys[at] = high;
+        keys[at + 1] = complete ? low | COMPLETE : low;
+    }
+
+    /**
+     * @return the order of two keys, or 0 if the names have to be compared to tell
+     */
+    static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+        if (aHigh != bHigh) {
+            return Long.compare(aHigh, bHigh);
+        }
+        return Long.compare(aLow >>> 1, bLow >>> 1);
+    }
+
+    /**
+     * @return whether two keys that {@link #compare} found equal are keys of equal names
+     */
+    static boolean isEqual(long aLow, long bLow) {
+        return (aLow & bLow & COMPLETE) != 0;
+    }
+}
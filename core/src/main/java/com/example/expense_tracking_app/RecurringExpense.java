@@ -0,0 +1,223 @@
+package com.example.expense_tracking_app;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A rule for an expense that repeats, such as rent on the first of every month or a subscription
+ * every two weeks. Rules are stored instead of their occurrences: occurrence {@code k} and the
+ * number of occurrences in any range are computed in O(1), so totals cost O(rules) however long a
+ * rule runs, and occurrences are only listed for the range being displayed.
+ * <p>
+ * A monthly rule repeats on the day of the month it starts on, or on the last day of shorter
+ * months.
+ */
+public class RecurringExpense {
+    public static final long NO_END = Long.MAX_VALUE;
+
+    /** No occurrence is counted after 9999-12-31, so open-ended ranges stay finite. */
+    private static final long LAST_DAY = EpochDays.of(9999, 12, 31);
+
+    public enum Unit {
+        DAY,
+        WEEK,
+        MONTH
+    }
+
+    private long id = Expense.NO_ID;
+    private final String name;
+    private final long amount;
+    private final String category;
+    private final Unit unit;
+    private final int interval;
+    private final long startEpochDay;
+    private final long endEpochDay;
+
+    /**
+     * @param interval    how many units apart the occurrences are, at least 1
+     * @param endEpochDay the last day an occurrence may fall on, or {@link #NO_END}
+     */
+    public RecurringExpense(String name, long amount, String category, Unit unit, int interval, long startEpochDay, long endEpochDay) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval " + interval);
+        }
+        this.name = name;
+        this.amount = amount;
+        this.category = category;
+        this.unit = unit;
+        this.interval = interval;
+        this.startEpochDay = startEpochDay;
+        this.endEpochDay = endEpochDay;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Unit getUnit() {
+        return unit;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public long getStartEpochDay() {
+        return startEpochDay;
+    }
+
+    public long getEndEpochDay() {
+        return endEpochDay;
+    }
+
+    /**
+     * @return a copy of this rule, with the same id, that files its occurrences under
+     * {@code newCategory}
+     */
+    public RecurringExpense withCategory(String newCategory) {
+        RecurringExpense copy = new RecurringExpense(name, amount, newCategory, unit, interval, startEpochDay, endEpochDay);
+        copy.id = id;
+        return copy;
+    }
+
+    /**
+     * @return the occurrence on {@code epochDay} as an expense, without an id since it is not
+     * stored
+     */
+    public Expense toExpense(long epochDay) {
+        return new Expense(name, LocalDate.ofEpochDay(epochDay), amount, category);
+    }
+
+    /**
+     * @return the day of occurrence {@code k}, counting from 0, ignoring the end of the rule
+     */
+    public long getOccurrence(long k) {
+        if (unit == Unit.MONTH) {
+            return EpochDays.ofMonthIndex(EpochDays.monthIndex(startEpochDay) + k * interval, EpochDays.dayOfMonth(startEpochDay));
+        }
+        return startEpochDay + k * step();
+    }
+
+    /**
+     * @return the index of the first occurrence on or after {@code epochDay}, ignoring the end
+     * of the rule
+     */
+    public long indexOnOrAfter(long epochDay) {
+        if (epochDay <= startEpochDay) {
+            return 0;
+        }
+        if (unit == Unit.MONTH) {
+            long k = (EpochDays.monthIndex(epochDay) - EpochDays.monthIndex(startEpochDay)) / interval;
+            return getOccurrence(k) >= epochDay ? k : k + 1;
+        }
+        return (epochDay - startEpochDay + step() - 1) / step();
+    }
+
+    /**
+     * @return the number of occurrences within {@code [startDay, endDay]}
+     */
+    public long getCount(long startDay, long endDay) {
+        long first = Math.max(startDay, startEpochDay);
+        long last = Math.min(Math.min(endDay, endEpochDay), LAST_DAY);
+        if (last < first) {
+            return 0;
+        }
+        return indexOnOrAfter(last + 1) - indexOnOrAfter(first);
+    }
+
+    /**
+     * @return the total amount of the occurrences within {@code [startDay, endDay]}
+     */
+    public long getTotal(long startDay, long endDay) {
+        return getCount(startDay, endDay) * amount;
+    }
+
+    private long step() {
+        return unit == Unit.WEEK ? 7L * interval : interval;
+    }
+
+    /**
+     * The occurrences of several rules within a range of days, in date order, then by name.
+     */
+    public static class Occurrences {
+        private final RecurringExpense[] rules;
+        private final long[] days;
+        private final int size;
+
+        private Occurrences(RecurringExpense[] rules, long[] days, int size) {
+            this.rules = rules;
+            this.days = days;
+            this.size = size;
+        }
+
+        /**
+         * Lists the occurrences of {@code rules} within {@code [startDay, endDay]}. Takes time
+         * proportional to the number of rules plus the number of occurrences listed.
+         */
+        public static Occurrences of(List<RecurringExpense> rules, long startDay, long endDay) {
+            long total = 0;
+            for (RecurringExpense rule : rules) {
+                total += rule.getCount(startDay, endDay);
+            }
+            int size = Math.toIntExact(total);
+            RecurringExpense[] occurrenceRules = new RecurringExpense[size];
+            long[] days = new long[size];
+            int[] order = new int[size];
+
+            int count = 0;
+            for (RecurringExpense rule : rules) {
+                long n = rule.getCount(startDay, endDay);
+                long k = rule.indexOnOrAfter(Math.max(startDay, rule.startEpochDay));
+                for (long i = 0; i < n; i++, k++) {
+                    occurrenceRules[count] = rule;
+                    days[count] = rule.getOccurrence(k);
+                    order[count] = count;
+                    count++;
+                }
+            }
+            Rows.sort(order, size, (a, b) -> {
+                int dateComparison = Long.compare(days[a], days[b]);
+                if (dateComparison == 0) {
+                    return occurrenceRules[a].name.compareToIgnoreCase(occurrenceRules[b].name);
+                }
+                return dateComparison;
+            });
+
+            RecurringExpense[] sortedRules = new RecurringExpense[size];
+            long[] sortedDays = new long[size];
+            for (int i = 0; i < size; i++) {
+                sortedRules[i] = occurrenceRules[order[i]];
+                sortedDays[i] = days[order[i]];
+            }
+            return new Occurrences(sortedRules, sortedDays, size);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public RecurringExpense getRule(int position) {
+            return rules[position];
+        }
+
+        public long getEpochDay(int position) {
+            return days[position];
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.expense_tracking_app;
+
+public interface RowComparator {
+    int compare(int a, int b);
+}
@@ -0,0 +1,16 @@
+package com.example.expense_tracking_app;
+
+/**
+ * A {@link RowComparator} that also packs each row's sort keys into a few longs, so
+ * {@link Rows#sort} can order rows by radix sort and only compare the rows whose keys are all
+ * equal.
+ */
+public interface RowKeyComparator extends RowComparator {
+    int getKeyCount();
+
+    /**
+     * @return key {@code index} of {@code row}. Of two rows whose keys before {@code index} are
+     * equal, the one with the smaller key {@code index} comes first.
+     */
+    long key(int row, int index);
+}
@@ -0,0 +1,142 @@
+package com.example.expense_tracking_app;
+
+import java.util.Arrays;
+
+/**
+ * Helpers for arrays of {@link ExpenseStore} row indices.
+ */
+public final class Rows {
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int RADIX_PASSES = (Long.SIZE + RADIX_BITS - 1) / RADIX_BITS;
+    private static final int RADIX_SORT_THRESHOLD = 256;
+
+    private Rows() {
+    }
+
+    /**
+     * Stable merge sort of {@code rows[0, count)} without boxing the row indices. Rows are radix
+     * sorted by their keys first if the comparator has them.
+     */
+    public static void sort(int[] rows, int count, RowComparator comparator) {
+        if (count < 2) {
+            return;
+        }
+        if (comparator instanceof RowKeyComparator && count >= RADIX_SORT_THRESHOLD) {
+            sortByKeys(rows, new int[count], 0, count, (RowKeyComparator) comparator, 0);
+            return;
+        }
+        int[] buffer = Arrays.copyOf(rows, count);
+        mergeSort(buffer, rows, 0, count, comparator);
+    }
+
+    /**
+     * Sorts {@code rows[from, to)} by key {@code index}, then each run of rows whose keys are
+     * equal by the next key the same way, or by merge sort once the run is short or out of keys.
+     */
+    private static void sortByKeys(int[] rows, int[] buffer, int from, int to, RowKeyComparator comparator, int index) {
+        int count = to - from;
+        long[] keys = new long[count];
+        boolean sorted = true;
+        for (int i = 0; i < count; i++) {
+            keys[i] = comparator.key(rows[from + i], index);
+            sorted &= i == 0 || keys[i - 1] <= keys[i];
+        }
+        // Rows that are already in order, as when the list is sorted again after a rebuild, only
+        // have their ties sorted.
+        if (!sorted) {
+            keys = radixSort(rows, buffer, from, keys);
+        }
+
+        for (int start = 0; start < count; ) {
+            int end = start + 1;
+            while (end < count && keys[end] == keys[start]) {
+                end++;
+            }
+            if (end - start >= RADIX_SORT_THRESHOLD && index + 1 < comparator.getKeyCount()) {
+                sortByKeys(rows, buffer, from + start, from + end, comparator, index + 1);
+            } else if (end - start > 1) {
+                System.arraycopy(rows, from + start, buffer, from + start, end - start);
+                mergeSort(buffer, rows, from + start, from + end, comparator);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Least significant digit first radix sort of the rows starting at {@code from} by their
+     * {@code keys}, skipping the digits every key shares.
+     *
+     * @return the keys in the new order of the rows
+     */
+    private static long[] radixSort(int[] rows, int[] buffer, int from, long[] keys) {
+        int count = keys.length;
+        int[][] counts = new int[RADIX_PASSES][RADIX + 1];
+        for (int i = 0; i < count; i++) {
+            // Flipping the sign bit turns the signed order of the keys into their unsigned order.
+            long key = keys[i] ^ Long.MIN_VALUE;
+            keys[i] = key;
+            for (int pass = 0; pass < RADIX_PASSES; pass++) {
+                counts[pass][(int) (key >>> pass * RADIX_BITS) & RADIX - 1]++;
+            }
+        }
+
+        long[] keyBuffer = new long[count];
+        for (int pass = 0; pass < RADIX_PASSES; pass++) {
+            int[] starts = counts[pass];
+            int shift = pass * RADIX_BITS;
+            if (starts[(int) (keys[0] >>> shift) & RADIX - 1] == count) {
+                continue;
+            }
+            for (int digit = 0, start = 0; digit <= RADIX; digit++) {
+                int digitCount = starts[digit];
+                starts[digit] = start;
+                start += digitCount;
+            }
+            for (int i = 0; i < count; i++) {
+                int position = starts[(int) (keys[i] >>> shift) & RADIX - 1]++;
+                keyBuffer[position] = keys[i];
+                buffer[from + position] = rows[from + i];
+            }
+            long[] sortedKeys = keyBuffer;
+            keyBuffer = keys;
+            keys = sortedKeys;
+            System.arraycopy(buffer, from, rows, from, count);
+        }
+        return keys;
+    }
+
+    private static void mergeSort(int[] source, int[] destination, int from, int to, RowComparator comparator) {
+        int length = to - from;
+        if (length <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int row = destination[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(destination[j], row) > 0) {
+                    destination[j + 1] = destination[j];
+                    j--;
+                }
+                destination[j + 1] = row;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(destination, source, from, middle, comparator);
+        mergeSort(destination, source, middle, to, comparator);
+
+        if (comparator.compare(source[middle - 1], source[middle]) <= 0) {
+            System.arraycopy(source, from, destination, from, length);
+            return;
+        }
+
+        for (int i = from, p = from, q = middle; i < to; i++) {
+            if (q >= to || p < middle && comparator.compare(source[p], source[q]) <= 0) {
+                destination[i] = source[p++];
+            } else {
+                destination[i] = source[q++];
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.expense_tracking_app;
+
+/**
+ * Matches expenses whose name, reason or notes contain the query. See {@link TextIndex} for how
+ * text is compared.
+ */
+public class SearchFilter implements ExpenseFilter {
+    private String query = "";
+    private String pattern = "";
+    private boolean prefix;
+    private boolean enabled;
+
+    public SearchFilter() {
+        enabled = false;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean filter(Expense expense) {
+        if (!enabled) {
+            return true;
+        }
+        return TextIndex.contains(expense.getName(), pattern)
+                || TextIndex.contains(expense.getReason(), pattern)
+                || TextIndex.contains(expense.getNotes(), pattern);
+    }
+
+    @Override
+    public boolean filter(ExpenseStore store, int row) {
+        if (!enabled) {
+            return true;
+        }
+        return TextIndex.matches(store, row, pattern);
+    }
+
+    @Override
+    public FilterExpression toExpression() {
+        if (!enabled) {
+            return FilterExpression.all();
+        }
+        return prefix ? FilterExpression.textStartsWith(query) : FilterExpression.textContains(query);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Searches for {@code query}, or disables the filter if it has no letters or digits.
+     */
+    public void setQuery(String query) {
+        this.query = query == null ? "" : query;
+        this.pattern = TextIndex.pattern(this.query, prefix);
+        setEnabled(!pattern.trim().isEmpty());
+    }
+
+    public boolean isPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @param prefix true to only match the query at the start of a word
+     */
+    public void setPrefix(boolean prefix) {
+        this.prefix = prefix;
+        setQuery(query);
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.expense_tracking_app;
+
+import java.util.Arrays;
+
+/**
+ * An order of the expense list: by one {@link Key}, ascending or descending, with ties broken
+ * by each of the other keys in turn, in the order they are declared and ascending.
+ * <p>
+ * Comparators only compare numbers. Dates and amounts are compared as stored, names by their
+ * {@link NameKeys} and categories by a rank of their names. The keys are also packed into a few
+ * longs per row, so {@link Rows#sort} radix sorts the rows and only compares those left tied.
+ */
+public final class SortOrder {
+    public enum Key {
+        DATE,
+        NAME,
+        AMOUNT,
+        CATEGORY
+    }
+
+    /** By date, oldest first, then by name. */
+    public static final SortOrder DEFAULT = new SortOrder(Key.DATE, true);
+
+    private static final Key[] KEYS = Key.values();
+
+    private final Key key;
+    private final boolean ascending;
+
+    public SortOrder(Key key, boolean ascending) {
+        this.key = key;
+        this.ascending = ascending;
+    }
+
+    public Key getKey() {
+        return key;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * @return a comparator of the rows of {@code store} in this order, to be used from one thread
+     * at a time. It has to be made again after a category is renamed.
+     */
+    public RowKeyComparator comparator(ExpenseStore store) {
+        Key[] keys = new Key[KEYS.length];
+        keys[0] = key;
+        for (int i = 0, k = 1; i < KEYS.length; i++) {
+            if (KEYS[i] != key) {
+                keys[k++] = KEYS[i];
+            }
+        }
+        return new Comparator(store, keys, ascending);
+    }
+
+    /**
+     * @return the rank of each category id when the categories are ordered case-insensitively by
+     * name, equal for names that only differ in case
+     */
+    private static int[] rankCategories(ExpenseStore store) {
+        int count = store.getCategoryCount();
+        Integer[] ids = new Integer[count];
+        for (int id = 0; id < count; id++) {
+            ids[id] = id;
+        }
+        Arrays.sort(ids, (a, b) -> store.getCategoryName(a).compareToIgnoreCase(store.getCategoryName(b)));
+        int[] ranks = new int[count];
+        for (int i = 1; i < count; i++) {
+            boolean tied = store.getCategoryName(ids[i - 1]).equalsIgnoreCase(store.getCategoryName(ids[i]));
+            ranks[ids[i]] = tied ? ranks[ids[i - 1]] : i;
+        }
+        return ranks;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SortOrder)) {
+            return false;
+        }
+        SortOrder other = (SortOrder) o;
+        return key == other.key && ascending == other.ascending;
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode() * 2 + (ascending ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return key + (ascending ? " ascending" : " descending");
+    }
+
+    private static final class Comparator implements RowKeyComparator {
+        private final ExpenseStore store;
+        private final Key[] keys;
+        private final boolean ascending;
+        private final int direction;
+        /** Ranked again when categories are added. */
+        private int[] categoryRanks;
+
+        Comparator(ExpenseStore store, Key[] keys, boolean ascending) {
+            this.store = store;
+            this.keys = keys;
+            this.ascending = ascending;
+            this.direction = ascending ? 1 : -1;
+            this.categoryRanks = rankCategories(store);
+        }
+
+        @Override
+        public int getKeyCount() {
+            return 3;
+        }
+
+        /**
+         * The first key, inverted if descending, then the name key where it breaks ties. A date
+         * or category only takes half a long, so the rest holds the top of the next key: the
+         * first four characters of the name, or the date.
+         */
+        @Override
+        public long key(int row, int index) {
+            switch (keys[0]) {
+                case DATE:
+                    if (index == 0) {
+                        int day = store.getEpochDay(row);
+                        return (long) (ascending ? day : ~day) << 32 | store.getNameKey(row, 0) >>> 31;
+                    }
+                    return nameKey(row, index - 1);
+                case NAME:
+                    long name = nameKey(row, index);
+                    return index > 1 || ascending ? name : ~name;
+                case AMOUNT:
+                    if (index == 0) {
+                        long amount = store.getAmount(row);
+                        return ascending ? amount : ~amount;
+                    }
+                    int day = store.getEpochDay(row);
+                    return index == 1 ? (long) day << 32 | store.getNameKey(row, 0) >>> 31 : store.getNameKey(row, 0);
+                default:
+                    if (index == 0) {
+                        int rank = getCategoryRank(row);
+                        return (long) (ascending ? rank : ~rank) << 32 | store.getEpochDay(row) - (long) Integer.MIN_VALUE;
+                    }
+                    return nameKey(row, index - 1);
+            }
+        }
+
+        /**
+         * @return the first or second long of the name key as a signed order, or 0 past those
+         */
+        private long nameKey(int row, int index) {
+            return index == 0 ? store.getNameKey(row, 0) : index == 1 ? store.getNameKey(row, 1) >>> 1 : 0;
+        }
+
+        @Override
+        public int compare(int a, int b) {
+            int comparison = direction * compare(keys[0], a, b);
+            for (int i = 1; comparison == 0 && i < keys.length; i++) {
+                comparison = compare(keys[i], a, b);
+            }
+            return comparison;
+        }
+
+        private int compare(Key key, int a, int b) {
+            switch (key) {
+                case DATE:
+                    return Integer.compare(store.getEpochDay(a), store.getEpochDay(b));
+                case NAME:
+                    return store.compareNames(a, b);
+                case AMOUNT:
+                    return Long.compare(store.getAmount(a), store.getAmount(b));
+                default:
+                    return Integer.compare(getCategoryRank(a), getCategoryRank(b));
+            }
+        }
+
+        private int getCategoryRank(int row) {
+            int category = store.getCategoryId(row);
+            if (category >= categoryRanks.length) {
+                categoryRanks = rankCategories(store);
+            }
+            return categoryRanks[category];
+        }
+    }
+}
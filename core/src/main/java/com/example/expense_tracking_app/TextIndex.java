@@ -0,0 +1,261 @@
+package com.example.expense_tracking_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Inverted n-gram index over the name, reason and notes of every row of an {@link ExpenseStore}.
+ * <p>
+ * Text is matched case-insensitively, with every character that is not a letter or digit treated
+ * as a space. Each field is indexed as if it started with a space, so a word prefix query is a
+ * substring query for {@code " " + prefix}. Every 1-, 2- and 3-gram of a field has a
+ * {@link RowBitmap} of the rows containing it: queries of up to three characters are a single
+ * lookup, longer ones intersect the postings of their trigrams and then check the few remaining
+ * rows.
+ * <p>
+ * {@link #snapshot() Snapshots} share the postings. After a snapshot, the first change copies
+ * the map of grams, and the first change to a posting copies that posting.
+ */
+public class TextIndex {
+    private static final int MAX_GRAM = 3;
+
+    private LongIntMap postingsByGram = new LongIntMap();
+    private List<RowBitmap> postings = new ArrayList<>();
+    /** True while a snapshot may share the map and the list of postings. */
+    private boolean shared;
+    /** The postings created or copied since the last snapshot. */
+    private final BitSet owned = new BitSet();
+
+    public void build(ExpenseStore store) {
+        postingsByGram = new LongIntMap();
+        postings = new ArrayList<>();
+        shared = false;
+        owned.clear();
+        for (int row = 0; row < store.size(); row++) {
+            add(row, store.getName(row), store.getReason(row), store.getNotes(row));
+        }
+    }
+
+    /**
+     * @return an index of the current rows, safe to read from any thread while this one keeps
+     * being modified. Takes constant time.
+     */
+    public TextIndex snapshot() {
+        TextIndex snapshot = new TextIndex();
+        snapshot.postingsByGram = postingsByGram;
+        snapshot.postings = postings;
+        snapshot.shared = true;
+        shared = true;
+        return snapshot;
+    }
+
+    public void add(int row, String name, String reason, String notes) {
+        addGrams(row, name);
+        addGrams(row, reason);
+        addGrams(row, notes);
+    }
+
+    public void update(int row, String previousName, String previousReason, String previousNotes,
+                       String name, String reason, String notes) {
+        removeGrams(row, previousName);
+        removeGrams(row, previousReason);
+        removeGrams(row, previousNotes);
+        add(row, name, reason, notes);
+    }
+
+    /**
+     * Mirrors {@link ExpenseStore#remove(int)}.
+     *
+     * @param movedRow the row the store moved into {@code row}'s slot, or -1
+     */
+    public void remove(int row, String name, String reason, String notes,
+                       int movedRow, String movedName, String movedReason, String movedNotes) {
+        removeGrams(row, name);
+        removeGrams(row, reason);
+        removeGrams(row, notes);
+        if (movedRow >= 0) {
+            removeGrams(movedRow, movedName);
+            removeGrams(movedRow, movedReason);
+            removeGrams(movedRow, movedNotes);
+            add(row, movedName, movedReason, movedNotes);
+        }
+    }
+
+    /**
+     * @param prefix true to only match {@code query} at the start of a word
+     * @return the rows of {@code store} matching {@code query}. The bitmap may be shared with the
+     * index and must not be modified.
+     */
+    public RowBitmap search(ExpenseStore store, String query, boolean prefix) {
+        String pattern = pattern(query, prefix);
+        if (pattern.length() <= MAX_GRAM) {
+            return posting(pattern, 0, pattern.length());
+        }
+
+        RowBitmap[] trigrams = new RowBitmap[pattern.length() - MAX_GRAM + 1];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = posting(pattern, i, MAX_GRAM);
+        }
+        // Intersect the rarest trigrams first so the intermediate results stay small.
+        Arrays.sort(trigrams, (a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        RowBitmap candidates = trigrams[0];
+        for (int i = 1; i < trigrams.length && candidates.cardinality() > 0; i++) {
+            candidates = candidates.and(trigrams[i]);
+        }
+
+        RowBitmap matches = new RowBitmap();
+        for (int row : candidates.toArray()) {
+            if (matches(store, row, pattern)) {
+                matches.add(row);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return an upper bound on the number of rows matching {@code query}, without checking any
+     * row
+     */
+    public int estimate(String query, boolean prefix) {
+        String pattern = pattern(query, prefix);
+        int estimate = Integer.MAX_VALUE;
+        int length = Math.min(pattern.length(), MAX_GRAM);
+        for (int i = 0; i + length <= pattern.length(); i++) {
+            estimate = Math.min(estimate, posting(pattern, i, length).cardinality());
+        }
+        return estimate;
+    }
+
+    /**
+     * @return {@code query} in the form used by {@link #matches(ExpenseStore, int, String)}
+     */
+    static String pattern(String query, boolean prefix) {
+        StringBuilder pattern = new StringBuilder(query.length() + 1);
+        if (prefix) {
+            pattern.append(' ');
+        }
+        for (int i = 0; i < query.length(); i++) {
+            pattern.append(normalize(query.charAt(i)));
+        }
+        return pattern.toString();
+    }
+
+    /**
+     * Checks a row without the index. {@code pattern} must come from {@link #pattern(String, boolean)}.
+     */
+    static boolean matches(ExpenseStore store, int row, String pattern) {
+        return contains(store.getName(row), pattern)
+                || contains(store.getReason(row), pattern)
+                || contains(store.getNotes(row), pattern);
+    }
+
+    static boolean contains(String field, String pattern) {
+        if (field == null) {
+            return false;
+        }
+        for (int start = 0, last = field.length() + 1 - pattern.length(); start <= last; start++) {
+            int i = 0;
+            while (i < pattern.length() && charAt(field, start + i) == pattern.charAt(i)) {
+                i++;
+            }
+            if (i == pattern.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addGrams(int row, String field) {
+        if (field == null) {
+            return;
+        }
+        for (int start = 0; start <= field.length(); start++) {
+            for (int length = 1; length <= MAX_GRAM && start + length <= field.length() + 1; length++) {
+                long gram = gram(field, start, length);
+                int posting = postingsByGram.get(gram);
+                if (posting == LongIntMap.MISSING) {
+                    own();
+                    posting = postings.size();
+                    postings.add(new RowBitmap());
+                    postingsByGram.put(gram, posting);
+                    owned.set(posting);
+                }
+                ownedPosting(posting).add(row);
+            }
+        }
+    }
+
+    private void removeGrams(int row, String field) {
+        if (field == null) {
+            return;
+        }
+        for (int start = 0; start <= field.length(); start++) {
+            for (int length = 1; length <= MAX_GRAM && start + length <= field.length() + 1; length++) {
+                int posting = postingsByGram.get(gram(field, start, length));
+                if (posting != LongIntMap.MISSING) {
+                    ownedPosting(posting).remove(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the map of grams and the list of postings if a snapshot may share them.
+     */
+    private void own() {
+        if (shared) {
+            postingsByGram = postingsByGram.copy();
+            postings = new ArrayList<>(postings);
+            shared = false;
+            owned.clear();
+        }
+    }
+
+    /**
+     * @return posting {@code posting}, copied first if a snapshot may share it
+     */
+    private RowBitmap ownedPosting(int posting) {
+        own();
+        RowBitmap bitmap = postings.get(posting);
+        if (!owned.get(posting)) {
+            bitmap = bitmap.copy();
+            postings.set(posting, bitmap);
+            owned.set(posting);
+        }
+        return bitmap;
+    }
+
+    private RowBitmap posting(String pattern, int start, int length) {
+        long gram = 0;
+        for (int i = 0; i < length; i++) {
+            gram |= (long) pattern.charAt(start + i) << (32 - 16 * i);
+        }
+        int posting = postingsByGram.get(gram | (long) length << 48);
+        return posting == LongIntMap.MISSING ? new RowBitmap() : postings.get(posting);
+    }
+
+    /**
+     * Packs the {@code length} normalized characters of {@code field} that start at {@code start}
+     * of the field's indexed form, which has a leading space.
+     */
+    private static long gram(String field, int start, int length) {
+        long gram = (long) length << 48;
+        for (int i = 0; i < length; i++) {
+            gram |= (long) charAt(field, start + i) << (32 - 16 * i);
+        }
+        return gram;
+    }
+
+    /**
+     * @return the character at {@code index} of the field's indexed form, which has a leading space
+     */
+    private static char charAt(String field, int index) {
+        return index == 0 ? ' ' : normalize(field.charAt(index - 1));
+    }
+
+    private static char normalize(char c) {
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : ' ';
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DateIndexTest {
+    private static final int ROWS = 1_000_000;
+
+    private static int[] scan(ExpenseStore store, DateFilter filter) {
+        int[] rows = new int[store.size()];
+        int count = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (filter.filter(store, row)) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static int[] sorted(int[] rows) {
+        int[] copy = rows.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    public void resolvesRangeToSlice() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("a", 10, 0, "Gas", null, null);
+        store.add("b", 5, 0, "Gas", null, null);
+        store.add("c", 7, 0, "Gas", null, null);
+        store.add("d", 12, 0, "Gas", null, null);
+
+        DateIndex index = new DateIndex();
+        index.build(store);
+
+        assertArrayEquals(new int[]{2, 0}, index.rowsBetween(6, 11));
+        assertArrayEquals(new int[0], index.rowsBetween(13, 20));
+        assertArrayEquals(new int[]{1}, index.rowsBetween(5, 5));
+    }
+
+    @Test
+    public void followsStoreMutations() {
+        Random random = new Random(3);
+        ExpenseStore store = new ExpenseStore();
+        DateIndex index = new DateIndex();
+        for (int i = 0; i < 2000; i++) {
+            int operation = random.nextInt(3);
+            if (operation == 0 || store.size() == 0) {
+                int row = store.add("e", random.nextInt(100), 0, "Gas", null, null);
+                index.add(row, store.getEpochDay(row));
+            } else if (operation == 1) {
+                int row = random.nextInt(store.size());
+                int previous = store.getEpochDay(row);
+                store.set(row, "e", random.nextInt(100), 0, "Gas", null, null);
+                index.update(row, previous, store.getEpochDay(row));
+            } else {
+                int row = random.nextInt(store.size());
+                int last = store.size() - 1;
+                int epochDay = store.getEpochDay(row);
+                int lastEpochDay = store.getEpochDay(last);
+                int moved = store.remove(row);
+                index.remove(row, epochDay, moved, lastEpochDay);
+            }
+        }
+
+        assertEquals(store.size(), index.size());
+        DateFilter filter = new DateFilter();
+        filter.setDateRange(LocalDate.ofEpochDay(20), LocalDate.ofEpochDay(60));
+        assertArrayEquals(scan(store, filter), sorted(index.rowsBetween(20, 60)));
+    }
+
+    @Test
+    public void snapshotKeepsItsRowsThroughChanges() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("a", 10, 0, "Gas", null, null);
+        store.add("b", 5, 0, "Gas", null, null);
+        DateIndex index = new DateIndex();
+        index.build(store);
+
+        DateIndex snapshot = index.snapshot();
+        int row = store.add("c", 7, 0, "Gas", null, null);
+        index.add(row, 7);
+        index.remove(1, 5, row, 7);
+
+        assertArrayEquals(new int[]{1}, snapshot.rowsBetween(5, 5));
+        assertArrayEquals(new int[0], snapshot.rowsBetween(7, 7));
+        assertArrayEquals(new int[0], index.rowsBetween(5, 5));
+        assertArrayEquals(new int[]{1}, index.rowsBetween(7, 7));
+    }
+
+    @Test
+    public void matchesAScanOverAMillionRows() {
+        Random random = new Random(11);
+        ExpenseStore store = new ExpenseStore();
+        long firstDay = LocalDate.of(2000, 1, 1).toEpochDay();
+        for (int i = 0; i < ROWS; i++) {
+            store.add("Expense", firstDay + random.nextInt(365 * 20), 100, "Gas", null, null);
+        }
+        DateIndex index = new DateIndex();
+        index.build(store);
+
+        LocalDate start = LocalDate.of(2019, 5, 1);
+        LocalDate end = LocalDate.of(2019, 5, 31);
+        DateFilter filter = new DateFilter();
+        filter.setDateRange(start, end);
+
+        assertArrayEquals(scan(store, filter), sorted(index.rowsBetween(start.toEpochDay(), end.toEpochDay())));
+    }
+}
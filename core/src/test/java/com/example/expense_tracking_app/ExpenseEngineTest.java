@@ -0,0 +1,233 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExpenseEngineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] CATEGORIES = {"Food", "Gas", "Home"};
+
+    private final CategoryFilter categoryFilter = new CategoryFilter();
+    private final DateFilter dateFilter = new DateFilter();
+    private final SearchFilter searchFilter = new SearchFilter();
+    private final Queue<Runnable> workerTasks = new ArrayDeque<>();
+    private final Queue<Runnable> mainThreadTasks = new ArrayDeque<>();
+
+    private ExpenseRepository open() throws IOException {
+        ExpenseRepository repository = new ExpenseRepository(new ExpenseJournal(folder.getRoot()),
+                new ExpenseCategories(CATEGORIES, "None"));
+        repository.load();
+        return repository;
+    }
+
+    private ExpenseEngine engine(ExpenseRepository repository) {
+        return new ExpenseEngine(repository, categoryFilter, dateFilter, searchFilter,
+                new ExpenseQueryPipeline(Runnable::run, Runnable::run));
+    }
+
+    /**
+     * An engine whose pipeline only runs when {@link #runPipeline()} says so.
+     */
+    private ExpenseEngine queuedEngine(ExpenseRepository repository) {
+        return new ExpenseEngine(repository, categoryFilter, dateFilter, searchFilter,
+                new ExpenseQueryPipeline(workerTasks::add, mainThreadTasks::add));
+    }
+
+    private void runPipeline() {
+        while (!workerTasks.isEmpty() || !mainThreadTasks.isEmpty()) {
+            while (!workerTasks.isEmpty()) {
+                workerTasks.remove().run();
+            }
+            while (!mainThreadTasks.isEmpty()) {
+                mainThreadTasks.remove().run();
+            }
+        }
+    }
+
+    private void assertMatchesFilters(ExpenseEngine engine) {
+        ExpenseStore store = engine.getStore();
+        RowComparator order = engine.getSortOrder().comparator(store);
+        List<Integer> expected = new ArrayList<>();
+        long total = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (dateFilter.filter(store, row) && categoryFilter.filter(store, row) && searchFilter.filter(store, row)) {
+                expected.add(row);
+                total += store.getAmount(row);
+            }
+        }
+        expected.sort(order::compare);
+
+        assertEquals(expected.size(), engine.size());
+        for (int position = 0; position < engine.size(); position++) {
+            assertEquals(0, order.compare(expected.get(position), engine.getRow(position)));
+            assertEquals(store.getId(engine.getRow(position)), engine.getId(position));
+        }
+        assertEquals(total, engine.getViewItemsCost());
+        assertEquals(expected.size(), engine.getViewItemsCount());
+    }
+
+    @Test
+    public void followsEditsFilterAndOrderChanges() throws IOException {
+        ExpenseRepository repository = open();
+        ExpenseEngine engine = engine(repository);
+        Random random = new Random(3);
+        List<Long> ids = new ArrayList<>();
+        LocalDate first = LocalDate.of(2023, 1, 1);
+
+        for (int i = 0; i < 3000; i++) {
+            int kind = random.nextInt(20);
+            Expense expense = new Expense("Item " + random.nextInt(50), first.plusDays(random.nextInt(60)),
+                    random.nextInt(10_000), CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            if (kind < 10 || ids.isEmpty()) {
+                ids.add(repository.insert(expense));
+            } else if (kind < 15) {
+                expense.setId(ids.get(random.nextInt(ids.size())));
+                repository.update(expense);
+            } else if (kind < 18) {
+                repository.delete(ids.remove(random.nextInt(ids.size())));
+            } else {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        LocalDate start = first.plusDays(random.nextInt(60));
+                        dateFilter.setDateRange(start, start.plusDays(random.nextInt(20)));
+                        dateFilter.setEnabled(random.nextBoolean());
+                        break;
+                    case 1:
+                        categoryFilter.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                        categoryFilter.setEnabled(random.nextBoolean());
+                        break;
+                    case 2:
+                        searchFilter.setQuery(random.nextBoolean() ? "item " + random.nextInt(10) : "");
+                        break;
+                    default:
+                        SortOrder.Key[] keys = SortOrder.Key.values();
+                        engine.setSortOrder(new SortOrder(keys[random.nextInt(keys.length)], random.nextBoolean()), () -> { });
+                        break;
+                }
+                engine.updateFilters(() -> { });
+            }
+            if (i % 100 == 0) {
+                assertMatchesFilters(engine);
+            }
+        }
+        assertMatchesFilters(engine);
+
+        dateFilter.setEnabled(false);
+        categoryFilter.setEnabled(false);
+        searchFilter.setQuery("");
+        engine.updateFilters(() -> { });
+        assertEquals(repository.getStore().size(), engine.size());
+
+        engine.detach();
+        repository.insert(new Expense("Detached", first, 1, "Food"));
+        assertEquals(repository.getStore().size() - 1, engine.size());
+    }
+
+    @Test
+    public void buildsTextIndexOnWorker() throws IOException {
+        ExpenseRepository repository = open();
+        for (int i = 0; i < 100; i++) {
+            repository.insert(new Expense("Item " + i, LocalDate.of(2023, 1, 1), i, CATEGORIES[i % CATEGORIES.length]));
+        }
+        ExpenseEngine engine = queuedEngine(repository);
+
+        searchFilter.setQuery("item 1");
+        engine.updateFilters(() -> { });
+        assertNull(repository.getTextIndex());
+        runPipeline();
+        assertNotNull(repository.getTextIndex());
+        assertMatchesFilters(engine);
+
+        searchFilter.setQuery("item 2");
+        engine.updateFilters(() -> { });
+        // The previous result stays until the new one lands.
+        assertEquals(11, engine.size());
+        runPipeline();
+        assertMatchesFilters(engine);
+    }
+
+    @Test
+    public void listsBatchOnWorkerAndReportsTheDifference() throws IOException {
+        ExpenseRepository repository = open();
+        LocalDate first = LocalDate.of(2023, 1, 1);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(repository.insert(new Expense("Item " + i, first.plusDays(i), i, CATEGORIES[i % CATEGORIES.length])));
+        }
+        ExpenseEngine engine = queuedEngine(repository);
+        List<String> events = new ArrayList<>();
+        engine.setListener(new ExpenseView.Listener() {
+            @Override
+            public void onInserted(int position) {
+                events.add("inserted " + position);
+            }
+
+            @Override
+            public void onRemoved(int position) {
+                events.add("removed " + position);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                events.add("moved " + fromPosition + " " + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position) {
+                events.add("changed " + position);
+            }
+
+            @Override
+            public void onRangeInserted(int position, int count) {
+                events.add("inserted " + position + " " + count);
+            }
+
+            @Override
+            public void onRangeRemoved(int position, int count) {
+                events.add("removed " + position + " " + count);
+            }
+
+            @Override
+            public void onRangeChanged(int position, int count) {
+                events.add("changed " + position + " " + count);
+            }
+
+            @Override
+            public void onReset() {
+                events.add("reset");
+            }
+        });
+
+        ExpenseRepository.Batch batch = repository.newBatch();
+        for (int i = 0; i < 80; i++) {
+            batch.delete(ids.get(i));
+        }
+        batch.apply();
+        // Until the query returns the list shows the rows from before the batch, and edits
+        // are left to the query.
+        assertEquals(100, engine.size());
+        assertEquals((long) ids.get(0), engine.getId(0));
+        repository.insert(new Expense("Late", first.minusDays(1), 5, "Food"));
+        assertEquals(100, engine.size());
+        assertTrue(events.isEmpty());
+
+        runPipeline();
+        assertEquals(21, engine.size());
+        assertMatchesFilters(engine);
+        assertEquals(Arrays.asList("removed 0 80", "inserted 0 1"), events);
+    }
+}
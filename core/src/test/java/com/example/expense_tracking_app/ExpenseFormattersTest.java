@@ -0,0 +1,31 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+public class ExpenseFormattersTest {
+    @Test
+    public void formatsAndMemoizes() {
+        ExpenseFormatters formatters = new ExpenseFormatters("MM/dd/yyyy", "$");
+        LocalDate date = LocalDate.of(2023, 2, 14);
+
+        String text = formatters.formatDate(date);
+        assertEquals("02/14/2023", text);
+        assertSame(text, formatters.formatDate(date.toEpochDay()));
+        assertEquals(date, formatters.parseDate(text));
+
+        String amount = formatters.formatAmount(123456);
+        assertEquals("$1,234.56", amount);
+        assertSame(amount, formatters.formatAmount(123456));
+    }
+
+    @Test
+    public void sharesInstancePerPattern() {
+        ExpenseFormatters formatters = ExpenseFormatters.getInstance("MM/dd/yyyy", "$");
+        assertSame(formatters, ExpenseFormatters.getInstance("MM/dd/yyyy", "$"));
+        assertNotSame(formatters, ExpenseFormatters.getInstance("dd.MM.yyyy", "$"));
+    }
+}
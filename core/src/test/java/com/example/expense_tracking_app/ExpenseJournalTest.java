@@ -0,0 +1,195 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ExpenseJournalTest {
+    private static final int REPLAY_EXPENSES = 100_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Expense expense(int i) {
+        Expense expense = new Expense("Expense " + i, LocalDate.ofEpochDay(18_000 + i % 3650), i % 10_000, "Groceries");
+        expense.setReason(i % 2 == 0 ? "Weekly shop" : null);
+        expense.setNotes("");
+        expense.setId(i + 1);
+        return expense;
+    }
+
+    @Test
+    public void replaysInsertUpdateDelete() throws IOException {
+        File dir = folder.getRoot();
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(0, store.size());
+            journal.insert(expense(0));
+            journal.insert(expense(1));
+            journal.insert(expense(2));
+            Expense updated = expense(11);
+            updated.setId(2);
+            journal.update(updated);
+            journal.delete(1);
+        }
+
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(2, store.size());
+            assertEquals("Expense 2", store.getName(0));
+            assertEquals("Expense 11", store.getName(1));
+            assertEquals(0, store.findRow(3));
+            assertEquals(1, store.findRow(2));
+            assertEquals(-1, store.findRow(1));
+            assertEquals("Weekly shop", store.getReason(0));
+            assertNull(store.getReason(1));
+            assertEquals(expense(11).getDate(), store.get(1).getDate());
+            assertEquals(expense(11).getCost(), store.get(1).getCost());
+        }
+    }
+
+    @Test
+    public void snapshotTruncatesJournal() throws IOException {
+        File dir = folder.getRoot();
+        try (ExpenseJournal journal = new ExpenseJournal(dir, 2)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            for (int i = 0; i < 3; i++) {
+                Expense expense = expense(i);
+                store.add(expense);
+                journal.insert(expense);
+                if (journal.shouldSnapshot()) {
+                    journal.snapshot(store.snapshot());
+                }
+            }
+        }
+
+        try (ExpenseJournal journal = new ExpenseJournal(dir, 2)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(3, store.size());
+            assertFalse(journal.shouldSnapshot());
+        }
+    }
+
+    @Test
+    public void keepsTextLongerThanWriteUtfAllows() throws IOException {
+        char[] chars = new char[70_000];
+        Arrays.fill(chars, '\u20ac');
+        String notes = new String(chars);
+        File dir = folder.getRoot();
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            journal.load(new ExpenseStore());
+            Expense expense = expense(0);
+            expense.setNotes(notes);
+            journal.insert(expense);
+        }
+
+        // Replayed, then compacted into a compressed year.
+        try (ExpenseJournal journal = new ExpenseJournal(dir, ExpenseJournal.DEFAULT_SNAPSHOT_INTERVAL, 1)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(notes, store.getNotes(0));
+            journal.snapshot(store.snapshot()).join();
+        }
+        try (ExpenseJournal journal = new ExpenseJournal(dir, ExpenseJournal.DEFAULT_SNAPSHOT_INTERVAL, 1)) {
+            journal.load(new ExpenseStore());
+            ExpenseStore years = journal.readYears(Integer.MIN_VALUE);
+            assertEquals(1, years.size());
+            assertEquals(notes, years.getNotes(0));
+        }
+    }
+
+    @Test
+    public void recoversFromTornRecord() throws IOException {
+        File dir = folder.getRoot();
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            journal.load(new ExpenseStore());
+            journal.insert(expense(0));
+            journal.insert(expense(1));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, ExpenseJournal.JOURNAL_FILE_NAME), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(1, store.size());
+            journal.insert(expense(2));
+        }
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(2, store.size());
+            assertEquals("Expense 2", store.getName(1));
+        }
+    }
+
+    @Test
+    public void appliesBatchesWholeOrNotAtAll() throws IOException {
+        File dir = folder.getRoot();
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            journal.load(new ExpenseStore());
+            journal.insert(expense(0));
+            journal.insert(expense(1));
+            Expense updated = expense(10);
+            updated.setId(2);
+            journal.batch(new long[]{1}, Collections.singletonList(updated), Arrays.asList(expense(2), expense(3)));
+        }
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(3, store.size());
+            assertEquals(-1, store.findRow(1));
+            assertEquals("Expense 10", store.get(store.findRow(2)).getName());
+            assertEquals("Expense 3", store.get(store.findRow(4)).getName());
+            journal.batch(new long[]{2, 3}, Collections.emptyList(), Collections.singletonList(expense(4)));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, ExpenseJournal.JOURNAL_FILE_NAME), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(3, store.size());
+            assertEquals(-1, store.findRow(5));
+            assertTrue(store.findRow(2) >= 0);
+        }
+    }
+
+    @Test
+    public void replaysSnapshotAndTail() throws IOException {
+        File dir = folder.getRoot();
+        try (ExpenseJournal journal = new ExpenseJournal(dir, Integer.MAX_VALUE)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            for (int i = 0; i < REPLAY_EXPENSES; i++) {
+                store.add(expense(i));
+            }
+            journal.snapshot(store);
+            for (int i = 0; i < 1000; i++) {
+                journal.insert(expense(REPLAY_EXPENSES + i));
+            }
+        }
+
+        try (ExpenseJournal journal = new ExpenseJournal(dir, Integer.MAX_VALUE)) {
+            ExpenseStore store = new ExpenseStore();
+            journal.load(store);
+            assertEquals(REPLAY_EXPENSES + 1000, store.size());
+            assertEquals(expense(REPLAY_EXPENSES + 999).getName(), store.getName(store.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+public class ExpensePagesTest {
+    private static final String[] CATEGORIES = {"Food", "Gas", "Home"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Queue<Runnable> workerTasks = new ArrayDeque<>();
+    private final ExpenseQueryPipeline pipeline = new ExpenseQueryPipeline(workerTasks::add, Runnable::run);
+
+    private ExpenseRepository open() throws IOException {
+        ExpenseRepository repository = new ExpenseRepository(new ExpenseJournal(folder.getRoot()),
+                new ExpenseCategories(CATEGORIES, "None"));
+        repository.load();
+        return repository;
+    }
+
+    private ExpenseEngine engine(ExpenseRepository repository) {
+        return new ExpenseEngine(repository, new CategoryFilter(), new DateFilter(), new SearchFilter(), pipeline);
+    }
+
+    private void runWorker() {
+        while (!workerTasks.isEmpty()) {
+            workerTasks.remove().run();
+        }
+    }
+
+    @Test
+    public void scrollsAMillionMappedRowsThroughAFewPages() throws IOException {
+        ExpenseStore generated = new ExpenseStore();
+        for (int i = 0; i < 1_000_000; i++) {
+            generated.add("Expense " + i, 18_000 + i % 2_000, i % 10_000, CATEGORIES[i % CATEGORIES.length], null, null);
+        }
+        new ExpenseSegments(folder.getRoot()).compact(null, generated, Integer.MIN_VALUE, Integer.MIN_VALUE, 1);
+
+        ExpenseRepository repository = open();
+        ExpenseEngine engine = engine(repository);
+        ExpenseStore store = engine.getStore();
+        ExpensePages pages = new ExpensePages(engine, pipeline);
+        assertEquals(1_000_000, pages.size());
+        assertNotNull(store.getMappedText(0));
+
+        int maxPages = 0;
+        for (int position = 0; position < pages.size(); position++) {
+            ExpensePages.Page page = pages.getPage(position);
+            int row = engine.getRow(position);
+            assertEquals(store.getId(row), page.getId(position));
+            assertEquals(store.getName(row), page.getName(position));
+            assertEquals(store.getCategory(row), page.getCategory(position));
+            assertEquals(store.getEpochDay(row), page.getEpochDay(position));
+            assertEquals(store.getAmount(row), page.getAmount(position));
+            maxPages = Math.max(maxPages, pages.getPageCount());
+            // The worker keeps up between frames.
+            runWorker();
+        }
+        assertTrue("kept " + maxPages + " pages", maxPages <= ExpensePages.MAX_PAGES);
+        // Every page after the first was prefetched.
+        assertEquals(1, pages.getReads());
+        assertEquals((pages.size() + ExpensePages.PAGE_SIZE - 1) / ExpensePages.PAGE_SIZE - 1, pages.getPrefetches());
+
+        // Scrolling back up prefetches upwards.
+        for (int position = pages.size() - 1; position >= pages.size() - 20 * ExpensePages.PAGE_SIZE; position--) {
+            pages.getPage(position);
+            runWorker();
+        }
+        assertEquals(1, pages.getReads());
+    }
+
+    @Test
+    public void dropsPagesWhenTheViewChanges() throws IOException {
+        ExpenseRepository repository = open();
+        for (int i = 0; i < 3 * ExpensePages.PAGE_SIZE; i++) {
+            repository.insert(new Expense("Expense " + i, LocalDate.of(2024, 1, 1).plusDays(i), i, "Food"));
+        }
+        ExpenseEngine engine = engine(repository);
+        ExpensePages pages = new ExpensePages(engine, pipeline);
+        assertEquals("Expense 0", pages.getPage(0).getName(0));
+
+        // A prefetch that completes after the view changed is discarded.
+        repository.insert(new Expense("First", LocalDate.of(2023, 1, 1), 1, "Food"));
+        pages.invalidate();
+        runWorker();
+        assertEquals(0, pages.getPageCount());
+        assertEquals("First", pages.getPage(0).getName(0));
+        assertEquals("Expense 63", pages.getPage(ExpensePages.PAGE_SIZE).getName(ExpensePages.PAGE_SIZE));
+        assertEquals(3 * ExpensePages.PAGE_SIZE + 1, pages.size());
+    }
+
+    @Test
+    public void keepsOnlyTheLastPageWhenTrimmed() throws IOException {
+        ExpenseRepository repository = open();
+        for (int i = 0; i < 3 * ExpensePages.PAGE_SIZE; i++) {
+            repository.insert(new Expense("Expense " + i, LocalDate.of(2024, 1, 1).plusDays(i), i, "Food"));
+        }
+        ExpensePages pages = new ExpensePages(engine(repository), pipeline);
+        for (int position = 0; position < 2 * ExpensePages.PAGE_SIZE; position++) {
+            pages.getPage(position);
+            runWorker();
+        }
+        assertEquals(3, pages.getPageCount());
+
+        pages.trim();
+        assertEquals(1, pages.getPageCount());
+        int reads = pages.getReads();
+        assertEquals("Expense 64", pages.getPage(ExpensePages.PAGE_SIZE).getName(ExpensePages.PAGE_SIZE));
+        assertEquals(reads, pages.getReads());
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ExpenseQueryPipelineTest {
+    private final Queue<Runnable> workerTasks = new ArrayDeque<>();
+    private final Queue<Runnable> mainThreadTasks = new ArrayDeque<>();
+    private final Executor worker = workerTasks::add;
+    private final Executor mainThread = mainThreadTasks::add;
+
+    private ExpenseStore store;
+    private ExpenseQueryPipeline pipeline;
+    private List<ExpenseQueryPipeline.Result> results;
+
+    @Before
+    public void setUp() {
+        store = new ExpenseStore();
+        store.add("c", 3, 300, "Gas", null, null);
+        store.add("a", 1, 100, "Home", null, null);
+        store.add("b", 2, 200, "Gas", null, null);
+        pipeline = new ExpenseQueryPipeline(worker, mainThread);
+        results = new ArrayList<>();
+    }
+
+    private static void runAll(Queue<Runnable> tasks) {
+        while (!tasks.isEmpty()) {
+            tasks.remove().run();
+        }
+    }
+
+    private long submitGas() {
+        return pipeline.submit(store, row -> store.getCategory(row).equals("Gas"), ExpenseView.byDateThenName(store), results::add);
+    }
+
+    @Test
+    public void filtersAndSortsOnWorker() {
+        long generation = submitGas();
+        assertTrue(mainThreadTasks.isEmpty());
+
+        runAll(workerTasks);
+        assertTrue(results.isEmpty());
+
+        runAll(mainThreadTasks);
+        assertEquals(1, results.size());
+        ExpenseQueryPipeline.Result result = results.get(0);
+        assertEquals(generation, result.getGeneration());
+        assertEquals(2, result.getCount());
+        assertEquals(2, result.getRows()[0]);
+        assertEquals(0, result.getRows()[1]);
+    }
+
+    @Test
+    public void dropsResultsOfSupersededQueries() {
+        submitGas();
+        runAll(workerTasks);
+        long latest = submitGas();
+        runAll(workerTasks);
+        runAll(mainThreadTasks);
+
+        assertEquals(1, results.size());
+        assertEquals(latest, results.get(0).getGeneration());
+    }
+
+    @Test
+    public void skipsWorkForCancelledQueries() {
+        submitGas();
+        pipeline.cancel();
+        runAll(workerTasks);
+
+        assertTrue(mainThreadTasks.isEmpty());
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void appliesResultToViewInOneStep() {
+        ExpenseView view = new ExpenseView(store, row -> true, ExpenseView.byDateThenName(store));
+        view.rebuild();
+        pipeline.submit(store, row -> store.getEpochDay(row) >= 2, ExpenseView.byDateThenName(store),
+                result -> view.replace(result.getRows(), result.getCount()));
+        runAll(workerTasks);
+        assertEquals(3, view.size());
+
+        runAll(mainThreadTasks);
+        assertEquals(2, view.size());
+        assertEquals(2, view.getRow(0));
+        assertEquals(0, view.getRow(1));
+    }
+
+    @Test
+    public void plansFilterExpressionsOnWorker() {
+        DateIndex dateIndex = new DateIndex();
+        dateIndex.build(store);
+        CategoryIndex categoryIndex = new CategoryIndex();
+        categoryIndex.build(store);
+        FilterExpression expression = FilterExpression.and(FilterExpression.dateBetween(2, 3), FilterExpression.categoryIn("Gas"));
+        pipeline.submit(store.snapshot(), expression, dateIndex.snapshot(), categoryIndex.snapshot(), null,
+                ExpenseView.byDateThenName(store), results::add);
+
+        // The index behind the snapshot changes before the worker gets to it.
+        int row = store.add("d", 2, 400, "Gas", null, null);
+        categoryIndex.add(row, store.getCategoryId(row));
+        dateIndex.add(row, 2);
+        runAll(workerTasks);
+        runAll(mainThreadTasks);
+
+        assertEquals(1, results.size());
+        assertEquals(2, results.get(0).getCount());
+        assertEquals(2, results.get(0).getRows()[0]);
+        assertEquals(0, results.get(0).getRows()[1]);
+    }
+
+    @Test
+    public void forwardsAnythingAReadThrows() {
+        List<Throwable> errors = new ArrayList<>();
+        pipeline.execute(() -> {
+            throw new IllegalStateException("stale");
+        }, result -> fail(), errors::add);
+        runAll(workerTasks);
+        assertTrue(errors.isEmpty());
+
+        runAll(mainThreadTasks);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+    }
+}
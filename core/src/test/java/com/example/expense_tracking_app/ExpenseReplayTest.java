@@ -0,0 +1,98 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class ExpenseReplayTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExpenseRepository open() throws IOException {
+        ExpenseRepository repository = new ExpenseRepository(new ExpenseJournal(folder.getRoot()),
+                new ExpenseCategories(ExpenseReplay.CATEGORIES, "None"));
+        repository.load();
+        return repository;
+    }
+
+    private static ExpenseReplay.Trace trace(String text) {
+        return new BufferedReader(new StringReader(text))::readLine;
+    }
+
+    @Test
+    public void replaysRecordedTrace() throws IOException {
+        ExpenseRepository repository = open();
+        ExpenseReplay replay = new ExpenseReplay(repository);
+        replay.run(trace("# recorded\n"
+                + "update\t0\t2023-01-01\t1\tFood\tSkipped\n"
+                + "add\t2023-01-02\t12.50\tFood\tLunch\n"
+                + "add\t2023-01-03\t40\tGas\tFuel\n"
+                + "add\t2023-02-01\t7.25\tFood\tCoffee\n"
+                + "\n"
+                + "category\tFood\n"
+                + "summary\n"
+                + "date\t2023-01-01\t2023-01-31\n"
+                + "update\t4\t2023-01-05\t13\tFood\tLunch\n"
+                + "delete\t1\n"
+                + "search\tlunch\n"
+                + "summary\n"));
+
+        assertEquals(3, replay.getCount(ExpenseReplay.Operation.ADD));
+        assertEquals(1, replay.getCount(ExpenseReplay.Operation.UPDATE));
+        assertEquals(1, replay.getCount(ExpenseReplay.Operation.DELETE));
+        assertEquals(2, replay.getCount(ExpenseReplay.Operation.SUMMARY));
+        assertEquals(1, replay.getSkipped());
+        assertTrue(replay.getLatency(ExpenseReplay.Operation.ADD, 100) >= replay.getLatency(ExpenseReplay.Operation.ADD, 50));
+
+        // Ref 4 wraps around to the second expense, so Fuel became Lunch; ref 1 then deleted it.
+        ExpenseEngine engine = replay.getEngine();
+        assertEquals(2, repository.getStore().size());
+        assertEquals(1, engine.size());
+        assertEquals("Lunch", engine.get(0).getName());
+        assertEquals(1250, engine.getViewItemsCost());
+    }
+
+    @Test
+    public void reportsTheFailingLine() throws IOException {
+        ExpenseReplay replay = new ExpenseReplay(open());
+        try {
+            replay.run(trace("add\t2023-01-02\t1\tFood\tLunch\nadd\t2023-01-02\tlots\tFood\tLunch\n"));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2"));
+        }
+        try {
+            replay.run(trace("undo\n"));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 1"));
+        }
+    }
+
+    @Test
+    public void generatedTracesAreRepeatable() throws IOException {
+        ExpenseReplay.Generator first = new ExpenseReplay.Generator(5, 1000);
+        ExpenseReplay.Generator second = new ExpenseReplay.Generator(5, 1000);
+        for (String line = first.next(); line != null; line = first.next()) {
+            assertEquals(line, second.next());
+        }
+        assertNull(second.next());
+
+        ExpenseRepository repository = open();
+        ExpenseReplay.preload(repository, 6, 500);
+        ExpenseReplay replay = new ExpenseReplay(repository);
+        replay.run(new ExpenseReplay.Generator(5, 20_000));
+        int total = 0;
+        for (ExpenseReplay.Operation operation : ExpenseReplay.Operation.values()) {
+            assertTrue(operation.getKeyword(), replay.getCount(operation) > 0);
+            total += replay.getCount(operation);
+        }
+        assertEquals(20_000, total + replay.getSkipped());
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ExpenseRepositoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExpenseRepository open() throws IOException {
+        ExpenseCategories categories = new ExpenseCategories(new String[]{"Gas", "Home"}, "None");
+        ExpenseRepository repository = new ExpenseRepository(new ExpenseJournal(folder.getRoot()), categories);
+        repository.load();
+        return repository;
+    }
+
+    @Test
+    public void writesThroughToIndexesJournalAndListeners() throws IOException {
+        ExpenseRepository repository = open();
+        List<String> events = new ArrayList<>();
+        repository.addListener(new ExpenseRepository.Listener() {
+            @Override
+            public void onRowAdded(int row) {
+                events.add("added " + row);
+            }
+
+            @Override
+            public void onRowChanging(int row) {
+                events.add("changing " + row);
+            }
+
+            @Override
+            public void onRowUpdated(int row) {
+                events.add("updated " + row);
+            }
+
+            @Override
+            public void onRowRemoved(int row, int movedRow) {
+                events.add("removed " + row + " " + movedRow);
+            }
+
+            @Override
+            public void onBatchStarting() {
+                events.add("batch");
+            }
+
+            @Override
+            public void onBatchApplied(long[] updatedIds) {
+                events.add("applied " + Arrays.toString(updatedIds));
+            }
+
+            @Override
+            public void onCategoriesChanged() {
+                fail();
+            }
+
+            @Override
+            public void onRecurringChanged() {
+                fail();
+            }
+        });
+
+        assertNull(repository.getTextIndex());
+        assertTrue(repository.publishTextIndex(repository.prepareTextIndex()));
+        long coffee = repository.insert(new Expense("Coffee", LocalDate.ofEpochDay(100), 450, "Food"));
+        long fuel = repository.insert(new Expense("Fuel", LocalDate.ofEpochDay(101), 4000, "Gas"));
+        assertNotEquals(coffee, fuel);
+        assertEquals(1, repository.getTextIndex().search(repository.getStore(), "coff", true).cardinality());
+        assertTrue(repository.getCategories().getCategories().contains("Food"));
+
+        Expense update = repository.get(coffee);
+        update.setCost(500);
+        repository.update(update);
+        assertEquals(4500, repository.getRollup().getTotal(100, 101, ExpenseRollup.ALL_CATEGORIES));
+
+        repository.delete(coffee);
+        assertEquals(0, repository.getTextIndex().search(repository.getStore(), "coff", true).cardinality());
+        assertEquals(1, repository.getTextIndex().search(repository.getStore(), "fuel", false).cardinality());
+        assertNull(repository.get(coffee));
+        assertEquals(1, repository.getDateIndex().size());
+        assertEquals(4000, repository.getRollup().getTotal(100, 101, ExpenseRollup.ALL_CATEGORIES));
+        assertEquals(0, repository.getCategoryIndex().getRows(repository.getStore().findCategory("Food")).cardinality());
+
+        assertEquals("[added 0, added 1, changing 0, updated 0, changing 0, removed 0 1]", events.toString());
+
+        repository.sync().join();
+        ExpenseRepository reopened = open();
+        assertEquals(1, reopened.getStore().size());
+        assertEquals("Fuel", reopened.get(fuel).getName());
+    }
+
+    @Test
+    public void importsStagedExpensesAsOneSnapshot() throws IOException {
+        ExpenseRepository repository = open();
+        long coffee = repository.insert(new Expense("Coffee", LocalDate.ofEpochDay(100), 450, "Food"));
+        int[] replaced = new int[1];
+        repository.addListener(new ExpenseRepository.Listener() {
+            @Override
+            public void onRowAdded(int row) {
+                fail();
+            }
+
+            @Override
+            public void onRowChanging(int row) {
+                fail();
+            }
+
+            @Override
+            public void onRowUpdated(int row) {
+                fail();
+            }
+
+            @Override
+            public void onRowRemoved(int row, int movedRow) {
+                fail();
+            }
+
+            @Override
+            public void onBatchStarting() {
+                replaced[0]++;
+            }
+
+            @Override
+            public void onBatchApplied(long[] updatedIds) {
+                assertEquals(0, updatedIds.length);
+                replaced[0]++;
+            }
+
+            @Override
+            public void onCategoriesChanged() {
+                fail();
+            }
+
+            @Override
+            public void onRecurringChanged() {
+                fail();
+            }
+        });
+
+        ExpenseStore staged = new ExpenseStore();
+        staged.add("Rent", 102, 100000, "Home", null, null);
+        staged.add("Bus", 103, 275, "Travel", "Work", null);
+        assertEquals(2, repository.importExpenses(staged));
+
+        assertEquals(2, replaced[0]);
+        assertEquals(3, repository.getDateIndex().size());
+        assertEquals(100725, repository.getRollup().getTotal(100, 103, ExpenseRollup.ALL_CATEGORIES));
+        assertTrue(repository.getCategories().getCategories().contains("Travel"));
+
+        repository.sync().join();
+        ExpenseRepository reopened = open();
+        assertEquals(3, reopened.getStore().size());
+        assertEquals("Coffee", reopened.get(coffee).getName());
+        assertNotEquals(coffee, reopened.getStore().getId(1));
+        assertEquals("Work", reopened.getStore().getReason(2));
+    }
+
+    @Test
+    public void preparesImportsAgainAfterAChange() throws IOException {
+        ExpenseRepository repository = open();
+        repository.insert(new Expense("Coffee", LocalDate.ofEpochDay(100), 350, "Food"));
+        ExpenseStore staged = new ExpenseStore();
+        staged.add("Rent", 102, 100000, "Home", null, null);
+
+        ExpenseRepository.StagedRows prepared = repository.prepareImport(staged);
+        repository.insert(new Expense("Tea", LocalDate.ofEpochDay(101), 250, "Food"));
+        assertFalse(repository.publishImport(prepared));
+        assertEquals(2, repository.getStore().size());
+
+        prepared = repository.prepareImport(staged);
+        assertTrue(repository.publishImport(prepared));
+        assertEquals(3, repository.getStore().size());
+        assertEquals(3, repository.getDateIndex().size());
+        assertEquals(100600, repository.getRollup().getTotal(100, 102, ExpenseRollup.ALL_CATEGORIES));
+        assertEquals(1, repository.getCategoryIndex().getRows(repository.getStore().findCategory("Home")).cardinality());
+    }
+
+    @Test
+    public void appliesBatchesInOnePass() throws IOException {
+        ExpenseRepository repository = open();
+        List<Long> ids = new ArrayList<>();
+        ExpenseRepository.Batch setup = repository.newBatch();
+        for (int i = 0; i < 100; i++) {
+            setup.insert(new Expense("Expense " + i, LocalDate.ofEpochDay(100 + i), 100, i % 2 == 0 ? "Gas" : "Home"));
+        }
+        setup.apply();
+        for (int row = 0; row < repository.getStore().size(); row++) {
+            ids.add(repository.getStore().getId(row));
+        }
+        assertEquals(100, repository.getDateIndex().size());
+        assertEquals(50, repository.getCategoryIndex().getRows(repository.getStore().findCategory("Gas")).cardinality());
+
+        List<String> events = new ArrayList<>();
+        repository.addListener(new ExpenseRepository.Listener() {
+            @Override
+            public void onRowAdded(int row) {
+                fail();
+            }
+
+            @Override
+            public void onRowChanging(int row) {
+                fail();
+            }
+
+            @Override
+            public void onRowUpdated(int row) {
+                fail();
+            }
+
+            @Override
+            public void onRowRemoved(int row, int movedRow) {
+                fail();
+            }
+
+            @Override
+            public void onBatchStarting() {
+                events.add("batch " + repository.getStore().size());
+            }
+
+            @Override
+            public void onBatchApplied(long[] updatedIds) {
+                events.add("applied " + repository.getStore().size() + " " + Arrays.toString(updatedIds));
+            }
+
+            @Override
+            public void onCategoriesChanged() {
+                fail();
+            }
+
+            @Override
+            public void onRecurringChanged() {
+                fail();
+            }
+        });
+
+        // Recategorize every Gas expense, delete a few and add one.
+        ExpenseRepository.Batch batch = repository.newBatch();
+        for (long id : ids) {
+            Expense expense = repository.get(id);
+            if (expense.getCategory().equals("Gas")) {
+                expense.setCategory("Travel");
+                batch.update(expense);
+            }
+        }
+        batch.delete(ids.get(0)).delete(ids.get(1)).delete(ids.get(1));
+        batch.insert(new Expense("Late", LocalDate.ofEpochDay(99), 5000, "Travel"));
+        ExpenseRepository.StagedTextIndex stale = repository.prepareTextIndex();
+        batch.apply();
+
+        ExpenseStore store = repository.getStore();
+        assertEquals(2, events.size());
+        assertEquals("batch 100", events.get(0));
+        assertTrue(events.get(1).startsWith("applied 99 [" + ids.get(2) + ", "));
+        assertEquals(0, repository.getCategoryIndex().getRows(store.findCategory("Gas")).cardinality());
+        assertEquals(50, repository.getCategoryIndex().getRows(store.findCategory("Travel")).cardinality());
+        assertEquals(99, repository.getDateIndex().size());
+        assertEquals(98 * 100 + 5000, repository.getRollup().getTotal(0, 1000, ExpenseRollup.ALL_CATEGORIES));
+        // Prepared before the batch, so it is prepared again.
+        assertFalse(repository.publishTextIndex(stale));
+        assertTrue(repository.publishTextIndex(repository.prepareTextIndex()));
+        assertEquals(1, repository.getTextIndex().search(store, "late", true).cardinality());
+        assertTrue(repository.getCategories().getCategories().contains("Travel"));
+
+        repository.sync().join();
+        ExpenseRepository reopened = open();
+        assertEquals(99, reopened.getStore().size());
+        assertNull(reopened.get(ids.get(1)));
+        assertEquals("Travel", reopened.get(ids.get(2)).getCategory());
+    }
+
+    @Test
+    public void rejectsBatchWithUnknownIdsBeforeApplyingAnything() throws IOException {
+        ExpenseRepository repository = open();
+        long coffee = repository.insert(new Expense("Coffee", LocalDate.ofEpochDay(100), 450, "Food"));
+        try {
+            repository.newBatch().delete(coffee).delete(42).apply();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertNotNull(repository.get(coffee));
+        }
+    }
+
+    @Test
+    public void renamesAndMergesCategoriesWithoutTouchingRows() throws IOException {
+        ExpenseRepository repository = open();
+        long fuel = repository.insert(new Expense("Fuel", LocalDate.ofEpochDay(100), 4000, "Gas"));
+        repository.insert(new Expense("Rent", LocalDate.ofEpochDay(101), 90000, "Home"));
+        repository.insert(new Expense("Taxi", LocalDate.ofEpochDay(102), 1500, "Cabs"));
+        ExpenseStore store = repository.getStore();
+        int version = store.getVersion();
+
+        repository.renameCategory("Gas", "Car");
+        assertEquals(version + 1, store.getVersion());
+        assertEquals("Car", repository.get(fuel).getCategory());
+        assertEquals(-1, store.findCategory("Gas"));
+        assertTrue(repository.getCategories().getCategories().contains("Car"));
+        assertFalse(repository.getCategories().getCategories().contains("Gas"));
+
+        repository.renameCategory("Cabs", "Car");
+        int car = store.findCategory("Car");
+        assertEquals(car, store.getCategoryId(2));
+        assertEquals(2, repository.getCategoryIndex().getRows(car).cardinality());
+        assertEquals(5500, repository.getRollup().getTotal(0, 1000, car));
+        assertEquals(1, repository.getRollup().getCount(0, 1000, store.findCategory("Home")));
+        assertFalse(repository.getCategories().getCategories().contains("Cabs"));
+
+        repository.sync().join();
+        ExpenseRepository reopened = open();
+        assertEquals("Car", reopened.getStore().getCategory(2));
+        assertEquals(reopened.getStore().getCategoryId(0), reopened.getStore().getCategoryId(2));
+        assertTrue(reopened.getCategories().getCategories().contains("Car"));
+    }
+
+    @Test
+    public void refusesChangesUntilLoadSucceeds() throws IOException {
+        File journalFile = new File(folder.getRoot(), ExpenseJournal.JOURNAL_FILE_NAME);
+        Files.write(journalFile.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        ExpenseRepository repository = new ExpenseRepository(new ExpenseJournal(folder.getRoot()),
+                new ExpenseCategories(new String[]{"Gas"}, "None"));
+        try {
+            repository.load();
+            fail();
+        } catch (IOException expected) {
+            assertSame(expected, repository.getLoadFailure());
+        }
+        try {
+            repository.insert(new Expense("Fuel", LocalDate.ofEpochDay(100), 4000, "Gas"));
+            fail();
+        } catch (IOException expected) {
+            assertEquals(0, repository.getStore().size());
+        }
+        try {
+            repository.newBatch().insert(new Expense("Fuel", LocalDate.ofEpochDay(100), 4000, "Gas")).apply();
+            fail();
+        } catch (IOException expected) {
+            assertEquals(0, repository.getStore().size());
+        }
+
+        assertTrue(journalFile.delete());
+        repository.load();
+        assertNull(repository.getLoadFailure());
+        repository.insert(new Expense("Fuel", LocalDate.ofEpochDay(100), 4000, "Gas"));
+        assertEquals(1, repository.getStore().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownIds() throws IOException {
+        open().delete(42);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExpenseRollupTest {
+    private static long scanTotal(ExpenseStore store, long start, long end, int categoryId) {
+        long total = 0;
+        for (int row = 0; row < store.size(); row++) {
+            int epochDay = store.getEpochDay(row);
+            if (epochDay >= start && epochDay <= end && (categoryId == ExpenseRollup.ALL_CATEGORIES || store.getCategoryId(row) == categoryId)) {
+                total += store.getAmount(row);
+            }
+        }
+        return total;
+    }
+
+    private static long scanCount(ExpenseStore store, long start, long end, int categoryId) {
+        long count = 0;
+        for (int row = 0; row < store.size(); row++) {
+            int epochDay = store.getEpochDay(row);
+            if (epochDay >= start && epochDay <= end && (categoryId == ExpenseRollup.ALL_CATEGORIES || store.getCategoryId(row) == categoryId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void answersRangesAfterMutations() {
+        Random random = new Random(4);
+        String[] categories = {"Gas", "Home", "Travel"};
+        ExpenseStore store = new ExpenseStore();
+        ExpenseRollup rollup = new ExpenseRollup();
+        for (int i = 0; i < 3000; i++) {
+            int operation = random.nextInt(3);
+            long epochDay = 19_000 + random.nextInt(2000) - (i < 100 ? 0 : random.nextInt(3000));
+            String category = categories[random.nextInt(categories.length)];
+            long amount = random.nextInt(100_00);
+            if (operation == 0 || store.size() == 0) {
+                int row = store.add("e", epochDay, amount, category, null, null);
+                rollup.add(epochDay, store.getCategoryId(row), amount);
+            } else if (operation == 1) {
+                int row = random.nextInt(store.size());
+                rollup.remove(store.getEpochDay(row), store.getCategoryId(row), store.getAmount(row));
+                store.set(row, "e", epochDay, amount, category, null, null);
+                rollup.add(epochDay, store.getCategoryId(row), amount);
+            } else {
+                int row = random.nextInt(store.size());
+                rollup.remove(store.getEpochDay(row), store.getCategoryId(row), store.getAmount(row));
+                store.remove(row);
+            }
+        }
+
+        for (int query = 0; query < 200; query++) {
+            long start = 15_000 + random.nextInt(7000);
+            long end = start + random.nextInt(1500);
+            int categoryId = random.nextInt(4) - 1;
+            assertEquals(scanTotal(store, start, end, categoryId), rollup.getTotal(start, end, categoryId));
+            assertEquals(scanCount(store, start, end, categoryId), rollup.getCount(start, end, categoryId));
+        }
+        assertEquals(scanTotal(store, Long.MIN_VALUE, Long.MAX_VALUE, ExpenseRollup.ALL_CATEGORIES), rollup.getTotal(Long.MIN_VALUE, Long.MAX_VALUE, ExpenseRollup.ALL_CATEGORIES));
+        assertEquals(store.size(), rollup.getCount(Long.MIN_VALUE, Long.MAX_VALUE, ExpenseRollup.ALL_CATEGORIES));
+    }
+
+    @Test
+    public void emptyRangesAndUnknownCategories() {
+        ExpenseRollup rollup = new ExpenseRollup();
+        assertEquals(0, rollup.getTotal(0, 100, ExpenseRollup.ALL_CATEGORIES));
+
+        rollup.add(50, 0, 1234);
+        assertEquals(1234, rollup.getTotal(50, 50, 0));
+        assertEquals(0, rollup.getTotal(51, 49, 0));
+        assertEquals(0, rollup.getTotal(0, 100, 5));
+        assertEquals(1, rollup.getCount(-1_000_000, 1_000_000, ExpenseRollup.ALL_CATEGORIES));
+    }
+
+    @Test
+    public void outlierDatesOnlyCostTheirOwnBlocks() {
+        ExpenseRollup rollup = new ExpenseRollup();
+        rollup.add(0, 0, 100);
+        rollup.add(19_800, 1, 200);
+        rollup.add(2_900_000, 1, 300);
+        // One block per category and date, plus the blocks of the tree across categories.
+        assertEquals(6, rollup.getBlockCount());
+        assertEquals(600, rollup.getTotal(Long.MIN_VALUE, Long.MAX_VALUE, ExpenseRollup.ALL_CATEGORIES));
+        assertEquals(500, rollup.getTotal(19_800, Long.MAX_VALUE, ExpenseRollup.ALL_CATEGORIES));
+        assertEquals(1, rollup.getCount(-5, 5, 0));
+
+        rollup.remove(0, 0, 100);
+        assertEquals(4, rollup.getBlockCount());
+        assertEquals(0, rollup.getCount(Long.MIN_VALUE, Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    public void mergeMovesTotalsAndDropsTheMergedTree() {
+        ExpenseRollup rollup = new ExpenseRollup();
+        rollup.add(10, 0, 100);
+        rollup.add(10, 1, 200);
+        rollup.add(1_000, 0, 300);
+        rollup.merge(0, 1);
+        assertEquals(0, rollup.getTotal(Long.MIN_VALUE, Long.MAX_VALUE, 0));
+        assertEquals(300, rollup.getTotal(10, 10, 1));
+        assertEquals(600, rollup.getTotal(Long.MIN_VALUE, Long.MAX_VALUE, 1));
+        assertEquals(2 + 2, rollup.getBlockCount());
+    }
+
+    @Test
+    public void rebuildReplacesPreviousTotals() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("e", 10, 100, "Gas", null, null);
+        ExpenseRollup rollup = new ExpenseRollup();
+        rollup.build(store);
+        rollup.build(store);
+        assertEquals(100, rollup.getTotal(Long.MIN_VALUE, Long.MAX_VALUE, ExpenseRollup.ALL_CATEGORIES));
+        assertEquals(1, rollup.getCount(Long.MIN_VALUE, Long.MAX_VALUE, store.getCategoryId(0)));
+    }
+}
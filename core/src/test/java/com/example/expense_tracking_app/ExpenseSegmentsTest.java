@@ -0,0 +1,310 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ExpenseSegmentsTest {
+    private static final int SNAPSHOT_INTERVAL = 7;
+    private static final Clock CLOCK = Clock.fixed(LocalDate.of(2024, 6, 15).atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * One expense a year from 2018 to 2024, each costing its year.
+     */
+    private static Expense expense(int i) {
+        int year = 2018 + i % 7;
+        return new Expense("Expense " + i, LocalDate.of(year, 1 + i % 12, 1 + i % 28), year, i % 2 == 0 ? "Food" : "Home");
+    }
+
+    private ExpenseRepository open(int hotYears) throws IOException {
+        ExpenseJournal journal = new ExpenseJournal(folder.getRoot(), SNAPSHOT_INTERVAL, hotYears);
+        journal.setClock(CLOCK);
+        ExpenseRepository repository = new ExpenseRepository(journal, new ExpenseCategories(new String[]{"Food", "Home"}, "None"));
+        repository.load();
+        return repository;
+    }
+
+    private Map<Integer, ExpenseSegments.Segment> readSegments() throws IOException {
+        Map<Integer, ExpenseSegments.Segment> segments = new HashMap<>();
+        for (ExpenseSegments.Segment segment : new ExpenseSegments(folder.getRoot()).readManifest().segments) {
+            segments.put(segment.year, segment);
+        }
+        return segments;
+    }
+
+    @Test
+    public void rewritesOnlyTheYearsThatChanged() throws IOException {
+        ExpenseRepository repository = open(2);
+        long[] ids = new long[SNAPSHOT_INTERVAL];
+        for (int i = 0; i < SNAPSHOT_INTERVAL; i++) {
+            ids[i] = repository.insert(expense(i));
+        }
+        repository.sync().join();
+        Map<Integer, ExpenseSegments.Segment> before = readSegments();
+        assertEquals(7, before.size());
+        assertTrue(before.get(2022).compressed);
+        assertFalse(before.get(2023).compressed);
+
+        // Six changes to 2020 and one to 2024, then a snapshot.
+        Expense changed = repository.get(ids[2]);
+        for (int i = 0; i < SNAPSHOT_INTERVAL - 1; i++) {
+            changed.setCost(i);
+            repository.update(changed);
+        }
+        repository.insert(new Expense("New", LocalDate.of(2024, 3, 1), 5, "Food"));
+        repository.sync().join();
+
+        Map<Integer, ExpenseSegments.Segment> after = readSegments();
+        for (int year = 2018; year <= 2024; year++) {
+            boolean rewritten = year == 2020 || year == 2024;
+            assertEquals(Integer.toString(year), rewritten, before.get(year).generation != after.get(year).generation);
+            assertEquals(rewritten, !new File(new File(folder.getRoot(), ExpenseSegments.DIRECTORY_NAME),
+                    before.get(year).getFileName()).exists());
+        }
+        assertEquals(2, after.get(2024).rows);
+    }
+
+    @Test
+    public void loadsColdYearsWhenReached() throws IOException {
+        ExpenseRepository repository = open(2);
+        long total = 0;
+        long[] ids = new long[SNAPSHOT_INTERVAL * 2];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = repository.insert(expense(i));
+            total += expense(i).getCost();
+        }
+        repository.sync().join();
+
+        repository = open(2);
+        assertEquals(2023, repository.getLoadedFromYear());
+        assertEquals(4, repository.getStore().size());
+        assertEquals(10, repository.getUnloadedCount(null));
+        assertEquals(5, repository.getUnloadedCount("Food"));
+
+        CategoryFilter categoryFilter = new CategoryFilter();
+        DateFilter dateFilter = new DateFilter();
+        ExpenseEngine engine = new ExpenseEngine(repository, categoryFilter, dateFilter, new SearchFilter(),
+                new ExpenseQueryPipeline(Runnable::run, Runnable::run));
+        // The summary covers the rows listed, and the years that are not loaded are apart.
+        assertEquals(4, engine.getViewItemsCount());
+        assertEquals(2 * 2023 + 2 * 2024, engine.getViewItemsCost());
+        assertEquals(10, engine.getUnloadedCount());
+        assertEquals(total - engine.getViewItemsCost(), engine.getUnloadedCost());
+        categoryFilter.setCategory("Food");
+        engine.updateFilters(() -> { });
+        assertEquals(5, engine.getUnloadedCount());
+        categoryFilter.setEnabled(false);
+
+        dateFilter.setDateRange(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31));
+        engine.updateFilters(() -> { });
+        assertEquals(2020, repository.getLoadedFromYear());
+        assertEquals(2, engine.size());
+        assertEquals(2 * 2020, engine.getViewItemsCost());
+        assertEquals(0, engine.getUnloadedCount());
+        assertEquals(10, repository.getStore().size());
+
+        // An expense in a year that is not loaded is unknown until the year is loaded.
+        assertNull(repository.get(ids[0]));
+        try {
+            repository.delete(ids[0]);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            repository.insert(expense(0));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        IOException[] failure = {new IOException()};
+        repository.loadYears(Integer.MIN_VALUE, Runnable::run, Runnable::run, e -> failure[0] = e);
+        assertNull(failure[0]);
+        assertEquals(Integer.MIN_VALUE, repository.getLoadedFromYear());
+        assertEquals(0, repository.getUnloadedCount(null));
+        repository.delete(ids[0]);
+        assertEquals(13, repository.getStore().size());
+        repository.sync().join();
+
+        // Replaying that delete loads the cold years again.
+        repository = open(2);
+        assertNull(repository.get(ids[0]));
+        assertEquals(13, repository.getStore().size());
+    }
+
+    @Test
+    public void renamesColdYearsWhenLoaded() throws IOException {
+        ExpenseRepository repository = open(2);
+        for (int i = 0; i < SNAPSHOT_INTERVAL * 2; i++) {
+            repository.insert(expense(i));
+        }
+        repository.sync().join();
+
+        repository = open(2);
+        repository.renameCategory("Food", "Groceries");
+        repository.renameCategory("Home", "Groceries");
+        assertEquals(2023, repository.getLoadedFromYear());
+        assertEquals(0, repository.getUnloadedCount("Food"));
+        assertEquals(10, repository.getUnloadedCount("Groceries"));
+        repository.sync().join();
+
+        // Replayed from the journal, then kept in the manifest by a compaction.
+        repository = open(2);
+        assertEquals(10, repository.getUnloadedCount("Groceries"));
+        long generation = readSegments().get(2018).generation;
+        for (int i = 0; i < SNAPSHOT_INTERVAL; i++) {
+            repository.insert(new Expense("New " + i, LocalDate.of(2024, 3, 1), 5, "Food"));
+        }
+        repository.sync().join();
+        assertEquals(generation, readSegments().get(2018).generation);
+
+        repository = open(2);
+        assertEquals(10, repository.getUnloadedCount("Groceries"));
+        assertEquals(0, repository.getUnloadedCount("Food"));
+        repository.loadYears(Integer.MIN_VALUE, Runnable::run, Runnable::run, Assert::assertNull);
+        ExpenseStore store = repository.getStore();
+        assertEquals(SNAPSHOT_INTERVAL * 3, store.size());
+        for (int row = 0; row < store.size(); row++) {
+            assertEquals(store.getName(row).startsWith("New") ? "Food" : "Groceries", store.getCategory(row));
+        }
+    }
+
+    @Test
+    public void importsIntoColdYearsWithThem() throws IOException {
+        ExpenseRepository repository = open(2);
+        for (int i = 0; i < SNAPSHOT_INTERVAL * 2; i++) {
+            repository.insert(expense(i));
+        }
+        repository.sync().join();
+
+        repository = open(2);
+        ExpenseStore staged = new ExpenseStore();
+        staged.add("Imported", LocalDate.of(2021, 6, 1).toEpochDay(), 7, "Food", null, null);
+        ExpenseRepository.StagedRows prepared = repository.prepareImport(staged);
+        assertEquals(2023, repository.getLoadedFromYear());
+        assertTrue(repository.publishImport(prepared));
+        assertEquals(2021, repository.getLoadedFromYear());
+        assertEquals(4 + 4 + 1, repository.getStore().size());
+        assertEquals(4 + 4 + 1, repository.getDateIndex().size());
+        assertEquals(2 * 2021 + 7, repository.getRollup().getTotal(LocalDate.of(2021, 1, 1).toEpochDay(),
+                LocalDate.of(2021, 12, 31).toEpochDay(), ExpenseRollup.ALL_CATEGORIES));
+    }
+
+    @Test
+    public void preparesColdYearsAgainAfterAChange() throws IOException {
+        ExpenseRepository repository = open(2);
+        for (int i = 0; i < SNAPSHOT_INTERVAL * 2; i++) {
+            repository.insert(expense(i));
+        }
+        repository.sync().join();
+
+        repository = open(2);
+        ExpenseRepository.StagedRows years = repository.prepareYears(2022);
+        assertEquals(0, years.size());
+        repository.insert(new Expense("New", LocalDate.of(2024, 3, 1), 5, "Food"));
+        assertFalse(repository.publishYears(years));
+        assertEquals(2023, repository.getLoadedFromYear());
+
+        assertTrue(repository.publishYears(repository.prepareYears(2022)));
+        assertEquals(2022, repository.getLoadedFromYear());
+        assertEquals(4 + 2 + 1, repository.getStore().size());
+        assertEquals(4 + 2 + 1, repository.getDateIndex().size());
+    }
+
+    @Test
+    public void mapsTextLongerThanWriteUtfAllows() throws IOException {
+        char[] chars = new char[70_000];
+        Arrays.fill(chars, '\u20ac');
+        String notes = new String(chars) + " \ud83d\ude00 \u0000";
+        ExpenseStore store = new ExpenseStore();
+        store.add("Long", LocalDate.of(2024, 1, 2).toEpochDay(), 5, "Food", null, notes);
+        ExpenseSegments segments = new ExpenseSegments(folder.getRoot());
+        ExpenseSegments.Manifest manifest = segments.compact(null, store, Integer.MIN_VALUE, Integer.MIN_VALUE, 1);
+
+        ExpenseStore mapped = new ExpenseStore();
+        segments.read(manifest.segments[0], mapped);
+        assertEquals(notes, mapped.getNotes(0));
+        // Unchanged, so compacting the mapped rows keeps the segment.
+        assertSame(manifest.segments[0], segments.compact(manifest, mapped, Integer.MIN_VALUE, Integer.MIN_VALUE, 2).segments[0]);
+    }
+
+    @Test
+    public void mapsHotYearsAndDecodesTextWhenRead() throws IOException {
+        ExpenseRepository repository = open(ExpenseJournal.ALL_YEARS);
+        long[] ids = new long[SNAPSHOT_INTERVAL];
+        for (int i = 0; i < SNAPSHOT_INTERVAL; i++) {
+            Expense expense = expense(i);
+            if (i == 3) {
+                expense.setName("Caf\u00e9 \u20ac5 \u0000");
+                expense.setNotes("");
+            }
+            ids[i] = repository.insert(expense);
+        }
+        repository.sync().join();
+        Map<Integer, ExpenseSegments.Segment> before = readSegments();
+
+        repository = open(ExpenseJournal.ALL_YEARS);
+        ExpenseStore store = repository.getStore();
+        for (int i = 0; i < SNAPSHOT_INTERVAL; i++) {
+            int row = store.findRow(ids[i]);
+            assertNotNull(store.getMappedText(row));
+            assertEquals(i == 3 ? "Caf\u00e9 \u20ac5 \u0000" : expense(i).getName(), store.getName(row));
+            assertEquals(i == 3 ? "" : null, store.getNotes(row));
+            assertEquals(expense(i).getDate().toEpochDay(), store.getEpochDay(row));
+            assertEquals(expense(i).getCost(), store.getAmount(row));
+            assertEquals(expense(i).getCategory(), store.getCategory(row));
+        }
+        // The name keys are read from the file too.
+        for (int a = 0; a < store.size(); a++) {
+            for (int b = 0; b < store.size(); b++) {
+                assertEquals(Integer.signum(store.getName(a).compareToIgnoreCase(store.getName(b))), Integer.signum(store.compareNames(a, b)));
+            }
+        }
+
+        // Only 2018 is rewritten: the mapped rows of the other years, including text that is
+        // not ASCII, hash as they did when written from strings.
+        Expense changed = repository.get(ids[0]);
+        for (int i = 0; i < SNAPSHOT_INTERVAL; i++) {
+            changed.setReason("Changed " + i);
+            repository.update(changed);
+        }
+        assertNull(store.getMappedText(store.findRow(ids[0])));
+        repository.sync().join();
+        Map<Integer, ExpenseSegments.Segment> after = readSegments();
+        for (int year = 2018; year <= 2024; year++) {
+            assertEquals(Integer.toString(year), year == 2018, before.get(year).generation != after.get(year).generation);
+        }
+
+        repository = open(ExpenseJournal.ALL_YEARS);
+        assertEquals("Changed " + (SNAPSHOT_INTERVAL - 1), repository.get(ids[0]).getReason());
+        assertEquals("Caf\u00e9 \u20ac5 \u0000", repository.get(ids[3]).getName());
+    }
+
+    @Test
+    public void keepsEveryYearLoadedByDefault() throws IOException {
+        ExpenseRepository repository = open(ExpenseJournal.ALL_YEARS);
+        for (int i = 0; i < SNAPSHOT_INTERVAL; i++) {
+            repository.insert(expense(i));
+        }
+        repository.sync().join();
+        for (ExpenseSegments.Segment segment : readSegments().values()) {
+            assertFalse(segment.compressed);
+        }
+        repository = open(ExpenseJournal.ALL_YEARS);
+        assertEquals(Integer.MIN_VALUE, repository.getLoadedFromYear());
+        assertEquals(SNAPSHOT_INTERVAL, repository.getStore().size());
+    }
+}
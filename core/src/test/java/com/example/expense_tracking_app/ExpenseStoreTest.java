@@ -0,0 +1,278 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ExpenseStoreTest {
+    @Test
+    public void storesAndMaterializesRows() {
+        ExpenseStore store = new ExpenseStore();
+        Expense expense = new Expense("Coffee", LocalDate.of(2023, 2, 3), 435, "Food & drink");
+        expense.setReason("Morning");
+        expense.setNotes("Oat milk");
+
+        int row = store.add(expense);
+
+        assertEquals(0, row);
+        assertEquals(LocalDate.of(2023, 2, 3).toEpochDay(), store.getEpochDay(row));
+        assertEquals(435, store.getAmount(row));
+        assertEquals(store.findCategory("Food & drink"), store.getCategoryId(row));
+
+        Expense copy = store.get(row);
+        assertEquals("Coffee", copy.getName());
+        assertEquals(expense.getDate(), copy.getDate());
+        assertEquals(435, copy.getCost());
+        assertEquals("Food & drink", copy.getCategory());
+        assertEquals("Morning", copy.getReason());
+        assertEquals("Oat milk", copy.getNotes());
+    }
+
+    @Test
+    public void growsAcrossChunks() {
+        ExpenseStore store = new ExpenseStore();
+        int count = ExpenseStore.CHUNK_SIZE * 3 + 7;
+        for (int i = 0; i < count; i++) {
+            store.add("Expense " + i, i, i, i % 2 == 0 ? "Gas" : "Home", null, null);
+        }
+
+        assertEquals(count, store.size());
+        assertEquals(2, store.getCategoryCount());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, store.getEpochDay(i));
+            assertEquals(i % 2 == 0 ? "Gas" : "Home", store.getCategory(i));
+        }
+    }
+
+    @Test
+    public void removeMovesLastRow() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("a", 1, 100, "Gas", null, null);
+        store.add("b", 2, 200, "Gas", null, null);
+        store.add("c", 3, 300, "Gas", null, null);
+
+        assertEquals(2, store.remove(0));
+        assertEquals(2, store.size());
+        assertEquals("c", store.getName(0));
+        assertEquals("b", store.getName(1));
+
+        assertEquals(-1, store.remove(1));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void idsFollowRowsThroughRemoval() {
+        ExpenseStore store = new ExpenseStore();
+        long a = store.getId(store.add("a", 1, 100, "Gas", null, null));
+        long b = store.getId(store.add("b", 2, 200, "Gas", null, null));
+        long c = store.getId(store.add("c", 3, 300, "Gas", null, null));
+        assertNotEquals(a, b);
+        assertNotEquals(b, c);
+
+        store.remove(store.findRow(a));
+        assertEquals(-1, store.findRow(a));
+        assertEquals("c", store.getName(store.findRow(c)));
+        assertEquals("b", store.getName(store.findRow(b)));
+        assertEquals(c, store.get(store.findRow(c)).getId());
+
+        long d = store.getId(store.add("d", 4, 400, "Gas", null, null));
+        assertTrue(d > c);
+        assertEquals(b, store.copy().getId(store.copy().findRow(b)));
+    }
+
+    @Test
+    public void sumsSelectedRows() {
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < 10; i++) {
+            store.add("Expense " + i, i, 10 + i, "Gas", null, null);
+        }
+
+        assertEquals(10 + 12 + 19, store.sumAmounts(new int[]{0, 2, 9}, 3));
+    }
+
+    @Test
+    public void filtersScanColumns() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("a", LocalDate.of(2023, 1, 1).toEpochDay(), 100, "Gas", null, null);
+        store.add("b", LocalDate.of(2023, 2, 1).toEpochDay(), 100, "Home", null, null);
+
+        CategoryFilter categoryFilter = new CategoryFilter();
+        categoryFilter.setCategory("Home");
+        assertFalse(categoryFilter.filter(store, 0));
+        assertTrue(categoryFilter.filter(store, 1));
+
+        DateFilter dateFilter = new DateFilter();
+        dateFilter.setDateRange(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 31));
+        assertTrue(dateFilter.filter(store, 0));
+        assertFalse(dateFilter.filter(store, 1));
+    }
+
+    @Test
+    public void snapshotsDoNotSeeLaterChanges() {
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < ExpenseStore.CHUNK_SIZE + 10; i++) {
+            store.add("n" + i, i, i, "Gas", null, null);
+        }
+        ExpenseStore snapshot = store.snapshot();
+
+        store.set(0, "changed", 0, 0, "New", null, null);
+        store.remove(1);
+        store.add("added", 0, 0, "Gas", null, null);
+        store.remove(store.size() - 2);
+
+        assertTrue(snapshot.isReadOnly());
+        assertEquals(ExpenseStore.CHUNK_SIZE + 10, snapshot.size());
+        for (int row = 0; row < snapshot.size(); row++) {
+            assertEquals("n" + row, snapshot.getName(row));
+            assertEquals(row, snapshot.getAmount(row));
+            assertEquals(row, snapshot.findRow(snapshot.getId(row)));
+        }
+        assertEquals(-1, snapshot.findCategory("New"));
+        assertEquals("changed", store.getName(0));
+        assertEquals(ExpenseStore.CHUNK_SIZE + 9, store.size());
+        assertEquals(store.getVersion() - 4, snapshot.getVersion());
+    }
+
+    @Test
+    public void renamesAndMergesCategoriesInTheDictionary() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("a", 0, 0, "Gas", null, null);
+        store.add("b", 0, 0, "Fuel", null, null);
+        store.add("c", 0, 0, "Home", null, null);
+        int fuel = store.findCategory("Fuel");
+        ExpenseStore snapshot = store.snapshot();
+
+        assertEquals(-1, store.renameCategory("Missing", "Other"));
+        assertEquals(fuel, store.renameCategory("Fuel", "Petrol"));
+        assertEquals("Petrol", store.getCategory(1));
+        int petrol = store.renameCategory("Gas", "Petrol");
+        assertEquals(fuel, petrol);
+        assertEquals(petrol, store.getCategoryId(0));
+        assertEquals("Petrol", store.get(0).getCategory());
+        assertEquals(-1, store.findCategory("Gas"));
+
+        // A merged-away name starts a new category.
+        store.add("d", 0, 0, "Gas", null, null);
+        assertNotEquals(petrol, store.getCategoryId(3));
+        ExpenseStore copy = store.copy();
+        assertEquals(petrol, copy.getCategoryId(0));
+        assertEquals(store.findCategory("Gas"), copy.findCategory("Gas"));
+
+        assertEquals("Gas", snapshot.getCategory(0));
+        assertEquals("Fuel", snapshot.getCategory(1));
+        assertEquals(fuel, snapshot.findCategory("Fuel"));
+        assertNotEquals(snapshot.getCategoryId(0), snapshot.getCategoryId(1));
+    }
+
+    @Test
+    public void comparesNamesAsCompareToIgnoreCase() {
+        String[] names = {"", "a", "A", "ab", "aB", "a\u0000", "a\u0000b", "a\u0001", "a\u007f", "a\u007fb", "\u00e9", "\u00e9z",
+                "\u212a", "k", "K", "\u017f", "s", "Expense 123456789012", "expense 123456789012", "Expense 1234567890123",
+                "Expense 12345678901", "Expense 12345678901\u00e9", "Expense 12345678901z", "\ud83d\ude00", "~"};
+        ExpenseStore store = new ExpenseStore();
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder name = new StringBuilder(names[random.nextInt(names.length)]);
+            for (int j = random.nextInt(4); j > 0; j--) {
+                name.append(names[random.nextInt(names.length)]);
+            }
+            store.add(name.toString(), 0, 0, "Food", null, null);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            int a = random.nextInt(store.size());
+            int b = random.nextInt(store.size());
+            assertEquals(store.getName(a) + " / " + store.getName(b),
+                    Integer.signum(store.getName(a).compareToIgnoreCase(store.getName(b))), Integer.signum(store.compareNames(a, b)));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotsAreReadOnly() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("a", 0, 0, "Gas", null, null);
+        store.snapshot().set(0, "b", 0, 0, "Gas", null, null);
+    }
+
+    /**
+     * One writer moves money between rows, adds and removes rows, and publishes a snapshot after
+     * every change. Readers check that every snapshot they grab balances to zero and that its ids
+     * and names agree, which fails if they ever see a half-applied change.
+     */
+    @Test
+    public void concurrentReadersSeeConsistentSnapshots() throws Exception {
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < 20_000; i++) {
+            store.add("n" + (i + 1), i % 365, 0, "Gas", null, null);
+        }
+        AtomicReference<ExpenseStore> published = new AtomicReference<>(store.snapshot());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong reads = new AtomicLong();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    Random random = new Random();
+                    while (!done.get()) {
+                        ExpenseStore snapshot = published.get();
+                        long total = 0;
+                        for (int row = 0; row < snapshot.size(); row++) {
+                            total += snapshot.getAmount(row);
+                        }
+                        assertEquals(0, total);
+                        int row = random.nextInt(snapshot.size());
+                        long id = snapshot.getId(row);
+                        assertEquals("n" + id, snapshot.getName(row));
+                        assertEquals(row, snapshot.findRow(id));
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        Random random = new Random(3);
+        long writes = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < 1_000_000_000L && failure.get() == null) {
+            int from = random.nextInt(store.size());
+            int to = random.nextInt(store.size());
+            long amount = random.nextInt(1000);
+            store.set(from, store.getName(from), store.getEpochDay(from), store.getAmount(from) - amount, "Gas", null, null);
+            store.set(to, store.getName(to), store.getEpochDay(to), store.getAmount(to) + amount, "Gas", null, null);
+            if (random.nextBoolean()) {
+                // Move the balance of a removed row onto another before removing it.
+                int removed = random.nextInt(store.size());
+                int other = removed == 0 ? 1 : 0;
+                store.set(other, store.getName(other), store.getEpochDay(other),
+                        store.getAmount(other) + store.getAmount(removed), "Gas", null, null);
+                store.remove(removed);
+                int row = store.add("", random.nextInt(365), 0, "Gas", null, null);
+                store.set(row, "n" + store.getId(row), store.getEpochDay(row), 0, "Gas", null, null);
+            }
+            published.set(store.snapshot());
+            writes++;
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(writes > 0);
+        assertTrue(reads.get() > 0);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExpenseViewTest {
+    private ExpenseStore store;
+    private ExpenseView view;
+    private List<String> events;
+    private int maxEpochDay;
+
+    @Before
+    public void setUp() {
+        store = new ExpenseStore();
+        events = new ArrayList<>();
+        maxEpochDay = Integer.MAX_VALUE;
+        view = new ExpenseView(store, row -> store.getEpochDay(row) <= maxEpochDay, ExpenseView.byDateThenName(store));
+        view.setListener(new ExpenseView.Listener() {
+            @Override
+            public void onInserted(int position) {
+                events.add("insert " + position);
+            }
+
+            @Override
+            public void onRemoved(int position) {
+                events.add("remove " + position);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                events.add("move " + fromPosition + " " + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position) {
+                events.add("change " + position);
+            }
+
+            @Override
+            public void onRangeInserted(int position, int count) {
+                events.add("insert " + position + "+" + count);
+            }
+
+            @Override
+            public void onRangeRemoved(int position, int count) {
+                events.add("remove " + position + "+" + count);
+            }
+
+            @Override
+            public void onRangeChanged(int position, int count) {
+                events.add("change " + position + "+" + count);
+            }
+
+            @Override
+            public void onReset() {
+                events.add("reset");
+            }
+        });
+    }
+
+    private int add(String name, int epochDay) {
+        int row = store.add(name, epochDay, 100, "Gas", null, null);
+        view.onRowAdded(row);
+        return row;
+    }
+
+    private void update(int row, String name, int epochDay) {
+        int position = view.indexOf(row);
+        store.set(row, name, epochDay, 100, "Gas", null, null);
+        view.onRowUpdated(row, position);
+    }
+
+    private void remove(int row) {
+        int position = view.indexOf(row);
+        int last = store.size() - 1;
+        int movedPosition = row == last ? -1 : view.indexOf(last);
+        int moved = store.remove(row);
+        view.onRowRemoved(row, position, moved, movedPosition);
+    }
+
+    private String names() {
+        StringBuilder names = new StringBuilder();
+        for (int position = 0; position < view.size(); position++) {
+            names.append(store.getName(view.getRow(position)));
+        }
+        return names.toString();
+    }
+
+    @Test
+    public void insertsAtSortedPosition() {
+        add("c", 3);
+        add("a", 1);
+        add("B", 1);
+        add("d", 2);
+
+        assertEquals("aBdc", names());
+        assertEquals("[insert 0, insert 0, insert 1, insert 2]", events.toString());
+    }
+
+    @Test
+    public void updateMovesRow() {
+        int a = add("a", 1);
+        add("b", 2);
+        add("c", 3);
+        events.clear();
+
+        update(a, "a", 4);
+        assertEquals("bca", names());
+        assertEquals("[move 0 2, change 2]", events.toString());
+
+        events.clear();
+        update(a, "z", 4);
+        assertEquals("[change 2]", events.toString());
+    }
+
+    @Test
+    public void updateOutOfFilterRemovesRow() {
+        maxEpochDay = 10;
+        int a = add("a", 1);
+        add("b", 2);
+        events.clear();
+
+        update(a, "a", 11);
+        assertEquals("b", names());
+        assertEquals("[remove 0]", events.toString());
+
+        events.clear();
+        update(a, "a", 5);
+        assertEquals("ba", names());
+        assertEquals("[insert 1]", events.toString());
+    }
+
+    @Test
+    public void removeKeepsMovedRowIndex() {
+        int a = add("a", 1);
+        add("b", 2);
+        add("c", 3);
+        events.clear();
+
+        remove(a);
+        assertEquals("bc", names());
+        assertEquals("[remove 0]", events.toString());
+        assertEquals(1, view.indexOf(0));
+        assertEquals("c", store.getName(view.getRow(1)));
+    }
+
+    @Test
+    public void matchesRebuild() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            int operation = random.nextInt(3);
+            if (operation == 0 || store.size() == 0) {
+                add("n" + random.nextInt(50), random.nextInt(30));
+            } else if (operation == 1) {
+                update(random.nextInt(store.size()), "n" + random.nextInt(50), random.nextInt(30));
+            } else {
+                remove(random.nextInt(store.size()));
+            }
+        }
+        String incremental = names();
+        view.rebuild();
+        assertEquals(names(), incremental);
+    }
+
+    @Test
+    public void batchRebuildReportsRanges() {
+        int a = add("a", 1);
+        int b = add("b", 2);
+        add("c", 3);
+        int d = add("d", 4);
+        add("e", 5);
+        long[] previousIds = view.getIds();
+        long[] updatedIds = {store.getId(b), store.getId(d)};
+        events.clear();
+
+        store.set(b, "b", 2, 500, "Gas", null, null);
+        store.set(d, "d", 0, 100, "Gas", null, null);
+        store.remove(a);
+        store.add("f", 6, 100, "Gas", null, null);
+        store.add("g", 7, 100, "Gas", null, null);
+        view.rebuild(previousIds, updatedIds);
+
+        assertEquals("dbcefg", names());
+        assertEquals("[remove 3+1, remove 0+1, insert 0+1, insert 4+2, change 1+1]", events.toString());
+    }
+
+    @Test
+    public void batchRebuildEventsReproduceTheView() {
+        Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            List<Long> mirror = new ArrayList<>();
+            for (long id : view.getIds()) {
+                mirror.add(id);
+            }
+            long[] previousIds = view.getIds();
+            List<Long> updated = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                int operation = random.nextInt(3);
+                if (operation == 0 || store.size() == 0) {
+                    store.add("n" + random.nextInt(50), random.nextInt(30), 100, "Gas", null, null);
+                } else if (operation == 1) {
+                    int row = random.nextInt(store.size());
+                    store.set(row, "n" + random.nextInt(50), random.nextInt(30), 100, "Gas", null, null);
+                    updated.add(store.getId(row));
+                } else {
+                    store.remove(random.nextInt(store.size()));
+                }
+            }
+            maxEpochDay = random.nextInt(40);
+            long[] updatedIds = new long[updated.size()];
+            for (int i = 0; i < updatedIds.length; i++) {
+                updatedIds[i] = updated.get(i);
+            }
+
+            view.setListener(new ExpenseView.Listener() {
+                @Override
+                public void onInserted(int position) {
+                    fail();
+                }
+
+                @Override
+                public void onRemoved(int position) {
+                    fail();
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    fail();
+                }
+
+                @Override
+                public void onChanged(int position) {
+                    fail();
+                }
+
+                @Override
+                public void onRangeInserted(int position, int count) {
+                    for (int i = 0; i < count; i++) {
+                        mirror.add(position + i, store.getId(view.getRow(position + i)));
+                    }
+                }
+
+                @Override
+                public void onRangeRemoved(int position, int count) {
+                    mirror.subList(position, position + count).clear();
+                }
+
+                @Override
+                public void onRangeChanged(int position, int count) {
+                    for (int i = position; i < position + count; i++) {
+                        assertTrue(updated.contains(mirror.get(i)));
+                    }
+                }
+
+                @Override
+                public void onReset() {
+                    fail();
+                }
+            });
+            view.rebuild(previousIds, updatedIds);
+
+            long[] ids = view.getIds();
+            assertEquals(ids.length, mirror.size());
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(ids[i], (long) mirror.get(i));
+            }
+        }
+    }
+}
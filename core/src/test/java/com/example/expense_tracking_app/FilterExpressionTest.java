@@ -0,0 +1,149 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FilterExpressionTest {
+    private static final String[] CATEGORIES = {"Gas", "Home", "Food", "Travel", "Fun"};
+
+    private static ExpenseStore store(int count) {
+        Random random = new Random(3);
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < count; i++) {
+            store.add("Expense " + i, random.nextInt(1000), random.nextInt(10_000), CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    i % 7 == 0 ? "Client dinner" : null, i % 11 == 0 ? "Paid by CARD" : "");
+        }
+        return store;
+    }
+
+    private static int[] scan(ExpenseStore store, ExpenseView.RowFilter filter) {
+        int[] rows = new int[store.size()];
+        int count = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (filter.matches(row)) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static int[] plan(ExpenseStore store, FilterExpression expression) {
+        DateIndex dateIndex = new DateIndex();
+        dateIndex.build(store);
+        CategoryIndex categoryIndex = new CategoryIndex();
+        categoryIndex.build(store);
+
+        FilterExpression.Plan plan = expression.optimize(store, dateIndex, categoryIndex);
+        if (plan.getCandidates() == null) {
+            return scan(store, plan.getResidual().compile(store));
+        }
+        ExpenseView.RowFilter residual = plan.getResidual().compile(store);
+        int[] rows = Arrays.stream(plan.getCandidates()).filter(residual::matches).toArray();
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    private static void assertMatches(ExpenseStore store, FilterExpression expression, ExpenseView.RowFilter expected) {
+        int[] rows = scan(store, expected);
+        assertArrayEquals(rows, scan(store, expression.compile(store)));
+        assertArrayEquals(rows, plan(store, expression));
+    }
+
+    @Test
+    public void compiledAndPlannedFiltersMatchReference() {
+        ExpenseStore store = store(20_000);
+        int gas = store.findCategory("Gas");
+        int home = store.findCategory("Home");
+
+        assertMatches(store, FilterExpression.and(FilterExpression.dateBetween(100, 300), FilterExpression.categoryIn("Gas", "Home")),
+                row -> store.getEpochDay(row) >= 100 && store.getEpochDay(row) <= 300
+                        && (store.getCategoryId(row) == gas || store.getCategoryId(row) == home));
+
+        assertMatches(store, FilterExpression.or(FilterExpression.amountBetween(0, 99), FilterExpression.not(FilterExpression.categoryIn("Gas"))),
+                row -> store.getAmount(row) <= 99 || store.getCategoryId(row) != gas);
+
+        assertMatches(store, FilterExpression.not(FilterExpression.and(FilterExpression.dateBetween(0, 500), FilterExpression.textContains("card"))),
+                row -> !(store.getEpochDay(row) <= 500 && store.getNotes(row).contains("CARD")));
+
+        assertMatches(store, FilterExpression.and(
+                        FilterExpression.textContains("DINNER"),
+                        FilterExpression.dateBetween(200, 900),
+                        FilterExpression.and(FilterExpression.dateBetween(0, 600), FilterExpression.amountBetween(1000, 5000)),
+                        FilterExpression.or(FilterExpression.categoryIn("Food"), FilterExpression.categoryIn("Travel"))),
+                row -> store.getReason(row) != null
+                        && store.getEpochDay(row) >= 200 && store.getEpochDay(row) <= 600
+                        && store.getAmount(row) >= 1000 && store.getAmount(row) <= 5000
+                        && (store.getCategory(row).equals("Food") || store.getCategory(row).equals("Travel")));
+
+        assertMatches(store, FilterExpression.and(FilterExpression.dateBetween(500, 600), FilterExpression.dateBetween(700, 800)), row -> false);
+        assertMatches(store, FilterExpression.categoryIn("Unknown"), row -> false);
+        assertMatches(store, FilterExpression.not(FilterExpression.none()), row -> true);
+    }
+
+    @Test
+    public void pushesDateAndCategoryClausesToIndexes() {
+        ExpenseStore store = store(10_000);
+        DateIndex dateIndex = new DateIndex();
+        dateIndex.build(store);
+        CategoryIndex categoryIndex = new CategoryIndex();
+        categoryIndex.build(store);
+
+        FilterExpression.Plan plan = FilterExpression.and(FilterExpression.dateBetween(0, 99), FilterExpression.categoryIn("Gas"))
+                .optimize(store, dateIndex, categoryIndex);
+        assertNotNull(plan.getCandidates());
+        assertSame(FilterExpression.all(), plan.getResidual());
+
+        plan = FilterExpression.or(FilterExpression.dateBetween(0, 99), FilterExpression.categoryIn("Gas"))
+                .optimize(store, dateIndex, categoryIndex);
+        assertNull(plan.getCandidates());
+    }
+
+    @Test
+    public void resolvesCategoriesAddedAfterCompiling() {
+        ExpenseStore store = store(100);
+        ExpenseView.RowFilter filter = FilterExpression.categoryIn("Books").compile(store);
+        assertFalse(filter.matches(0));
+
+        int row = store.add("Novel", 5, 1500, "Books", null, null);
+        assertTrue(filter.matches(row));
+    }
+
+    @Test
+    public void fusedClausesMatchChainedFilters() {
+        ExpenseStore store = store(200_000);
+        int gas = store.findCategory("Gas");
+        int home = store.findCategory("Home");
+        ExpenseView.RowFilter[] chained = {
+                row -> store.getEpochDay(row) >= 100,
+                row -> store.getEpochDay(row) <= 900,
+                row -> store.getCategoryId(row) == gas || store.getCategoryId(row) == home,
+                row -> store.getAmount(row) >= 100,
+                row -> store.getAmount(row) <= 9000,
+        };
+        ExpenseView.RowFilter fused = FilterExpression.and(
+                FilterExpression.dateBetween(100, Long.MAX_VALUE), FilterExpression.dateBetween(Long.MIN_VALUE, 900),
+                FilterExpression.categoryIn("Gas", "Home"),
+                FilterExpression.amountBetween(100, Long.MAX_VALUE), FilterExpression.amountBetween(Long.MIN_VALUE, 9000))
+                .compile(store);
+
+        int chainedCount = 0;
+        for (int row = 0; row < store.size(); row++) {
+            boolean matches = true;
+            for (ExpenseView.RowFilter filter : chained) {
+                if (!filter.matches(row)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                chainedCount++;
+            }
+        }
+
+        assertEquals(chainedCount, scan(store, fused).length);
+    }
+}
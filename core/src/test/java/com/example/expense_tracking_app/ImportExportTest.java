@@ -0,0 +1,208 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ImportExportTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] CATEGORIES = {"Food", "Gas", "Home", "Caf\u00e9, \"Bar\""};
+
+    private static ExpenseStore generate(int count) {
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < count; i++) {
+            store.add("Expense " + i, 18000 + i % 2000, (i % 2 == 0 ? 1 : -1) * (long) i * 7,
+                    CATEGORIES[i % CATEGORIES.length],
+                    i % 3 == 0 ? null : "Reason,\n\"" + i + "\"",
+                    i % 5 == 0 ? "Notes \\ \t" + i : null);
+        }
+        return store;
+    }
+
+    private static ExpenseStore importAll(ExpenseParser parser) throws IOException {
+        ExpenseStore store = new ExpenseStore();
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            new ExpenseImporter().run(parser, worker, batch -> batch.addTo(store));
+        } finally {
+            worker.shutdown();
+        }
+        return store;
+    }
+
+    private static ExpenseStore importCsv(String csv) throws IOException {
+        return importAll(new CsvExpenseParser(Channels.newChannel(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), "None"));
+    }
+
+    private static ExpenseStore importJson(String json) throws IOException {
+        return importAll(new JsonExpenseParser(Channels.newChannel(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))), "None"));
+    }
+
+    private static void assertSameRows(ExpenseStore expected, ExpenseStore actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getName(row), actual.getName(row));
+            assertEquals(expected.getEpochDay(row), actual.getEpochDay(row));
+            assertEquals(expected.getAmount(row), actual.getAmount(row));
+            assertEquals(expected.getCategory(row), actual.getCategory(row));
+            assertEquals(expected.getReason(row), actual.getReason(row));
+            assertEquals(expected.getNotes(row), actual.getNotes(row));
+        }
+    }
+
+    @Test
+    public void csvRoundTripOfAMillionRows() throws IOException {
+        ExpenseStore store = generate(1_000_000);
+        File file = folder.newFile("expenses.csv");
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            new ExpenseExporter(channel).exportCsv(store);
+        }
+        ExpenseStore imported = importAll(new CsvExpenseParser(
+                FileChannel.open(file.toPath(), StandardOpenOption.READ), "None"));
+
+        assertSameRows(store, imported);
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException {
+        ExpenseStore store = generate(20_000);
+        store.add("Unicode \u2603 \ud83d\ude00 \u0001", 0, 0, "None", null, "");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExpenseExporter(Channels.newChannel(out)).exportJson(store);
+        ExpenseStore imported = importJson(out.toString("UTF-8"));
+
+        // Empty notes are read back as no notes.
+        store.set(store.size() - 1, "Unicode \u2603 \ud83d\ude00 \u0001", 0, 0, "None", null, null);
+        assertSameRows(store, imported);
+    }
+
+    @Test
+    public void csvHeaderSelectsColumns() throws IOException {
+        ExpenseStore store = importCsv("amount,Category,date,ignored,name\r\n"
+                + "\"$1,234.50\",Home,2023-01-31,x,Rent\r\n"
+                + "\r\n"
+                + "\"-2\",,1/2/2023,\"y\"\"\",\"Multi\nline, \"\"quoted\"\"\"\n");
+        assertEquals(2, store.size());
+        assertEquals("Rent", store.getName(0));
+        assertEquals(LocalDate.of(2023, 1, 31).toEpochDay(), store.getEpochDay(0));
+        assertEquals(123450, store.getAmount(0));
+        assertEquals("Home", store.getCategory(0));
+        assertEquals("Multi\nline, \"quoted\"", store.getName(1));
+        assertEquals(LocalDate.of(2023, 1, 2).toEpochDay(), store.getEpochDay(1));
+        assertEquals(-200, store.getAmount(1));
+        assertEquals("None", store.getCategory(1));
+    }
+
+    @Test
+    public void csvWithoutHeaderUsesDefaultOrder() throws IOException {
+        ExpenseStore store = importCsv("2023-03-04,Coffee,4.5,Food,Tired,\n2023-03-05,Tea,2");
+        assertEquals(2, store.size());
+        assertEquals("Coffee", store.getName(0));
+        assertEquals(450, store.getAmount(0));
+        assertEquals("Tired", store.getReason(0));
+        assertNull(store.getNotes(0));
+        assertEquals("Tea", store.getName(1));
+        assertEquals("None", store.getCategory(1));
+    }
+
+    @Test
+    public void jsonSkipsUnknownValues() throws IOException {
+        ExpenseStore store = importJson(" [ {\"id\": 7, \"tags\": [\"a\", {\"b\": \"]\"}], \"name\": \"Caf\\u00e9\","
+                + " \"date\": \"2023-01-31\", \"amount\": -12.5, \"reason\": null, \"category\": \"Food\"},"
+                + " {\"date\": \"2/1/2023\", \"amount\": \"3\"} ] ");
+        assertEquals(2, store.size());
+        assertEquals("Caf\u00e9", store.getName(0));
+        assertEquals(-1250, store.getAmount(0));
+        assertNull(store.getReason(0));
+        assertEquals("Food", store.getCategory(0));
+        assertEquals(LocalDate.of(2023, 2, 1).toEpochDay(), store.getEpochDay(1));
+        assertEquals(300, store.getAmount(1));
+    }
+
+    @Test
+    public void emptyInputs() throws IOException {
+        assertEquals(0, importCsv("").size());
+        assertEquals(0, importCsv("date,name,amount\r\n").size());
+        assertEquals(0, importJson("[]").size());
+    }
+
+    @Test
+    public void malformedInputReportsTheLine() throws IOException {
+        try {
+            importCsv("date,amount\n2023-01-01,1\n2023-02-30,2\n");
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 3"));
+        }
+        try {
+            importJson("[{\"date\": \"2023-01-01\"}, {\"date\": \"2023-01-01\" \"amount\": 1}]");
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 1"));
+        }
+    }
+
+    @Test
+    public void failingSinkStopsTheParser() throws IOException {
+        ExpenseStore store = generate(50_000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExpenseExporter(Channels.newChannel(out)).exportCsv(store);
+
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        int[] batches = new int[1];
+        try {
+            new ExpenseImporter(100).run(new CsvExpenseParser(Channels.newChannel(
+                    new ByteArrayInputStream(out.toByteArray())), "None"), worker, batch -> {
+                if (++batches[0] == 3) {
+                    throw new IOException("full");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("full", e.getMessage());
+        } finally {
+            worker.shutdown();
+        }
+        assertEquals(3, batches[0]);
+    }
+
+    @Test
+    public void epochDaysMatchLocalDate() {
+        StringBuilder out = new StringBuilder();
+        for (long day = -800_000; day <= 800_000; day += 97) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            if (date.getYear() >= 0 && date.getYear() <= 9999) {
+                out.setLength(0);
+                assertEquals(date.toString(), EpochDays.format(day, out).toString());
+                assertEquals(day, EpochDays.parse(out));
+                assertEquals(day, EpochDays.parse(date.getMonthValue() + "/" + date.getDayOfMonth() + "/" + date.getYear()));
+            }
+        }
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), EpochDays.parse("2024-02-29"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void epochDaysRejectInvalidDates() {
+        EpochDays.parse("2023-02-29");
+    }
+}
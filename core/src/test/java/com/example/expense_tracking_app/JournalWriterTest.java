@@ -0,0 +1,285 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+public class JournalWriterTest {
+    private static final int THREADS = 4;
+    private static final int APPENDS_PER_THREAD = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Expense expense(int i) {
+        return new Expense("Crash " + i, LocalDate.ofEpochDay(19_000 + i % 365), i, "Food");
+    }
+
+    private static ExpenseRepository open(File dir) throws IOException {
+        ExpenseRepository repository = new ExpenseRepository(new ExpenseJournal(dir, 512),
+                new ExpenseCategories(new String[]{"Food"}, "None"));
+        repository.load();
+        return repository;
+    }
+
+    @Test
+    public void groupCommitsAppendsFromSeveralThreads() throws Exception {
+        File file = folder.newFile();
+        byte[] header = {1, 2, 3, 4};
+        JournalWriter writer = new JournalWriter(file, header, true);
+        List<CompletableFuture<Void>> lastFutures = new ArrayList<>();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            CompletableFuture<Void> last = new CompletableFuture<>();
+            lastFutures.add(last);
+            threads[t] = new Thread(() -> {
+                try {
+                    CompletableFuture<Void> future = null;
+                    for (int i = 0; i < APPENDS_PER_THREAD; i++) {
+                        future = writer.append(ByteBuffer.allocate(12).putInt(thread).putLong(i).array());
+                    }
+                    future.whenComplete((result, e) -> {
+                        if (e == null) {
+                            last.complete(null);
+                        } else {
+                            last.completeExceptionally(e);
+                        }
+                    });
+                } catch (IOException e) {
+                    last.completeExceptionally(e);
+                }
+            });
+            threads[t].start();
+        }
+        CompletableFuture.allOf(lastFutures.toArray(new CompletableFuture<?>[0])).get();
+        long commits = writer.getCommits();
+        writer.close();
+
+        assertEquals(THREADS * APPENDS_PER_THREAD, writer.getRecords());
+        assertTrue(commits <= THREADS * APPENDS_PER_THREAD);
+
+        // Each thread's records are on disk, in the order that thread appended them.
+        long[] next = new long[THREADS];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] readHeader = new byte[header.length];
+            in.readFully(readHeader);
+            assertArrayEquals(header, readHeader);
+            for (int i = 0; i < THREADS * APPENDS_PER_THREAD; i++) {
+                int thread = in.readInt();
+                assertEquals(next[thread]++, in.readLong());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void failsLaterAppendsOnceClosed() throws IOException {
+        JournalWriter writer = new JournalWriter(folder.newFile(), new byte[0], true);
+        CompletableFuture<Void> future = writer.append(new byte[]{1});
+        writer.close();
+        assertTrue(future.isDone());
+        try {
+            writer.append(new byte[]{2});
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void failsTheTaskThatThrowsAndKeepsAppending() throws Exception {
+        JournalWriter writer = new JournalWriter(folder.newFile(), new byte[0], true);
+        CompletableFuture<Void> task = writer.truncate(() -> {
+            throw new IllegalStateException("task");
+        }, new byte[0]);
+        CompletableFuture<Void> append = writer.append(new byte[]{1});
+        append.get();
+        assertTrue(task.isCompletedExceptionally());
+        writer.close();
+    }
+
+    @Test
+    public void failsEveryEntryAfterAnUnexpectedError() throws Exception {
+        JournalWriter writer = new JournalWriter(folder.newFile(), new byte[0], true);
+        CompletableFuture<Void> task = writer.truncate(() -> {
+            throw new AssertionError("task");
+        }, new byte[0]);
+        try {
+            task.join();
+            fail();
+        } catch (CompletionException expected) {
+        }
+        try {
+            writer.append(new byte[]{1}).join();
+            fail();
+        } catch (IOException | CompletionException expected) {
+        }
+        try {
+            writer.close();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * Cuts the journal at every byte, and flips bits in each of its records, as a crash or a disk
+     * that lost part of a page would. Every record before the damage must load, and nothing after
+     * it.
+     */
+    @Test
+    public void recoversFromEveryTornWrite() throws IOException {
+        File dir = folder.newFolder("source");
+        int records = 6;
+        long[] ends = new long[records];
+        File journalFile = new File(dir, ExpenseJournal.JOURNAL_FILE_NAME);
+        long headerEnd;
+        try (ExpenseJournal journal = new ExpenseJournal(dir, Integer.MAX_VALUE)) {
+            journal.load(new ExpenseStore());
+            headerEnd = journalFile.length();
+            for (int i = 0; i < records; i++) {
+                Expense expense = expense(i);
+                expense.setId(i + 1);
+                journal.insert(expense).join();
+                ends[i] = journalFile.length();
+            }
+        }
+        byte[] full = Files.readAllBytes(journalFile.toPath());
+
+        File crashed = folder.newFolder("crashed");
+        File crashedJournal = new File(crashed, ExpenseJournal.JOURNAL_FILE_NAME);
+        for (long length = headerEnd; length <= full.length; length++) {
+            int complete = 0;
+            while (complete < records && ends[complete] <= length) {
+                complete++;
+            }
+            Files.write(crashedJournal.toPath(), Arrays.copyOf(full, (int) length));
+            deleteSegments(crashed);
+            assertRecovered(crashed, complete);
+        }
+
+        for (int record = 0; record < records; record++) {
+            long start = record == 0 ? headerEnd : ends[record - 1];
+            for (long position = start; position < ends[record]; position += 7) {
+                Files.copy(journalFile.toPath(), crashedJournal.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                deleteSegments(crashed);
+                try (RandomAccessFile file = new RandomAccessFile(crashedJournal, "rw")) {
+                    file.seek(position);
+                    int value = file.read();
+                    file.seek(position);
+                    file.write(value ^ 0x10);
+                }
+                assertRecovered(crashed, record);
+            }
+        }
+    }
+
+    private static void deleteSegments(File dir) {
+        File segments = new File(dir, ExpenseSegments.DIRECTORY_NAME);
+        File[] files = segments.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        segments.delete();
+    }
+
+    private static void assertRecovered(File dir, int expected) throws IOException {
+        for (int load = 0; load < 2; load++) {
+            // The second load reads the segments the first one wrote over the damaged journal.
+            try (ExpenseJournal journal = new ExpenseJournal(dir)) {
+                ExpenseStore store = new ExpenseStore();
+                journal.load(store);
+                assertEquals(expected, store.size());
+                for (int i = 0; i < expected; i++) {
+                    assertEquals("Crash " + i, store.getName(store.findRow(i + 1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Kills a JVM that is saving expenses, several times over, and checks that every expense it
+     * reported as durable is there when the journal is loaded again.
+     */
+    @Test
+    public void losesNoAcknowledgedExpenseWhenKilled() throws Exception {
+        File dir = folder.getRoot();
+        Random random = new Random(5);
+        Set<Long> acknowledged = new HashSet<>();
+
+        for (int run = 0; run < 4; run++) {
+            Process process = new ProcessBuilder(
+                    new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", System.getProperty("java.class.path"),
+                    JournalWriterTest.class.getName(), dir.getPath())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            int target = 500 + random.nextInt(3000);
+            int count = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    acknowledged.add(Long.parseLong(line));
+                    if (++count == target) {
+                        process.destroyForcibly();
+                        break;
+                    }
+                }
+            } finally {
+                process.destroyForcibly();
+                process.waitFor();
+            }
+            assertEquals("Saver exited early", target, count);
+
+            ExpenseRepository repository = open(dir);
+            for (long id : acknowledged) {
+                assertNotNull("Lost expense " + id, repository.get(id));
+            }
+            repository.sync().join();
+        }
+    }
+
+    /**
+     * The saver killed by {@link #losesNoAcknowledgedExpenseWhenKilled()}: inserts expenses into
+     * the repository in {@code args[0]} until killed, printing each id once it is on disk. Waits
+     * for the disk now and then, like a user saving in bursts, so the queue stays short.
+     */
+    public static void main(String[] args) throws IOException {
+        ExpenseRepository repository = open(new File(args[0]));
+        for (int i = 0; ; i++) {
+            long id = repository.insert(expense(i));
+            repository.sync().thenRun(() -> {
+                synchronized (System.out) {
+                    System.out.println(id);
+                    System.out.flush();
+                }
+            });
+            if (i % 64 == 63) {
+                repository.sync().join();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongLruCacheTest {
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LongLruCache<String> cache = new LongLruCache<>(2);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        assertEquals("one", cache.get(1));
+
+        cache.put(3, "three");
+        assertNull(cache.get(2));
+        assertEquals("one", cache.get(1));
+        assertEquals("three", cache.get(3));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void matchesLinkedHashMap() {
+        int capacity = 64;
+        Map<Long, String> expected = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        LongLruCache<String> cache = new LongLruCache<>(capacity);
+        Random random = new Random(6);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(200) - 100 + (random.nextBoolean() ? 0 : 1L << 40);
+            if (random.nextBoolean()) {
+                String value = "v" + i;
+                expected.put(key, value);
+                cache.put(key, value);
+            } else {
+                assertEquals(expected.get(key), cache.get(key));
+            }
+        }
+        assertEquals(expected.size(), cache.size());
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), cache.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MoneyTest {
+    private static final int AMOUNTS = 1_000_000;
+
+    private static String format(long amount) {
+        return Money.format(amount, "$", new StringBuilder()).toString();
+    }
+
+    @Test
+    public void parsesAmounts() {
+        assertEquals(123456, Money.parse("1,234.56"));
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1200, Money.parse("$12"));
+        assertEquals(1200, Money.parse("12."));
+        assertEquals(5, Money.parse(".05"));
+        assertEquals(-99, Money.parse("-0.99"));
+        assertEquals(-99, Money.parse("-$0.99"));
+        assertEquals(100, Money.parse(" 1 "));
+    }
+
+    @Test
+    public void rejectsMalformedAmounts() {
+        String[] malformed = {"", "$", "1.234", "1.2.3", "12a", "1-2", "--1", "99999999999999999999"};
+        for (String text : malformed) {
+            try {
+                Money.parse(text);
+                fail("Parsed " + text);
+            } catch (NumberFormatException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void formatsAmounts() {
+        assertEquals("$0.00", format(0));
+        assertEquals("$0.05", format(5));
+        assertEquals("$12.50", format(1250));
+        assertEquals("$1,000.00", format(100000));
+        assertEquals("$1,234,567.08", format(123456708));
+        assertEquals("-$1,000.01", format(-100001));
+        assertEquals("1,002.30", Money.format(100230, new StringBuilder()).toString());
+    }
+
+    @Test
+    public void roundTripsAgainstNumberFormat() throws ParseException {
+        NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
+        Random random = new Random(8);
+        for (int i = 0; i < 10_000; i++) {
+            long amount = random.nextInt(Integer.MAX_VALUE) - Integer.MAX_VALUE / 2;
+            String text = format(amount);
+            assertEquals(currency.format(amount / 100.0), text);
+            assertEquals(amount, Money.parse(text));
+        }
+    }
+
+    @Test
+    public void averagesRoundHalfAwayFromZero() {
+        assertEquals(0, Money.average(100, 0));
+        assertEquals(33, Money.average(100, 3));
+        assertEquals(3, Money.average(5, 2));
+        assertEquals(-3, Money.average(-5, 2));
+    }
+
+    /**
+     * What {@code MoneyBenchmark} compares, checked for the same results.
+     */
+    @Test
+    public void sumsAndParsesLikeDoubles() throws ParseException {
+        Random random = new Random(1);
+        long[] amounts = new long[AMOUNTS];
+        double[] costs = new double[AMOUNTS];
+        for (int i = 0; i < AMOUNTS; i++) {
+            amounts[i] = random.nextInt(100_000_00);
+            costs[i] = amounts[i] / 100.0;
+        }
+        long exact = 0;
+        for (long amount : amounts) {
+            exact += amount;
+        }
+        assertEquals(exact / 100.0, Arrays.stream(costs).sum(), 1);
+
+        NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
+        long parsed = 0;
+        double parsedDouble = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String text = format(amounts[i]);
+            parsed += Money.parse(text);
+            parsedDouble += currency.parse(text).doubleValue();
+        }
+        assertEquals(parsed / 100.0, parsedDouble, 1e-3);
+    }
+}
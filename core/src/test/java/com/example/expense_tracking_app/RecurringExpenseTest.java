@@ -0,0 +1,200 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RecurringExpenseTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static long day(int year, int month, int day) {
+        return LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    /**
+     * Lists the occurrences one by one with {@link LocalDate}, the slow way.
+     */
+    private static List<Long> expand(RecurringExpense rule, long startDay, long endDay) {
+        List<Long> days = new ArrayList<>();
+        LocalDate start = LocalDate.ofEpochDay(rule.getStartEpochDay());
+        for (int k = 0; ; k++) {
+            LocalDate date;
+            switch (rule.getUnit()) {
+                case DAY:
+                    date = start.plusDays((long) k * rule.getInterval());
+                    break;
+                case WEEK:
+                    date = start.plusWeeks((long) k * rule.getInterval());
+                    break;
+                default:
+                    date = start.plusMonths((long) k * rule.getInterval());
+                    break;
+            }
+            long epochDay = date.toEpochDay();
+            if (epochDay > endDay || epochDay > rule.getEndEpochDay()) {
+                return days;
+            }
+            if (epochDay >= startDay) {
+                days.add(epochDay);
+            }
+        }
+    }
+
+    @Test
+    public void countsMatchExpansion() {
+        Random random = new Random(11);
+        RecurringExpense.Unit[] units = RecurringExpense.Unit.values();
+        for (int i = 0; i < 2000; i++) {
+            long start = day(2020, 1, 1) + random.nextInt(800);
+            long end = random.nextBoolean() ? RecurringExpense.NO_END : start + random.nextInt(1500);
+            RecurringExpense rule = new RecurringExpense("Rule", 100 + i, "Home", units[random.nextInt(units.length)],
+                    1 + random.nextInt(4), start, end);
+            long rangeStart = day(2019, 6, 1) + random.nextInt(1500);
+            long rangeEnd = rangeStart + random.nextInt(900) - 30;
+
+            List<Long> expected = expand(rule, rangeStart, rangeEnd);
+            assertEquals(expected.size(), rule.getCount(rangeStart, rangeEnd));
+            assertEquals(expected.size() * rule.getAmount(), rule.getTotal(rangeStart, rangeEnd));
+
+            RecurringExpense.Occurrences occurrences = RecurringExpense.Occurrences.of(
+                    Collections.singletonList(rule), rangeStart, rangeEnd);
+            assertEquals(expected.size(), occurrences.size());
+            for (int k = 0; k < expected.size(); k++) {
+                assertEquals((long) expected.get(k), occurrences.getEpochDay(k));
+            }
+        }
+    }
+
+    @Test
+    public void monthlyRulesKeepTheirDayOfMonth() {
+        RecurringExpense rent = new RecurringExpense("Rent", 150_000, "Home", RecurringExpense.Unit.MONTH, 1,
+                day(2024, 1, 31), RecurringExpense.NO_END);
+        assertEquals(day(2024, 2, 29), rent.getOccurrence(1));
+        assertEquals(day(2024, 3, 31), rent.getOccurrence(2));
+        assertEquals(day(2024, 4, 30), rent.getOccurrence(3));
+        assertEquals(2, rent.indexOnOrAfter(day(2024, 3, 1)));
+        assertEquals(3, rent.getCount(day(2024, 2, 29), day(2024, 4, 30)));
+        assertEquals(0, rent.getCount(day(2024, 3, 1), day(2024, 3, 30)));
+    }
+
+    @Test
+    public void longRulesCostNothingToTotal() {
+        RecurringExpense weekly = new RecurringExpense("Groceries", 8_000, "Food", RecurringExpense.Unit.WEEK, 1,
+                day(2015, 1, 5), day(2024, 12, 31));
+        assertEquals(expand(weekly, Long.MIN_VALUE, Long.MAX_VALUE).size(), weekly.getCount(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(52, weekly.getCount(day(2020, 1, 1), day(2020, 12, 29)));
+
+        RecurringExpense forever = new RecurringExpense("Forever", 1, "Food", RecurringExpense.Unit.DAY, 1,
+                day(2000, 1, 1), RecurringExpense.NO_END);
+        assertEquals(EpochDays.of(9999, 12, 31) - day(2000, 1, 1) + 1, forever.getCount(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void occurrencesOfSeveralRulesAreInDateOrder() {
+        List<RecurringExpense> rules = Arrays.asList(
+                new RecurringExpense("Rent", 100, "Home", RecurringExpense.Unit.MONTH, 1, day(2023, 1, 1), RecurringExpense.NO_END),
+                new RecurringExpense("Gym", 10, "Health", RecurringExpense.Unit.WEEK, 2, day(2023, 1, 1), RecurringExpense.NO_END),
+                new RecurringExpense("Audio", 5, "Fun", RecurringExpense.Unit.MONTH, 1, day(2023, 1, 15), day(2023, 2, 15)));
+        RecurringExpense.Occurrences occurrences = RecurringExpense.Occurrences.of(rules, day(2023, 1, 1), day(2023, 3, 1));
+        List<String> listed = new ArrayList<>();
+        for (int i = 0; i < occurrences.size(); i++) {
+            listed.add(LocalDate.ofEpochDay(occurrences.getEpochDay(i)) + " " + occurrences.getRule(i).getName());
+        }
+        assertEquals(Arrays.asList("2023-01-01 Gym", "2023-01-01 Rent", "2023-01-15 Audio", "2023-01-15 Gym",
+                "2023-01-29 Gym", "2023-02-01 Rent", "2023-02-12 Gym", "2023-02-15 Audio", "2023-02-26 Gym",
+                "2023-03-01 Rent"), listed);
+    }
+
+    private ExpenseRepository open() throws IOException {
+        ExpenseRepository repository = new ExpenseRepository(new ExpenseJournal(folder.getRoot(), 4),
+                new ExpenseCategories(new String[]{"Home", "Food"}, "None"));
+        repository.load();
+        return repository;
+    }
+
+    @Test
+    public void rulesAreJournaledAndRenamed() throws IOException {
+        ExpenseRepository repository = open();
+        long rent = repository.addRecurring(new RecurringExpense("Rent", 150_000, "Home", RecurringExpense.Unit.MONTH, 1,
+                day(2023, 1, 1), RecurringExpense.NO_END));
+        long phone = repository.addRecurring(new RecurringExpense("Phone", 3_000, "Bills", RecurringExpense.Unit.MONTH, 1,
+                day(2023, 1, 10), RecurringExpense.NO_END));
+        long coffee = repository.insert(new Expense("Coffee", LocalDate.of(2023, 1, 2), 450, "Food"));
+        assertEquals(3, new HashSet<>(Arrays.asList(rent, phone, coffee)).size());
+        assertTrue(repository.getCategories().getCategories().contains("Bills"));
+
+        // Bills is only used by a rule.
+        repository.renameCategory("Bills", "Utilities");
+        repository.removeRecurring(rent);
+        assertEquals("Utilities", repository.getRecurring().get(0).getCategory());
+
+        repository.sync().join();
+        ExpenseRepository reopened = open();
+        assertEquals(1, reopened.getRecurring().size());
+        RecurringExpense loaded = reopened.getRecurring().get(0);
+        assertEquals(phone, loaded.getId());
+        assertEquals("Phone", loaded.getName());
+        assertEquals("Utilities", loaded.getCategory());
+        assertEquals(day(2023, 1, 10), loaded.getStartEpochDay());
+        assertEquals(1, reopened.getStore().size());
+        assertTrue(reopened.getCategories().getCategories().contains("Utilities"));
+
+        // Enough records to snapshot, then the rule must come back from the snapshot.
+        for (int i = 0; i < 4; i++) {
+            reopened.insert(new Expense("Tea " + i, LocalDate.of(2023, 1, 3), 300, "Food"));
+        }
+        reopened.sync().join();
+        assertEquals(phone, open().getRecurring().get(0).getId());
+    }
+
+    @Test
+    public void engineAddsOccurrencesToTheSummary() throws IOException {
+        ExpenseRepository repository = open();
+        repository.insert(new Expense("Coffee", LocalDate.of(2023, 3, 2), 450, "Food"));
+        repository.addRecurring(new RecurringExpense("Rent", 150_000, "Home", RecurringExpense.Unit.MONTH, 1,
+                day(2023, 1, 1), RecurringExpense.NO_END));
+
+        CategoryFilter categoryFilter = new CategoryFilter();
+        DateFilter dateFilter = new DateFilter();
+        SearchFilter searchFilter = new SearchFilter();
+        ExpenseEngine engine = new ExpenseEngine(repository, categoryFilter, dateFilter, searchFilter,
+                new ExpenseQueryPipeline(Runnable::run, Runnable::run));
+        engine.setClock(Clock.fixed(LocalDate.of(2023, 6, 15).atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+
+        // January to June, up to today.
+        assertEquals(6 * 150_000 + 450, engine.getViewItemsCost());
+        assertEquals(7, engine.getViewItemsCount());
+        assertEquals(6, engine.getOccurrences().size());
+
+        dateFilter.setDateRange(LocalDate.of(2023, 3, 1), LocalDate.of(2024, 2, 29));
+        engine.updateFilters(() -> { });
+        assertEquals(12 * 150_000 + 450, engine.getViewItemsCost());
+        assertEquals(12, engine.getOccurrences().size());
+        assertEquals(day(2023, 3, 1), engine.getOccurrences().getEpochDay(0));
+
+        categoryFilter.setCategory("Food");
+        engine.updateFilters(() -> { });
+        assertEquals(450, engine.getViewItemsCost());
+        assertEquals(0, engine.getOccurrences().size());
+
+        categoryFilter.setEnabled(false);
+        searchFilter.setQuery("rent");
+        engine.updateFilters(() -> { });
+        assertEquals(12 * 150_000, engine.getViewItemsCost());
+        assertEquals(12, engine.getViewItemsCount());
+    }
+}
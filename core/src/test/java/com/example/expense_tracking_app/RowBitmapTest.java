@@ -0,0 +1,149 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RowBitmapTest {
+    private static int[] toArray(BitSet set) {
+        return set.stream().toArray();
+    }
+
+    @Test
+    public void matchesBitSetAcrossContainerKinds() {
+        Random random = new Random(5);
+        RowBitmap bitmap = new RowBitmap();
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 200_000; i++) {
+            int row = random.nextInt(i % 2 == 0 ? 10_000 : 300_000);
+            if (random.nextInt(4) == 0) {
+                bitmap.remove(row);
+                expected.clear(row);
+            } else {
+                bitmap.add(row);
+                expected.set(row);
+            }
+        }
+
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+        for (int row = 0; row < 300_000; row += 7) {
+            assertEquals(expected.get(row), bitmap.contains(row));
+        }
+    }
+
+    @Test
+    public void orUnitesWithoutSharingContainers() {
+        Random random = new Random(11);
+        RowBitmap a = new RowBitmap();
+        RowBitmap b = new RowBitmap();
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        for (int i = 0; i < 100_000; i++) {
+            int dense = random.nextInt(20_000);
+            a.add(dense);
+            expectedA.set(dense);
+            int sparse = random.nextInt(400_000);
+            b.add(sparse);
+            expectedB.set(sparse);
+        }
+        int[] originalA = a.toArray();
+        expectedB.or(expectedA);
+
+        RowBitmap union = a.or(b);
+        assertArrayEquals(toArray(expectedB), union.toArray());
+        assertArrayEquals(toArray(expectedB), b.or(a).toArray());
+
+        union.add(1_000_000);
+        union.remove(originalA[0]);
+        assertArrayEquals(originalA, a.toArray());
+    }
+
+    @Test
+    public void andIntersects() {
+        Random random = new Random(9);
+        RowBitmap a = new RowBitmap();
+        RowBitmap b = new RowBitmap();
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        for (int i = 0; i < 100_000; i++) {
+            int dense = random.nextInt(20_000);
+            a.add(dense);
+            expectedA.set(dense);
+            int sparse = random.nextInt(400_000);
+            b.add(sparse);
+            expectedB.set(sparse);
+        }
+        expectedA.and(expectedB);
+
+        assertArrayEquals(toArray(expectedA), a.and(b).toArray());
+        assertArrayEquals(toArray(expectedA), b.and(a).toArray());
+        assertArrayEquals(a.toArray(), a.and(a).toArray());
+    }
+
+    @Test
+    public void categoryIndexFollowsStore() {
+        Random random = new Random(2);
+        String[] categories = {"Gas", "Home", "Travel"};
+        ExpenseStore store = new ExpenseStore();
+        CategoryIndex index = new CategoryIndex();
+        for (int i = 0; i < 5000; i++) {
+            int operation = random.nextInt(3);
+            String category = categories[random.nextInt(categories.length)];
+            if (operation == 0 || store.size() == 0) {
+                int row = store.add("e", 0, 0, category, null, null);
+                index.add(row, store.getCategoryId(row));
+            } else if (operation == 1) {
+                int row = random.nextInt(store.size());
+                int previous = store.getCategoryId(row);
+                store.set(row, "e", 0, 0, category, null, null);
+                index.update(row, previous, store.getCategoryId(row));
+            } else {
+                int row = random.nextInt(store.size());
+                int last = store.size() - 1;
+                int categoryId = store.getCategoryId(row);
+                int lastCategoryId = store.getCategoryId(last);
+                int moved = store.remove(row);
+                index.remove(row, categoryId, moved, lastCategoryId);
+            }
+        }
+
+        CategoryIndex rebuilt = new CategoryIndex();
+        rebuilt.build(store);
+        for (int id = 0; id < store.getCategoryCount(); id++) {
+            int[] rows = index.getRows(id).toArray();
+            assertArrayEquals(rebuilt.getRows(id).toArray(), rows);
+            for (int row : rows) {
+                assertEquals(id, store.getCategoryId(row));
+            }
+        }
+    }
+
+    @Test
+    public void combinesWithDateSlice() {
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < 1000; i++) {
+            store.add("e", i % 100, 0, i % 3 == 0 ? "Gas" : "Home", null, null);
+        }
+        DateIndex dates = new DateIndex();
+        dates.build(store);
+        CategoryIndex categories = new CategoryIndex();
+        categories.build(store);
+
+        int[] slice = dates.rowsBetween(10, 19);
+        Arrays.sort(slice);
+        int[] rows = RowBitmap.of(slice, slice.length).and(categories.getRows(store.findCategory("Gas"))).toArray();
+
+        int expected = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (store.getEpochDay(row) >= 10 && store.getEpochDay(row) <= 19 && store.getCategory(row).equals("Gas")) {
+                assertEquals(row, rows[expected++]);
+            }
+        }
+        assertEquals(expected, rows.length);
+    }
+}
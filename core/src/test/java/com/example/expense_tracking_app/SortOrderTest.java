@@ -0,0 +1,91 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SortOrderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ExpenseStore store() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("b", 2, 300, "home", null, null);
+        store.add("a", 2, 100, "Gas", null, null);
+        store.add("B", 1, 300, "Food", null, null);
+        store.add("c", 1, 100, "Gas", null, null);
+        store.add("a", 2, 200, "Food", null, null);
+        return store;
+    }
+
+    private static int[] sort(ExpenseStore store, SortOrder order) {
+        int[] rows = new int[store.size()];
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = row;
+        }
+        Rows.sort(rows, rows.length, order.comparator(store));
+        return rows;
+    }
+
+    @Test
+    public void breaksTiesByTheOtherKeysAscending() {
+        ExpenseStore store = store();
+        assertArrayEquals(new int[]{2, 3, 1, 4, 0}, sort(store, SortOrder.DEFAULT));
+        assertArrayEquals(new int[]{1, 4, 0, 2, 3}, sort(store, new SortOrder(SortOrder.Key.DATE, false)));
+        assertArrayEquals(new int[]{1, 4, 2, 0, 3}, sort(store, new SortOrder(SortOrder.Key.NAME, true)));
+        assertArrayEquals(new int[]{3, 2, 0, 1, 4}, sort(store, new SortOrder(SortOrder.Key.NAME, false)));
+        assertArrayEquals(new int[]{3, 1, 4, 2, 0}, sort(store, new SortOrder(SortOrder.Key.AMOUNT, true)));
+        assertArrayEquals(new int[]{2, 0, 4, 3, 1}, sort(store, new SortOrder(SortOrder.Key.AMOUNT, false)));
+        assertArrayEquals(new int[]{2, 4, 3, 1, 0}, sort(store, new SortOrder(SortOrder.Key.CATEGORY, true)));
+        assertArrayEquals(new int[]{0, 3, 1, 2, 4}, sort(store, new SortOrder(SortOrder.Key.CATEGORY, false)));
+    }
+
+    @Test
+    public void ordersCategoriesCreatedLaterByName() {
+        ExpenseStore store = store();
+        RowComparator order = new SortOrder(SortOrder.Key.CATEGORY, true).comparator(store);
+        int rent = store.add("d", 1, 1, "Rent", null, null);
+        int auto = store.add("d", 1, 1, "auto", null, null);
+        assertTrue(order.compare(rent, 0) > 0);
+        assertTrue(order.compare(auto, 2) < 0);
+        assertTrue(order.compare(auto, rent) < 0);
+
+        store.renameCategory("Rent", "Bills");
+        order = new SortOrder(SortOrder.Key.CATEGORY, true).comparator(store);
+        assertTrue(order.compare(rent, 2) < 0);
+        assertTrue(order.compare(auto, rent) < 0);
+    }
+
+    @Test
+    public void switchesOrderOf100000MappedRows() throws IOException {
+        ExpenseStore store = new ExpenseStore();
+        Random random = new Random(11);
+        String[] categories = {"Food", "Gas", "Home", "Travel", "Health"};
+        for (int i = 0; i < 100_000; i++) {
+            store.add("Expense " + random.nextInt(20_000), 18_000 + random.nextInt(2_000), random.nextInt(100_000),
+                    categories[random.nextInt(categories.length)], null, null);
+        }
+        new ExpenseSegments(folder.getRoot()).compact(null, store, Integer.MIN_VALUE, Integer.MIN_VALUE, 1);
+        ExpenseRepository repository = new ExpenseRepository(new ExpenseJournal(folder.getRoot()), new ExpenseCategories(categories, "None"));
+        repository.load();
+        ExpenseEngine engine = new ExpenseEngine(repository, new CategoryFilter(), new DateFilter(), new SearchFilter(),
+                new ExpenseQueryPipeline(Runnable::run, Runnable::run));
+
+        for (SortOrder.Key key : SortOrder.Key.values()) {
+            for (boolean ascending : new boolean[]{true, false}) {
+                SortOrder order = new SortOrder(key, ascending);
+                engine.setSortOrder(order, () -> { });
+
+                RowComparator comparator = order.comparator(engine.getStore());
+                for (int position = 1; position < engine.size(); position++) {
+                    assertTrue(comparator.compare(engine.getRow(position - 1), engine.getRow(position)) <= 0);
+                }
+            }
+        }
+    }
+}
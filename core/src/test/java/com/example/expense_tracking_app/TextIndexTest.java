@@ -0,0 +1,159 @@
+package com.example.expense_tracking_app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TextIndexTest {
+    private static final String[] WORDS = {"coffee", "Costco", "gas", "rent", "Lunch", "client", "dinner", "uber", "co-op", "book", "caf\u00e9"};
+
+    private static String text(Random random) {
+        if (random.nextInt(5) == 0) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextBoolean() ? " " : ", ");
+        }
+        return text.toString();
+    }
+
+    private static String reference(String text) {
+        return text == null ? null : " " + text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{Nd}]", " ");
+    }
+
+    private static int[] expected(ExpenseStore store, String query, boolean prefix) {
+        String pattern = (prefix ? " " : "") + query.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{Nd}]", " ");
+        return java.util.stream.IntStream.range(0, store.size())
+                .filter(row -> {
+                    for (String field : new String[]{store.getName(row), store.getReason(row), store.getNotes(row)}) {
+                        String indexed = reference(field);
+                        if (indexed != null && indexed.contains(pattern)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                })
+                .toArray();
+    }
+
+    private static void assertSearch(ExpenseStore store, TextIndex index, String query, boolean prefix) {
+        assertArrayEquals(query + (prefix ? " (prefix)" : ""), expected(store, query, prefix), index.search(store, query, prefix).toArray());
+    }
+
+    @Test
+    public void staysCorrectThroughAddUpdateAndRemove() {
+        Random random = new Random(17);
+        ExpenseStore store = new ExpenseStore();
+        TextIndex index = new TextIndex();
+        for (int i = 0; i < 3000; i++) {
+            int action = store.size() == 0 ? 0 : random.nextInt(4);
+            if (action <= 1) {
+                String name = text(random);
+                String reason = text(random);
+                String notes = text(random);
+                int row = store.add(name == null ? "" : name, 0, 0, "Gas", reason, notes);
+                index.add(row, store.getName(row), reason, notes);
+            } else if (action == 2) {
+                int row = random.nextInt(store.size());
+                String previousName = store.getName(row);
+                String previousReason = store.getReason(row);
+                String previousNotes = store.getNotes(row);
+                store.set(row, "Edited " + text(random), 0, 0, "Gas", text(random), null);
+                index.update(row, previousName, previousReason, previousNotes, store.getName(row), store.getReason(row), store.getNotes(row));
+            } else {
+                int row = random.nextInt(store.size());
+                int last = store.size() - 1;
+                String name = store.getName(row);
+                String reason = store.getReason(row);
+                String notes = store.getNotes(row);
+                String lastName = store.getName(last);
+                String lastReason = store.getReason(last);
+                String lastNotes = store.getNotes(last);
+                int moved = store.remove(row);
+                index.remove(row, name, reason, notes, moved, lastName, lastReason, lastNotes);
+            }
+        }
+
+        for (String query : new String[]{"c", "co", "cos", "costco", "OSTC", "co op", "co-op", "ch, c", "caf\u00e9", "edited din", "zzz", "e"}) {
+            assertSearch(store, index, query, false);
+            assertSearch(store, index, query, true);
+        }
+
+        TextIndex rebuilt = new TextIndex();
+        rebuilt.build(store);
+        assertArrayEquals(index.search(store, "lunch", false).toArray(), rebuilt.search(store, "lunch", false).toArray());
+    }
+
+    @Test
+    public void snapshotKeepsItsPostingsThroughChanges() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("Coffee", 10, 450, "Food", null, null);
+        TextIndex index = new TextIndex();
+        index.build(store);
+
+        ExpenseStore snapshotStore = store.snapshot();
+        TextIndex snapshot = index.snapshot();
+        store.set(0, "Tea", 10, 450, "Food", null, null);
+        index.update(0, "Coffee", null, null, "Tea", null, null);
+        int row = store.add("Coffee beans", 20, 1200, "Food", null, null);
+        index.add(row, "Coffee beans", null, null);
+
+        assertArrayEquals(new int[]{0}, snapshot.search(snapshotStore, "coffee", true).toArray());
+        assertEquals(0, snapshot.search(snapshotStore, "tea", true).cardinality());
+        assertArrayEquals(new int[]{1}, index.search(store, "coffee", true).toArray());
+        assertArrayEquals(new int[]{0}, index.search(store, "tea", true).toArray());
+    }
+
+    @Test
+    public void searchFilterCombinesWithOtherFilters() {
+        ExpenseStore store = new ExpenseStore();
+        store.add("Coffee", 10, 450, "Food", null, null);
+        store.add("Coffee beans", 20, 1200, "Groceries", null, "Costco run");
+        store.add("Gas", 20, 4000, "Gas", null, "Costco");
+
+        DateIndex dateIndex = new DateIndex();
+        dateIndex.build(store);
+        CategoryIndex categoryIndex = new CategoryIndex();
+        categoryIndex.build(store);
+        TextIndex textIndex = new TextIndex();
+        textIndex.build(store);
+
+        SearchFilter search = new SearchFilter();
+        search.setQuery("  ");
+        assertFalse(search.isEnabled());
+        search.setQuery("costco");
+        assertTrue(search.isEnabled());
+        assertFalse(search.filter(store, 0));
+        assertTrue(search.filter(store.get(1)));
+
+        DateFilter dateFilter = new DateFilter();
+        dateFilter.setDateRange(java.time.LocalDate.ofEpochDay(20), java.time.LocalDate.ofEpochDay(20));
+        CategoryFilter categoryFilter = new CategoryFilter();
+        categoryFilter.setCategory("Gas");
+
+        FilterExpression.Plan plan = FilterExpression.and(dateFilter.toExpression(), categoryFilter.toExpression(), search.toExpression())
+                .optimize(store, dateIndex, categoryIndex, textIndex);
+        assertArrayEquals(new int[]{2}, plan.getCandidates());
+        assertSame(FilterExpression.all(), plan.getResidual());
+    }
+
+    @Test
+    public void searchesHundredThousandRowsLikeAScan() {
+        Random random = new Random(23);
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < 100_000; i++) {
+            store.add(WORDS[random.nextInt(WORDS.length)] + " " + i, 0, 0, "Gas", text(random), text(random));
+        }
+        TextIndex index = new TextIndex();
+        index.build(store);
+
+        for (String query : new String[]{"c", "cl", "cli", "clie", "clien", "client", "4217", "dinner 9"}) {
+            assertArrayEquals(query, expected(store, query, false), index.search(store, query, false).toArray());
+        }
+    }
+}